@@ -0,0 +1,43 @@
+//? #version 430 core
+
+/* Input */
+
+uniform ivec2 renderSize;
+uniform vec2 vertexRatioExtent;
+uniform float ratioWidthModifier;
+uniform float ratioHeightModifier;
+uniform mat4 viewMatrix;
+uniform vec3 cameraPosition;
+
+/* Functions */
+
+// calculates the ray direction of a vertex of the quad rendered by ray_tracing.vert
+vec3 getVertexRayDirection(vec2 vertexRatio) {
+    vec3 cameraViewDirection = vec3(0, 0, -1);
+    vec3 up = vec3(0, -1, 0);
+    vec3 right = vec3(-1, 0, 0);
+
+    vec3 rayDirection = cameraViewDirection
+                      - right * vertexRatio.x
+                      - up * vertexRatio.y
+                      + right * vertexRatio.x * ratioWidthModifier
+                      + up * vertexRatio.y * ratioHeightModifier;
+
+    return normalize((vec4(rayDirection, 1) * viewMatrix).xyz);
+}
+
+// interpolates the vertex ray directions like the rasterizer does for the two triangles of the quad
+vec3 getPixelRayDirection(ivec2 pixel) {
+    vec2 position = (vec2(pixel) + 0.5) / vec2(renderSize);
+
+    vec3 leftBottom = getVertexRayDirection(vec2(-vertexRatioExtent.x, -vertexRatioExtent.y));
+    vec3 rightTop = getVertexRayDirection(vertexRatioExtent);
+
+    if(position.y >= position.x) {
+        vec3 leftTop = getVertexRayDirection(vec2(-vertexRatioExtent.x, vertexRatioExtent.y));
+        return (1 - position.y) * leftBottom + position.x * rightTop + (position.y - position.x) * leftTop;
+    }
+
+    vec3 rightBottom = getVertexRayDirection(vec2(vertexRatioExtent.x, -vertexRatioExtent.y));
+    return (1 - position.x) * leftBottom + (position.x - position.y) * rightBottom + position.y * rightTop;
+}
@@ -19,10 +19,13 @@
 
 /* Constants */
 
+const int modelCount = 0;
 const int triangleCount = 0;
 const int sphereCount = 0;
 const int quadricCount = 0;
 const int csgCount = 0;
+const int bvhPrimitiveCount = 0;
+const int bvhStackSize = 32;
 
 /* Triangles Buffer */
 
@@ -32,15 +35,41 @@ layout(std430, binding = 0) readonly buffer Triangles {
     vec3[3 * max(triangleCount, 1)] vertexNormals;
     vec2[3 * max(triangleCount, 1)] vertexUVs;
     vec3[max(triangleCount, 1)] triangleNormals;
-    int[max(triangleCount, 1)] textureIndecis;
 };
 
-/* Uniform Structs */
+/* Bounding Volume Hierarchy Buffer */
+
+struct BvhNode {
+    vec3 minimum;
+    int childOrFirstIndex;
+    vec3 maximum;
+    int primitiveCount;
+};
+
+layout(std430, binding = 1) readonly buffer BoundingVolumeHierarchy {
+    int[max(bvhPrimitiveCount, 1)] bvhPrimitiveIndecis;
+    BvhNode[] bvhNodes;
+};
+
+/* Model Instances Buffer */
+
+struct ModelInstance {
+    mat4 inverseModelMatrix;
+    mat4 normalMatrix;
+    int rootNodeIndex;
+    int textureIndex;
+};
+
+layout(std430, binding = 2) readonly buffer ModelInstances {
+    ModelInstance[max(modelCount, 1)] modelInstances;
+};
+
+/* Object Structs */
 
 struct Sphere {
     vec3 origin;
-    vec3 color;
     float radius;
+    vec3 color;
     int materialIndex;
 };
 
@@ -76,6 +105,12 @@ struct TriangleIntersection {
     TriangleInsideTest insideTest;
 };
 
+struct InstanceIntersection {
+    int triangleIndex;
+    float triangleDistance;
+    TriangleInsideTest insideTest;
+};
+
 struct BarycentricCoordinates {
     float u;
     float v;
@@ -94,13 +129,26 @@ struct ObjectReferenceInformation {
     float objectDistance;
     bool invertNormal;
     TriangleInsideTest insideTest;
+    int instanceIndex;
 };
 
-/* Uniforms */
+const ObjectReferenceInformation noHit = ObjectReferenceInformation(
+    TYPE_NONE, -1, -1, false, TriangleInsideTest(0, 0), 0
+);
 
-uniform Sphere[max(sphereCount, 1)] spheres;
-uniform Quadric[max(quadricCount, 1)] quadrics;
-uniform ConstructiveSolidGeometry[max(csgCount, 1)] csgs;
+/* Object Buffers */
+
+layout(std430, binding = 3) readonly buffer Spheres {
+    Sphere[max(sphereCount, 1)] spheres;
+};
+
+layout(std430, binding = 4) readonly buffer Quadrics {
+    Quadric[max(quadricCount, 1)] quadrics;
+};
+
+layout(std430, binding = 5) readonly buffer ConstructiveSolidGeometries {
+    ConstructiveSolidGeometry[max(csgCount, 1)] csgs;
+};
 
 /* Functions */
 
@@ -180,6 +228,103 @@ BarycentricCoordinates getBarycentricCoordinates(int triangleIndex, TriangleInsi
     return BarycentricCoordinates(u, v, w);
 }
 
+vec3 getInverseRayDirection(vec3 rayDirection) {
+    return 1 / mix(rayDirection, vec3(1e-30), lessThan(abs(rayDirection), vec3(1e-30)));
+}
+
+float getBvhNodeDistance(int nodeIndex, vec3 rayOrigin, vec3 inverseRayDirection, float maxDistance) {
+    vec3 minimumDistances = (bvhNodes[nodeIndex].minimum - rayOrigin) * inverseRayDirection;
+    vec3 maximumDistances = (bvhNodes[nodeIndex].maximum - rayOrigin) * inverseRayDirection;
+
+    float entryDistance = max(max3(min(minimumDistances, maximumDistances)), 0);
+    float exitDistance = min3(max(minimumDistances, maximumDistances));
+
+    if(exitDistance < entryDistance || (maxDistance >= 0 && entryDistance > maxDistance)) return -1;
+    return entryDistance;
+}
+
+vec3 getInstanceRayOrigin(int instanceIndex, vec3 rayOrigin) {
+    return (modelInstances[instanceIndex].inverseModelMatrix * vec4(rayOrigin, 1)).xyz;
+}
+
+vec3 getInstanceRayDirection(int instanceIndex, vec3 rayDirection) {
+    return mat3(modelInstances[instanceIndex].inverseModelMatrix) * rayDirection;
+}
+
+vec3 getInstanceNormal(int instanceIndex, vec3 normal) {
+    return normalize(mat3(modelInstances[instanceIndex].normalMatrix) * normal);
+}
+
+InstanceIntersection getInstanceIntersection(
+    int instanceIndex, vec3 rayOrigin, vec3 rayDirection, float maxDistance
+) {
+    // transform the ray into the object space of the instance's mesh,
+    // the ray direction is not normalized so distances stay the same
+    vec3 instanceRayOrigin = getInstanceRayOrigin(instanceIndex, rayOrigin);
+    vec3 instanceRayDirection = getInstanceRayDirection(instanceIndex, rayDirection);
+    vec3 inverseRayDirection = getInverseRayDirection(instanceRayDirection);
+
+    InstanceIntersection nearestIntersection = InstanceIntersection(-1, maxDistance, TriangleInsideTest(0, 0));
+
+    int[bvhStackSize] nodeStack;
+    int stackSize = 0;
+    int nodeIndex = modelInstances[instanceIndex].rootNodeIndex;
+    if(getBvhNodeDistance(nodeIndex, instanceRayOrigin, inverseRayDirection, maxDistance) < 0) nodeIndex = -1;
+
+    while(nodeIndex >= 0) {
+        BvhNode node = bvhNodes[nodeIndex];
+        float nearestDistance = nearestIntersection.triangleDistance;
+
+        if(node.primitiveCount > 0) {
+            for(int i = node.childOrFirstIndex; i < node.childOrFirstIndex + node.primitiveCount; i++) {
+                int triangleIndex = bvhPrimitiveIndecis[i];
+
+                TriangleIntersection triangleInformation = getTriangleIntersection(
+                    triangleIndex, instanceRayOrigin, instanceRayDirection, nearestIntersection.triangleDistance
+                );
+
+                float triangleDistance = triangleInformation.triangleDistance;
+
+                if(
+                    (nearestIntersection.triangleDistance < 0 || triangleDistance < nearestIntersection.triangleDistance) &&
+                    triangleDistance > 0
+                ) {
+                    nearestIntersection = InstanceIntersection(
+                        triangleIndex, triangleDistance, triangleInformation.insideTest
+                    );
+                }
+            }
+
+            nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+        } else {
+            // visit the nearer child first and store the farther child on the stack
+            int leftIndex = node.childOrFirstIndex;
+            int rightIndex = leftIndex + 1;
+
+            float leftDistance = getBvhNodeDistance(
+                leftIndex, instanceRayOrigin, inverseRayDirection, nearestDistance
+            );
+
+            float rightDistance = getBvhNodeDistance(
+                rightIndex, instanceRayOrigin, inverseRayDirection, nearestDistance
+            );
+
+            if(leftDistance >= 0 && rightDistance >= 0) {
+                nodeIndex = leftDistance <= rightDistance ? leftIndex : rightIndex;
+                nodeStack[stackSize++] = leftDistance <= rightDistance ? rightIndex : leftIndex;
+            } else if(leftDistance >= 0) {
+                nodeIndex = leftIndex;
+            } else if(rightDistance >= 0) {
+                nodeIndex = rightIndex;
+            } else {
+                nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+            }
+        }
+    }
+
+    return nearestIntersection;
+}
+
 ObjectDistanceInformation getSphereInformation(Sphere sphere, float A, vec3 rayOrigin, vec3 rayDirection) {
     float B = componentSum(2 * rayOrigin * rayDirection - 2 * sphere.origin * rayDirection);
 
@@ -381,28 +526,14 @@ CsgInformation getCsgInformation(ConstructiveSolidGeometry CSG, vec3 rayOrigin,
     return CsgInformation(quadricIndex, CsgDistance, invertNormal);
 }
 
-ObjectReferenceInformation getNearestObjectInformation(vec3 rayOrigin, vec3 rayDirection) {
-    int nearestObjectType = TYPE_NONE;
-    int nearestObjectIndex = -1;
-    float nearestObjectDistance = -1;
-    bool invertNormal = false;
-
-    // check for nearest sphere
-    if(sphereCount > 0) {
-        float A = square(rayDirection.x) + square(rayDirection.y) + square(rayDirection.z);
-
-        for(int i = 0; i < sphereCount; i++) {
-            ObjectDistanceInformation sphereInformation = getSphereInformation(spheres[i], A, rayOrigin, rayDirection);
-            float sphereDistance = sphereInformation.objectDistance;
-
-            if((nearestObjectDistance < 0 || sphereDistance < nearestObjectDistance) && sphereDistance > 0) {
-                nearestObjectType = TYPE_SPHERE;
-                nearestObjectIndex = i;
-                nearestObjectDistance = sphereDistance;
-                invertNormal = sphereInformation.invertNormal;
-            }
-         }
-     }
+// finds the nearest object, which is nearer than the given object, only tests model instances if testingInstances
+ObjectReferenceInformation getNearestObjectInformation(
+    vec3 rayOrigin, vec3 rayDirection, ObjectReferenceInformation nearestObjectInformation, bool testingInstances
+) {
+    int nearestObjectType = nearestObjectInformation.type;
+    int nearestObjectIndex = nearestObjectInformation.index;
+    float nearestObjectDistance = nearestObjectInformation.objectDistance;
+    bool invertNormal = nearestObjectInformation.invertNormal;
 
     // check for nearest quadric
     for(int i = 0; i < quadricCount; i++) { if(quadrics[i].visible == true) {
@@ -430,29 +561,95 @@ ObjectReferenceInformation getNearestObjectInformation(vec3 rayOrigin, vec3 rayD
         }
      }
 
-     // check for nearest triangle
-     TriangleInsideTest insideTest = TriangleInsideTest(0, 0);
+    // check for nearest model instance and sphere by traversing the bounding volume hierarchy
+    TriangleInsideTest insideTest = nearestObjectInformation.insideTest;
+    int instanceIndex = nearestObjectInformation.instanceIndex;
 
-     for(int i = 0; i < triangleCount; i++) {
-        TriangleIntersection triangleInformation = getTriangleIntersection(
-            i, rayOrigin, rayDirection, nearestObjectDistance
-        );
+    if((testingInstances ? modelCount : 0) + sphereCount > 0) {
+        vec3 inverseRayDirection = getInverseRayDirection(rayDirection);
+        float A = square(rayDirection.x) + square(rayDirection.y) + square(rayDirection.z);
 
-        float triangleDistance = triangleInformation.triangleDistance;
+        int[bvhStackSize] nodeStack;
+        int stackSize = 0;
+        int nodeIndex = getBvhNodeDistance(0, rayOrigin, inverseRayDirection, nearestObjectDistance) >= 0 ? 0 : -1;
+
+        while(nodeIndex >= 0) {
+            BvhNode node = bvhNodes[nodeIndex];
+
+            if(node.primitiveCount > 0) {
+                for(int i = node.childOrFirstIndex; i < node.childOrFirstIndex + node.primitiveCount; i++) {
+                    int primitiveIndex = bvhPrimitiveIndecis[i];
+
+                    if(primitiveIndex < modelCount) {
+                        if(!testingInstances) continue;
+
+                        InstanceIntersection instanceIntersection = getInstanceIntersection(
+                            primitiveIndex, rayOrigin, rayDirection, nearestObjectDistance
+                        );
+
+                        if(instanceIntersection.triangleIndex >= 0) {
+                            nearestObjectType = TYPE_TRIANGLE;
+                            nearestObjectIndex = instanceIntersection.triangleIndex;
+                            nearestObjectDistance = instanceIntersection.triangleDistance;
+                            insideTest = instanceIntersection.insideTest;
+                            instanceIndex = primitiveIndex;
+                        }
+                    } else {
+                        int sphereIndex = primitiveIndex - modelCount;
+
+                        ObjectDistanceInformation sphereInformation = getSphereInformation(
+                            spheres[sphereIndex], A, rayOrigin, rayDirection
+                        );
+
+                        float sphereDistance = sphereInformation.objectDistance;
+
+                        if((nearestObjectDistance < 0 || sphereDistance < nearestObjectDistance) && sphereDistance > 0) {
+                            nearestObjectType = TYPE_SPHERE;
+                            nearestObjectIndex = sphereIndex;
+                            nearestObjectDistance = sphereDistance;
+                            invertNormal = sphereInformation.invertNormal;
+                        }
+                    }
+                }
 
-        if((nearestObjectDistance < 0 || triangleDistance < nearestObjectDistance) && triangleDistance > 0) {
-            nearestObjectType = TYPE_TRIANGLE;
-            nearestObjectIndex = i;
-            nearestObjectDistance = triangleDistance;
-            insideTest = triangleInformation.insideTest;
+                nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+            } else {
+                // visit the nearer child first and store the farther child on the stack
+                int leftIndex = node.childOrFirstIndex;
+                int rightIndex = leftIndex + 1;
+
+                float leftDistance = getBvhNodeDistance(
+                    leftIndex, rayOrigin, inverseRayDirection, nearestObjectDistance
+                );
+
+                float rightDistance = getBvhNodeDistance(
+                    rightIndex, rayOrigin, inverseRayDirection, nearestObjectDistance
+                );
+
+                if(leftDistance >= 0 && rightDistance >= 0) {
+                    nodeIndex = leftDistance <= rightDistance ? leftIndex : rightIndex;
+                    nodeStack[stackSize++] = leftDistance <= rightDistance ? rightIndex : leftIndex;
+                } else if(leftDistance >= 0) {
+                    nodeIndex = leftIndex;
+                } else if(rightDistance >= 0) {
+                    nodeIndex = rightIndex;
+                } else {
+                    nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+                }
+            }
         }
     }
 
     if(nearestObjectType == TYPE_TRIANGLE) {
-        invertNormal = dot(rayDirection, triangleNormals[nearestObjectIndex]) > 0;
+        vec3 triangleNormal = getInstanceNormal(instanceIndex, triangleNormals[nearestObjectIndex]);
+        invertNormal = dot(rayDirection, triangleNormal) > 0;
     }
 
     return ObjectReferenceInformation(
-        nearestObjectType, nearestObjectIndex, nearestObjectDistance, invertNormal, insideTest
+        nearestObjectType, nearestObjectIndex, nearestObjectDistance, invertNormal, insideTest, instanceIndex
     );
+}
+
+ObjectReferenceInformation getNearestObjectInformation(vec3 rayOrigin, vec3 rayDirection) {
+    return getNearestObjectInformation(rayOrigin, rayDirection, noHit, true);
 }
\ No newline at end of file
@@ -0,0 +1,38 @@
+#version 430 core
+
+/* Constants */
+
+const float near = 0.01;
+const float far = 10000;
+
+/* Input */
+
+// the positions of the triangles' vertices, which are stored first in the Triangles buffer of ray_tracing.glsl
+layout(std430, binding = 13) readonly buffer TriangleVertices {
+    vec4[] vertices;
+};
+
+uniform mat4 modelMatrix;
+uniform mat4 viewMatrix;
+uniform mat4 translationMatrix;
+uniform vec2 frustumExtent;
+uniform int instanceIndex;
+
+/* Output */
+
+flat out ivec2 rasterizedTriangle;
+
+/* Main */
+
+void main() {
+    vec4 viewPosition = viewMatrix * translationMatrix * modelMatrix * vec4(vertices[gl_VertexID].xyz, 1);
+
+    // project like the camera rays of the ray tracer, which span the frustumExtent at a distance of 1
+    gl_Position = vec4(
+        viewPosition.xy / frustumExtent,
+        (far + near) / (near - far) * viewPosition.z + 2 * far * near / (near - far),
+        -viewPosition.z
+    );
+
+    rasterizedTriangle = ivec2(instanceIndex, gl_VertexID / 3);
+}
@@ -8,7 +8,7 @@ layout(location = 1) in vec2 vertexRatio;
 uniform float ratioWidthModifier;
 uniform float ratioHeightModifier;
 uniform mat4 viewMatrix;
-uniform mat4 translationMatrix;
+uniform vec3 cameraPosition;
 
 /* Output */
 
@@ -18,14 +18,14 @@ out vec3 rayDirection;
 /* Main */
 
 void main() {
-    vec3 cameraPosition = vec3(0, 0, 0);
     vec3 cameraViewDirection = vec3(0, 0, -1);
     vec3 up = vec3(0, -1, 0);
     vec3 right = vec3(-1, 0, 0);
 
+    // geometry is stored in world space, so rays start at the camera's world space position
     rayOrigin = cameraPosition;
 
-    rayDirection = cameraPosition + cameraViewDirection
+    rayDirection = cameraViewDirection
                  - right * vertexRatio.x
                  - up * vertexRatio.y
                  + right * vertexRatio.x * ratioWidthModifier  
@@ -5,6 +5,7 @@
 
 const int materialCount = 0;
 const int cookTorranceTextureCount = 0;
+const bool occluderCaching = false;
 
 /* Structs */
 
@@ -22,79 +23,266 @@ struct CookTorranceTexture {
     int triangleIndex;
 };
 
+/* Material Buffer */
+
+layout(std430, binding = 7) readonly buffer Materials {
+    Material[max(materialCount, 1)] materials;
+};
+
 /* Uniforms */
 
-uniform Material[max(materialCount, 1)] materials;
 uniform CookTorranceTexture[max(cookTorranceTextureCount, 1)] cookTorranceTextures;
 
+/* Occluder Cache */
+
+// the key of the last object found occluding a light for each pixel's primary surface and light, see isOccluding
+layout(std430, binding = 12) coherent buffer OccluderCache {
+    int[] cachedOccluders;
+};
+
+// set by the shaders including this file for the primary surface of a pixel, -1 if the occluders are not cached,
+// as reflections and refractions of the same pixel would otherwise overwrite each other's occluders
+int occluderCachePixel = -1;
+
 /* Functions */
 
-float getShadowStrengthWithoutTranparencyHandling(vec3 rayOrigin, vec3 rayDirection, float lightDistance) {
-    // check for nearest spheres
-    if(sphereCount > 0) {
-        float A = square(rayDirection.x) + square(rayDirection.y) + square(rayDirection.z);
+bool isInstanceOccluding(
+    int instanceIndex, vec3 rayOrigin, vec3 rayDirection, float lightDistance
+) {
+    // transform the ray into the object space of the instance's mesh
+    vec3 instanceRayOrigin = getInstanceRayOrigin(instanceIndex, rayOrigin);
+    vec3 instanceRayDirection = getInstanceRayDirection(instanceIndex, rayDirection);
+    vec3 inverseRayDirection = getInverseRayDirection(instanceRayDirection);
+
+    int[bvhStackSize] nodeStack;
+    int stackSize = 0;
+    int rootIndex = modelInstances[instanceIndex].rootNodeIndex;
+    int nodeIndex = getBvhNodeDistance(rootIndex, instanceRayOrigin, inverseRayDirection, lightDistance) >= 0 ? rootIndex : -1;
 
-        for(int i = 0; i < sphereCount; i++) {
-            ObjectDistanceInformation sphereInformation = getSphereInformation(spheres[i], A, rayOrigin, rayDirection);
-            float sphereDistance = sphereInformation.objectDistance;
+    while(nodeIndex >= 0) {
+        BvhNode node = bvhNodes[nodeIndex];
 
-            if(sphereDistance >= 0 && sphereDistance < lightDistance) {
-                return 1;
+        if(node.primitiveCount > 0) {
+            for(int j = node.childOrFirstIndex; j < node.childOrFirstIndex + node.primitiveCount; j++) {
+                int i = bvhPrimitiveIndecis[j];
+
+                TriangleIntersection intersection = getTriangleIntersection(
+                    i, instanceRayOrigin, instanceRayDirection, lightDistance
+                );
+
+                if(intersection.triangleDistance >= 0) {
+                    return true;
+                }
             }
-         }
-     }
 
-    // check for nearest quadrics
-    for(int i = 0; i < quadricCount; i++) { if(quadrics[i].visible == true) {
-        ObjectDistanceInformation quadricInformation = getQuadricInformation(quadrics[i], rayOrigin, rayDirection);
-        float quadricDistance = quadricInformation.objectDistance;
+            nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+        } else {
+            // visit the nearer child first, as it is more likely to contain an occluder
+            int leftIndex = node.childOrFirstIndex;
+            int rightIndex = leftIndex + 1;
+            float leftDistance = getBvhNodeDistance(leftIndex, instanceRayOrigin, inverseRayDirection, lightDistance);
+            float rightDistance = getBvhNodeDistance(rightIndex, instanceRayOrigin, inverseRayDirection, lightDistance);
 
-        if(quadricDistance >= 0 && quadricDistance < lightDistance) {
-            return 1;
+            if(leftDistance >= 0 && rightDistance >= 0) {
+                nodeIndex = leftDistance <= rightDistance ? leftIndex : rightIndex;
+                nodeStack[stackSize++] = leftDistance <= rightDistance ? rightIndex : leftIndex;
+            } else if(leftDistance >= 0) {
+                nodeIndex = leftIndex;
+            } else if(rightDistance >= 0) {
+                nodeIndex = rightIndex;
+            } else {
+                nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+            }
         }
-    }}
+    }
 
-    // check for nearest csgs
-    for(int i = 0; i < csgCount; i++) {
-        CsgInformation csgInformation = getCsgInformation(csgs[i], rayOrigin, rayDirection);
-        float CsgDistance = csgInformation.CsgDistance;
+    return false;
+}
 
-        if(CsgDistance >= 0 && CsgDistance < lightDistance) {
-            return 1;
-        }
-     }
+float getInstanceShadowStrength(
+    int instanceIndex, vec3 rayOrigin, vec3 rayDirection, float lightDistance, float shadowStrength
+) {
+    // transform the ray into the object space of the instance's mesh
+    vec3 instanceRayOrigin = getInstanceRayOrigin(instanceIndex, rayOrigin);
+    vec3 instanceRayDirection = getInstanceRayDirection(instanceIndex, rayDirection);
+    int textureIndex = modelInstances[instanceIndex].textureIndex;
+    vec3 inverseRayDirection = getInverseRayDirection(instanceRayDirection);
+
+    int[bvhStackSize] nodeStack;
+    int stackSize = 0;
+    int rootIndex = modelInstances[instanceIndex].rootNodeIndex;
+    int nodeIndex = getBvhNodeDistance(rootIndex, instanceRayOrigin, inverseRayDirection, lightDistance) >= 0 ? rootIndex : -1;
+
+    while(nodeIndex >= 0) {
+        BvhNode node = bvhNodes[nodeIndex];
+
+        if(node.primitiveCount > 0) {
+            for(int j = node.childOrFirstIndex; j < node.childOrFirstIndex + node.primitiveCount; j++) {
+                int i = bvhPrimitiveIndecis[j];
+
+                TriangleIntersection intersection = getTriangleIntersection(
+                    i, instanceRayOrigin, instanceRayDirection, lightDistance
+                );
+
+                float triangleDistance = intersection.triangleDistance;
+
+                if(triangleDistance >= 0) {
+                    BarycentricCoordinates barycentricCoordinates = getBarycentricCoordinates(
+                        i, intersection.insideTest
+                    );
+
+                    float u = barycentricCoordinates.u;
+                    float v = barycentricCoordinates.v;
+                    float w = barycentricCoordinates.w;
 
-     // check for nearest triangles
-     for(int i = 0; i < triangleCount; i++) {
-        TriangleIntersection intersection = getTriangleIntersection(i, rayOrigin, rayDirection, lightDistance);
-        float triangleDistance = intersection.triangleDistance;
+                    vec2 textureCoordinates = (
+                        u * vertexUVs[i * 3] + v * vertexUVs[i * 3 + 1] + w * vertexUVs[i * 3 + 2]
+                    );
 
-        if(triangleDistance >= 0) {
-            return 1;
+                    shadowStrength += texture(cookTorranceTextures[textureIndex].colorMap, textureCoordinates).a;
+                    if(shadowStrength >= 1) return 1;
+                }
+            }
+
+            nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+        } else {
+            int leftIndex = node.childOrFirstIndex;
+            int rightIndex = leftIndex + 1;
+            bool leftHit = getBvhNodeDistance(leftIndex, instanceRayOrigin, inverseRayDirection, lightDistance) >= 0;
+            bool rightHit = getBvhNodeDistance(rightIndex, instanceRayOrigin, inverseRayDirection, lightDistance) >= 0;
+
+            if(leftHit && rightHit) {
+                nodeIndex = leftIndex;
+                nodeStack[stackSize++] = rightIndex;
+            } else if(leftHit) {
+                nodeIndex = leftIndex;
+            } else if(rightHit) {
+                nodeIndex = rightIndex;
+            } else {
+                nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+            }
         }
     }
 
-    return 0;
+    return shadowStrength;
 }
 
-float getShadowStrength(vec3 rayOrigin, vec3 rayDirection, float lightDistance) {
-    float shadowStrength = 0;
-    
-    // check for nearest spheres
-    if(sphereCount > 0) {
-        float A = square(rayDirection.x) + square(rayDirection.y) + square(rayDirection.z);
+bool isQuadricOccluding(int quadricIndex, vec3 rayOrigin, vec3 rayDirection, float lightDistance) {
+    if(!quadrics[quadricIndex].visible) return false;
+    float quadricDistance = getQuadricInformation(quadrics[quadricIndex], rayOrigin, rayDirection).objectDistance;
+    return quadricDistance >= 0 && quadricDistance < lightDistance;
+}
 
-        for(int i = 0; i < sphereCount; i++) {
-            ObjectDistanceInformation sphereInformation = getSphereInformation(spheres[i], A, rayOrigin, rayDirection);
-            float sphereDistance = sphereInformation.objectDistance;
+bool isCsgOccluding(int csgIndex, vec3 rayOrigin, vec3 rayDirection, float lightDistance) {
+    float CsgDistance = getCsgInformation(csgs[csgIndex], rayOrigin, rayDirection).CsgDistance;
+    return CsgDistance >= 0 && CsgDistance < lightDistance;
+}
 
-            if(sphereDistance >= 0 && sphereDistance < lightDistance) {
-                shadowStrength += materials[spheres[i].materialIndex].opacity;
-                if(shadowStrength >= 1) return 1; 
+bool isBvhPrimitiveOccluding(int primitiveIndex, float A, vec3 rayOrigin, vec3 rayDirection, float lightDistance) {
+    if(primitiveIndex < modelCount) {
+        return isInstanceOccluding(primitiveIndex, rayOrigin, rayDirection, lightDistance);
+    }
+
+    Sphere sphere = spheres[primitiveIndex - modelCount];
+    float sphereDistance = getSphereInformation(sphere, A, rayOrigin, rayDirection).objectDistance;
+    return sphereDistance >= 0 && sphereDistance < lightDistance;
+}
+
+// the keys of the primitives of the bounding volume hierarchy are followed by the keys of quadrics and CSGs
+bool isOccluding(int occluderKey, float A, vec3 rayOrigin, vec3 rayDirection, float lightDistance) {
+    if(occluderKey < modelCount + sphereCount) {
+        return isBvhPrimitiveOccluding(occluderKey, A, rayOrigin, rayDirection, lightDistance);
+    }
+
+    occluderKey -= modelCount + sphereCount;
+    if(occluderKey < quadricCount) return isQuadricOccluding(occluderKey, rayOrigin, rayDirection, lightDistance);
+
+    // the key may belong to an object which has been removed since it was cached
+    occluderKey -= quadricCount;
+    return occluderKey < csgCount && isCsgOccluding(occluderKey, rayOrigin, rayDirection, lightDistance);
+}
+
+// finds any occluder between the ray origin and the light instead of the nearest one and returns its key
+int getOccluder(float A, vec3 rayOrigin, vec3 rayDirection, float lightDistance) {
+    // check the model instances and spheres by traversing the bounding volume hierarchy,
+    // whose nodes are clipped to the light distance
+    if(modelCount + sphereCount > 0) {
+        vec3 inverseRayDirection = getInverseRayDirection(rayDirection);
+
+        int[bvhStackSize] nodeStack;
+        int stackSize = 0;
+        int nodeIndex = getBvhNodeDistance(0, rayOrigin, inverseRayDirection, lightDistance) >= 0 ? 0 : -1;
+
+        while(nodeIndex >= 0) {
+            BvhNode node = bvhNodes[nodeIndex];
+
+            if(node.primitiveCount > 0) {
+                for(int j = node.childOrFirstIndex; j < node.childOrFirstIndex + node.primitiveCount; j++) {
+                    int primitiveIndex = bvhPrimitiveIndecis[j];
+
+                    if(isBvhPrimitiveOccluding(primitiveIndex, A, rayOrigin, rayDirection, lightDistance)) {
+                        return primitiveIndex;
+                    }
+                }
+
+                nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+            } else {
+                // visit the nearer child first, as it is more likely to contain an occluder
+                int leftIndex = node.childOrFirstIndex;
+                int rightIndex = leftIndex + 1;
+                float leftDistance = getBvhNodeDistance(leftIndex, rayOrigin, inverseRayDirection, lightDistance);
+                float rightDistance = getBvhNodeDistance(rightIndex, rayOrigin, inverseRayDirection, lightDistance);
+
+                if(leftDistance >= 0 && rightDistance >= 0) {
+                    nodeIndex = leftDistance <= rightDistance ? leftIndex : rightIndex;
+                    nodeStack[stackSize++] = leftDistance <= rightDistance ? rightIndex : leftIndex;
+                } else if(leftDistance >= 0) {
+                    nodeIndex = leftIndex;
+                } else if(rightDistance >= 0) {
+                    nodeIndex = rightIndex;
+                } else {
+                    nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+                }
             }
-         }
-     }
+        }
+    }
 
+    // check the quadrics and csgs, which are not part of the bounding volume hierarchy
+    for(int i = 0; i < quadricCount; i++) {
+        if(isQuadricOccluding(i, rayOrigin, rayDirection, lightDistance)) return modelCount + sphereCount + i;
+    }
+
+    for(int i = 0; i < csgCount; i++) {
+        if(isCsgOccluding(i, rayOrigin, rayDirection, lightDistance)) {
+            return modelCount + sphereCount + quadricCount + i;
+        }
+    }
+
+    return -1;
+}
+
+float getShadowStrengthWithoutTranparencyHandling(
+    int cacheIndex, vec3 rayOrigin, vec3 rayDirection, float lightDistance
+) {
+    float A = square(rayDirection.x) + square(rayDirection.y) + square(rayDirection.z);
+
+    if(!occluderCaching || cacheIndex < 0) {
+        return getOccluder(A, rayOrigin, rayDirection, lightDistance) >= 0 ? 1 : 0;
+    }
+
+    // test the occluder found for the pixel and light last time first, as it is likely to still occlude
+    int cachedOccluder = cachedOccluders[cacheIndex];
+
+    if(cachedOccluder >= 0 && isOccluding(cachedOccluder, A, rayOrigin, rayDirection, lightDistance)) return 1;
+
+    int occluder = getOccluder(A, rayOrigin, rayDirection, lightDistance);
+    if(occluder != cachedOccluder) cachedOccluders[cacheIndex] = occluder;
+    return occluder >= 0 ? 1 : 0;
+}
+
+float getShadowStrength(vec3 rayOrigin, vec3 rayDirection, float lightDistance) {
+    float shadowStrength = 0;
+    
     // check for nearest quadrics
     for(int i = 0; i < quadricCount; i++) { if(quadrics[i].visible == true) {
         ObjectDistanceInformation quadricInformation = getQuadricInformation(quadrics[i], rayOrigin, rayDirection);
@@ -117,21 +305,58 @@ float getShadowStrength(vec3 rayOrigin, vec3 rayDirection, float lightDistance)
         }
      }
 
-     // check for nearest triangles
-     for(int i = 0; i < triangleCount; i++) {
-        TriangleIntersection intersection = getTriangleIntersection(i, rayOrigin, rayDirection, lightDistance);
-        float triangleDistance = intersection.triangleDistance;
+    // check for nearest model instances and spheres by traversing the bounding volume hierarchy
+    if(modelCount + sphereCount > 0) {
+        float A = square(rayDirection.x) + square(rayDirection.y) + square(rayDirection.z);
+        vec3 inverseRayDirection = getInverseRayDirection(rayDirection);
+
+        int[bvhStackSize] nodeStack;
+        int stackSize = 0;
+        int nodeIndex = getBvhNodeDistance(0, rayOrigin, inverseRayDirection, lightDistance) >= 0 ? 0 : -1;
 
-        if(triangleDistance >= 0) {
-            BarycentricCoordinates barycentricCoordinates = getBarycentricCoordinates(i, intersection.insideTest);
-            
-            float u = barycentricCoordinates.u;
-            float v = barycentricCoordinates.v;
-            float w = barycentricCoordinates.w;
+        while(nodeIndex >= 0) {
+            BvhNode node = bvhNodes[nodeIndex];
 
-            vec2 textureCoordinates = u * vertexUVs[i * 3] + v * vertexUVs[i * 3 + 1] + w * vertexUVs[i * 3 + 2];
-            shadowStrength += texture(cookTorranceTextures[textureIndecis[i]].colorMap, textureCoordinates).a;
-            if(shadowStrength >= 1) return 1; 
+            if(node.primitiveCount > 0) {
+                for(int j = node.childOrFirstIndex; j < node.childOrFirstIndex + node.primitiveCount; j++) {
+                    int primitiveIndex = bvhPrimitiveIndecis[j];
+
+                    if(primitiveIndex < modelCount) {
+                        shadowStrength = getInstanceShadowStrength(
+                            primitiveIndex, rayOrigin, rayDirection, lightDistance, shadowStrength
+                        );
+
+                        if(shadowStrength >= 1) return 1;
+                    } else {
+                        Sphere sphere = spheres[primitiveIndex - modelCount];
+                        ObjectDistanceInformation sphereInformation = getSphereInformation(sphere, A, rayOrigin, rayDirection);
+                        float sphereDistance = sphereInformation.objectDistance;
+
+                        if(sphereDistance >= 0 && sphereDistance < lightDistance) {
+                            shadowStrength += materials[sphere.materialIndex].opacity;
+                            if(shadowStrength >= 1) return 1;
+                        }
+                    }
+                }
+
+                nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+            } else {
+                int leftIndex = node.childOrFirstIndex;
+                int rightIndex = leftIndex + 1;
+                bool leftHit = getBvhNodeDistance(leftIndex, rayOrigin, inverseRayDirection, lightDistance) >= 0;
+                bool rightHit = getBvhNodeDistance(rightIndex, rayOrigin, inverseRayDirection, lightDistance) >= 0;
+
+                if(leftHit && rightHit) {
+                    nodeIndex = leftIndex;
+                    nodeStack[stackSize++] = rightIndex;
+                } else if(leftHit) {
+                    nodeIndex = leftIndex;
+                } else if(rightHit) {
+                    nodeIndex = rightIndex;
+                } else {
+                    nodeIndex = stackSize > 0 ? nodeStack[--stackSize] : -1;
+                }
+            }
         }
     }
 
@@ -0,0 +1,343 @@
+package bvh;
+
+/**
+ * Builds {@link BoundingVolumeHierarchy} objects top down by splitting nodes according to the
+ * surface area heuristic (SAH).
+ *
+ * Instead of evaluating every possible split position, the primitives of a node are sorted into a fixed number of
+ * equally sized bins along each axis, and only the borders between bins are evaluated as split positions.
+ *
+ * @author Tizian Kirchner
+ */
+public class BinnedSahBuilder implements BoundingVolumeHierarchyBuilder {
+	/**
+	 * The version of the building algorithm, which is part of the {@link #getCacheKey cache key}.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * Into how many bins the primitives of a node are sorted along each axis.
+	 */
+	private int binCount;
+
+	/**
+	 * How many primitives a node can contain at most, before it has to be split,
+	 * even if the surface area heuristic favors keeping the node as a leaf.
+	 */
+	private int maxLeafSize;
+
+	/**
+	 * The estimated cost of traversing an inner node relative to intersecting a primitive.
+	 */
+	private float traversalCost;
+
+	/**
+	 * Creates a {@link BinnedSahBuilder} using 12 bins, up to 4 primitives per leaf and a traversal cost of 1.
+	 */
+	public BinnedSahBuilder() {
+		this(12, 4, 1);
+	}
+
+	/**
+	 * @param binCount See {@link #binCount}.
+	 * @param maxLeafSize See {@link #maxLeafSize}.
+	 * @param traversalCost See {@link #traversalCost}.
+	 */
+	public BinnedSahBuilder(int binCount, int maxLeafSize, float traversalCost) {
+		this.binCount = binCount;
+		this.maxLeafSize = maxLeafSize;
+		this.traversalCost = traversalCost;
+	}
+
+	/**
+	 * Calculates the axis aligned bounding boxes of triangles.
+	 *
+	 * @param triangleVertices
+	 * The vertex positions of the triangles. Each triangle occupies nine consecutive elements.
+	 *
+	 * @return
+	 * The bounding boxes of the triangles. Each bounding box occupies six consecutive elements,
+	 * the minimum x, y and z coordinates followed by the maximum x, y and z coordinates.
+	 */
+	public static float[] calculateTriangleBounds(float[] triangleVertices) {
+		int triangleCount = triangleVertices.length / 9;
+		float[] triangleBounds = new float[triangleCount * 6];
+
+		for(int i = 0; i < triangleCount; i++) {
+			for(int axis = 0; axis < 3; axis++) {
+				float a = triangleVertices[i * 9 + axis];
+				float b = triangleVertices[i * 9 + 3 + axis];
+				float c = triangleVertices[i * 9 + 6 + axis];
+
+				triangleBounds[i * 6 + axis] = Math.min(a, Math.min(b, c));
+				triangleBounds[i * 6 + 3 + axis] = Math.max(a, Math.max(b, c));
+			}
+		}
+
+		return triangleBounds;
+	}
+
+	@Override
+	public String getCacheKey() {
+		return "BinnedSahBuilder " + VERSION + " " + binCount + " " + maxLeafSize + " " + traversalCost;
+	}
+
+	@Override
+	public BoundingVolumeHierarchy build(float[] primitiveBounds) {
+		int primitiveCount = primitiveBounds.length / 6;
+		int maxNodeCount = Math.max(2 * primitiveCount - 1, 1);
+
+		float[] nodeBounds = new float[maxNodeCount * 6];
+		int[] nodeChildOrFirstIndecis = new int[maxNodeCount];
+		int[] nodePrimitiveCounts = new int[maxNodeCount];
+		int[] primitiveIndecis = new int[primitiveCount];
+		float[] centroids = new float[primitiveCount * 3];
+
+		for(int i = 0; i < primitiveCount; i++) {
+			primitiveIndecis[i] = i;
+
+			for(int axis = 0; axis < 3; axis++) {
+				centroids[i * 3 + axis] = (primitiveBounds[i * 6 + axis] + primitiveBounds[i * 6 + 3 + axis]) / 2;
+			}
+		}
+
+		int nodeCount = 1;
+		nodeChildOrFirstIndecis[0] = 0;
+		nodePrimitiveCounts[0] = primitiveCount;
+		calculateNodeBounds(0, nodeBounds, 0, primitiveCount, primitiveIndecis, primitiveBounds);
+
+		// per node data, reused for every node
+		float[] centroidBounds = new float[6];
+		float[] sweepBounds = new float[6];
+		int[] binPrimitiveCounts = new int[binCount];
+		float[] binBounds = new float[binCount * 6];
+		float[] rightAreas = new float[binCount];
+		int[] rightCounts = new int[binCount];
+
+		int[] nodeStack = new int[BoundingVolumeHierarchy.MAX_DEPTH + 1];
+		int[] depthStack = new int[BoundingVolumeHierarchy.MAX_DEPTH + 1];
+		int stackSize = 0;
+
+		if(primitiveCount > 0) {
+			nodeStack[0] = 0;
+			depthStack[0] = 0;
+			stackSize = 1;
+		}
+
+		while(stackSize > 0) {
+			stackSize--;
+			int node = nodeStack[stackSize];
+			int depth = depthStack[stackSize];
+			int first = nodeChildOrFirstIndecis[node];
+			int count = nodePrimitiveCounts[node];
+
+			if(count <= 1 || depth >= BoundingVolumeHierarchy.MAX_DEPTH - 1) continue;
+
+			// calculate the bounds of the primitive centroids
+			resetBounds(centroidBounds, 0);
+
+			for(int i = first; i < first + count; i++) {
+				int primitive = primitiveIndecis[i];
+
+				for(int axis = 0; axis < 3; axis++) {
+					centroidBounds[axis] = Math.min(centroidBounds[axis], centroids[primitive * 3 + axis]);
+					centroidBounds[3 + axis] = Math.max(centroidBounds[3 + axis], centroids[primitive * 3 + axis]);
+				}
+			}
+
+			// find the split with the lowest cost
+			int bestAxis = -1;
+			int bestBin = -1;
+			float bestCost = Float.POSITIVE_INFINITY;
+
+			for(int axis = 0; axis < 3; axis++) {
+				float centroidMin = centroidBounds[axis];
+				float centroidExtent = centroidBounds[3 + axis] - centroidMin;
+				if(centroidExtent <= 0) continue;
+
+				float binScale = binCount / centroidExtent;
+
+				for(int bin = 0; bin < binCount; bin++) {
+					binPrimitiveCounts[bin] = 0;
+					resetBounds(binBounds, bin);
+				}
+
+				for(int i = first; i < first + count; i++) {
+					int primitive = primitiveIndecis[i];
+					int bin = getBin(centroids[primitive * 3 + axis], centroidMin, binScale);
+					binPrimitiveCounts[bin]++;
+					growBounds(binBounds, bin, primitiveBounds, primitive);
+				}
+
+				// sweep from the right to gather the areas and counts right of each split
+				resetBounds(sweepBounds, 0);
+				int sweepCount = 0;
+
+				for(int bin = binCount - 1; bin > 0; bin--) {
+					sweepCount += binPrimitiveCounts[bin];
+					growBounds(sweepBounds, 0, binBounds, bin);
+					rightCounts[bin] = sweepCount;
+					rightAreas[bin] = calculateSurfaceArea(sweepBounds, 0);
+				}
+
+				// sweep from the left and evaluate each split
+				resetBounds(sweepBounds, 0);
+				sweepCount = 0;
+
+				for(int bin = 0; bin < binCount - 1; bin++) {
+					sweepCount += binPrimitiveCounts[bin];
+					growBounds(sweepBounds, 0, binBounds, bin);
+
+					int rightCount = rightCounts[bin + 1];
+					if(sweepCount == 0 || rightCount == 0) continue;
+
+					float cost = (
+						calculateSurfaceArea(sweepBounds, 0) * sweepCount +
+						rightAreas[bin + 1] * rightCount
+					);
+
+					if(cost < bestCost) {
+						bestCost = cost;
+						bestAxis = axis;
+						bestBin = bin;
+					}
+				}
+			}
+
+			if(bestAxis == -1) continue;
+
+			float nodeArea = calculateSurfaceArea(nodeBounds, node);
+			float leafCost = count * nodeArea;
+			float splitCost = traversalCost * nodeArea + bestCost;
+
+			if(splitCost >= leafCost && count <= maxLeafSize) continue;
+
+			// partition the primitives of the node
+			float centroidMin = centroidBounds[bestAxis];
+			float binScale = binCount / (centroidBounds[3 + bestAxis] - centroidMin);
+			int left = first;
+			int right = first + count - 1;
+
+			while(left <= right) {
+				int primitive = primitiveIndecis[left];
+
+				if(getBin(centroids[primitive * 3 + bestAxis], centroidMin, binScale) <= bestBin) {
+					left++;
+				} else {
+					primitiveIndecis[left] = primitiveIndecis[right];
+					primitiveIndecis[right] = primitive;
+					right--;
+				}
+			}
+
+			int leftCount = left - first;
+
+			// create the children of the node
+			int leftChild = nodeCount;
+			int rightChild = nodeCount + 1;
+			nodeCount += 2;
+
+			nodeChildOrFirstIndecis[leftChild] = first;
+			nodePrimitiveCounts[leftChild] = leftCount;
+			calculateNodeBounds(leftChild, nodeBounds, first, leftCount, primitiveIndecis, primitiveBounds);
+
+			nodeChildOrFirstIndecis[rightChild] = left;
+			nodePrimitiveCounts[rightChild] = count - leftCount;
+			calculateNodeBounds(rightChild, nodeBounds, left, count - leftCount, primitiveIndecis, primitiveBounds);
+
+			nodeChildOrFirstIndecis[node] = leftChild;
+			nodePrimitiveCounts[node] = 0;
+
+			nodeStack[stackSize] = rightChild;
+			depthStack[stackSize] = depth + 1;
+			stackSize++;
+
+			nodeStack[stackSize] = leftChild;
+			depthStack[stackSize] = depth + 1;
+			stackSize++;
+		}
+
+		return new BoundingVolumeHierarchy(
+			nodeBounds, nodeChildOrFirstIndecis, nodePrimitiveCounts, nodeCount, primitiveIndecis, traversalCost
+		);
+	}
+
+	/**
+	 * Determines in which bin a primitive belongs.
+	 *
+	 * @param centroid The coordinate of the primitive's centroid along the split axis.
+	 * @param centroidMin The minimum centroid coordinate of the node's primitives along the split axis.
+	 * @param binScale The number of bins divided by the extent of the node's centroids along the split axis.
+	 * @return The index of the bin.
+	 */
+	private int getBin(float centroid, float centroidMin, float binScale) {
+		int bin = (int) ((centroid - centroidMin) * binScale);
+		return Math.min(Math.max(bin, 0), binCount - 1);
+	}
+
+	/**
+	 * Calculates the bounding box of a node from the bounding boxes of its primitives.
+	 *
+	 * @param node The index of the node.
+	 * @param nodeBounds See {@link BoundingVolumeHierarchy#nodeBounds}.
+	 * @param first The index of the node's first primitive within the primitiveIndecis.
+	 * @param count How many primitives the node contains.
+	 * @param primitiveIndecis See {@link BoundingVolumeHierarchy#primitiveIndecis}.
+	 * @param primitiveBounds The bounding boxes of the primitives.
+	 */
+	private static void calculateNodeBounds(
+		int node, float[] nodeBounds, int first, int count, int[] primitiveIndecis, float[] primitiveBounds
+	) {
+		resetBounds(nodeBounds, node);
+
+		for(int i = first; i < first + count; i++) {
+			growBounds(nodeBounds, node, primitiveBounds, primitiveIndecis[i]);
+		}
+	}
+
+	/**
+	 * Sets a bounding box to an empty bounding box, which can be grown by {@link #growBounds}.
+	 *
+	 * @param bounds The array storing the bounding box.
+	 * @param index The index of the bounding box within the array.
+	 */
+	static void resetBounds(float[] bounds, int index) {
+		for(int axis = 0; axis < 3; axis++) {
+			bounds[index * 6 + axis] = Float.POSITIVE_INFINITY;
+			bounds[index * 6 + 3 + axis] = Float.NEGATIVE_INFINITY;
+		}
+	}
+
+	/**
+	 * Grows a bounding box to enclose another bounding box.
+	 *
+	 * @param bounds The array storing the bounding box that is to be grown.
+	 * @param index The index of the bounding box that is to be grown.
+	 * @param otherBounds The array storing the bounding box that is to be enclosed.
+	 * @param otherIndex The index of the bounding box that is to be enclosed.
+	 */
+	static void growBounds(float[] bounds, int index, float[] otherBounds, int otherIndex) {
+		for(int axis = 0; axis < 3; axis++) {
+			bounds[index * 6 + axis] = Math.min(bounds[index * 6 + axis], otherBounds[otherIndex * 6 + axis]);
+			bounds[index * 6 + 3 + axis] = Math.max(
+				bounds[index * 6 + 3 + axis], otherBounds[otherIndex * 6 + 3 + axis]
+			);
+		}
+	}
+
+	/**
+	 * Calculates the surface area of a bounding box. Empty bounding boxes have a surface area of 0.
+	 *
+	 * @param bounds The array storing the bounding box.
+	 * @param index The index of the bounding box within the array.
+	 * @return The surface area of the bounding box.
+	 */
+	static float calculateSurfaceArea(float[] bounds, int index) {
+		float x = bounds[index * 6 + 3] - bounds[index * 6];
+		float y = bounds[index * 6 + 4] - bounds[index * 6 + 1];
+		float z = bounds[index * 6 + 5] - bounds[index * 6 + 2];
+
+		if(x < 0 || y < 0 || z < 0) return 0;
+		return 2 * (x * y + y * z + z * x);
+	}
+}
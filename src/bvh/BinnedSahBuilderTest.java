@@ -0,0 +1,71 @@
+package bvh;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Provides tests for the {@link BinnedSahBuilder#build} method.
+ *
+ * @author Tizian Kirchner
+ */
+class BinnedSahBuilderTest {
+
+	@Test
+	void testBuild() {
+		Random random = new Random(0);
+		int triangleCount = 1000;
+		float[] triangleVertices = new float[triangleCount * 9];
+
+		for(int i = 0; i < triangleCount; i++) {
+			float x = random.nextFloat() * 100;
+			float y = random.nextFloat() * 100;
+			float z = random.nextFloat() * 100;
+
+			for(int j = 0; j < 3; j++) {
+				triangleVertices[i * 9 + j * 3] = x + random.nextFloat();
+				triangleVertices[i * 9 + j * 3 + 1] = y + random.nextFloat();
+				triangleVertices[i * 9 + j * 3 + 2] = z + random.nextFloat();
+			}
+		}
+
+		float[] triangleBounds = BinnedSahBuilder.calculateTriangleBounds(triangleVertices);
+		BoundingVolumeHierarchy bvh = new BinnedSahBuilder().build(triangleBounds);
+
+		float[] nodeBounds = bvh.getNodeBounds();
+		int[] childOrFirstIndecis = bvh.getNodeChildOrFirstIndecis();
+		int[] primitiveCounts = bvh.getNodePrimitiveCounts();
+		int[] primitiveIndecis = bvh.getPrimitiveIndecis();
+		int[] primitiveOccurrences = new int[triangleCount];
+
+		for(int node = 0; node < bvh.getNodeCount(); node++) {
+			if(bvh.isLeaf(node)) {
+				for(int i = 0; i < primitiveCounts[node]; i++) {
+					int primitive = primitiveIndecis[childOrFirstIndecis[node] + i];
+					primitiveOccurrences[primitive]++;
+					assertTrue(contains(nodeBounds, node, triangleBounds, primitive));
+				}
+			} else {
+				assertTrue(contains(nodeBounds, node, nodeBounds, childOrFirstIndecis[node]));
+				assertTrue(contains(nodeBounds, node, nodeBounds, childOrFirstIndecis[node] + 1));
+			}
+		}
+
+		for(int i = 0; i < triangleCount; i++) {
+			assertEquals(primitiveOccurrences[i], 1);
+		}
+	}
+
+	private boolean contains(float[] bounds, int index, float[] otherBounds, int otherIndex) {
+		for(int axis = 0; axis < 3; axis++) {
+			if(otherBounds[otherIndex * 6 + axis] < bounds[index * 6 + axis]) return false;
+			if(otherBounds[otherIndex * 6 + 3 + axis] > bounds[index * 6 + 3 + axis]) return false;
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,396 @@
+package bvh;
+
+import java.util.Arrays;
+
+import cgi.Model;
+
+/**
+ * Stores a flattened <a href="https://en.wikipedia.org/wiki/Bounding_volume_hierarchy">bounding volume hierarchy</a>
+ * (BVH) over a set of primitives, like the triangles of {@link Model} objects.
+ *
+ * The nodes of the BVH are stored within arrays. The two children of an inner node are always stored next to each
+ * other, so an inner node only references its left child. The right child is stored at the index following the left
+ * child's index. A leaf node references a range of the {@link #primitiveIndecis}.
+ *
+ * @author Tizian Kirchner
+ */
+public class BoundingVolumeHierarchy {
+	/**
+	 * The maximum depth of a {@link BoundingVolumeHierarchy}. Nodes at this depth are always leaf nodes.
+	 *
+	 * The traversal stack of the ray tracing <a href="https://www.khronos.org/opengl/wiki/shader">shader</a>
+	 * program has the same size.
+	 */
+	public static final int MAX_DEPTH = 32;
+
+	/**
+	 * How many 32bit units a node occupies within the BoundingVolumeHierarchy buffer of the ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 */
+	public static final int NODE_SIZE = 8;
+
+	/**
+	 * Stores the axis aligned bounding box of each node. Each node's bounding box occupies six consecutive
+	 * elements, the minimum x, y and z coordinates followed by the maximum x, y and z coordinates.
+	 */
+	private float[] nodeBounds;
+
+	/**
+	 * Stores the index of the left child for each inner node and
+	 * the index of the first primitive within the {@link #primitiveIndecis} for each leaf node.
+	 */
+	private int[] nodeChildOrFirstIndecis;
+
+	/**
+	 * Stores how many primitives each node contains. Inner nodes contain 0 primitives.
+	 */
+	private int[] nodePrimitiveCounts;
+
+	/**
+	 * How many nodes of the node arrays are in use.
+	 */
+	private int nodeCount;
+
+	/**
+	 * The indecis of the primitives of this {@link BoundingVolumeHierarchy},
+	 * sorted so that the primitives of each leaf node are stored consecutively.
+	 */
+	private int[] primitiveIndecis;
+
+	/**
+	 * Stores the index of the parent node for each node. The root node's parent index is -1.
+	 */
+	private int[] nodeParentIndecis;
+
+	/**
+	 * Stores the index of the leaf node containing the primitive for each primitive.
+	 */
+	private int[] primitiveLeafIndecis;
+
+	/**
+	 * Stores for each node if its bounding box has been changed by {@link #refit}
+	 * since the last call of {@link #clearDirtyNodes}.
+	 */
+	private boolean[] dirtyNodes;
+
+	/**
+	 * Stores the indecis of the nodes that are marked within the {@link #dirtyNodes}.
+	 */
+	private int[] dirtyNodeIndecis;
+
+	/**
+	 * How many nodes are stored within the {@link #dirtyNodeIndecis}.
+	 */
+	private int dirtyNodeCount;
+
+	/**
+	 * The estimated cost of traversing an inner node relative to intersecting a primitive.
+	 * Used to calculate the {@link #getSahCost SAH cost} of this {@link BoundingVolumeHierarchy}.
+	 */
+	private float traversalCost;
+
+	/**
+	 * The sum of the surface areas of all nodes, with the surface areas of inner nodes being multiplied by the
+	 * {@link #traversalCost} and the surface areas of leaf nodes being multiplied by their primitive count.
+	 */
+	private double weightedSurfaceAreaSum;
+
+	/**
+	 * Creates a {@link BoundingVolumeHierarchy} from already built node arrays.
+	 *
+	 * @param nodeBounds See {@link #nodeBounds}.
+	 * @param nodeChildOrFirstIndecis See {@link #nodeChildOrFirstIndecis}.
+	 * @param nodePrimitiveCounts See {@link #nodePrimitiveCounts}.
+	 * @param nodeCount See {@link #nodeCount}.
+	 * @param primitiveIndecis See {@link #primitiveIndecis}.
+	 * @param traversalCost See {@link #traversalCost}.
+	 */
+	public BoundingVolumeHierarchy(
+		float[] nodeBounds, int[] nodeChildOrFirstIndecis, int[] nodePrimitiveCounts,
+		int nodeCount, int[] primitiveIndecis, float traversalCost
+	) {
+		this.nodeBounds = nodeBounds;
+		this.nodeChildOrFirstIndecis = nodeChildOrFirstIndecis;
+		this.nodePrimitiveCounts = nodePrimitiveCounts;
+		this.nodeCount = nodeCount;
+		this.primitiveIndecis = primitiveIndecis;
+		this.traversalCost = traversalCost;
+
+		nodeParentIndecis = new int[nodeCount];
+		primitiveLeafIndecis = new int[primitiveIndecis.length];
+		dirtyNodes = new boolean[nodeCount];
+		dirtyNodeIndecis = new int[nodeCount];
+		nodeParentIndecis[0] = -1;
+
+		for(int node = 0; node < nodeCount; node++) {
+			if(isLeaf(node)) {
+				for(int i = 0; i < nodePrimitiveCounts[node]; i++) {
+					primitiveLeafIndecis[primitiveIndecis[nodeChildOrFirstIndecis[node] + i]] = node;
+				}
+			} else if(primitiveIndecis.length > 0) {
+				nodeParentIndecis[nodeChildOrFirstIndecis[node]] = node;
+				nodeParentIndecis[nodeChildOrFirstIndecis[node] + 1] = node;
+			}
+
+			weightedSurfaceAreaSum += getNodeWeight(node) * BinnedSahBuilder.calculateSurfaceArea(nodeBounds, node);
+		}
+	}
+
+	/**
+	 * Updates the bounding boxes of the nodes containing a range of primitives bottom up,
+	 * while keeping the topology of this {@link BoundingVolumeHierarchy}.
+	 *
+	 * The bounding boxes of nodes, which are not affected by the primitives, are not updated.
+	 * Updated nodes are marked as {@link #dirtyNodes dirty}. Leaf nodes, which are already marked as dirty,
+	 * are skipped, so the bounding boxes of all changed primitives have to be updated before refitting and
+	 * {@link #clearDirtyNodes} has to be called before the next refit.
+	 * As the topology does not change, the {@link #getSahCost SAH cost} increases,
+	 * when the primitives move far from their original position.
+	 *
+	 * @param primitiveBounds
+	 * The bounding boxes of all primitives. Each bounding box occupies six consecutive elements,
+	 * the minimum x, y and z coordinates followed by the maximum x, y and z coordinates.
+	 *
+	 * @param firstPrimitive The index of the first primitive of which the bounding box has changed.
+	 * @param primitiveCount How many consecutive primitives have changed their bounding box.
+	 */
+	public void refit(float[] primitiveBounds, int firstPrimitive, int primitiveCount) {
+		for(int primitive = firstPrimitive; primitive < firstPrimitive + primitiveCount; primitive++) {
+			int node = primitiveLeafIndecis[primitive];
+			if(dirtyNodes[node]) continue;
+
+			// update the leaf node containing the primitive
+			float previousArea = BinnedSahBuilder.calculateSurfaceArea(nodeBounds, node);
+			BinnedSahBuilder.resetBounds(nodeBounds, node);
+
+			for(int i = 0; i < nodePrimitiveCounts[node]; i++) {
+				BinnedSahBuilder.growBounds(
+					nodeBounds, node, primitiveBounds, primitiveIndecis[nodeChildOrFirstIndecis[node] + i]
+				);
+			}
+
+			updateWeightedSurfaceAreaSum(node, previousArea);
+			markDirty(node);
+
+			// update the ancestors of the leaf node until a bounding box does not change
+			node = nodeParentIndecis[node];
+
+			while(node != -1) {
+				int leftChild = nodeChildOrFirstIndecis[node];
+				boolean changed = false;
+
+				for(int axis = 0; axis < 3; axis++) {
+					float minimum = Math.min(
+						nodeBounds[leftChild * 6 + axis], nodeBounds[(leftChild + 1) * 6 + axis]
+					);
+
+					float maximum = Math.max(
+						nodeBounds[leftChild * 6 + 3 + axis], nodeBounds[(leftChild + 1) * 6 + 3 + axis]
+					);
+
+					changed |= nodeBounds[node * 6 + axis] != minimum || nodeBounds[node * 6 + 3 + axis] != maximum;
+				}
+
+				if(!changed) break;
+
+				previousArea = BinnedSahBuilder.calculateSurfaceArea(nodeBounds, node);
+				BinnedSahBuilder.resetBounds(nodeBounds, node);
+				BinnedSahBuilder.growBounds(nodeBounds, node, nodeBounds, leftChild);
+				BinnedSahBuilder.growBounds(nodeBounds, node, nodeBounds, leftChild + 1);
+
+				updateWeightedSurfaceAreaSum(node, previousArea);
+				markDirty(node);
+				node = nodeParentIndecis[node];
+			}
+		}
+	}
+
+	/**
+	 * Calculates the cost of this {@link BoundingVolumeHierarchy} according to the surface area heuristic (SAH).
+	 *
+	 * The cost estimates how many nodes and primitives a random ray hitting the root node has to test. It can be
+	 * compared to the cost at build time to decide, if a {@link #refit refitted} BoundingVolumeHierarchy should
+	 * be rebuilt.
+	 *
+	 * @return The SAH cost.
+	 */
+	public float getSahCost() {
+		float rootArea = BinnedSahBuilder.calculateSurfaceArea(nodeBounds, 0);
+		if(rootArea <= 0) return 0;
+		return (float) (weightedSurfaceAreaSum / rootArea);
+	}
+
+	/**
+	 * @param node The index of a node.
+	 * @return The factor with which the node's surface area contributes to the {@link #weightedSurfaceAreaSum}.
+	 */
+	private float getNodeWeight(int node) {
+		return isLeaf(node) ? nodePrimitiveCounts[node] : traversalCost;
+	}
+
+	/**
+	 * Updates the {@link #weightedSurfaceAreaSum} after a node's bounding box has been changed.
+	 *
+	 * @param node The index of the node.
+	 * @param previousArea The node's surface area before its bounding box has been changed.
+	 */
+	private void updateWeightedSurfaceAreaSum(int node, float previousArea) {
+		float area = BinnedSahBuilder.calculateSurfaceArea(nodeBounds, node);
+		weightedSurfaceAreaSum += getNodeWeight(node) * (area - previousArea);
+	}
+
+	/**
+	 * Marks a node within the {@link #dirtyNodes}.
+	 *
+	 * @param node The index of the node.
+	 */
+	private void markDirty(int node) {
+		if(!dirtyNodes[node]) {
+			dirtyNodes[node] = true;
+			dirtyNodeIndecis[dirtyNodeCount] = node;
+			dirtyNodeCount++;
+		}
+	}
+
+	/**
+	 * Combines the {@link #dirtyNodes} into ranges of consecutive nodes.
+	 *
+	 * @return
+	 * The ranges of dirty nodes. Each range occupies two consecutive elements,
+	 * the index of the range's first node followed by the number of nodes within the range.
+	 */
+	public int[] getDirtyNodeRanges() {
+		int[] sortedNodes = Arrays.copyOf(dirtyNodeIndecis, dirtyNodeCount);
+		Arrays.sort(sortedNodes);
+
+		int[] ranges = new int[dirtyNodeCount * 2];
+		int rangeCount = 0;
+
+		for(int i = 0; i < sortedNodes.length; i++) {
+			if(rangeCount > 0 && ranges[(rangeCount - 1) * 2] + ranges[(rangeCount - 1) * 2 + 1] == sortedNodes[i]) {
+				ranges[(rangeCount - 1) * 2 + 1]++;
+			} else {
+				ranges[rangeCount * 2] = sortedNodes[i];
+				ranges[rangeCount * 2 + 1] = 1;
+				rangeCount++;
+			}
+		}
+
+		return Arrays.copyOf(ranges, rangeCount * 2);
+	}
+
+	/**
+	 * Removes the marks of all {@link #dirtyNodes}.
+	 */
+	public void clearDirtyNodes() {
+		for(int i = 0; i < dirtyNodeCount; i++) {
+			dirtyNodes[dirtyNodeIndecis[i]] = false;
+		}
+
+		dirtyNodeCount = 0;
+	}
+
+	/**
+	 * Writes the {@link #primitiveIndecis} into the data of the BoundingVolumeHierarchy buffer of the ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 * Integers are stored through their bit representation.
+	 *
+	 * @param bufferData The data of the buffer.
+	 * @param bufferOffset The position of the first primitive index within the buffer data.
+	 * @param primitiveOffset A value, which is added to each primitive index.
+	 */
+	public void writePrimitiveIndecis(float[] bufferData, int bufferOffset, int primitiveOffset) {
+		for(int i = 0; i < primitiveIndecis.length; i++) {
+			bufferData[bufferOffset + i] = Float.intBitsToFloat(primitiveIndecis[i] + primitiveOffset);
+		}
+	}
+
+	/**
+	 * Writes a range of nodes into the data of the BoundingVolumeHierarchy buffer of the ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 *
+	 * Each node occupies {@link #NODE_SIZE} elements, the minimum coordinates of its bounding box, its child or first
+	 * index, the maximum coordinates of its bounding box and its primitive count.
+	 * Integers are stored through their bit representation.
+	 *
+	 * @param bufferData The data of the buffer.
+	 * @param bufferOffset The position of the range's first node within the buffer data.
+	 * @param firstNode The index of the first node of the range.
+	 * @param count How many nodes the range contains.
+	 *
+	 * @param nodeOffset
+	 * The index of this {@link BoundingVolumeHierarchy}'s root node among all nodes of the buffer.
+	 * Is added to the child indecis of inner nodes.
+	 *
+	 * @param primitiveIndexOffset
+	 * The position of this BoundingVolumeHierarchy's first primitive index among all primitive indecis of the buffer.
+	 * Is added to the first indecis of leaf nodes.
+	 */
+	public void writeNodes(
+		float[] bufferData, int bufferOffset, int firstNode, int count, int nodeOffset, int primitiveIndexOffset
+	) {
+		for(int i = firstNode; i < firstNode + count; i++) {
+			int bufferIndex = bufferOffset + (i - firstNode) * NODE_SIZE;
+			int childOrFirstIndex = nodeChildOrFirstIndecis[i] + (isLeaf(i) ? primitiveIndexOffset : nodeOffset);
+
+			bufferData[bufferIndex] = nodeBounds[i * 6];
+			bufferData[bufferIndex + 1] = nodeBounds[i * 6 + 1];
+			bufferData[bufferIndex + 2] = nodeBounds[i * 6 + 2];
+			bufferData[bufferIndex + 3] = Float.intBitsToFloat(childOrFirstIndex);
+			bufferData[bufferIndex + 4] = nodeBounds[i * 6 + 3];
+			bufferData[bufferIndex + 5] = nodeBounds[i * 6 + 4];
+			bufferData[bufferIndex + 6] = nodeBounds[i * 6 + 5];
+			bufferData[bufferIndex + 7] = Float.intBitsToFloat(nodePrimitiveCounts[i]);
+		}
+	}
+
+	/**
+	 * @param node The index of a node.
+	 * @return If the node is a leaf node.
+	 */
+	public boolean isLeaf(int node) {
+		return nodePrimitiveCounts[node] > 0;
+	}
+
+	/**
+	 * See {@link #nodeBounds}.
+	 */
+	public float[] getNodeBounds() {
+		return nodeBounds;
+	}
+
+	/**
+	 * See {@link #nodeChildOrFirstIndecis}.
+	 */
+	public int[] getNodeChildOrFirstIndecis() {
+		return nodeChildOrFirstIndecis;
+	}
+
+	/**
+	 * See {@link #nodePrimitiveCounts}.
+	 */
+	public int[] getNodePrimitiveCounts() {
+		return nodePrimitiveCounts;
+	}
+
+	/**
+	 * See {@link #nodeCount}.
+	 */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/**
+	 * See {@link #primitiveIndecis}.
+	 */
+	public int[] getPrimitiveIndecis() {
+		return primitiveIndecis;
+	}
+
+	/**
+	 * See {@link #traversalCost}.
+	 */
+	public float getTraversalCost() {
+		return traversalCost;
+	}
+}
@@ -0,0 +1,27 @@
+package bvh;
+
+/**
+ * Builds {@link BoundingVolumeHierarchy} objects over the axis aligned bounding boxes of primitives.
+ *
+ * @author Tizian Kirchner
+ */
+public interface BoundingVolumeHierarchyBuilder {
+	/**
+	 * Builds a {@link BoundingVolumeHierarchy} over primitives.
+	 *
+	 * @param primitiveBounds
+	 * The axis aligned bounding boxes of the primitives. Each bounding box occupies six consecutive elements,
+	 * the minimum x, y and z coordinates followed by the maximum x, y and z coordinates.
+	 *
+	 * @return The built BoundingVolumeHierarchy.
+	 */
+	public BoundingVolumeHierarchy build(float[] primitiveBounds);
+
+	/**
+	 * Identifies the algorithm, its version and the settings of this {@link BoundingVolumeHierarchyBuilder}.
+	 * Has to change whenever a change of the builder causes it to build different BoundingVolumeHierarchy objects.
+	 *
+	 * @return The key used to store built BoundingVolumeHierarchy objects in a {@link BoundingVolumeHierarchyCache}.
+	 */
+	public String getCacheKey();
+}
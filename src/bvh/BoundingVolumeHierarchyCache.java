@@ -0,0 +1,225 @@
+package bvh;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import cgi.Model;
+import util.HashCalculator;
+
+/**
+ * Stores built {@link BoundingVolumeHierarchy} objects of {@link Model} meshes in files, so that they do not need
+ * to be built again when the program is started again or a scene is loaded again.
+ *
+ * Each file is named after the hash of the mesh's {@link Model#getObjHash .obj file hash} and the
+ * {@link BoundingVolumeHierarchyBuilder#getCacheKey cache key} of the builder. Changing the .obj file or the
+ * builder therefore automatically leads to the BoundingVolumeHierarchy being built and stored again.
+ * Files are read through a memory mapped {@link FileChannel}.
+ *
+ * @author Tizian Kirchner
+ */
+public class BoundingVolumeHierarchyCache {
+	/**
+	 * Identifies files written by a {@link BoundingVolumeHierarchyCache}.
+	 */
+	private static final int MAGIC_NUMBER = 0x42564843;
+
+	/**
+	 * The version of the file format. Files of other versions are ignored.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * How many 32bit units the header of a file occupies.
+	 * The header consists of the {@link #MAGIC_NUMBER}, the {@link #FORMAT_VERSION}, the primitive count,
+	 * the node count and the traversal cost.
+	 */
+	private static final int HEADER_SIZE = 5;
+
+	/**
+	 * The directory containing the files.
+	 */
+	private Path directory;
+
+	/**
+	 * Builds the {@link BoundingVolumeHierarchy} objects, which are not stored within the {@link #directory}.
+	 */
+	private BoundingVolumeHierarchyBuilder builder;
+
+	/**
+	 * Creates a {@link BoundingVolumeHierarchyCache} storing its files in the "cache/bvh" directory
+	 * within the working directory.
+	 *
+	 * @param builder See {@link #builder}.
+	 */
+	public BoundingVolumeHierarchyCache(BoundingVolumeHierarchyBuilder builder) {
+		this(Path.of("cache", "bvh"), builder);
+	}
+
+	/**
+	 * @param directory See {@link #directory}.
+	 * @param builder See {@link #builder}.
+	 */
+	public BoundingVolumeHierarchyCache(Path directory, BoundingVolumeHierarchyBuilder builder) {
+		this.directory = directory;
+		this.builder = builder;
+	}
+
+	/**
+	 * Loads the {@link BoundingVolumeHierarchy} of a mesh from its file or builds and stores it,
+	 * if the file does not exist or can not be read.
+	 *
+	 * @param mesh
+	 * The {@link Model} of the mesh. If its {@link Model#getObjHash .obj file hash} is null,
+	 * the BoundingVolumeHierarchy is always built and not stored.
+	 *
+	 * @param triangleBounds
+	 * The bounding boxes of the mesh's triangles, which are used to build the BoundingVolumeHierarchy.
+	 *
+	 * @return The BoundingVolumeHierarchy of the mesh.
+	 */
+	public BoundingVolumeHierarchy getBvh(Model mesh, float[] triangleBounds) {
+		if(mesh.getObjHash() == null) return builder.build(triangleBounds);
+
+		Path file = directory.resolve(
+			HashCalculator.calculateHash(mesh.getObjHash() + " " + builder.getCacheKey()) + ".bvh"
+		);
+
+		int primitiveCount = triangleBounds.length / 6;
+		BoundingVolumeHierarchy bvh = load(file, primitiveCount);
+
+		if(bvh == null) {
+			bvh = builder.build(triangleBounds);
+			store(file, bvh);
+		}
+
+		return bvh;
+	}
+
+	/**
+	 * Loads a {@link BoundingVolumeHierarchy} from a file.
+	 *
+	 * @param file The file.
+	 * @param primitiveCount How many primitives the BoundingVolumeHierarchy has to contain.
+	 * @return The BoundingVolumeHierarchy, or null if the file does not exist or is invalid.
+	 */
+	private BoundingVolumeHierarchy load(Path file, int primitiveCount) {
+		if(!Files.isRegularFile(file)) return null;
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			if(buffer.remaining() < HEADER_SIZE * 4) return null;
+			if(buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != FORMAT_VERSION) return null;
+			if(buffer.getInt() != primitiveCount) return null;
+
+			int nodeCount = buffer.getInt();
+			float traversalCost = buffer.getFloat();
+			long expectedSize = (HEADER_SIZE + nodeCount * 8L + primitiveCount) * 4;
+			if(nodeCount < 1 || buffer.capacity() != expectedSize) return null;
+
+			float[] nodeBounds = new float[nodeCount * 6];
+			int[] nodeChildOrFirstIndecis = new int[nodeCount];
+			int[] nodePrimitiveCounts = new int[nodeCount];
+			int[] primitiveIndecis = new int[primitiveCount];
+
+			buffer.asFloatBuffer().get(nodeBounds);
+			buffer.position(buffer.position() + nodeBounds.length * 4);
+
+			IntBuffer intBuffer = buffer.asIntBuffer();
+			intBuffer.get(nodeChildOrFirstIndecis);
+			intBuffer.get(nodePrimitiveCounts);
+			intBuffer.get(primitiveIndecis);
+
+			if(!isValid(nodeChildOrFirstIndecis, nodePrimitiveCounts, nodeCount, primitiveIndecis)) return null;
+
+			return new BoundingVolumeHierarchy(
+				nodeBounds, nodeChildOrFirstIndecis, nodePrimitiveCounts, nodeCount, primitiveIndecis, traversalCost
+			);
+		} catch(IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Checks if the indecis of loaded node arrays are within their bounds,
+	 * so that corrupted files are not turned into a {@link BoundingVolumeHierarchy}.
+	 *
+	 * @return If all child indecis reference existing nodes and all leaf nodes reference existing primitives.
+	 */
+	private boolean isValid(
+		int[] nodeChildOrFirstIndecis, int[] nodePrimitiveCounts, int nodeCount, int[] primitiveIndecis
+	) {
+		for(int node = 0; node < nodeCount; node++) {
+			int childOrFirstIndex = nodeChildOrFirstIndecis[node];
+			int primitiveCount = nodePrimitiveCounts[node];
+
+			if(primitiveCount > 0) {
+				if(childOrFirstIndex < 0 || childOrFirstIndex + primitiveCount > primitiveIndecis.length) return false;
+			} else if(primitiveIndecis.length > 0 && (childOrFirstIndex < 1 || childOrFirstIndex + 1 >= nodeCount)) {
+				return false;
+			}
+		}
+
+		for(int primitive : primitiveIndecis) {
+			if(primitive < 0 || primitive >= primitiveIndecis.length) return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stores a {@link BoundingVolumeHierarchy} in a file. The file is written to a temporary file first,
+	 * which then replaces the file, so that other processes never read a partially written file.
+	 *
+	 * @param file The file.
+	 * @param bvh The BoundingVolumeHierarchy.
+	 */
+	private void store(Path file, BoundingVolumeHierarchy bvh) {
+		int nodeCount = bvh.getNodeCount();
+		int[] primitiveIndecis = bvh.getPrimitiveIndecis();
+
+		ByteBuffer buffer = ByteBuffer.allocate((HEADER_SIZE + nodeCount * 8 + primitiveIndecis.length) * 4);
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+		buffer.putInt(MAGIC_NUMBER);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putInt(primitiveIndecis.length);
+		buffer.putInt(nodeCount);
+		buffer.putFloat(bvh.getTraversalCost());
+
+		buffer.asFloatBuffer().put(bvh.getNodeBounds(), 0, nodeCount * 6);
+		buffer.position(buffer.position() + nodeCount * 6 * 4);
+
+		IntBuffer intBuffer = buffer.asIntBuffer();
+		intBuffer.put(bvh.getNodeChildOrFirstIndecis(), 0, nodeCount);
+		intBuffer.put(bvh.getNodePrimitiveCounts(), 0, nodeCount);
+		intBuffer.put(primitiveIndecis);
+
+		buffer.rewind();
+
+		try {
+			Files.createDirectories(directory);
+			Path temporaryFile = Files.createTempFile(directory, "bvh", ".tmp");
+
+			try(FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
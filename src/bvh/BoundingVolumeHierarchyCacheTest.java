@@ -0,0 +1,67 @@
+package bvh;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import cgi.Model;
+import math.vector.Vector3;
+
+/**
+ * Provides tests for the {@link BoundingVolumeHierarchyCache#getBvh} method.
+ *
+ * @author Tizian Kirchner
+ */
+class BoundingVolumeHierarchyCacheTest {
+
+	@Test
+	void testGetBvh(@TempDir Path directory) {
+		Model mesh = new Model("Sphere", Model.SHADING_NONE);
+		Vector3[] vertices = mesh.getVertices();
+		float[] triangleVertices = new float[vertices.length * 3];
+
+		for(int i = 0; i < vertices.length; i++) {
+			System.arraycopy(vertices[i].getComponentsAsFloatArray(), 0, triangleVertices, i * 3, 3);
+		}
+
+		float[] triangleBounds = BinnedSahBuilder.calculateTriangleBounds(triangleVertices);
+		CountingBuilder builder = new CountingBuilder();
+
+		BoundingVolumeHierarchy builtBvh = new BoundingVolumeHierarchyCache(directory, builder).getBvh(
+			mesh, triangleBounds
+		);
+
+		BoundingVolumeHierarchy loadedBvh = new BoundingVolumeHierarchyCache(directory, builder).getBvh(
+			new Model(mesh), triangleBounds
+		);
+
+		// the second call has to load the stored BoundingVolumeHierarchy instead of building it
+		assertEquals(1, builder.buildCount);
+		assertEquals(builtBvh.getNodeCount(), loadedBvh.getNodeCount());
+		assertArrayEquals(builtBvh.getPrimitiveIndecis(), loadedBvh.getPrimitiveIndecis());
+
+		for(int node = 0; node < builtBvh.getNodeCount(); node++) {
+			assertEquals(builtBvh.getNodeChildOrFirstIndecis()[node], loadedBvh.getNodeChildOrFirstIndecis()[node]);
+			assertEquals(builtBvh.getNodePrimitiveCounts()[node], loadedBvh.getNodePrimitiveCounts()[node]);
+
+			for(int i = 0; i < 6; i++) {
+				assertEquals(builtBvh.getNodeBounds()[node * 6 + i], loadedBvh.getNodeBounds()[node * 6 + i]);
+			}
+		}
+	}
+
+	private static class CountingBuilder extends BinnedSahBuilder {
+		private int buildCount = 0;
+
+		@Override
+		public BoundingVolumeHierarchy build(float[] primitiveBounds) {
+			buildCount++;
+			return super.build(primitiveBounds);
+		}
+	}
+
+}
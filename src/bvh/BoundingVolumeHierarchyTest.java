@@ -0,0 +1,73 @@
+package bvh;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Provides tests for the {@link BoundingVolumeHierarchy#refit} method.
+ *
+ * @author Tizian Kirchner
+ */
+class BoundingVolumeHierarchyTest {
+
+	@Test
+	void testRefit() {
+		Random random = new Random(0);
+		int triangleCount = 1000;
+		float[] triangleVertices = new float[triangleCount * 9];
+
+		for(int i = 0; i < triangleCount; i++) {
+			float x = random.nextFloat() * 100;
+			float y = random.nextFloat() * 100;
+			float z = random.nextFloat() * 100;
+
+			for(int j = 0; j < 3; j++) {
+				triangleVertices[i * 9 + j * 3] = x + random.nextFloat();
+				triangleVertices[i * 9 + j * 3 + 1] = y + random.nextFloat();
+				triangleVertices[i * 9 + j * 3 + 2] = z + random.nextFloat();
+			}
+		}
+
+		float[] triangleBounds = BinnedSahBuilder.calculateTriangleBounds(triangleVertices);
+		BoundingVolumeHierarchy bvh = new BinnedSahBuilder().build(triangleBounds);
+		float buildCost = bvh.getSahCost();
+
+		// move a range of triangles far away
+		for(int i = 200 * 9; i < 300 * 9; i++) {
+			triangleVertices[i] += 1000;
+		}
+
+		triangleBounds = BinnedSahBuilder.calculateTriangleBounds(triangleVertices);
+		bvh.refit(triangleBounds, 200, 100);
+
+		float[] nodeBounds = bvh.getNodeBounds();
+		float[] expectedBounds = new float[bvh.getNodeCount() * 6];
+		int[] childOrFirstIndecis = bvh.getNodeChildOrFirstIndecis();
+		int[] primitiveCounts = bvh.getNodePrimitiveCounts();
+		int[] primitiveIndecis = bvh.getPrimitiveIndecis();
+
+		// children are stored after their parents, so the expected bounds can be calculated bottom up
+		for(int node = bvh.getNodeCount() - 1; node >= 0; node--) {
+			BinnedSahBuilder.resetBounds(expectedBounds, node);
+
+			if(bvh.isLeaf(node)) {
+				for(int i = 0; i < primitiveCounts[node]; i++) {
+					int primitive = primitiveIndecis[childOrFirstIndecis[node] + i];
+					BinnedSahBuilder.growBounds(expectedBounds, node, triangleBounds, primitive);
+				}
+			} else {
+				BinnedSahBuilder.growBounds(expectedBounds, node, expectedBounds, childOrFirstIndecis[node]);
+				BinnedSahBuilder.growBounds(expectedBounds, node, expectedBounds, childOrFirstIndecis[node] + 1);
+			}
+		}
+
+		assertArrayEquals(expectedBounds, Arrays.copyOf(nodeBounds, expectedBounds.length));
+		assertTrue(bvh.getSahCost() > buildCost);
+	}
+
+}
@@ -0,0 +1,96 @@
+package bvh;
+
+import cgi.Model;
+import math.vector.Vector3;
+
+/**
+ * Compares the build times of a single threaded {@link BinnedSahBuilder} and a {@link ParallelLbvhBuilder}.
+ *
+ * The benchmarked primitives are the triangles of the Sphere model, replicated in a grid until the grid contains
+ * at least one million triangles. Each builder is run several times before being measured,
+ * so that the measured runs use compiled code.
+ *
+ * @author Tizian Kirchner
+ */
+public class BvhBuildBenchmark {
+	/**
+	 * How many triangles the benchmarked primitives contain at least.
+	 */
+	private static final int TRIANGLE_COUNT = 1000000;
+
+	/**
+	 * How many times each builder is run before being measured.
+	 */
+	private static final int WARMUP_RUNS = 3;
+
+	/**
+	 * How many times each builder is measured.
+	 */
+	private static final int MEASURED_RUNS = 5;
+
+	/**
+	 * Runs the benchmark and prints the average build time and SAH cost of each builder.
+	 *
+	 * @param args Unused.
+	 */
+	public static void main(String[] args) {
+		float[] triangleBounds = BinnedSahBuilder.calculateTriangleBounds(createTriangleVertices());
+		System.out.println("Triangles: " + triangleBounds.length / 6);
+		System.out.println("Threads: " + Runtime.getRuntime().availableProcessors());
+
+		benchmark("Binned SAH", new BinnedSahBuilder(), triangleBounds);
+		benchmark("Parallel LBVH", new ParallelLbvhBuilder(), triangleBounds);
+	}
+
+	/**
+	 * @return The vertex positions of the Sphere model's triangles, replicated in a grid.
+	 */
+	private static float[] createTriangleVertices() {
+		Vector3[] vertices = new Model("Sphere", Model.SHADING_NONE).getVertices();
+		int sphereTriangleCount = vertices.length / 3;
+		int copyCount = (TRIANGLE_COUNT + sphereTriangleCount - 1) / sphereTriangleCount;
+		int gridSize = (int) Math.ceil(Math.cbrt(copyCount));
+		float[] triangleVertices = new float[copyCount * vertices.length * 3];
+
+		for(int copy = 0; copy < copyCount; copy++) {
+			float[] offset = {copy % gridSize * 3, copy / gridSize % gridSize * 3, copy / gridSize / gridSize * 3};
+
+			for(int i = 0; i < vertices.length; i++) {
+				float[] components = vertices[i].getComponentsAsFloatArray();
+
+				for(int axis = 0; axis < 3; axis++) {
+					triangleVertices[(copy * vertices.length + i) * 3 + axis] = components[axis] + offset[axis];
+				}
+			}
+		}
+
+		return triangleVertices;
+	}
+
+	/**
+	 * Runs and measures a builder.
+	 *
+	 * @param name The name of the builder.
+	 * @param builder The builder.
+	 * @param primitiveBounds The bounding boxes of the primitives.
+	 */
+	private static void benchmark(String name, BoundingVolumeHierarchyBuilder builder, float[] primitiveBounds) {
+		for(int i = 0; i < WARMUP_RUNS; i++) {
+			builder.build(primitiveBounds);
+		}
+
+		long totalTime = 0;
+		BoundingVolumeHierarchy bvh = null;
+
+		for(int i = 0; i < MEASURED_RUNS; i++) {
+			long startTime = System.nanoTime();
+			bvh = builder.build(primitiveBounds);
+			totalTime += System.nanoTime() - startTime;
+		}
+
+		System.out.printf(
+			"%s: %.1f ms, %d nodes, SAH cost %.1f%n",
+			name, totalTime / 1e6 / MEASURED_RUNS, bvh.getNodeCount(), bvh.getSahCost()
+		);
+	}
+}
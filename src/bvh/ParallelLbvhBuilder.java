@@ -0,0 +1,688 @@
+package bvh;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds {@link BoundingVolumeHierarchy} objects in parallel as linear bounding volume hierarchies (LBVH).
+ *
+ * The primitives are sorted along a <a href="https://en.wikipedia.org/wiki/Z-order_curve">Morton curve</a>
+ * by a parallel radix sort of the 30bit Morton codes of their centroids. The nodes are then emitted top down by
+ * splitting each node's range of sorted primitives where the highest differing bit of the Morton codes changes.
+ * Subtrees are emitted in parallel through a {@link ForkJoinPool}.
+ *
+ * Optionally, the emitted subtrees are improved bottom up by restructuring small treelets, so that the
+ * surface area heuristic (SAH) cost of each treelet becomes minimal.
+ *
+ * @author Tizian Kirchner
+ */
+public class ParallelLbvhBuilder implements BoundingVolumeHierarchyBuilder {
+	/**
+	 * The version of the building algorithm, which is part of the {@link #getCacheKey cache key}.
+	 */
+	private static final int VERSION = 1;
+
+	/**
+	 * How many bits of a Morton code are sorted by each pass of the radix sort.
+	 */
+	private static final int RADIX_BITS = 10;
+
+	/**
+	 * How many passes the radix sort needs to sort the 30bit Morton codes.
+	 */
+	private static final int RADIX_PASSES = 3;
+
+	/**
+	 * How many elements each chunk of a parallel loop contains at least.
+	 */
+	private static final int MIN_CHUNK_SIZE = 4096;
+
+	/**
+	 * Subtrees containing fewer primitives than this threshold are emitted by the thread emitting their parent.
+	 */
+	private static final int PARALLEL_THRESHOLD = 8192;
+
+	/**
+	 * The largest supported {@link #treeletSize}.
+	 */
+	public static final int MAX_TREELET_SIZE = 8;
+
+	/**
+	 * Executes the parallel parts of the construction.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * How many primitives a node can contain at most, before it is split.
+	 */
+	private int maxLeafSize;
+
+	/**
+	 * How many leaves a treelet, which is restructured to minimize its SAH cost, contains at most.
+	 * A size below 3 disables the treelet optimization.
+	 */
+	private int treeletSize;
+
+	/**
+	 * The estimated cost of traversing an inner node relative to intersecting a primitive.
+	 */
+	private float traversalCost;
+
+	/**
+	 * Creates a {@link ParallelLbvhBuilder} using the common ForkJoinPool, up to 4 primitives per leaf,
+	 * treelets with up to 5 leaves and a traversal cost of 1.
+	 */
+	public ParallelLbvhBuilder() {
+		this(ForkJoinPool.commonPool(), 4, 5, 1);
+	}
+
+	/**
+	 * @param pool See {@link #pool}.
+	 * @param maxLeafSize See {@link #maxLeafSize}.
+	 * @param treeletSize See {@link #treeletSize}.
+	 * @param traversalCost See {@link #traversalCost}.
+	 */
+	public ParallelLbvhBuilder(ForkJoinPool pool, int maxLeafSize, int treeletSize, float traversalCost) {
+		if(treeletSize > MAX_TREELET_SIZE) {
+			throw new IllegalArgumentException("The treelet size can not exceed " + MAX_TREELET_SIZE + ".");
+		}
+
+		this.pool = pool;
+		this.maxLeafSize = Math.max(maxLeafSize, 1);
+		this.treeletSize = treeletSize;
+		this.traversalCost = traversalCost;
+	}
+
+	@Override
+	public String getCacheKey() {
+		return "ParallelLbvhBuilder " + VERSION + " " + maxLeafSize + " " + treeletSize + " " + traversalCost;
+	}
+
+	@Override
+	public BoundingVolumeHierarchy build(float[] primitiveBounds) {
+		int primitiveCount = primitiveBounds.length / 6;
+		int maxNodeCount = Math.max(2 * primitiveCount - 1, 1);
+
+		Construction construction = new Construction(primitiveBounds, maxNodeCount);
+		BinnedSahBuilder.resetBounds(construction.nodeBounds, 0);
+
+		if(primitiveCount > 0) {
+			float[] centroids = new float[primitiveCount * 3];
+			float[] centroidBounds = calculateCentroids(primitiveBounds, centroids);
+			int[] mortonCodes = calculateMortonCodes(centroids, centroidBounds);
+
+			for(int i = 0; i < primitiveCount; i++) {
+				construction.primitiveIndecis[i] = i;
+			}
+
+			construction.mortonCodes = sortMortonCodes(mortonCodes, construction.primitiveIndecis);
+			construction.nodeCounter.set(1);
+			pool.invoke(construction.new EmitTask(0, 0, primitiveCount, 0));
+		}
+
+		return new BoundingVolumeHierarchy(
+			construction.nodeBounds, construction.nodeChildOrFirstIndecis, construction.nodePrimitiveCounts,
+			Math.max(construction.nodeCounter.get(), 1), construction.primitiveIndecis, traversalCost
+		);
+	}
+
+	/**
+	 * Calculates the centroids of the primitives and the bounding box of the centroids in parallel.
+	 *
+	 * @param primitiveBounds The bounding boxes of the primitives.
+	 * @param centroids Receives the centroids. Each centroid occupies three consecutive elements.
+	 * @return The bounding box of the centroids.
+	 */
+	private float[] calculateCentroids(float[] primitiveBounds, float[] centroids) {
+		int primitiveCount = centroids.length / 3;
+		int chunkCount = getChunkCount(primitiveCount);
+		float[] chunkBounds = new float[chunkCount * 6];
+
+		forEachChunk(primitiveCount, chunkCount, (chunk, start, end) -> {
+			BinnedSahBuilder.resetBounds(chunkBounds, chunk);
+
+			for(int i = start; i < end; i++) {
+				for(int axis = 0; axis < 3; axis++) {
+					float centroid = (primitiveBounds[i * 6 + axis] + primitiveBounds[i * 6 + 3 + axis]) / 2;
+					centroids[i * 3 + axis] = centroid;
+					chunkBounds[chunk * 6 + axis] = Math.min(chunkBounds[chunk * 6 + axis], centroid);
+					chunkBounds[chunk * 6 + 3 + axis] = Math.max(chunkBounds[chunk * 6 + 3 + axis], centroid);
+				}
+			}
+		});
+
+		float[] centroidBounds = new float[6];
+		BinnedSahBuilder.resetBounds(centroidBounds, 0);
+
+		for(int chunk = 0; chunk < chunkCount; chunk++) {
+			BinnedSahBuilder.growBounds(centroidBounds, 0, chunkBounds, chunk);
+		}
+
+		return centroidBounds;
+	}
+
+	/**
+	 * Calculates the 30bit Morton codes of the centroids in parallel.
+	 * Each axis of the bounding box of the centroids is quantized to 10 bits.
+	 *
+	 * @param centroids The centroids of the primitives.
+	 * @param centroidBounds The bounding box of the centroids.
+	 * @return The Morton code of each centroid.
+	 */
+	private int[] calculateMortonCodes(float[] centroids, float[] centroidBounds) {
+		int primitiveCount = centroids.length / 3;
+		int[] mortonCodes = new int[primitiveCount];
+		float[] scales = new float[3];
+
+		for(int axis = 0; axis < 3; axis++) {
+			float extent = centroidBounds[3 + axis] - centroidBounds[axis];
+			scales[axis] = extent > 0 ? 1023 / extent : 0;
+		}
+
+		forEachChunk(primitiveCount, getChunkCount(primitiveCount), (chunk, start, end) -> {
+			for(int i = start; i < end; i++) {
+				int code = 0;
+
+				for(int axis = 0; axis < 3; axis++) {
+					int quantized = (int) ((centroids[i * 3 + axis] - centroidBounds[axis]) * scales[axis]);
+					code |= expandBits(Math.min(Math.max(quantized, 0), 1023)) << (2 - axis);
+				}
+
+				mortonCodes[i] = code;
+			}
+		});
+
+		return mortonCodes;
+	}
+
+	/**
+	 * Inserts two zero bits after each of the lower 10 bits of a value.
+	 *
+	 * @param value The value, which has to be smaller than 1024.
+	 * @return The expanded value.
+	 */
+	static int expandBits(int value) {
+		value = (value * 0x00010001) & 0xFF0000FF;
+		value = (value * 0x00000101) & 0x0F00F00F;
+		value = (value * 0x00000011) & 0xC30C30C3;
+		value = (value * 0x00000005) & 0x49249249;
+		return value;
+	}
+
+	/**
+	 * Sorts the Morton codes and the primitive indecis by a parallel least significant digit radix sort.
+	 *
+	 * Each pass counts the digits of each chunk in parallel, calculates the position of each chunk's digits
+	 * and then scatters the chunks in parallel, which keeps the sort stable.
+	 *
+	 * @param mortonCodes The Morton codes, which may be overwritten.
+	 * @param primitiveIndecis The primitive indecis, which are sorted along with the Morton codes.
+	 * @return The sorted Morton codes.
+	 */
+	private int[] sortMortonCodes(int[] mortonCodes, int[] primitiveIndecis) {
+		int primitiveCount = mortonCodes.length;
+		int chunkCount = getChunkCount(primitiveCount);
+		int bucketCount = 1 << RADIX_BITS;
+		int[] histograms = new int[chunkCount * bucketCount];
+
+		int[] codes = mortonCodes;
+		int[] indecis = primitiveIndecis;
+		int[] sortedCodes = new int[primitiveCount];
+		int[] sortedIndecis = new int[primitiveCount];
+
+		for(int pass = 0; pass < RADIX_PASSES; pass++) {
+			int shift = pass * RADIX_BITS;
+			int[] passCodes = codes;
+			int[] passIndecis = indecis;
+			int[] passSortedCodes = sortedCodes;
+			int[] passSortedIndecis = sortedIndecis;
+
+			forEachChunk(primitiveCount, chunkCount, (chunk, start, end) -> {
+				int histogram = chunk * bucketCount;
+
+				for(int bucket = 0; bucket < bucketCount; bucket++) {
+					histograms[histogram + bucket] = 0;
+				}
+
+				for(int i = start; i < end; i++) {
+					histograms[histogram + ((passCodes[i] >>> shift) & (bucketCount - 1))]++;
+				}
+			});
+
+			// turn the counts into the positions of each chunk's first element with each digit
+			int position = 0;
+
+			for(int bucket = 0; bucket < bucketCount; bucket++) {
+				for(int chunk = 0; chunk < chunkCount; chunk++) {
+					int count = histograms[chunk * bucketCount + bucket];
+					histograms[chunk * bucketCount + bucket] = position;
+					position += count;
+				}
+			}
+
+			forEachChunk(primitiveCount, chunkCount, (chunk, start, end) -> {
+				int histogram = chunk * bucketCount;
+
+				for(int i = start; i < end; i++) {
+					int target = histograms[histogram + ((passCodes[i] >>> shift) & (bucketCount - 1))]++;
+					passSortedCodes[target] = passCodes[i];
+					passSortedIndecis[target] = passIndecis[i];
+				}
+			});
+
+			codes = passSortedCodes;
+			indecis = passSortedIndecis;
+			sortedCodes = passCodes;
+			sortedIndecis = passIndecis;
+		}
+
+		if(indecis != primitiveIndecis) {
+			System.arraycopy(indecis, 0, primitiveIndecis, 0, primitiveCount);
+		}
+
+		return codes;
+	}
+
+	/**
+	 * @param elementCount How many elements a parallel loop iterates over.
+	 * @return Into how many chunks the loop is divided.
+	 */
+	private int getChunkCount(int elementCount) {
+		int maxChunkCount = pool.getParallelism() * 4;
+		return Math.max(Math.min((elementCount + MIN_CHUNK_SIZE - 1) / MIN_CHUNK_SIZE, maxChunkCount), 1);
+	}
+
+	/**
+	 * Divides a loop into equally sized chunks and executes the chunks in parallel.
+	 *
+	 * @param elementCount How many elements the loop iterates over.
+	 * @param chunkCount Into how many chunks the loop is divided.
+	 * @param body Executed once for each chunk.
+	 */
+	private void forEachChunk(int elementCount, int chunkCount, ChunkBody body) {
+		pool.invoke(new ChunkAction(elementCount, chunkCount, 0, chunkCount, body));
+	}
+
+	/**
+	 * The body of a parallel loop, which is executed once for each chunk of the loop.
+	 */
+	private interface ChunkBody {
+		/**
+		 * @param chunk The index of the chunk.
+		 * @param start The index of the chunk's first element.
+		 * @param end The index following the chunk's last element.
+		 */
+		void run(int chunk, int start, int end);
+	}
+
+	/**
+	 * Executes a range of the chunks of a parallel loop by recursively splitting the range in half.
+	 */
+	@SuppressWarnings("serial")
+	private static class ChunkAction extends RecursiveAction {
+		private int elementCount;
+		private int chunkCount;
+		private int firstChunk;
+		private int endChunk;
+		private ChunkBody body;
+
+		private ChunkAction(int elementCount, int chunkCount, int firstChunk, int endChunk, ChunkBody body) {
+			this.elementCount = elementCount;
+			this.chunkCount = chunkCount;
+			this.firstChunk = firstChunk;
+			this.endChunk = endChunk;
+			this.body = body;
+		}
+
+		@Override
+		protected void compute() {
+			if(endChunk - firstChunk > 1) {
+				int middleChunk = (firstChunk + endChunk) / 2;
+
+				invokeAll(
+					new ChunkAction(elementCount, chunkCount, firstChunk, middleChunk, body),
+					new ChunkAction(elementCount, chunkCount, middleChunk, endChunk, body)
+				);
+			} else {
+				int start = (int) ((long) elementCount * firstChunk / chunkCount);
+				int end = (int) ((long) elementCount * (firstChunk + 1) / chunkCount);
+				body.run(firstChunk, start, end);
+			}
+		}
+	}
+
+	/**
+	 * Stores the data of one {@link ParallelLbvhBuilder#build} call, which is shared by its {@link EmitTask}s.
+	 */
+	private class Construction {
+		private float[] primitiveBounds;
+		private int[] mortonCodes;
+		private int[] primitiveIndecis;
+
+		private float[] nodeBounds;
+		private int[] nodeChildOrFirstIndecis;
+		private int[] nodePrimitiveCounts;
+
+		/**
+		 * The SAH cost of each node's subtree.
+		 */
+		private float[] nodeCosts;
+
+		/**
+		 * The height of each node's subtree. Leaf nodes have a height of 0.
+		 */
+		private int[] nodeHeights;
+
+		/**
+		 * The index of the next unused node. Children are reserved in pairs,
+		 * so the order of the nodes depends on the order in which the EmitTasks are executed.
+		 */
+		private AtomicInteger nodeCounter = new AtomicInteger();
+
+		private Construction(float[] primitiveBounds, int maxNodeCount) {
+			this.primitiveBounds = primitiveBounds;
+			primitiveIndecis = new int[primitiveBounds.length / 6];
+			nodeBounds = new float[maxNodeCount * 6];
+			nodeChildOrFirstIndecis = new int[maxNodeCount];
+			nodePrimitiveCounts = new int[maxNodeCount];
+			nodeCosts = new float[maxNodeCount];
+			nodeHeights = new int[maxNodeCount];
+		}
+
+		/**
+		 * Emits the subtree of one node over a range of the sorted primitives and optimizes its treelet.
+		 * Returns the height of the subtree.
+		 */
+		@SuppressWarnings("serial")
+		private class EmitTask extends RecursiveTask<Integer> {
+			private int node;
+			private int first;
+			private int count;
+			private int depth;
+
+			private EmitTask(int node, int first, int count, int depth) {
+				this.node = node;
+				this.first = first;
+				this.count = count;
+				this.depth = depth;
+			}
+
+			@Override
+			protected Integer compute() {
+				if(count <= maxLeafSize || depth >= BoundingVolumeHierarchy.MAX_DEPTH - 1) {
+					emitLeaf();
+					return 0;
+				}
+
+				int leftCount = findSplit(first, first + count - 1) - first + 1;
+				int leftChild = nodeCounter.getAndAdd(2);
+				int rightChild = leftChild + 1;
+
+				EmitTask leftTask = new EmitTask(leftChild, first, leftCount, depth + 1);
+				EmitTask rightTask = new EmitTask(rightChild, first + leftCount, count - leftCount, depth + 1);
+
+				if(count > PARALLEL_THRESHOLD) {
+					invokeAll(leftTask, rightTask);
+				} else {
+					leftTask.compute();
+					rightTask.compute();
+				}
+
+				nodeChildOrFirstIndecis[node] = leftChild;
+				nodePrimitiveCounts[node] = 0;
+				updateInnerNode(node);
+
+				if(treeletSize >= 3) optimizeTreelet(node, depth);
+				return nodeHeights[node];
+			}
+
+			private void emitLeaf() {
+				nodeChildOrFirstIndecis[node] = first;
+				nodePrimitiveCounts[node] = count;
+				BinnedSahBuilder.resetBounds(nodeBounds, node);
+
+				for(int i = first; i < first + count; i++) {
+					BinnedSahBuilder.growBounds(nodeBounds, node, primitiveBounds, primitiveIndecis[i]);
+				}
+
+				nodeCosts[node] = count * BinnedSahBuilder.calculateSurfaceArea(nodeBounds, node);
+				nodeHeights[node] = 0;
+			}
+		}
+
+		/**
+		 * Finds the position within a range of the sorted primitives at which the highest differing bit of the
+		 * Morton codes changes. Ranges without differing bits are split in the middle.
+		 *
+		 * @param first The position of the range's first primitive.
+		 * @param last The position of the range's last primitive.
+		 * @return The position of the last primitive of the left half.
+		 */
+		private int findSplit(int first, int last) {
+			int firstCode = mortonCodes[first];
+			int lastCode = mortonCodes[last];
+
+			if(firstCode == lastCode) return (first + last) / 2;
+
+			int commonPrefix = Integer.numberOfLeadingZeros(firstCode ^ lastCode);
+
+			// binary search for the last primitive sharing more than the common prefix with the first one
+			int split = first;
+			int step = last - first;
+
+			do {
+				step = (step + 1) / 2;
+				int newSplit = split + step;
+
+				if(newSplit < last && Integer.numberOfLeadingZeros(firstCode ^ mortonCodes[newSplit]) > commonPrefix) {
+					split = newSplit;
+				}
+			} while(step > 1);
+
+			return split;
+		}
+
+		/**
+		 * Recalculates the bounding box, SAH cost and height of an inner node from its children.
+		 *
+		 * @param node The index of the inner node.
+		 */
+		private void updateInnerNode(int node) {
+			int leftChild = nodeChildOrFirstIndecis[node];
+			int rightChild = leftChild + 1;
+
+			BinnedSahBuilder.resetBounds(nodeBounds, node);
+			BinnedSahBuilder.growBounds(nodeBounds, node, nodeBounds, leftChild);
+			BinnedSahBuilder.growBounds(nodeBounds, node, nodeBounds, rightChild);
+
+			nodeCosts[node] = (
+				traversalCost * BinnedSahBuilder.calculateSurfaceArea(nodeBounds, node) +
+				nodeCosts[leftChild] + nodeCosts[rightChild]
+			);
+
+			nodeHeights[node] = 1 + Math.max(nodeHeights[leftChild], nodeHeights[rightChild]);
+		}
+
+		/**
+		 * Restructures the treelet of an inner node, if another topology of the treelet has a lower SAH cost.
+		 *
+		 * The treelet is formed by repeatedly replacing its treelet leaf with the largest surface area by the
+		 * leaf's children. The optimal topology is found by dynamic programming over all subsets of the treelet
+		 * leaves. The restructured treelet reuses the child pairs of the treelet's inner nodes.
+		 *
+		 * @param root The index of the treelet's root node.
+		 * @param depth The depth of the root node.
+		 */
+		private void optimizeTreelet(int root, int depth) {
+			// form the treelet
+			int[] treeletLeaves = new int[treeletSize];
+			int[] childPairs = new int[treeletSize - 1];
+			int leafCount = 2;
+			int pairCount = 1;
+
+			childPairs[0] = nodeChildOrFirstIndecis[root];
+			treeletLeaves[0] = childPairs[0];
+			treeletLeaves[1] = childPairs[0] + 1;
+
+			while(leafCount < treeletSize) {
+				int largestLeaf = -1;
+				float largestArea = -1;
+
+				for(int i = 0; i < leafCount; i++) {
+					int leaf = treeletLeaves[i];
+					if(nodePrimitiveCounts[leaf] > 0) continue;
+
+					float area = BinnedSahBuilder.calculateSurfaceArea(nodeBounds, leaf);
+
+					if(area > largestArea) {
+						largestArea = area;
+						largestLeaf = i;
+					}
+				}
+
+				if(largestLeaf == -1) break;
+
+				int leftChild = nodeChildOrFirstIndecis[treeletLeaves[largestLeaf]];
+				childPairs[pairCount++] = leftChild;
+				treeletLeaves[largestLeaf] = leftChild;
+				treeletLeaves[leafCount++] = leftChild + 1;
+			}
+
+			if(leafCount < 3) return;
+
+			// find the optimal topology
+			int subsetCount = 1 << leafCount;
+			float[] subsetBounds = new float[subsetCount * 6];
+			float[] subsetCosts = new float[subsetCount];
+			int[] subsetHeights = new int[subsetCount];
+			int[] subsetSplits = new int[subsetCount];
+
+			for(int subset = 1; subset < subsetCount; subset++) {
+				int lowestBit = subset & -subset;
+
+				if(subset == lowestBit) {
+					int leaf = treeletLeaves[Integer.numberOfTrailingZeros(subset)];
+					System.arraycopy(nodeBounds, leaf * 6, subsetBounds, subset * 6, 6);
+					subsetCosts[subset] = nodeCosts[leaf];
+					subsetHeights[subset] = nodeHeights[leaf];
+					continue;
+				}
+
+				System.arraycopy(subsetBounds, (subset ^ lowestBit) * 6, subsetBounds, subset * 6, 6);
+				BinnedSahBuilder.growBounds(subsetBounds, subset, subsetBounds, lowestBit);
+
+				float bestCost = Float.POSITIVE_INFINITY;
+
+				// only partitions containing the lowest bit are evaluated, since the others are mirrored
+				for(int part = (subset - 1) & subset; part > 0; part = (part - 1) & subset) {
+					if((part & lowestBit) == 0) continue;
+
+					float cost = subsetCosts[part] + subsetCosts[subset ^ part];
+
+					if(cost < bestCost) {
+						bestCost = cost;
+						subsetSplits[subset] = part;
+					}
+				}
+
+				int split = subsetSplits[subset];
+				subsetCosts[subset] = traversalCost * BinnedSahBuilder.calculateSurfaceArea(subsetBounds, subset) + bestCost;
+				subsetHeights[subset] = 1 + Math.max(subsetHeights[split], subsetHeights[subset ^ split]);
+			}
+
+			int treelet = subsetCount - 1;
+			if(subsetCosts[treelet] >= nodeCosts[root] * 0.999f) return;
+			if(depth + subsetHeights[treelet] > BoundingVolumeHierarchy.MAX_DEPTH - 1) return;
+
+			// copy the treelet leaves, since their nodes are overwritten while restructuring
+			float[] leafBounds = new float[leafCount * 6];
+			int[] leafChildOrFirstIndecis = new int[leafCount];
+			int[] leafPrimitiveCounts = new int[leafCount];
+			float[] leafCosts = new float[leafCount];
+			int[] leafHeights = new int[leafCount];
+
+			for(int i = 0; i < leafCount; i++) {
+				int leaf = treeletLeaves[i];
+				System.arraycopy(nodeBounds, leaf * 6, leafBounds, i * 6, 6);
+				leafChildOrFirstIndecis[i] = nodeChildOrFirstIndecis[leaf];
+				leafPrimitiveCounts[i] = nodePrimitiveCounts[leaf];
+				leafCosts[i] = nodeCosts[leaf];
+				leafHeights[i] = nodeHeights[leaf];
+			}
+
+			TreeletLeaves leaves = new TreeletLeaves(
+				leafBounds, leafChildOrFirstIndecis, leafPrimitiveCounts, leafCosts, leafHeights
+			);
+
+			restructure(root, treelet, subsetSplits, childPairs, new int[1], leaves);
+		}
+
+		/**
+		 * Recursively writes the optimal topology of a subset of treelet leaves into the nodes of a treelet.
+		 *
+		 * @param node The index of the node representing the subset.
+		 * @param subset The subset of treelet leaves, which contains at least two leaves.
+		 * @param subsetSplits The optimal partition of each subset.
+		 * @param childPairs The left children of the child pairs, which can be reused by the treelet.
+		 * @param usedPairCount How many of the child pairs have been used.
+		 * @param leaves The copied treelet leaves.
+		 */
+		private void restructure(
+			int node, int subset, int[] subsetSplits, int[] childPairs, int[] usedPairCount, TreeletLeaves leaves
+		) {
+			int leftChild = childPairs[usedPairCount[0]++];
+			int[] childSubsets = {subsetSplits[subset], subset ^ subsetSplits[subset]};
+
+			for(int i = 0; i < 2; i++) {
+				int child = leftChild + i;
+
+				if(Integer.bitCount(childSubsets[i]) == 1) {
+					leaves.write(Integer.numberOfTrailingZeros(childSubsets[i]), child);
+				} else {
+					restructure(child, childSubsets[i], subsetSplits, childPairs, usedPairCount, leaves);
+				}
+			}
+
+			nodeChildOrFirstIndecis[node] = leftChild;
+			nodePrimitiveCounts[node] = 0;
+			updateInnerNode(node);
+		}
+
+		/**
+		 * Stores copies of the nodes of treelet leaves.
+		 */
+		private class TreeletLeaves {
+			private float[] bounds;
+			private int[] childOrFirstIndecis;
+			private int[] primitiveCounts;
+			private float[] costs;
+			private int[] heights;
+
+			private TreeletLeaves(
+				float[] bounds, int[] childOrFirstIndecis, int[] primitiveCounts, float[] costs, int[] heights
+			) {
+				this.bounds = bounds;
+				this.childOrFirstIndecis = childOrFirstIndecis;
+				this.primitiveCounts = primitiveCounts;
+				this.costs = costs;
+				this.heights = heights;
+			}
+
+			/**
+			 * Writes a copied treelet leaf into a node.
+			 *
+			 * @param leaf The index of the treelet leaf.
+			 * @param node The index of the node.
+			 */
+			private void write(int leaf, int node) {
+				System.arraycopy(bounds, leaf * 6, nodeBounds, node * 6, 6);
+				nodeChildOrFirstIndecis[node] = childOrFirstIndecis[leaf];
+				nodePrimitiveCounts[node] = primitiveCounts[leaf];
+				nodeCosts[node] = costs[leaf];
+				nodeHeights[node] = heights[leaf];
+			}
+		}
+	}
+}
@@ -0,0 +1,555 @@
+package bvh;
+
+import java.util.ArrayList;
+
+import cgi.ConstructiveSolidGeometry;
+import cgi.Model;
+import cgi.Quadric;
+import cgi.Sphere;
+import math.matrix.Matrix4;
+import math.vector.Vector3;
+import math.vector.Vector4;
+
+/**
+ * Stores a two level <a href="https://en.wikipedia.org/wiki/Bounding_volume_hierarchy">bounding volume hierarchy</a>
+ * over {@link Model} and {@link Sphere} objects.
+ *
+ * The bottom level consists of one {@link BoundingVolumeHierarchy} for each distinct mesh, which is built over the
+ * mesh's triangles in object space. Model objects {@link Model#sharesMesh sharing their mesh} are instances of the
+ * same mesh and use the same bottom level BoundingVolumeHierarchy. The top level consists of one
+ * BoundingVolumeHierarchy, which is built in world space over the bounding boxes of the instances and the Spheres.
+ * Moving a Model therefore only changes its instance data and refits the top level.
+ *
+ * {@link Quadric} and {@link ConstructiveSolidGeometry} objects are not part of the hierarchy,
+ * since they are not necessarily bounded.
+ *
+ * @author Tizian Kirchner
+ */
+public class TwoLevelBoundingVolumeHierarchy {
+	/**
+	 * Returned by {@link #update}, if the BoundingVolumeHierarchy buffer does not need to be changed.
+	 */
+	public static final int UPDATE_NONE = 0;
+
+	/**
+	 * Returned by {@link #update}, if the {@link #instanceBvh} has been refitted and its
+	 * {@link BoundingVolumeHierarchy#getDirtyNodeRanges dirty nodes} need to be sent to the buffer.
+	 */
+	public static final int UPDATE_REFIT = 1;
+
+	/**
+	 * Returned by {@link #update}, if the {@link #instanceBvh} has been rebuilt and its primitive indecis and nodes
+	 * need to be sent to the buffer.
+	 */
+	public static final int UPDATE_INSTANCE_BVH = 2;
+
+	/**
+	 * Returned by {@link #update}, if the whole buffer needs to be recreated through {@link #getBufferData}.
+	 */
+	public static final int UPDATE_ALL = 3;
+
+	/**
+	 * How many 32bit units an instance occupies within the ModelInstances buffer of the ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 */
+	public static final int INSTANCE_SIZE = 36;
+
+	/**
+	 * If the {@link BoundingVolumeHierarchy#getSahCost SAH cost} of the refitted {@link #instanceBvh}
+	 * exceeds its SAH cost at build time multiplied by this threshold, the instanceBvh is rebuilt.
+	 */
+	private static final float REBUILD_THRESHOLD = 1.5f;
+
+	/**
+	 * Loads or builds the {@link #meshBvhs}. Meshes can contain many triangles, so they are built in parallel
+	 * and stored on disk, so that they only need to be built once.
+	 */
+	private BoundingVolumeHierarchyCache meshBvhCache = new BoundingVolumeHierarchyCache(new ParallelLbvhBuilder());
+
+	/**
+	 * Builds the {@link #instanceBvh}.
+	 */
+	private BoundingVolumeHierarchyBuilder instanceBuilder = new BinnedSahBuilder();
+
+	/**
+	 * One {@link Model} for each distinct mesh.
+	 */
+	private ArrayList<Model> meshes = new ArrayList<>();
+
+	/**
+	 * The bottom level {@link BoundingVolumeHierarchy} of each of the {@link #meshes}.
+	 */
+	private ArrayList<BoundingVolumeHierarchy> meshBvhs = new ArrayList<>();
+
+	/**
+	 * The index of the first triangle of each of the {@link #meshes} among the triangles of all meshes.
+	 */
+	private int[] meshTriangleOffsets = new int[0];
+
+	/**
+	 * The index of the root node of each of the {@link #meshBvhs} among the nodes of all meshBvhs.
+	 */
+	private int[] meshNodeOffsets = new int[0];
+
+	/**
+	 * How many triangles the {@link #meshes} contain.
+	 */
+	private int triangleCount;
+
+	/**
+	 * How many nodes the {@link #meshBvhs} contain.
+	 */
+	private int meshNodeCount;
+
+	/**
+	 * The {@link Model} objects, which are the instances of the {@link #meshes}.
+	 */
+	private ArrayList<Model> models = new ArrayList<>();
+
+	/**
+	 * Copies of the model matrices of the {@link #models} at the time of the last {@link #update}.
+	 */
+	private ArrayList<Matrix4> modelMatrices = new ArrayList<>();
+
+	/**
+	 * The texture indecis of the {@link #models} at the time of the last {@link #update}.
+	 */
+	private int[] modelTextureIndecis = new int[0];
+
+	/**
+	 * The index of the mesh within the {@link #meshes} for each of the {@link #models}.
+	 */
+	private int[] modelMeshIndecis = new int[0];
+
+	/**
+	 * How many {@link Sphere} objects are part of the {@link #instanceBvh}.
+	 */
+	private int sphereCount;
+
+	/**
+	 * Stores for each primitive of the {@link #instanceBvh} if it has changed during the last {@link #update}.
+	 * The primitives are the {@link #models} followed by the Sphere objects.
+	 */
+	private boolean[] changedPrimitives = new boolean[0];
+
+	/**
+	 * For how many primitive indecis the BoundingVolumeHierarchy buffer reserves memory at least.
+	 * Has to match the capacity the ray tracing <a href="https://www.khronos.org/opengl/wiki/shader">shader</a>
+	 * program has been compiled with.
+	 */
+	private int primitiveIndexCapacity = 0;
+
+	/**
+	 * Determines if the {@link #primitiveIndexCapacity} has changed since the last {@link #update}.
+	 */
+	private boolean primitiveIndexCapacityChanged = false;
+
+	/**
+	 * The world space bounding boxes of the primitives of the {@link #instanceBvh}.
+	 * Each bounding box occupies six consecutive elements,
+	 * the minimum x, y and z coordinates followed by the maximum x, y and z coordinates.
+	 */
+	private float[] primitiveBounds = new float[0];
+
+	/**
+	 * The top level {@link BoundingVolumeHierarchy} over the {@link #models} and Sphere objects.
+	 */
+	private BoundingVolumeHierarchy instanceBvh;
+
+	/**
+	 * The {@link BoundingVolumeHierarchy#getSahCost SAH cost} of the {@link #instanceBvh} at build time.
+	 */
+	private float instanceBvhBuildSahCost;
+
+	/**
+	 * Updates this {@link TwoLevelBoundingVolumeHierarchy} to the current state of the scene.
+	 *
+	 * Rebuilds the {@link #meshBvhs}, if the meshes have changed. Rebuilds the {@link #instanceBvh}, if the
+	 * {@link Model} or {@link Sphere} objects have changed. Refits the instanceBvh, if only model matrices or
+	 * Sphere positions have changed, unless its {@link BoundingVolumeHierarchy#getSahCost SAH cost} degrades past
+	 * the {@link #REBUILD_THRESHOLD}.
+	 *
+	 * @param meshes One Model for each distinct mesh of the models.
+	 * @param models The Model objects, which are to be ray traced.
+	 * @param spheres The Sphere objects, which are to be ray traced.
+	 *
+	 * @return
+	 * Either {@link #UPDATE_NONE}, {@link #UPDATE_REFIT}, {@link #UPDATE_INSTANCE_BVH} or {@link #UPDATE_ALL},
+	 * depending on which parts of the BoundingVolumeHierarchy buffer need to be changed.
+	 */
+	public int update(ArrayList<Model> meshes, ArrayList<Model> models, ArrayList<Sphere> spheres) {
+		boolean rebuild = false;
+
+		if(!containsMeshes(meshes)) {
+			buildMeshBvhs(meshes);
+			rebuild = true;
+		}
+
+		if(primitiveIndexCapacityChanged) {
+			primitiveIndexCapacityChanged = false;
+			rebuild = true;
+		}
+
+		if(rebuild || !containsModels(models) || sphereCount != spheres.size()) {
+			storeInstances(models, spheres.size());
+			rebuild = true;
+		}
+
+		// update the bounding boxes of changed primitives
+		boolean changed = false;
+
+		for(int i = 0; i < models.size(); i++) {
+			Model model = models.get(i);
+
+			// model matrices can also be changed in place, which does not set the dirty flag
+			changedPrimitives[i] = (
+				rebuild ||
+				model.isDirty(Model.DIRTY_INSTANCE) ||
+				!modelMatrices.get(i).equals(model.getModelMatrix())
+			);
+
+			if(changedPrimitives[i]) {
+				modelMatrices.set(i, new Matrix4(model.getModelMatrix()));
+				modelTextureIndecis[i] = model.getTextureIndex();
+				model.clearDirtyFlags(Model.DIRTY_INSTANCE);
+				calculateModelBounds(i);
+				changed = true;
+			}
+		}
+
+		for(int i = 0; i < sphereCount; i++) {
+			int primitive = models.size() + i;
+			changedPrimitives[primitive] = calculateSphereBounds(primitive, spheres.get(i)) || rebuild;
+			changed |= changedPrimitives[primitive];
+		}
+
+		if(rebuild) {
+			buildInstanceBvh();
+			return UPDATE_ALL;
+		}
+
+		if(!changed) return UPDATE_NONE;
+
+		for(int i = 0; i < changedPrimitives.length; i++) {
+			if(changedPrimitives[i]) instanceBvh.refit(primitiveBounds, i, 1);
+		}
+
+		if(instanceBvh.getSahCost() > instanceBvhBuildSahCost * REBUILD_THRESHOLD) {
+			buildInstanceBvh();
+			return UPDATE_INSTANCE_BVH;
+		}
+
+		return UPDATE_REFIT;
+	}
+
+	/**
+	 * @param meshes One Model for each distinct mesh.
+	 * @return If the {@link #meshes} share their mesh with the given meshes in the same order.
+	 */
+	private boolean containsMeshes(ArrayList<Model> meshes) {
+		if(this.meshes.size() != meshes.size()) return false;
+
+		for(int i = 0; i < meshes.size(); i++) {
+			if(!this.meshes.get(i).sharesMesh(meshes.get(i))) return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * @param models The Model objects, which are to be ray traced.
+	 * @return If the {@link #models} are the same Model objects in the same order.
+	 */
+	private boolean containsModels(ArrayList<Model> models) {
+		if(this.models.size() != models.size()) return false;
+
+		for(int i = 0; i < models.size(); i++) {
+			if(this.models.get(i) != models.get(i)) return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Loads or builds the {@link #meshBvhs} over the object space triangles of the meshes.
+	 *
+	 * @param meshes One Model for each distinct mesh.
+	 */
+	private void buildMeshBvhs(ArrayList<Model> meshes) {
+		this.meshes = new ArrayList<>(meshes);
+		meshBvhs.clear();
+		meshTriangleOffsets = new int[meshes.size()];
+		meshNodeOffsets = new int[meshes.size()];
+		triangleCount = 0;
+		meshNodeCount = 0;
+
+		for(int i = 0; i < meshes.size(); i++) {
+			Vector3[] vertices = meshes.get(i).getVertices();
+			float[] triangleVertices = new float[vertices.length * 3];
+
+			for(int j = 0; j < vertices.length; j++) {
+				float[] vertexComponents = vertices[j].getComponentsAsFloatArray();
+
+				for(int axis = 0; axis < 3; axis++) {
+					triangleVertices[j * 3 + axis] = vertexComponents[axis];
+				}
+			}
+
+			BoundingVolumeHierarchy meshBvh = meshBvhCache.getBvh(
+				meshes.get(i), BinnedSahBuilder.calculateTriangleBounds(triangleVertices)
+			);
+
+			meshBvhs.add(meshBvh);
+			meshTriangleOffsets[i] = triangleCount;
+			meshNodeOffsets[i] = meshNodeCount;
+			triangleCount += vertices.length / 3;
+			meshNodeCount += meshBvh.getNodeCount();
+		}
+	}
+
+	/**
+	 * Stores the {@link Model} objects, which are the instances of the {@link #meshes}, and resets the data of the
+	 * primitives of the {@link #instanceBvh}.
+	 *
+	 * @param models The Model objects, which are to be ray traced.
+	 * @param sphereCount How many {@link Sphere} objects are to be ray traced.
+	 */
+	private void storeInstances(ArrayList<Model> models, int sphereCount) {
+		this.models = new ArrayList<>(models);
+		this.sphereCount = sphereCount;
+		modelMatrices.clear();
+		modelTextureIndecis = new int[models.size()];
+		modelMeshIndecis = new int[models.size()];
+		changedPrimitives = new boolean[models.size() + sphereCount];
+		primitiveBounds = new float[(models.size() + sphereCount) * 6];
+
+		for(int i = 0; i < models.size(); i++) {
+			modelMatrices.add(new Matrix4(models.get(i).getModelMatrix()));
+
+			for(int j = 0; j < meshes.size(); j++) {
+				if(meshes.get(j).sharesMesh(models.get(i))) {
+					modelMeshIndecis[i] = j;
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Calculates the world space bounding box of a {@link Model} by transforming the corners of the
+	 * bounding box of its mesh with its model matrix.
+	 *
+	 * @param modelIndex The index of the Model within the {@link #models}.
+	 */
+	private void calculateModelBounds(int modelIndex) {
+		float[] meshBounds = meshBvhs.get(modelMeshIndecis[modelIndex]).getNodeBounds();
+		Matrix4 modelMatrix = modelMatrices.get(modelIndex);
+		BinnedSahBuilder.resetBounds(primitiveBounds, modelIndex);
+
+		for(int corner = 0; corner < 8; corner++) {
+			Vector4 cornerVector = new Vector4(
+				meshBounds[(corner & 1) == 0 ? 0 : 3],
+				meshBounds[(corner & 2) == 0 ? 1 : 4],
+				meshBounds[(corner & 4) == 0 ? 2 : 5],
+				1
+			);
+
+			float[] cornerComponents = cornerVector.multiply(modelMatrix).getComponentsAsFloatArray();
+
+			for(int axis = 0; axis < 3; axis++) {
+				int minimumIndex = modelIndex * 6 + axis;
+				int maximumIndex = modelIndex * 6 + 3 + axis;
+				primitiveBounds[minimumIndex] = Math.min(primitiveBounds[minimumIndex], cornerComponents[axis]);
+				primitiveBounds[maximumIndex] = Math.max(primitiveBounds[maximumIndex], cornerComponents[axis]);
+			}
+		}
+	}
+
+	/**
+	 * Calculates the world space bounding box of a {@link Sphere}.
+	 *
+	 * @param primitive The index of the Sphere among the primitives of the {@link #instanceBvh}.
+	 * @param sphere The Sphere.
+	 * @return If the bounding box has changed.
+	 */
+	private boolean calculateSphereBounds(int primitive, Sphere sphere) {
+		float[] origin = sphere.getOrigin().getComponentsAsFloatArray();
+		float radius = sphere.getRadius();
+		boolean changed = false;
+
+		for(int axis = 0; axis < 3; axis++) {
+			float minimum = origin[axis] - radius;
+			float maximum = origin[axis] + radius;
+			changed |= primitiveBounds[primitive * 6 + axis] != minimum;
+			changed |= primitiveBounds[primitive * 6 + 3 + axis] != maximum;
+			primitiveBounds[primitive * 6 + axis] = minimum;
+			primitiveBounds[primitive * 6 + 3 + axis] = maximum;
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Builds the {@link #instanceBvh} over the {@link #primitiveBounds}.
+	 */
+	private void buildInstanceBvh() {
+		instanceBvh = instanceBuilder.build(primitiveBounds);
+		instanceBvhBuildSahCost = instanceBvh.getSahCost();
+	}
+
+	/**
+	 * @return
+	 * How many nodes are reserved for the {@link #instanceBvh} at the start of the nodes of the
+	 * BoundingVolumeHierarchy buffer. Is the maximum node count of a BoundingVolumeHierarchy over the primitives.
+	 */
+	private int getInstanceNodeCapacity() {
+		return Math.max(2 * changedPrimitives.length - 1, 1);
+	}
+
+	/**
+	 * @return
+	 * The position of the first node within the BoundingVolumeHierarchy buffer of the ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program in 32bit units.
+	 * The nodes start at the first 16 byte aligned position after the primitive indecis.
+	 */
+	public int getNodeOffset() {
+		int primitiveIndexCount = Math.max(changedPrimitives.length + triangleCount, primitiveIndexCapacity);
+		primitiveIndexCount = Math.max(primitiveIndexCount, 1);
+		return (primitiveIndexCount + 3) / 4 * 4;
+	}
+
+	/**
+	 * Determines how many 32bit units large the BoundingVolumeHierarchy buffer of the ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program needs to be.
+	 *
+	 * @return The size of the buffer in 32bit units.
+	 */
+	public int getBufferSize() {
+		return getNodeOffset() + (getInstanceNodeCapacity() + meshNodeCount) * BoundingVolumeHierarchy.NODE_SIZE;
+	}
+
+	/**
+	 * Creates the data of the BoundingVolumeHierarchy buffer of the ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 *
+	 * The buffer starts with the primitive indecis of the {@link #instanceBvh}, followed by the triangle indecis of
+	 * the {@link #meshBvhs}. The nodes of the instanceBvh start at the {@link #getNodeOffset node offset} and are
+	 * followed by the nodes of the meshBvhs.
+	 *
+	 * @return The data of the buffer.
+	 */
+	public float[] getBufferData() {
+		float[] bufferData = new float[getBufferSize()];
+		int primitiveCount = changedPrimitives.length;
+		int nodeOffset = getNodeOffset();
+		int nodeCapacity = getInstanceNodeCapacity();
+
+		instanceBvh.writePrimitiveIndecis(bufferData, 0, 0);
+		instanceBvh.writeNodes(bufferData, nodeOffset, 0, instanceBvh.getNodeCount(), 0, 0);
+
+		for(int i = 0; i < meshBvhs.size(); i++) {
+			BoundingVolumeHierarchy meshBvh = meshBvhs.get(i);
+			int primitiveIndexOffset = primitiveCount + meshTriangleOffsets[i];
+			int meshNodeOffset = nodeCapacity + meshNodeOffsets[i];
+
+			meshBvh.writePrimitiveIndecis(bufferData, primitiveIndexOffset, meshTriangleOffsets[i]);
+
+			meshBvh.writeNodes(
+				bufferData, nodeOffset + meshNodeOffset * BoundingVolumeHierarchy.NODE_SIZE,
+				0, meshBvh.getNodeCount(), meshNodeOffset, primitiveIndexOffset
+			);
+		}
+
+		return bufferData;
+	}
+
+	/**
+	 * @return
+	 * The primitive indecis of the {@link #instanceBvh}, which are stored at the start of the
+	 * BoundingVolumeHierarchy buffer.
+	 */
+	public float[] getInstancePrimitiveIndexData() {
+		float[] indexData = new float[changedPrimitives.length];
+		instanceBvh.writePrimitiveIndecis(indexData, 0, 0);
+		return indexData;
+	}
+
+	/**
+	 * Creates the data of a range of nodes of the {@link #instanceBvh}.
+	 * The range is stored at the {@link #getNodeOffset node offset} plus the range's first node multiplied by the
+	 * {@link BoundingVolumeHierarchy#NODE_SIZE} within the BoundingVolumeHierarchy buffer.
+	 *
+	 * @param firstNode The index of the first node of the range.
+	 * @param count How many nodes the range contains.
+	 * @return The data of the range of nodes.
+	 */
+	public float[] getInstanceNodeData(int firstNode, int count) {
+		float[] nodeData = new float[count * BoundingVolumeHierarchy.NODE_SIZE];
+		instanceBvh.writeNodes(nodeData, 0, firstNode, count, 0, 0);
+		return nodeData;
+	}
+
+	/**
+	 * Creates the data of one of the {@link #models} within the ModelInstances buffer of the ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 *
+	 * The data consists of the inverse model matrix, which transforms rays into object space, the normal matrix,
+	 * the index of the root node of the instance's mesh BoundingVolumeHierarchy and the texture index.
+	 *
+	 * @param modelIndex The index of the Model within the models.
+	 * @return The data of the instance.
+	 */
+	public float[] getInstanceData(int modelIndex) {
+		float[] instanceData = new float[INSTANCE_SIZE];
+		Model model = models.get(modelIndex);
+		float[] inverseModelMatrix = new Matrix4(modelMatrices.get(modelIndex)).inverse().getElementsAsArray();
+		float[] normalMatrix = model.getNormalMatrix().getElementsAsArray();
+		int rootNode = getInstanceNodeCapacity() + meshNodeOffsets[modelMeshIndecis[modelIndex]];
+
+		System.arraycopy(inverseModelMatrix, 0, instanceData, 0, 16);
+		System.arraycopy(normalMatrix, 0, instanceData, 16, 16);
+		instanceData[32] = Float.intBitsToFloat(rootNode);
+		instanceData[33] = Float.intBitsToFloat(modelTextureIndecis[modelIndex]);
+
+		return instanceData;
+	}
+
+	/**
+	 * @param modelIndex The index of a Model within the {@link #models}.
+	 * @return If the model matrix or texture index of the Model have changed during the last {@link #update}.
+	 */
+	public boolean isInstanceChanged(int modelIndex) {
+		return changedPrimitives[modelIndex];
+	}
+
+	/**
+	 * @return How many {@link Model} objects are instances of the {@link #meshes}.
+	 */
+	public int getModelCount() {
+		return models.size();
+	}
+
+	/**
+	 * See {@link #instanceBvh}.
+	 */
+	public BoundingVolumeHierarchy getInstanceBvh() {
+		return instanceBvh;
+	}
+
+	/**
+	 * See {@link #meshBvhs}.
+	 */
+	public ArrayList<BoundingVolumeHierarchy> getMeshBvhs() {
+		return meshBvhs;
+	}
+
+	/**
+	 * See {@link #primitiveIndexCapacity}. Changing the capacity makes the next {@link #update} return
+	 * {@link #UPDATE_ALL}, as the nodes are moved within the BoundingVolumeHierarchy buffer.
+	 */
+	public void setPrimitiveIndexCapacity(int primitiveIndexCapacity) {
+		if(this.primitiveIndexCapacity == primitiveIndexCapacity) return;
+		this.primitiveIndexCapacity = primitiveIndexCapacity;
+		primitiveIndexCapacityChanged = true;
+	}
+}
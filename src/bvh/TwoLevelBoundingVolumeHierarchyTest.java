@@ -0,0 +1,54 @@
+package bvh;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import cgi.Model;
+import cgi.Sphere;
+
+/**
+ * Provides tests for the {@link TwoLevelBoundingVolumeHierarchy#update} method.
+ *
+ * @author Tizian Kirchner
+ */
+class TwoLevelBoundingVolumeHierarchyTest {
+
+	@Test
+	void testUpdate() {
+		Model original = new Model("Sphere", Model.SHADING_SMOOTH);
+		Model instance = new Model(original);
+
+		ArrayList<Model> models = new ArrayList<>();
+		models.add(original);
+		models.add(instance);
+
+		ArrayList<Model> meshes = new ArrayList<>();
+		meshes.add(original);
+
+		ArrayList<Sphere> spheres = new ArrayList<>();
+		spheres.add(new Sphere(0, 0, -5, 1, 0, 0, 1, 0));
+
+		TwoLevelBoundingVolumeHierarchy bvh = new TwoLevelBoundingVolumeHierarchy();
+		assertEquals(TwoLevelBoundingVolumeHierarchy.UPDATE_ALL, bvh.update(meshes, models, spheres));
+		assertEquals(1, bvh.getMeshBvhs().size());
+		assertEquals(TwoLevelBoundingVolumeHierarchy.UPDATE_NONE, bvh.update(meshes, models, spheres));
+
+		// moving an instance only refits the top level
+		instance.getModelMatrix().translate(0, 10, 0);
+		int update = bvh.update(meshes, models, spheres);
+
+		assertTrue(
+			update == TwoLevelBoundingVolumeHierarchy.UPDATE_REFIT ||
+			update == TwoLevelBoundingVolumeHierarchy.UPDATE_INSTANCE_BVH
+		);
+
+		assertFalse(bvh.isInstanceChanged(0));
+		assertTrue(bvh.isInstanceChanged(1));
+		assertTrue(bvh.getInstanceBvh().getNodeBounds()[4] >= 10);
+	}
+}
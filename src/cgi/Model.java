@@ -78,6 +78,21 @@ public class Model {
 	 */
 	private Vector2[] uvCoordinates;
 	
+	/**
+	 * The {@link WavefrontObjectReader#getContentHash content hash} of the
+	 * <a href="https://en.wikipedia.org/wiki/Wavefront_.obj_file">.obj file</a> this {@link Model}'s
+	 * {@link #vertices} have been read from.
+	 */
+	private String objHash;
+	
+	/**
+	 * Stores which parts of this {@link Model} have changed since they have been sent to a ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 * Is a combination of {@link #DIRTY_INSTANCE} and {@link #DIRTY_VERTEX_COLORS}.
+	 * New Model objects are entirely dirty.
+	 */
+	private int dirtyFlags = DIRTY_INSTANCE | DIRTY_VERTEX_COLORS;
+	
 	/**
 	 * Using this value for the shadingType parameter of the
 	 * {@link #Model(String, Vector3[], int, boolean, boolean, int, int) constructor},
@@ -112,6 +127,16 @@ public class Model {
 	 */
 	public static final int SHADING_SMOOTH = 3;
 	
+	/**
+	 * Set within the {@link #dirtyFlags} when the {@link #modelMatrix} or {@link #textureIndex} is set.
+	 */
+	public static final int DIRTY_INSTANCE = 1;
+	
+	/**
+	 * Set within the {@link #dirtyFlags} when the {@link #vertexColors} are set.
+	 */
+	public static final int DIRTY_VERTEX_COLORS = 2;
+	
 	/**
 	 * Constructs a {@link Model} through an <a href="https://en.wikipedia.org/wiki/Wavefront_.obj_file">obj file</a>.
 	 * 
@@ -162,6 +187,8 @@ public class Model {
 			path, objVertexColors, objUvCoordinates, normalsFromObj
 		);
 		
+		objHash = objReader.getContentHash();
+		
 		// map vertices to triangles
 		Vector3[] unmappedVertices = objReader.getUnmappedVertices();
 		Vector3[] vertexReferenceTriangles = objReader.getVertexReferenceTriangles();
@@ -249,6 +276,53 @@ public class Model {
 		this(path, new Vector3[] {}, shadingType, false, true, -1, -1);
 	}
 	
+	/**
+	 * Constructs a {@link Model} as an instance of another Model.
+	 * 
+	 * The instance shares the {@link #vertices}, {@link #vertexColors}, {@link #vertexNormals},
+	 * {@link #triangleNormals} and {@link #uvCoordinates} of the original Model, but has its own
+	 * {@link #modelMatrix}, {@link #textureIndex} and {@link #materialIndex}.
+	 * Ray tracing <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> programs store the triangles
+	 * of Model objects sharing their mesh only once.
+	 * 
+	 * @param original The Model of which an instance is to be created.
+	 */
+	public Model(Model original) {
+		modelMatrix = new Matrix4(original.modelMatrix);
+		textureIndex = original.textureIndex;
+		materialIndex = original.materialIndex;
+		vertices = original.vertices;
+		vertexColors = original.vertexColors;
+		vertexNormals = original.vertexNormals;
+		triangleNormals = original.triangleNormals;
+		uvCoordinates = original.uvCoordinates;
+		objHash = original.objHash;
+	}
+	
+	/**
+	 * @param other The {@link Model} to compare this Model to.
+	 * 
+	 * @return
+	 * If this Model and the other Model share the same {@link #vertices}, {@link #vertexColors},
+	 * {@link #vertexNormals}, {@link #triangleNormals} and {@link #uvCoordinates}.
+	 */
+	public boolean sharesMesh(Model other) {
+		return (
+			vertices == other.vertices &&
+			vertexColors == other.vertexColors &&
+			vertexNormals == other.vertexNormals &&
+			triangleNormals == other.triangleNormals &&
+			uvCoordinates == other.uvCoordinates
+		);
+	}
+	
+	/**
+	 * See {@link #objHash}.
+	 */
+	public String getObjHash() {
+		return objHash;
+	}
+	
 	/**
 	 * See {@link #modelMatrix}.
 	 */
@@ -318,6 +392,7 @@ public class Model {
 	 */
 	public void setModelMatrix(Matrix4 matrix) {
 		this.modelMatrix = matrix;
+		dirtyFlags |= DIRTY_INSTANCE;
 	}
 	
 	/**
@@ -325,6 +400,7 @@ public class Model {
 	 */
 	public void setTextureIndex(int textureIndex) {
 		this.textureIndex = textureIndex;
+		dirtyFlags |= DIRTY_INSTANCE;
 	}
 	
 	/**
@@ -342,6 +418,7 @@ public class Model {
 	 */
 	public void setVertexColors(Vector3 color) {
 		vertexColors = Mapper.duplicateColorForVectorArray(vertices.length, color);
+		dirtyFlags |= DIRTY_VERTEX_COLORS;
 	}
 	
 	/**
@@ -353,5 +430,24 @@ public class Model {
 	 */
 	public void setVertexColors(float r, float g, float b) {
 		vertexColors = Mapper.duplicateColorForVectorArray(vertices.length, new Vector3(r, g, b));
+		dirtyFlags |= DIRTY_VERTEX_COLORS;
+	}
+	
+	/**
+	 * @param flags A combination of {@link #DIRTY_INSTANCE} and {@link #DIRTY_VERTEX_COLORS}.
+	 * @return If any of the given {@link #dirtyFlags} are set.
+	 */
+	public boolean isDirty(int flags) {
+		return (dirtyFlags & flags) != 0;
+	}
+	
+	/**
+	 * Clears {@link #dirtyFlags}, after the changed parts of this {@link Model} have been sent to a ray tracing
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 * 
+	 * @param flags A combination of {@link #DIRTY_INSTANCE} and {@link #DIRTY_VERTEX_COLORS}.
+	 */
+	public void clearDirtyFlags(int flags) {
+		dirtyFlags &= ~flags;
 	}
 }
\ No newline at end of file
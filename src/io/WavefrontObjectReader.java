@@ -1,12 +1,15 @@
 package io;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 
 import math.vector.Vector2;
 import math.vector.Vector3;
+import util.HashCalculator;
 
 /**
  * Provides data from a <a href="https://en.wikipedia.org/wiki/Wavefront_.obj_file">Wavefront .obj file</a>.
@@ -57,6 +60,13 @@ public class WavefrontObjectReader {
 	 */
 	Vector3[] normalReferenceTriangles;
 	
+	/**
+	 * The {@link HashCalculator#calculateHash(byte[]) hash} of the
+	 * <a href="https://en.wikipedia.org/wiki/Wavefront_.obj_file">.obj file</a>'s bytes.
+	 * Changes whenever the content of the .obj file changes.
+	 */
+	String contentHash;
+	
     /**
      * Stores data from an <a href="https://en.wikipedia.org/wiki/Wavefront_.obj_file">.obj file</a>
      * within this object's fields.
@@ -89,7 +99,11 @@ public class WavefrontObjectReader {
 		ArrayList<Vector3> unmappedNormalList = new ArrayList<>();
 		ArrayList<Vector3> normalReferenceTriangleList = new ArrayList<>();
 		
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(getClass().getResourceAsStream(path)))) {
+        try (InputStream objStream = getClass().getResourceAsStream(path)) {
+        	byte[] objBytes = objStream.readAllBytes();
+        	contentHash = HashCalculator.calculateHash(objBytes);
+        	BufferedReader br = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(objBytes)));
+        	
         	// save object data in lists
         	String line;
             
@@ -209,6 +223,36 @@ public class WavefrontObjectReader {
         }
 	}
 	
+	/**
+	 * Counts the triangles of an <a href="https://en.wikipedia.org/wiki/Wavefront_.obj_file">.obj file</a>
+	 * without storing its data.
+	 * 
+	 * @param path
+	 * The path to the .obj file without the .obj file extension in the String.
+	 * The path uses "/res/objects/" as the root folder.
+	 * 
+	 * @return The number of faces of the .obj file, each of which is a triangle.
+	 */
+	public static int countTriangles(String path) {
+		path = "/res/objects/" + path + ".obj";
+		int triangleCount = 0;
+		
+		try (
+			InputStream objStream = WavefrontObjectReader.class.getResourceAsStream(path);
+			BufferedReader br = new BufferedReader(new InputStreamReader(objStream))
+		) {
+			String line;
+			
+			while ((line = br.readLine()) != null) {
+				if (line.startsWith("f ")) triangleCount++;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		
+		return triangleCount;
+	}
+	
 	/**
 	 * See {@link WavefrontObjectReader#unmappedVertices}.
 	 */
@@ -257,4 +301,11 @@ public class WavefrontObjectReader {
 	public Vector3[] getNormalReferenceTriangles() {
 		return normalReferenceTriangles;
 	}
+	
+	/**
+	 * See {@link WavefrontObjectReader#contentHash}.
+	 */
+	public String getContentHash() {
+		return contentHash;
+	}
 }
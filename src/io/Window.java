@@ -86,20 +86,9 @@ public class Window {
 	 * Creates a GLFW window and stores a reference to this window in the {@link #glfwWindow} field.
 	 */
 	public static void open() {
-		GLFWErrorCallback.createPrint(System.err).set(); // print errors to syserr
-		if (!glfwInit()) throw new IllegalStateException("Unable to initialize GLFW");
-
-		glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE); // the window will stay hidden after creation
-		glfwWindowHint(GLFW_RESIZABLE, GLFW_FALSE); // the window will NOT be resizable
-
-		glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 4); // otherwise macos only supports OpenGL 2
-		glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
-		glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
-		glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
-		
-		vidMode = glfwGetVideoMode(glfwGetPrimaryMonitor()); // get desktop resolution
-		width = vidMode.width();
-		height = vidMode.height();
+		initGlfw();
+		int width = vidMode.width();
+		int height = vidMode.height();
 		
 		// calculate the width and height of a 16:9 window that will fit onto the desktop 
 		if(width > height) {
@@ -110,6 +99,56 @@ public class Window {
 			height = (int) Math.round(width * (9.0 / 16.0));
 		}
 		
+		createWindow(width, height, true);
+	}
+	
+	/**
+	 * Creates a GLFW window with a fixed size, which is never shown, and stores a reference to this window in the
+	 * {@link #glfwWindow} field. The images rendered to the window's back buffer can be read, without the window
+	 * appearing on the desktop.
+	 * 
+	 * @param width The width of the GLFW window and its viewport.
+	 * @param height The height of the GLFW window and its viewport.
+	 */
+	public static void openHidden(int width, int height) {
+		initGlfw();
+		createWindow(width, height, false);
+	}
+	
+	/**
+	 * Initializes GLFW, sets the window hints shared by all windows and stores the {@link #vidMode}.
+	 */
+	private static void initGlfw() {
+		GLFWErrorCallback.createPrint(System.err).set(); // print errors to syserr
+		if (!glfwInit()) throw new IllegalStateException("Unable to initialize GLFW");
+
+		glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE); // the window will stay hidden after creation
+		glfwWindowHint(GLFW_RESIZABLE, GLFW_FALSE); // the window will NOT be resizable
+		setContextHints();
+		
+		vidMode = glfwGetVideoMode(glfwGetPrimaryMonitor()); // get desktop resolution
+	}
+	
+	/**
+	 * Sets the window hints, which make GLFW create an OpenGL 4.3 core profile context.
+	 */
+	private static void setContextHints() {
+		glfwWindowHint(GLFW_CONTEXT_VERSION_MAJOR, 4); // otherwise macos only supports OpenGL 2
+		glfwWindowHint(GLFW_CONTEXT_VERSION_MINOR, 3);
+		glfwWindowHint(GLFW_OPENGL_PROFILE, GLFW_OPENGL_CORE_PROFILE);
+		glfwWindowHint(GLFW_OPENGL_FORWARD_COMPAT, GLFW_TRUE);
+	}
+	
+	/**
+	 * Creates the GLFW window, makes its OpenGL context current and configures its input.
+	 * 
+	 * @param width See {@link #width}.
+	 * @param height See {@link #height}.
+	 * @param visible Determines if the window is shown after its creation.
+	 */
+	private static void createWindow(int width, int height, boolean visible) {
+		Window.width = width;
+		Window.height = height;
 		viewportWidth = width;
 		viewportHeight = height;
 		
@@ -122,7 +161,7 @@ public class Window {
 
 		// use v-sync settings of the frame limiter
 		glfwSwapInterval(FrameLimiter.getSwapInterval());
-		glfwShowWindow(window);
+		if(visible) glfwShowWindow(window);
 		
 		// configure input
 		glfwSetKeyCallback(window, new io.KeyboardInput());
@@ -133,6 +172,26 @@ public class Window {
 		Window.glfwWindow = window;
 	}
 	
+	/**
+	 * Creates a hidden GLFW window, of which the OpenGL context shares its objects with the context of the
+	 * {@link #glfwWindow}. The context can be made current on another thread to create OpenGL objects in the
+	 * background. Has to be called on the main thread.
+	 * 
+	 * @return A reference to the hidden GLFW window.
+	 */
+	public static long createSharedContext() {
+		glfwWindowHint(GLFW_VISIBLE, GLFW_FALSE);
+		setContextHints();
+		
+		long window = glfwCreateWindow(1, 1, "OpenGL-Realtime-RT", NULL, glfwWindow);
+		
+		// windows created later on are visible and do not inherit the hints of the hidden window
+		glfwDefaultWindowHints();
+		
+		if (window == NULL) throw new RuntimeException("Failed to create the shared GLFW window");
+		return window;
+	}
+	
 	/**
 	 * Closes the GLFW window.
 	 * 
@@ -196,6 +255,16 @@ public class Window {
 		return new int[] {viewportWidth, viewportHeight};
 	}
 	
+	/**
+	 * @return
+	 * If a GLFW window has been opened, so that OpenGL can be used through its context. Without a context, the
+	 * scenes can still be loaded and traced by the {@link render.cpu.CpuRayTracer}, but no OpenGL objects are
+	 * created and no data is sent to OpenGL.
+	 */
+	public static boolean hasContext() {
+		return glfwWindow != 0;
+	}
+	
 	/**
 	 * See {@link #vidMode}.
 	 */
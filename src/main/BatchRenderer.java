@@ -0,0 +1,283 @@
+package main;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL30.GL_FRAMEBUFFER;
+import static org.lwjgl.opengl.GL30.glBindFramebuffer;
+import static shader.ShaderProgramStorage.PROGRAM_RAY_TRACING;
+import static shader.ShaderProgramStorage.RAY_TRACING_VARIANTS;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GL;
+
+import io.Window;
+import render.RayTracer;
+import render.cpu.CpuRayTracer;
+import render.TextureRenderer;
+import scene.SceneCollectionStorage;
+import shader.BackgroundShaderCompiler;
+import util.Camera;
+import util.ResolutionScaler;
+
+/**
+ * Renders a {@link scene.Scene Scene} of the {@link SceneCollectionStorage} for a fixed number of frames and
+ * writes the frames to numbered image files, without showing a window.
+ *
+ * The frames are rendered to the back buffer of a hidden GLFW window, as the scenes need an OpenGL context to
+ * load their objects. Each frame simulates the same amount of time, regardless of how long it took to render.
+ * The frames are encoded and written by a pool of writer threads, so that writing a frame overlaps rendering
+ * the next frames.
+ *
+ * @author Tizian Kirchner
+ */
+public class BatchRenderer {
+	/**
+	 * The frames are written as PNG images.
+	 */
+	public static final int FORMAT_PNG = 0;
+
+	/**
+	 * The frames are written as raw RGB images, with one byte per color channel and the top row first.
+	 */
+	public static final int FORMAT_RGB = 1;
+
+	/**
+	 * How many frames can wait for a writer thread per writer thread. When more frames are waiting, the frame is
+	 * written by the rendering thread, so that the waiting frames can not exceed the main memory.
+	 */
+	private static final int QUEUED_FRAMES_PER_WRITER = 2;
+
+	/**
+	 * Renders a scene as described by the command line arguments:
+	 * {@code --batch <scene> <frames> <timestep> <width> <height> [png|rgb] [output folder]}.
+	 * Exits with status 1 if a frame could not be written.
+	 *
+	 * @param args
+	 * The name of the scene, see {@link SceneCollectionStorage#goToScene}, how many frames are rendered,
+	 * how many seconds are simulated between two frames, the resolution of the frames, the format of the frames
+	 * and the folder the frames are written to. The format defaults to png and the folder to "frames".
+	 * The first argument is the "--batch" flag.
+	 */
+	public static void run(String[] args) {
+		if(args.length < 6) {
+			throw new IllegalArgumentException(
+				"Usage: --batch <scene> <frames> <timestep> <width> <height> [png|rgb] [output folder]"
+			);
+		}
+
+		String sceneName = args[1];
+		int frameCount = Integer.parseInt(args[2]);
+		float timestep = Float.parseFloat(args[3]);
+		int width = Integer.parseInt(args[4]);
+		int height = Integer.parseInt(args[5]);
+		String formatName = args.length > 6 ? args[6] : "png";
+		File outputFolder = new File(args.length > 7 ? args[7] : "frames");
+
+		int format = switch(formatName) {
+			case "png" -> FORMAT_PNG;
+			case "rgb" -> FORMAT_RGB;
+			default -> throw new IllegalArgumentException("Unknown frame format: " + formatName);
+		};
+
+		if(!render(sceneName, frameCount, timestep, width, height, format, outputFolder)) System.exit(1);
+	}
+
+	/**
+	 * Opens a hidden GLFW window, renders the frames of a scene and writes them to an output folder.
+	 * The frames are named after the scene and numbered starting at 0, like "MirrorRoomScene_00000.png".
+	 *
+	 * @param sceneName The name of the scene, see {@link SceneCollectionStorage#goToScene}.
+	 * @param frameCount How many frames are rendered.
+	 * @param timestep How many seconds are simulated between two frames.
+	 * @param width The width of the frames.
+	 * @param height The height of the frames.
+	 * @param format {@link #FORMAT_PNG} or {@link #FORMAT_RGB}.
+	 * @param outputFolder The folder the frames are written to, which is created if it does not exist.
+	 *
+	 * @return If all frames have been written.
+	 */
+	public static boolean render(
+		String sceneName, int frameCount, float timestep, int width, int height, int format, File outputFolder
+	) {
+		if(!outputFolder.isDirectory() && !outputFolder.mkdirs()) {
+			throw new RuntimeException("Unable to create output folder: " + outputFolder);
+		}
+
+		init(width, height);
+
+		if(!SceneCollectionStorage.goToScene(sceneName)) {
+			throw new IllegalArgumentException("Unknown scene: " + sceneName);
+		}
+
+		int writerCount = Math.max(Runtime.getRuntime().availableProcessors() / 2, 1);
+		ThreadPoolExecutor writers = new ThreadPoolExecutor(
+			writerCount, writerCount, 0, TimeUnit.SECONDS,
+			new ArrayBlockingQueue<>(writerCount * QUEUED_FRAMES_PER_WRITER), new ThreadPoolExecutor.CallerRunsPolicy()
+		);
+
+		ByteBuffer pixelBuffer = BufferUtils.createByteBuffer(width * height * 3);
+		String extension = format == FORMAT_PNG ? "png" : "rgb";
+		String fileName = sceneName.replace('#', '_');
+		AtomicInteger failedFrames = new AtomicInteger();
+		long startTime = System.nanoTime();
+
+		try {
+			for(int frame = 0; frame < frameCount; frame++) {
+				if(frame > 0) SceneCollectionStorage.update(timestep);
+				SceneCollectionStorage.render();
+
+				byte[] pixels = readPixels(pixelBuffer, width, height);
+				File file = new File(outputFolder, String.format("%s_%05d.%s", fileName, frame, extension));
+				writers.execute(() -> {
+					if(!writeFrame(file, pixels, width, height, format)) failedFrames.incrementAndGet();
+				});
+			}
+		} finally {
+			writers.shutdown();
+
+			try {
+				writers.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			close();
+		}
+
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		System.out.printf("Rendered %d frames in %.2f seconds to %s%n", frameCount, seconds, outputFolder);
+
+		if(failedFrames.get() > 0) {
+			System.err.printf("Unable to write %d of %d frames to %s%n", failedFrames.get(), frameCount, outputFolder);
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Opens a hidden GLFW window with an OpenGL context and initializes the classes required for rendering the
+	 * scenes of the {@link SceneCollectionStorage}.
+	 *
+	 * Dynamic resolution scaling and the background compilation of shader programs are turned off, so that each
+	 * frame is rendered at the full resolution by the shader program required by the scene.
+	 *
+	 * @param width The width of the frames.
+	 * @param height The height of the frames.
+	 */
+	static void init(int width, int height) {
+		// initialize OpenGL
+		Window.openHidden(width, height);
+		GL.createCapabilities();
+		glEnable(GL_CULL_FACE);
+		glClearColor(0, 0, 0, 1);
+
+		if(ResolutionScaler.isDynamicResolutionScaling()) ResolutionScaler.toogleDynamicResolutionScaling();
+		PROGRAM_RAY_TRACING.setUsingBackgroundCompilation(false);
+
+		// initialize classes
+		Camera.init();
+		RayTracer.init();
+		TextureRenderer.init();
+		SceneCollectionStorage.init();
+	}
+
+	/**
+	 * Initializes the classes required for loading the scenes of the {@link SceneCollectionStorage} without opening
+	 * a GLFW window, so that the scenes can be traced by the {@link CpuRayTracer} on machines without a graphics
+	 * card. No OpenGL objects are created and no shader programs are compiled. See {@link Window#hasContext}.
+	 */
+	static void initWithoutContext() {
+		if(ResolutionScaler.isDynamicResolutionScaling()) ResolutionScaler.toogleDynamicResolutionScaling();
+
+		Camera.init();
+		SceneCollectionStorage.init();
+	}
+
+	/**
+	 * Deletes the registered shader program variants and closes the GLFW window opened by {@link #init}, if it has
+	 * been opened.
+	 */
+	static void close() {
+		if(!Window.hasContext()) return;
+
+		BackgroundShaderCompiler.close();
+		RAY_TRACING_VARIANTS.clear();
+		Window.close();
+	}
+
+	/**
+	 * Waits until the current frame has been rendered and reads it from the back buffer of the GLFW window.
+	 *
+	 * @param pixelBuffer The buffer the pixels are read into, which holds three bytes per pixel.
+	 * @param width The width of the frame.
+	 * @param height The height of the frame.
+	 * @return The red, green and blue byte of each pixel, with the bottom row first.
+	 */
+	static byte[] readPixels(ByteBuffer pixelBuffer, int width, int height) {
+		glBindFramebuffer(GL_FRAMEBUFFER, 0);
+		glReadBuffer(GL_BACK);
+		glPixelStorei(GL_PACK_ALIGNMENT, 1);
+		glReadPixels(0, 0, width, height, GL_RGB, GL_UNSIGNED_BYTE, pixelBuffer);
+
+		byte[] pixels = new byte[width * height * 3];
+		pixelBuffer.get(0, pixels);
+		return pixels;
+	}
+
+	/**
+	 * Encodes a frame and writes it to a file. Called by the writer threads.
+	 *
+	 * @param file The file the frame is written to.
+	 * @param pixels The red, green and blue byte of each pixel, with the bottom row first.
+	 * @param width The width of the frame.
+	 * @param height The height of the frame.
+	 * @param format {@link #FORMAT_PNG} or {@link #FORMAT_RGB}.
+	 *
+	 * @return If the frame has been written.
+	 */
+	private static boolean writeFrame(File file, byte[] pixels, int width, int height, int format) {
+		try {
+			if(format == FORMAT_PNG) {
+				BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+
+				for(int y = 0; y < height; y++) {
+					for(int x = 0; x < width; x++) {
+						int index = ((height - 1 - y) * width + x) * 3;
+						int red = pixels[index] & 0xff;
+						int green = pixels[index + 1] & 0xff;
+						int blue = pixels[index + 2] & 0xff;
+						image.setRGB(x, y, red << 16 | green << 8 | blue);
+					}
+				}
+
+				if(!ImageIO.write(image, "png", file)) throw new IOException("No PNG writer available");
+			} else {
+				try(OutputStream stream = new BufferedOutputStream(new FileOutputStream(file))) {
+					// OpenGL stores the bottom row first, image files the top row
+					for(int y = height - 1; y >= 0; y--) {
+						stream.write(pixels, y * width * 3, width * 3);
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("Unable to write " + file + ": " + e.getMessage());
+			return false;
+		}
+
+		return true;
+	}
+}
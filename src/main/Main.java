@@ -2,6 +2,7 @@ package main;
 
 import static org.lwjgl.glfw.GLFW.*;
 import static org.lwjgl.opengl.GL11.*;
+import static shader.ShaderProgramStorage.RAY_TRACING_VARIANTS;
 
 import org.lwjgl.Version;
 import org.lwjgl.opengl.GL;
@@ -14,6 +15,7 @@ import render.RayTracer;
 import render.TextRenderer;
 import render.TextureRenderer;
 import scene.SceneCollectionStorage;
+import shader.BackgroundShaderCompiler;
 import util.Camera;
 import util.FrameCounter;
 import util.FrameLimiter;
@@ -59,13 +61,20 @@ public class Main {
 	 * 
 	 * The {@link Camera} viewing the 3D scene can be controlled through keyboard and mouse input.
 	 * 
-	 * @param args This program takes no argument.
+	 * If the first argument is "--batch", a scene is rendered offline by the {@link BatchRenderer} instead.
+	 * 
+	 * @param args Empty or the arguments of {@link BatchRenderer#run}.
 	 * 
 	 * @see KeyboardInput
 	 * @see MouseButtonInput
 	 * @see MouseMovementInput
 	 */
 	public static void main(String[] args) {
+		if(args.length > 0 && args[0].equals("--batch")) {
+			BatchRenderer.run(args);
+			return;
+		}
+		
 		// open GLFW window
 		Window.open();
 		System.out.println("LWJGL " + Version.getVersion());
@@ -157,6 +166,8 @@ public class Main {
 				e.printStackTrace();
 		}}
 		
+		BackgroundShaderCompiler.close();
+		RAY_TRACING_VARIANTS.clear();
 		Window.close();
 	}
 }
@@ -0,0 +1,423 @@
+package main;
+
+import static shader.ShaderProgramStorage.PROGRAM_RAY_TRACING;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Properties;
+
+import javax.imageio.ImageIO;
+
+import org.lwjgl.BufferUtils;
+
+import render.cpu.CpuRayTracer;
+import render.cpu.CpuScene;
+import scene.RayTracingScene;
+import scene.Scene;
+import scene.SceneCollection;
+import scene.SceneCollectionStorage;
+import settings.RenderSettings;
+import util.Camera;
+
+/**
+ * Renders every {@link Scene} of the {@link SceneCollectionStorage} at fixed camera poses, compares the frames to
+ * stored golden images and writes the render time of each scene to a report, so that changes to the renderer,
+ * which change pixels or exceed a scene's time budget, are noticed.
+ *
+ * The frames are either traced by the {@link CpuRayTracer}, which only renders {@link RayTracingScene} objects,
+ * or rendered by the GPU, for example by Mesa's llvmpipe driver on machines without a graphics card.
+ * Only the GPU mode creates an OpenGL context, through {@link BatchRenderer#init}, so that the CPU mode also runs on
+ * machines without any OpenGL driver. The CPU mode only renders the first variant of each scene, like
+ * "MirrorRoomScene", as the other variants only differ in how the GPU traces the rays.
+ * The golden images of both modes are stored in separate folders, as the CPU path does not render a sky dome.
+ *
+ * A scene without golden images fails, unless the harness is run with "--update", which replaces the golden images
+ * by the rendered frames. The time budgets are read from "golden/budgets.properties", which maps the name of a
+ * scene and mode, like "MirrorRoomScene#2.cpu", to its budget in milliseconds. Scenes without a budget are only
+ * checked for changed pixels.
+ *
+ * @author Tizian Kirchner
+ */
+public class RegressionHarness {
+	public static final int MODE_CPU = 0;
+	public static final int MODE_GPU = 1;
+
+	/**
+	 * The resolution of the frames. The frames are 16:9, like the frustum of the {@link Camera}.
+	 */
+	private static final int WIDTH = 320;
+	private static final int HEIGHT = 180;
+
+	/**
+	 * The rotations around the y axis in degrees, which are applied to the camera after it has been reset by the
+	 * scene. Each rotation is one camera pose.
+	 */
+	private static final float[] POSE_ROTATIONS = {0, 30, -30};
+
+	/**
+	 * By how much a color component of a pixel may differ from the golden image, before the pixel counts as
+	 * changed.
+	 */
+	private static final int PIXEL_TOLERANCE = 2;
+
+	/**
+	 * How many times each pose is rendered before being measured, so that the measured frames use compiled code
+	 * and uploaded buffers.
+	 */
+	private static final int WARMUP_RUNS = 1;
+
+	/**
+	 * How many times each pose is measured. The fastest run is reported, as it is the least disturbed by other
+	 * processes.
+	 */
+	private static final int MEASURED_RUNS = 3;
+
+	/**
+	 * The folder the golden images, budgets and reports are stored in.
+	 */
+	private static final File GOLDEN_FOLDER = new File("golden");
+
+	/**
+	 * The buffer the frames rendered by the GPU are read into.
+	 */
+	private static ByteBuffer pixelBuffer;
+
+	/**
+	 * Runs the harness and exits with status 1 if a scene changed pixels, has no golden images or exceeded its
+	 * budget.
+	 *
+	 * @param args
+	 * "cpu" or "gpu" to choose the mode, which defaults to cpu, and "--update" to replace the golden images by the
+	 * rendered frames.
+	 */
+	public static void main(String[] args) {
+		int mode = MODE_CPU;
+		boolean updating = false;
+
+		for(String arg : args) {
+			switch(arg) {
+				case "cpu" -> mode = MODE_CPU;
+				case "gpu" -> mode = MODE_GPU;
+				case "--update" -> updating = true;
+				default -> throw new IllegalArgumentException("Usage: RegressionHarness [cpu|gpu] [--update]");
+			}
+		}
+
+		if(mode == MODE_GPU) {
+			BatchRenderer.init(WIDTH, HEIGHT);
+		} else {
+			BatchRenderer.initWithoutContext();
+		}
+
+		boolean passed;
+
+		try {
+			passed = run(mode, updating);
+		} finally {
+			BatchRenderer.close();
+		}
+
+		if(!passed) System.exit(1);
+	}
+
+	/**
+	 * Renders, compares and measures every scene and writes the report to "golden/&lt;mode&gt;/report.json".
+	 *
+	 * @param mode {@link #MODE_CPU} or {@link #MODE_GPU}.
+	 * @param updating Determines if the golden images are replaced by the rendered frames.
+	 * @return If no scene changed pixels, has no golden images or exceeded its budget.
+	 */
+	private static boolean run(int mode, boolean updating) {
+		String modeName = mode == MODE_CPU ? "cpu" : "gpu";
+		File modeFolder = new File(GOLDEN_FOLDER, modeName);
+		if(!modeFolder.isDirectory() && !modeFolder.mkdirs()) {
+			throw new RuntimeException("Unable to create golden image folder: " + modeFolder);
+		}
+
+		Properties budgets = loadBudgets();
+		CpuScene cpuScene = new CpuScene();
+		CpuRayTracer cpuRayTracer = new CpuRayTracer();
+		ArrayList<String> entries = new ArrayList<>();
+		boolean passed = true;
+
+		for(String sceneName : getSceneNames()) {
+			if(mode == MODE_CPU && sceneName.contains("#")) {
+				entries.add(String.format("{\"name\": \"%s\", \"status\": \"skipped\"}", sceneName));
+				continue;
+			}
+
+			if(!SceneCollectionStorage.goToScene(sceneName)) {
+				throw new IllegalStateException("Unable to go to scene: " + sceneName);
+			}
+
+			Scene scene = SceneCollectionStorage.getCurrentScene();
+			String fileName = sceneName.replace('#', '_');
+
+			if(mode == MODE_CPU && !(scene instanceof RayTracingScene)) {
+				entries.add(String.format("{\"name\": \"%s\", \"status\": \"skipped\"}", sceneName));
+				continue;
+			}
+
+			double[] renderMillis = new double[POSE_ROTATIONS.length];
+			int differingPixels = 0;
+			int maxDifference = 0;
+			boolean missingGolden = false;
+
+			for(int pose = 0; pose < POSE_ROTATIONS.length; pose++) {
+				scene.resetCamera();
+				Camera.rotateY(POSE_ROTATIONS[pose]);
+
+				int[] pixels = null;
+				renderMillis[pose] = Double.MAX_VALUE;
+
+				for(int run = 0; run < WARMUP_RUNS + MEASURED_RUNS; run++) {
+					long startTime = System.nanoTime();
+					pixels = mode == MODE_CPU ? renderCpu(scene, cpuScene, cpuRayTracer) : renderGpu();
+					double millis = (System.nanoTime() - startTime) / 1e6;
+					if(run >= WARMUP_RUNS) renderMillis[pose] = Math.min(renderMillis[pose], millis);
+				}
+
+				File goldenFile = new File(modeFolder, fileName + "_pose" + pose + ".png");
+				int[] goldenPixels = updating ? null : readImage(goldenFile);
+
+				if(updating) {
+					writeImage(goldenFile, pixels);
+				} else if(goldenPixels == null) {
+					missingGolden = true;
+				} else {
+					int[] difference = compare(pixels, goldenPixels, PIXEL_TOLERANCE);
+					differingPixels += difference[0];
+					maxDifference = Math.max(maxDifference, difference[1]);
+
+					// keep the changed frame next to the golden image for inspection
+					if(difference[0] > 0) {
+						writeImage(new File(modeFolder, fileName + "_pose" + pose + "_actual.png"), pixels);
+					}
+				}
+			}
+
+			double totalMillis = 0;
+			for(double millis : renderMillis) totalMillis += millis;
+
+			String budget = budgets.getProperty(sceneName + "." + modeName);
+			boolean pixelsPassed = differingPixels == 0;
+			boolean timePassed = budget == null || totalMillis <= Double.parseDouble(budget);
+			passed &= !missingGolden && pixelsPassed && timePassed;
+
+			String status = "pass";
+			if(updating) status = "updated";
+			if(!timePassed) status = "over budget";
+			if(!pixelsPassed) status = "changed pixels";
+			if(missingGolden) status = "missing golden";
+
+			System.out.printf(Locale.ROOT, "%-24s %-16s %10.2f ms%n", sceneName, status, totalMillis);
+
+			entries.add(String.format(
+				Locale.ROOT,
+				"{\"name\": \"%s\", \"status\": \"%s\", \"renderMillis\": %s, \"totalMillis\": %.3f, " +
+				"\"budgetMillis\": %s, \"differingPixels\": %d, \"maxDifference\": %d}",
+				sceneName, status, toJson(renderMillis), totalMillis, budget == null ? "null" : budget,
+				differingPixels, maxDifference
+			));
+		}
+
+		writeReport(new File(modeFolder, "report.json"), modeName, entries);
+		return passed;
+	}
+
+	/**
+	 * @return
+	 * The names of all scenes of the {@link SceneCollectionStorage} in order,
+	 * see {@link SceneCollectionStorage#goToScene}.
+	 */
+	private static ArrayList<String> getSceneNames() {
+		ArrayList<String> sceneNames = new ArrayList<>();
+		HashMap<String, Integer> variantCounts = new HashMap<>();
+
+		for(SceneCollection sceneCollection : SceneCollectionStorage.getSceneCollections()) {
+			for(Scene scene : sceneCollection.getScenes()) {
+				String className = scene.getClass().getSimpleName();
+				int variant = variantCounts.merge(className, 1, Integer::sum);
+				sceneNames.add(variant == 1 ? className : className + "#" + variant);
+			}
+		}
+
+		return sceneNames;
+	}
+
+	/**
+	 * Traces a frame of the current scene with the {@link CpuRayTracer}. The lights are rendered as spheres,
+	 * if the scene forces them to be rendered, like the scene does for the GPU.
+	 *
+	 * @param scene The current scene.
+	 * @param cpuScene The copy of the scene's objects.
+	 * @param cpuRayTracer The CPU ray tracer.
+	 * @return The pixels of the frame, see {@link CpuRayTracer#render}.
+	 */
+	private static int[] renderCpu(Scene scene, CpuScene cpuScene, CpuRayTracer cpuRayTracer) {
+		scene.checkLoad();
+		cpuScene.update();
+
+		boolean togglingLightRendering = scene.isForcingLightRendering() && !RenderSettings.isLightRendering();
+		if(togglingLightRendering) RenderSettings.toogleLightRendering();
+
+		try {
+			return cpuRayTracer.render(cpuScene, PROGRAM_RAY_TRACING.getRayTracingSettings(), WIDTH, HEIGHT);
+		} finally {
+			if(togglingLightRendering) RenderSettings.toogleLightRendering();
+		}
+	}
+
+	/**
+	 * Renders a frame of the current scene on the GPU and reads it back.
+	 *
+	 * @return The pixels of the frame as 0xRRGGBB, row by row from the top of the frame to the bottom.
+	 */
+	private static int[] renderGpu() {
+		if(pixelBuffer == null) pixelBuffer = BufferUtils.createByteBuffer(WIDTH * HEIGHT * 3);
+
+		SceneCollectionStorage.render();
+		byte[] bytes = BatchRenderer.readPixels(pixelBuffer, WIDTH, HEIGHT);
+		int[] pixels = new int[WIDTH * HEIGHT];
+
+		for(int y = 0; y < HEIGHT; y++) {
+			for(int x = 0; x < WIDTH; x++) {
+				// OpenGL stores the bottom row first
+				int index = ((HEIGHT - 1 - y) * WIDTH + x) * 3;
+				int red = bytes[index] & 0xff;
+				int green = bytes[index + 1] & 0xff;
+				int blue = bytes[index + 2] & 0xff;
+				pixels[y * WIDTH + x] = red << 16 | green << 8 | blue;
+			}
+		}
+
+		return pixels;
+	}
+
+	/**
+	 * Compares two frames pixel by pixel.
+	 *
+	 * @param pixels The pixels of the rendered frame as 0xRRGGBB.
+	 * @param goldenPixels The pixels of the golden image as 0xRRGGBB.
+	 * @param tolerance By how much a color component may differ, before the pixel counts as changed.
+	 * @return
+	 * How many pixels changed and the largest difference of a color component. If the frames differ in size,
+	 * every pixel counts as changed.
+	 */
+	static int[] compare(int[] pixels, int[] goldenPixels, int tolerance) {
+		if(pixels.length != goldenPixels.length) return new int[] {pixels.length, 255};
+
+		int differingPixels = 0;
+		int maxDifference = 0;
+
+		for(int i = 0; i < pixels.length; i++) {
+			int pixelDifference = 0;
+
+			for(int shift = 0; shift <= 16; shift += 8) {
+				int difference = Math.abs((pixels[i] >> shift & 0xff) - (goldenPixels[i] >> shift & 0xff));
+				pixelDifference = Math.max(pixelDifference, difference);
+			}
+
+			if(pixelDifference > tolerance) differingPixels++;
+			maxDifference = Math.max(maxDifference, pixelDifference);
+		}
+
+		return new int[] {differingPixels, maxDifference};
+	}
+
+	/**
+	 * @return The time budgets read from "golden/budgets.properties".
+	 */
+	private static Properties loadBudgets() {
+		Properties budgets = new Properties();
+		File file = new File(GOLDEN_FOLDER, "budgets.properties");
+		if(!file.isFile()) throw new RuntimeException("Missing time budgets: " + file);
+
+		try(InputStream stream = new FileInputStream(file)) {
+			budgets.load(stream);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read time budgets: ", e);
+		}
+
+		return budgets;
+	}
+
+	/**
+	 * @param file The image file.
+	 * @return The pixels of the image as 0xRRGGBB, null if the file does not exist.
+	 */
+	private static int[] readImage(File file) {
+		if(!file.isFile()) return null;
+
+		try {
+			BufferedImage image = ImageIO.read(file);
+			return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to read golden image: ", e);
+		}
+	}
+
+	/**
+	 * @param file The PNG file the frame is written to.
+	 * @param pixels The pixels of the frame as 0xRRGGBB.
+	 */
+	private static void writeImage(File file, int[] pixels) {
+		BufferedImage image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+		image.setRGB(0, 0, WIDTH, HEIGHT, pixels, 0, WIDTH);
+
+		try {
+			ImageIO.write(image, "png", file);
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write image: ", e);
+		}
+	}
+
+	/**
+	 * @param values The values of a JSON array.
+	 * @return The JSON array.
+	 */
+	private static String toJson(double[] values) {
+		StringBuilder json = new StringBuilder("[");
+
+		for(int i = 0; i < values.length; i++) {
+			if(i > 0) json.append(", ");
+			json.append(String.format(Locale.ROOT, "%.3f", values[i]));
+		}
+
+		return json.append("]").toString();
+	}
+
+	/**
+	 * Writes the report, which lists the results of each scene.
+	 *
+	 * @param file The JSON file the report is written to.
+	 * @param modeName "cpu" or "gpu".
+	 * @param entries The JSON object of each scene.
+	 */
+	private static void writeReport(File file, String modeName, ArrayList<String> entries) {
+		try(PrintWriter writer = new PrintWriter(file, "UTF-8")) {
+			writer.println("{");
+			writer.printf("  \"mode\": \"%s\",%n", modeName);
+			writer.printf("  \"width\": %d,%n  \"height\": %d,%n", WIDTH, HEIGHT);
+			writer.printf("  \"tolerance\": %d,%n", PIXEL_TOLERANCE);
+			writer.println("  \"scenes\": [");
+
+			for(int i = 0; i < entries.size(); i++) {
+				writer.println("    " + entries.get(i) + (i < entries.size() - 1 ? "," : ""));
+			}
+
+			writer.println("  ]");
+			writer.println("}");
+		} catch (IOException e) {
+			throw new RuntimeException("Unable to write report: ", e);
+		}
+	}
+}
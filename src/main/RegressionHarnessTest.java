@@ -0,0 +1,32 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Provides tests for the {@link RegressionHarness#compare} method.
+ *
+ * @author Tizian Kirchner
+ */
+class RegressionHarnessTest {
+
+	@Test
+	void testCompare() {
+		int[] goldenPixels = {0x000000, 0x102030, 0xffffff, 0x808080};
+
+		// differences within the tolerance do not count
+		assertArrayEquals(new int[] {0, 0}, RegressionHarness.compare(goldenPixels.clone(), goldenPixels, 2));
+		assertArrayEquals(new int[] {0, 2}, RegressionHarness.compare(
+			new int[] {0x000002, 0x102030, 0xfffdff, 0x808080}, goldenPixels, 2
+		));
+
+		// each pixel counts once, no matter how many of its components changed
+		assertArrayEquals(new int[] {2, 0x80}, RegressionHarness.compare(
+			new int[] {0x030303, 0x102030, 0xffffff, 0x000080}, goldenPixels, 2
+		));
+
+		// frames of different sizes differ completely
+		assertArrayEquals(new int[] {2, 255}, RegressionHarness.compare(new int[2], goldenPixels, 2));
+	}
+}
@@ -0,0 +1,174 @@
+package render;
+
+import static org.lwjgl.opengl.GL43.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Splits a <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a> into
+ * {@link #SEGMENT_COUNT} segments, which are written in turns. While the GPU still reads the segment written for
+ * one frame, the CPU can already write the data of the next frame into another segment.
+ *
+ * Segments are written through unsynchronized mappings. Instead of letting OpenGL synchronize the mappings,
+ * a <a href="https://www.khronos.org/opengl/wiki/Sync_Object">fence</a> is placed after the last command reading
+ * a segment, which is waited for before the segment is written again.
+ *
+ * @author Tizian Kirchner
+ */
+public class MappedRingBuffer {
+	/**
+	 * How many segments the buffer object is split into.
+	 */
+	public static final int SEGMENT_COUNT = 3;
+
+	/**
+	 * How many nanoseconds {@link #map} waits for a fence, before it waits again.
+	 */
+	private static final long FENCE_TIMEOUT = 1000000;
+
+	/**
+	 * Reference to this object's buffer object.
+	 */
+	private int bufferId;
+
+	/**
+	 * The target the buffer object is bound to, like {@link org.lwjgl.opengl.GL43#GL_SHADER_STORAGE_BUFFER}.
+	 */
+	private int target;
+
+	/**
+	 * The binding point within the target, of which the shader programs read the current segment.
+	 */
+	private int bindingIndex;
+
+	/**
+	 * How many bytes of data each segment can hold.
+	 */
+	private long segmentSize = 0;
+
+	/**
+	 * How many bytes lie between the beginnings of two segments. The {@link #segmentSize} rounded up to the offset
+	 * alignment of the {@link #target}.
+	 */
+	private long segmentStride = 0;
+
+	/**
+	 * The fences placed after the last commands reading each segment. 0 if a segment is not being read.
+	 */
+	private long[] fences = new long[SEGMENT_COUNT];
+
+	/**
+	 * The index of the segment, which has been written last and is bound to the {@link #bindingIndex}.
+	 */
+	private int segment = 0;
+
+	/**
+	 * Creates a {@link MappedRingBuffer} without any storage. See {@link #resize}.
+	 *
+	 * @param target See {@link #target}.
+	 * @param bindingIndex See {@link #bindingIndex}.
+	 */
+	public MappedRingBuffer(int target, int bindingIndex) {
+		this.bufferId = glGenBuffers();
+		this.target = target;
+		this.bindingIndex = bindingIndex;
+	}
+
+	/**
+	 * Reserves the storage of all segments. The content of the segments is undefined afterwards.
+	 *
+	 * @param size See {@link #segmentSize}.
+	 */
+	public void resize(long size) {
+		int alignmentName = (
+			target == GL_UNIFORM_BUFFER ? GL_UNIFORM_BUFFER_OFFSET_ALIGNMENT : GL_SHADER_STORAGE_BUFFER_OFFSET_ALIGNMENT
+		);
+
+		long alignment = Math.max(glGetInteger(alignmentName), 1);
+		segmentSize = Math.max(size, 4);
+		segmentStride = (segmentSize + alignment - 1) / alignment * alignment;
+
+		// orphaning the old storage makes its fences irrelevant
+		deleteFences();
+		glBindBuffer(target, bufferId);
+		glBufferData(target, segmentStride * SEGMENT_COUNT, GL_STREAM_DRAW);
+		bind();
+	}
+
+	/**
+	 * Advances to the next segment and maps it, waiting until the GPU has finished reading it.
+	 * The mapping has to be ended by calling {@link #unmap}.
+	 *
+	 * @return The mapped memory of the segment, of which the previous content is undefined.
+	 */
+	public ByteBuffer map() {
+		segment = (segment + 1) % SEGMENT_COUNT;
+
+		if(fences[segment] != 0) {
+			while(glClientWaitSync(fences[segment], GL_SYNC_FLUSH_COMMANDS_BIT, FENCE_TIMEOUT) == GL_TIMEOUT_EXPIRED) {}
+			glDeleteSync(fences[segment]);
+			fences[segment] = 0;
+		}
+
+		glBindBuffer(target, bufferId);
+
+		ByteBuffer mappedSegment = glMapBufferRange(
+			target, segment * segmentStride, segmentSize,
+			GL_MAP_WRITE_BIT | GL_MAP_UNSYNCHRONIZED_BIT | GL_MAP_INVALIDATE_RANGE_BIT
+		);
+
+		return mappedSegment.order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Ends the mapping started by {@link #map} and binds the written segment to the {@link #bindingIndex}.
+	 */
+	public void unmap() {
+		glBindBuffer(target, bufferId);
+		glUnmapBuffer(target);
+		bind();
+	}
+
+	/**
+	 * Places a fence after the commands, which have been issued so far. Has to be called after the last command
+	 * reading the current segment, so that the segment is not written before the GPU has read it.
+	 */
+	public void fence() {
+		if(segmentSize == 0) return;
+		if(fences[segment] != 0) glDeleteSync(fences[segment]);
+		fences[segment] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+	}
+
+	/**
+	 * Deletes the buffer object and the fences.
+	 */
+	public void close() {
+		deleteFences();
+		glDeleteBuffers(bufferId);
+	}
+
+	/**
+	 * Binds the current segment to the {@link #bindingIndex}.
+	 */
+	private void bind() {
+		glBindBufferRange(target, bindingIndex, bufferId, segment * segmentStride, segmentSize);
+	}
+
+	/**
+	 * Deletes all {@link #fences}.
+	 */
+	private void deleteFences() {
+		for(int i = 0; i < SEGMENT_COUNT; i++) {
+			if(fences[i] != 0) glDeleteSync(fences[i]);
+			fences[i] = 0;
+		}
+	}
+
+	/**
+	 * See {@link #segmentSize}.
+	 */
+	public long getSegmentSize() {
+		return segmentSize;
+	}
+}
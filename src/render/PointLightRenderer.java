@@ -2,7 +2,6 @@ package render;
 
 import static org.lwjgl.opengl.GL11.GL_POINTS;
 import static org.lwjgl.opengl.GL11.glDrawArrays;
-import static org.lwjgl.opengl.GL20.glGetUniformLocation;
 import static org.lwjgl.opengl.GL20.glUniformMatrix4fv;
 import static org.lwjgl.opengl.GL20.glUseProgram;
 import static shader.ShaderProgramStorage.PROGRAM_GOURAUD;
@@ -66,9 +65,9 @@ public class PointLightRenderer {
 		glUseProgram(PROGRAM_LIGHT.getShaderProgram());
 		vertexArrayData.bindVAO();
 		
-		int translationLocation = glGetUniformLocation(PROGRAM_LIGHT.getShaderProgram(), "translationMatrix");
-		int viewLocation = glGetUniformLocation(PROGRAM_LIGHT.getShaderProgram(), "viewMatrix");
-		int projectionLocation = glGetUniformLocation(PROGRAM_LIGHT.getShaderProgram(), "projectionMatrix");
+		int translationLocation = PROGRAM_LIGHT.getUniformLocation("translationMatrix");
+		int viewLocation = PROGRAM_LIGHT.getUniformLocation("viewMatrix");
+		int projectionLocation = PROGRAM_LIGHT.getUniformLocation("projectionMatrix");
 		
 		glUniformMatrix4fv(translationLocation, false, Camera.getTranslationMatrix().getElementsAsArray());
 		glUniformMatrix4fv(viewLocation, false, Camera.getViewMatrix().getElementsAsArray());
@@ -1,6 +1,7 @@
 package render;
 
 import static org.lwjgl.opengl.GL20.*;
+import static shader.ShaderProgramBuilder.getUniformLocation;
 import static shader.ShaderProgramStorage.PROGRAM_GOURAUD;
 import static shader.ShaderProgramStorage.PROGRAM_LIGHTLESS;
 import static shader.ShaderProgramStorage.PROGRAM_PHONG;
@@ -45,7 +46,7 @@ public class Rasterizer {
 	 * The RasterizingShaderProgramBuilder from which to acquire the data for the vertexArrayData.
 	 */
 	public static void sendModelsToShader(RasterizingShaderProgramBuilder builder) {
-		int shaderProgramId = getAndUseProgram(builder);
+		getAndUseProgram(builder);
 		
 		ArrayList<Model> models = builder.getModels();
 		int[] modelVertexIndecis = new int[models.size()];
@@ -66,6 +67,11 @@ public class Rasterizer {
 		
 		int finalVertex = 0;
 		
+		int[] textureLocations = builder.getUniformLocations("models[].textureIndex");
+		int[] modelMatrixLocations = builder.getUniformLocations("models[].modelMatrix");
+		int[] materialLocations = builder.getUniformLocations("models[].materialIndex");
+		int[] normalMatrixLocations = builder.getUniformLocations("models[].normalMatrix");
+		
 		for(int i = 0; i < models.size(); i++) {
 			Model model = models.get(i);
 			int modelVertexIndex = modelVertexIndecis[i];
@@ -90,15 +96,15 @@ public class Rasterizer {
 				else uvCoordinates[j] = new Vector2();
 			}
 			
-			int textureLocation = glGetUniformLocation(shaderProgramId, "models[" + i + "].textureIndex");
-			int modelMatrixLocation = glGetUniformLocation(shaderProgramId, "models[" + i + "].modelMatrix");
+			int textureLocation = getUniformLocation(textureLocations, i);
+			int modelMatrixLocation = getUniformLocation(modelMatrixLocations, i);
 			
 			glUniform1i(textureLocation, model.getTextureIndex());
 			glUniformMatrix4fv(modelMatrixLocation, false, model.getModelMatrix().getElementsAsArray());
 			
 			if(builder != PROGRAM_LIGHTLESS) {
-				int materialLocation = glGetUniformLocation(shaderProgramId, "models[" + i + "].materialIndex");
-				int normalMatrixLocation = glGetUniformLocation(shaderProgramId, "models[" + i + "].normalMatrix");
+				int materialLocation = getUniformLocation(materialLocations, i);
+				int normalMatrixLocation = getUniformLocation(normalMatrixLocations, i);
 				
 				glUniform1i(materialLocation, model.getMaterialIndex());
 				glUniformMatrix4fv(normalMatrixLocation, false, model.getNormalMatrix().getElementsAsArray());
@@ -121,17 +127,20 @@ public class Rasterizer {
 	 * The RasterizingShaderProgramBuilder with the shader program the matrices are to be sent to.
 	 */
 	public static void sendModelMatricesToShader(RasterizingShaderProgramBuilder builder) {
-		int shaderProgramId = getAndUseProgram(builder);
+		getAndUseProgram(builder);
 		ArrayList<Model> models = builder.getModels();
 		
+		int[] modelMatrixLocations = builder.getUniformLocations("models[].modelMatrix");
+		int[] normalMatrixLocations = builder.getUniformLocations("models[].normalMatrix");
+		
 		for(int i = 0; i < models.size(); i++) {
 			Model model = models.get(i);
 			
-			int modelMatrixLocation = glGetUniformLocation(shaderProgramId, "models[" + i + "].modelMatrix");
+			int modelMatrixLocation = getUniformLocation(modelMatrixLocations, i);
 			glUniformMatrix4fv(modelMatrixLocation, false, model.getModelMatrix().getElementsAsArray());
 			
 			if(builder != PROGRAM_LIGHTLESS) {
-				int normalMatrixLocation = glGetUniformLocation(shaderProgramId, "models[" + i + "].normalMatrix");
+				int normalMatrixLocation = getUniformLocation(normalMatrixLocations, i);
 				glUniformMatrix4fv(normalMatrixLocation, false, model.getNormalMatrix().getElementsAsArray());
 			}
 		}
@@ -145,9 +154,13 @@ public class Rasterizer {
 	 * The RasterizingShaderProgramBuilder with the shader program the PointLight objects are to be sent to.
 	 */
 	public static void sendLightsToShader(RasterizingShaderProgramBuilder builder) {
-		int shaderProgramId = getAndUseProgram(builder);
+		getAndUseProgram(builder);
 		ArrayList<PointLight> lights = builder.getLights();
 		
+		int[] positionLocations = builder.getUniformLocations("lights[].position");
+		int[] colorLocations = builder.getUniformLocations("lights[].color");
+		int[] intensityLocations = builder.getUniformLocations("lights[].intensity");
+		
 		int positionLocation;
 		int colorLocation;
 		int intensityLocation;
@@ -157,9 +170,9 @@ public class Rasterizer {
 		float intensity;
 		
 		for(int i = 0; i < lights.size(); i++) {
-			positionLocation = glGetUniformLocation(shaderProgramId, "lights[" + i + "].position");
-			colorLocation = glGetUniformLocation(shaderProgramId, "lights[" + i + "].color");
-			intensityLocation = glGetUniformLocation(shaderProgramId, "lights[" + i + "].intensity");
+			positionLocation = getUniformLocation(positionLocations, i);
+			colorLocation = getUniformLocation(colorLocations, i);
+			intensityLocation = getUniformLocation(intensityLocations, i);
 			
 			position = lights.get(i).getPosition().getComponentsAsFloatArray();
 			color = lights.get(i).getColor().getComponentsAsFloatArray();
@@ -179,9 +192,14 @@ public class Rasterizer {
 	 * The RasterizingShaderProgramBuilder with the shader program the PhongMaterial objects are to be sent to.
 	 */
 	public static void sendMaterialsToShader(RasterizingShaderProgramBuilder builder) {
-		int shaderProgramId = getAndUseProgram(builder);
+		getAndUseProgram(builder);
 		ArrayList<PhongMaterial> materials = builder.getMaterials();
 		
+		int[] ambientLocations = builder.getUniformLocations("materials[].ambientColor");
+		int[] diffuseLocations = builder.getUniformLocations("materials[].diffuseColor");
+		int[] specularLocations = builder.getUniformLocations("materials[].specularColor");
+		int[] hardnessLocations = builder.getUniformLocations("materials[].hardness");
+		
 		int ambientLocation;
 		int diffuseLocation;
 		int specularLocation;
@@ -193,10 +211,10 @@ public class Rasterizer {
 		float hardness;
 		
 		for(int i = 0; i < materials.size(); i++) {
-			ambientLocation = glGetUniformLocation(shaderProgramId, "materials[" + i + "].ambientColor");
-			diffuseLocation = glGetUniformLocation(shaderProgramId, "materials[" + i + "].diffuseColor");
-			specularLocation = glGetUniformLocation(shaderProgramId, "materials[" + i + "].specularColor");
-			hardnessLocation = glGetUniformLocation(shaderProgramId, "materials[" + i + "].hardness");
+			ambientLocation = getUniformLocation(ambientLocations, i);
+			diffuseLocation = getUniformLocation(diffuseLocations, i);
+			specularLocation = getUniformLocation(specularLocations, i);
+			hardnessLocation = getUniformLocation(hardnessLocations, i);
 			
 			ambientColor = materials.get(i).getAmbientColor().getComponentsAsFloatArray();
 			diffuseColor = materials.get(i).getDiffuseColor().getComponentsAsFloatArray();
@@ -218,12 +236,12 @@ public class Rasterizer {
 	 * The RasterizingShaderProgramBuilder with the shader program the TextureData objects' textures are to be bound to.
 	 */
 	public static void sendTexturesToShader(RasterizingShaderProgramBuilder builder) {
-		int shaderProgramId = getAndUseProgram(builder);
+		getAndUseProgram(builder);
 		ArrayList<TextureData> textures = builder.getTextures();
+		int[] textureLocations = builder.getUniformLocations("smplr[]");
 		
 		for(int i = 0; i < textures.size(); i++) {
-			String textureStr = "smplr[" + i + "]";
-			int textureLocation = glGetUniformLocation(shaderProgramId, textureStr);
+			int textureLocation = getUniformLocation(textureLocations, i);
 			glUniform1i(textureLocation, 1 + i);
 			
 			glActiveTexture(GL_TEXTURE1 + i);
@@ -240,12 +258,12 @@ public class Rasterizer {
 	 */
 	public static void render(RasterizingShaderProgramBuilder builder) {
 		glEnable(GL_DEPTH_TEST);
-		int shaderProgramId = getAndUseProgram(builder);
+		getAndUseProgram(builder);
 		vertexArrayData.bindVAO();
 		
-		int translationLocation = glGetUniformLocation(shaderProgramId, "translationMatrix");
-		int viewLocation = glGetUniformLocation(shaderProgramId, "viewMatrix");
-		int projectionLocation = glGetUniformLocation(shaderProgramId, "projectionMatrix");
+		int translationLocation = builder.getUniformLocation("translationMatrix");
+		int viewLocation = builder.getUniformLocation("viewMatrix");
+		int projectionLocation = builder.getUniformLocation("projectionMatrix");
 		
 		glUniformMatrix4fv(translationLocation, false, Camera.getTranslationMatrix().getElementsAsArray());
 		glUniformMatrix4fv(viewLocation, false, Camera.getViewMatrix().getElementsAsArray());
@@ -1,11 +1,15 @@
 package render;
 
 import static org.lwjgl.opengl.GL43.*;
+import static shader.ShaderProgramBuilder.getUniformLocation;
 import static shader.ShaderProgramStorage.*;
+import static texture.DefaultTextures.DEFAULT_SKY_DOME;
 
-
+import java.nio.FloatBuffer;
 import java.util.ArrayList;
 
+import bvh.BoundingVolumeHierarchy;
+import bvh.TwoLevelBoundingVolumeHierarchy;
 import cgi.ConstructiveSolidGeometry;
 import cgi.Model;
 import cgi.Quadric;
@@ -13,13 +17,11 @@ import cgi.Sphere;
 import cgi.SphereLight;
 import io.Window;
 import material.CookTorranceMaterial;
-import math.matrix.Matrix4;
-import math.matrix.QuadricMatrix;
-import math.vector.Vector2;
 import math.vector.Vector3;
-import math.vector.Vector4;
+import settings.RayTracingSettings;
 import settings.RenderSettings;
 import shader.RayTracingShaderProgramBuilder;
+import shader.ShaderProgramBuilder;
 import shader.ShaderProgramStorage;
 import texture.CookTorranceTexture;
 import texture.TextureBlend;
@@ -51,6 +53,113 @@ public class RayTracer {
 	 */
 	private static int triangleBufferId;
 	
+	/**
+	 * Stores the id of the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a>,
+	 * which is used to store the {@link #sceneBvh}.
+	 */
+	private static int bvhBufferId;
+	
+	/**
+	 * Stores the instance data of the {@link Model} objects that are to be rendered.
+	 * The instance data changes whenever a Model is moved, so it is written into another segment every frame
+	 * it changes, instead of waiting for the GPU to finish reading the previous frame's instance data.
+	 */
+	private static MappedRingBuffer instanceRing;
+	
+	/**
+	 * Stores the id of the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a>,
+	 * which is used to store the {@link Sphere} objects that are to be rendered.
+	 */
+	private static int sphereBufferId;
+	
+	/**
+	 * Stores the id of the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a>,
+	 * which is used to store the {@link Quadric} objects that are to be rendered.
+	 */
+	private static int quadricBufferId;
+	
+	/**
+	 * Stores the id of the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a>,
+	 * which is used to store the {@link ConstructiveSolidGeometry} objects that are to be rendered.
+	 */
+	private static int csgBufferId;
+	
+	/**
+	 * Stores the id of the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a>,
+	 * which is used to store the {@link SphereLight} objects that light the 3D objects.
+	 */
+	private static int lightBufferId;
+	
+	/**
+	 * Stores the id of the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a>,
+	 * which is used to store the {@link CookTorranceMaterial} objects of the 3D objects.
+	 */
+	private static int materialBufferId;
+	
+	/**
+	 * The instance data of all {@link Model} objects, which is copied into the {@link #instanceRing}.
+	 * Only the instance data of changed Model objects is recalculated.
+	 */
+	private static float[] instanceData = new float[0];
+	
+	/**
+	 * The two level bounding volume hierarchy over the {@link Model} and {@link Sphere} objects,
+	 * which are to be rendered.
+	 * 
+	 * The top level is built in world space, in which the
+	 * <a href="https://www.khronos.org/opengl/wiki/Fragment_Shader">fragment shader</a> of
+	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program traces its rays.
+	 */
+	private static TwoLevelBoundingVolumeHierarchy sceneBvh = new TwoLevelBoundingVolumeHierarchy();
+	
+	/**
+	 * One {@link Model} for each distinct mesh, of which the triangles are stored in the buffer object with the
+	 * {@link #triangleBufferId}.
+	 */
+	private static ArrayList<Model> sentMeshes = new ArrayList<>();
+	
+	/**
+	 * The {@link Model} objects, of which the instance data has last been written into the {@link #instanceRing},
+	 * in the order of their instances.
+	 */
+	private static ArrayList<Model> sentModels = new ArrayList<>();
+	
+	/**
+	 * How many {@link SphereLight} objects are stored in the buffer object with the {@link #lightBufferId}.
+	 */
+	private static int sentLightCount = 0;
+	
+	/**
+	 * The {@link RayTracingSettings} of {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s current
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program, for which the buffer objects are
+	 * laid out. Null until the first shader program has replaced PROGRAM_RAY_TRACING's empty program.
+	 * 
+	 * While a new shader program is compiled in the background, the settings of PROGRAM_RAY_TRACING already belong
+	 * to the new program, so the current program is {@link #render rendered} with these settings instead.
+	 */
+	private static RayTracingSettings programSettings = null;
+	
+	/**
+	 * One {@link Model} for each distinct mesh, which is refilled every frame to check for changed meshes.
+	 */
+	private static ArrayList<Model> meshes = new ArrayList<>();
+	
+	/**
+	 * Packs the triangle data, which is sent to the buffer object with the {@link #triangleBufferId}.
+	 */
+	private static TriangleBufferPacker trianglePacker = new TriangleBufferPacker();
+	
+	/**
+	 * How many bytes have been sent to buffer objects since the last frame has been {@link #render rendered}.
+	 */
+	private static long uploadedBytes = 0;
+	
+	/**
+	 * How many bytes have been sent to buffer objects for the last {@link #render rendered} frame.
+	 */
+	private static long frameUploadedBytes = 0;
+	
 	/**
 	 * Used to calculate the horizontal components of ray directions in the
 	 * <a href="https://www.khronos.org/opengl/wiki/Vertex_Shader">vertex shader</a> of
@@ -67,6 +176,144 @@ public class RayTracer {
 	 */
 	private static float ratioHeightModifier;
 	
+	/**
+	 * The horizontal and vertical extent of the vertex ratio coordinates of the quad's vertices. Used by the
+	 * <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute shader</a> to calculate the ray
+	 * directions the quad's vertices would have.
+	 */
+	private static float vertexRatioWidth, vertexRatioHeight;
+	
+	/**
+	 * Stores the id of the texture, which the
+	 * <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute shader</a> writes the ray traced
+	 * pixels to. 0 until the compute shader is used the first time.
+	 * 
+	 * @see RayTracingSettings#isUsingComputeShader
+	 */
+	private static int renderImageId = 0;
+	
+	/**
+	 * Stores the id of the <a href="https://www.khronos.org/opengl/wiki/Framebuffer_Object">framebuffer</a>,
+	 * which the texture with the {@link #renderImageId} is attached to, so that it can be copied to the
+	 * framebuffer being rendered to.
+	 */
+	private static int renderImageFramebufferId;
+	
+	/**
+	 * The width and height of the texture with the {@link #renderImageId}.
+	 */
+	private static int renderImageWidth = 0, renderImageHeight = 0;
+	
+	/**
+	 * The stages of the wavefront <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute
+	 * shader</a>, which are selected by its wavefrontStage uniform.
+	 * 
+	 * @see RayTracingSettings#isUsingWavefront
+	 */
+	private static final int
+		WAVEFRONT_GENERATE = 0,
+		WAVEFRONT_INTERSECT = 1,
+		WAVEFRONT_PREPARE_SHADOWS = 2,
+		WAVEFRONT_SHADOW = 3,
+		WAVEFRONT_SHADE = 4,
+		WAVEFRONT_PREPARE_RAYS = 5,
+		WAVEFRONT_RESOLVE = 6;
+	
+	/**
+	 * How many bytes a ray occupies in the RayQueues buffer of the wavefront compute shader.
+	 */
+	private static final int QUEUED_RAY_SIZE = 80;
+	
+	/**
+	 * How many bytes precede the shadow tasks in the RayQueueCounters buffer of the wavefront compute shader.
+	 * The dispatch sizes of the ray queue and of the shadow tasks are stored at the offsets 0 and 16.
+	 */
+	private static final int RAY_QUEUE_COUNTERS_SIZE = 40;
+	
+	/**
+	 * Stores the ids of the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer objects</a>,
+	 * which are bound to the RayQueues, RayQueueCounters, ShadowStrengths and PixelColors buffers of the
+	 * wavefront compute shader. 0 until the wavefront compute shader is used the first time.
+	 */
+	private static int rayQueueBufferId = 0, rayQueueCounterBufferId = 0,
+		shadowStrengthBufferId = 0, pixelColorBufferId = 0;
+	
+	/**
+	 * How many rays each of the two queues of the wavefront compute shader can hold. Equals the largest number of
+	 * rays a wave can consist of, so that no ray spawned by the shading of a wave has to be dropped.
+	 * 
+	 * @see #getRayQueueCapacity
+	 */
+	private static int rayQueueCapacity = 0;
+	
+	/**
+	 * The number of lights the buffers of the wavefront compute shader have been created for.
+	 */
+	private static int rayQueueLightCount = 0;
+	
+	/**
+	 * Stores the id of the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a>, which
+	 * is bound to the OccluderCache buffer of {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program. 0 until the occluder cache is used
+	 * the first time.
+	 * 
+	 * @see RayTracingSettings#isUsingOccluderCache
+	 */
+	private static int occluderCacheBufferId = 0;
+	
+	/**
+	 * How many occluders the buffer object with the {@link #occluderCacheBufferId} can hold.
+	 */
+	private static int occluderCacheCapacity = 0;
+	
+	/**
+	 * The value the buffer object with the {@link #occluderCacheBufferId} is cleared to, meaning no cached occluder.
+	 */
+	private static final int[] NO_OCCLUDER = {-1};
+	
+	/**
+	 * Stores the id of the texture, into which the model instance and triangle covering each pixel are
+	 * rasterized by {@link ShaderProgramStorage#PROGRAM_PRIMARY_HITS}'s
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program, and the id of the
+	 * <a href="https://www.khronos.org/opengl/wiki/Renderbuffer_Object">renderbuffer</a> holding the depths of the
+	 * rasterized triangles. 0 until the primary hits are rasterized the first time.
+	 * 
+	 * @see RayTracingSettings#isUsingRasterizedPrimaryHits
+	 */
+	private static int primaryHitImageId = 0, primaryHitDepthBufferId = 0;
+	
+	/**
+	 * Stores the id of the <a href="https://www.khronos.org/opengl/wiki/Framebuffer_Object">framebuffer</a>,
+	 * which the texture with the {@link #primaryHitImageId} and the renderbuffer with the
+	 * {@link #primaryHitDepthBufferId} are attached to.
+	 */
+	private static int primaryHitFramebufferId;
+	
+	/**
+	 * Stores the id of an empty <a href="https://www.khronos.org/opengl/wiki/Vertex_Specification">vertex array
+	 * object</a>, as the vertex shader of {@link ShaderProgramStorage#PROGRAM_PRIMARY_HITS} reads its vertices
+	 * from the buffer object with the {@link #triangleBufferId}.
+	 */
+	private static int primaryHitVertexArrayId;
+	
+	/**
+	 * The width and height of the texture with the {@link #primaryHitImageId}.
+	 */
+	private static int primaryHitWidth = 0, primaryHitHeight = 0;
+	
+	/**
+	 * The values the texture with the {@link #primaryHitImageId} and the renderbuffer with the
+	 * {@link #primaryHitDepthBufferId} are cleared to every frame, meaning no model instance and triangle at the
+	 * farthest depth. Stored once, so that clearing them does not allocate any objects.
+	 */
+	private static final int[] NO_PRIMARY_HIT = {-1, -1, 0, 0};
+	private static final float[] FAR_DEPTH = {1};
+	
+	/**
+	 * Receives the viewport every frame, so that querying it does not allocate any objects.
+	 */
+	private static int[] viewport = new int[4];
+	
 	/**
 	 * Initializes the {@link RayTracer}'s fields.
 	 */
@@ -84,6 +331,8 @@ public class RayTracer {
 		ratioHeightModifier = ratioHeight / (ratioWidth * ratioHeight);
 		ratioWidth /= 16;
 		ratioHeight /= 16;
+		vertexRatioWidth = ratioWidth;
+		vertexRatioHeight = ratioHeight;
 		
 		left = -ratioWidth;
 		right = ratioWidth;
@@ -97,6 +346,47 @@ public class RayTracer {
 		vertexArrayData.addVBO(vertexRatioCoordinates, 1, 2, 0, 0);
 		
 		triangleBufferId = glGenBuffers();
+		bvhBufferId = glGenBuffers();
+		instanceRing = new MappedRingBuffer(GL_SHADER_STORAGE_BUFFER, 2);
+		sphereBufferId = glGenBuffers();
+		quadricBufferId = glGenBuffers();
+		csgBufferId = glGenBuffers();
+		lightBufferId = glGenBuffers();
+		materialBufferId = glGenBuffers();
+		renderImageFramebufferId = glGenFramebuffers();
+		primaryHitFramebufferId = glGenFramebuffers();
+		primaryHitVertexArrayId = glGenVertexArrays();
+	}
+	
+	/**
+	 * Lays out the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer objects</a> for the
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program, which has just replaced
+	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s previous shader program, and sends the objects of
+	 * PROGRAM_RAY_TRACING's object lists to it.
+	 * 
+	 * The Triangles buffer is only reallocated for the new program's layout now, as the previous program keeps
+	 * reading it until it is replaced. See {@link ShaderProgramBuilder#checkBackgroundCompilation}.
+	 */
+	public static void replaceProgram() {
+		programSettings = PROGRAM_RAY_TRACING.getRayTracingSettings();
+		sentMeshes.clear();
+		
+		int triangleBufferSize = PROGRAM_RAY_TRACING.getTriangleBufferSize();
+		
+		if(triangleBufferSize > 0) {
+			int target = PROGRAM_RAY_TRACING.isUsingUniformBuffer() ? GL_UNIFORM_BUFFER : GL_SHADER_STORAGE_BUFFER;
+			bindTriangleBuffer(target, triangleBufferSize * 4);
+		}
+		
+		refreshUniforms();
+		sendSkyDomeToShader(DEFAULT_SKY_DOME);
+		sendTrianglesToShader();
+		sendCtTexturesToShader();
+		sendMaterialsToShader();
+		sendLightsToShader();
+		sendSpheresToShader();
+		sendQuadricsToShader();
+		sendCsgsToShader();
 	}
 	
 	/**
@@ -112,10 +402,22 @@ public class RayTracer {
 	 * @param size
 	 * How many bytes should be reserved for the buffer object with the triangleBufferId.
 	 */
-	public static void bindTriangleBuffer(int target, int size) {
+	private static void bindTriangleBuffer(int target, int size) {
 		glBindBufferBase(target, 0, triangleBufferId);
 		glBindBuffer(target, triangleBufferId);
 		glBufferData(target, size, GL_STREAM_DRAW);
+		sentMeshes.clear();
+	}
+	
+	/**
+	 * @return
+	 * If objects can be sent to {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s shader program. Without an
+	 * OpenGL context, the scenes are only loaded for the {@link render.cpu.CpuRayTracer}, see
+	 * {@link Window#hasContext}. While a new shader program is compiled in the background, the current program
+	 * still reads the buffers, see {@link #render}.
+	 */
+	private static boolean canSendObjects() {
+		return Window.hasContext() && !PROGRAM_RAY_TRACING.isCompilingInBackground();
 	}
 	
 	/**
@@ -124,118 +426,102 @@ public class RayTracer {
 	 * 
 	 * These SphereLight objects have to be stored by PROGRAM_RAY_TRACING's
 	 * {@link RayTracingShaderProgramBuilder#lights light list}.
+	 * 
+	 * Has no effect without an OpenGL context or while a new shader program is compiled in the background.
+	 * See {@link #canSendObjects}.
 	 */
 	public static void sendLightsToShader() {
-		int shaderProgramId = getAndUseProgram();
+		if(!canSendObjects()) return;
 		ArrayList<SphereLight> lights = PROGRAM_RAY_TRACING.getLights();
+		int shadowRayCount = PROGRAM_RAY_TRACING.getRayTracingSettings().getShadowRayCount();
+		sentLightCount = lights.size();
 		
-		float[] position;
-		float[] color;
-		float intensity;
-		float radius;
+		// std430 layout: position, intensity, color, radius and one vec3 slot per shadow check point
+		int lightSize = 8 + Math.max(shadowRayCount, 1) * 4;
+		float[] bufferData = new float[Math.max(lights.size(), 1) * lightSize];
 		
 		for(int i = 0; i < lights.size(); i++) {
-			int positionLocation = glGetUniformLocation(shaderProgramId, "lights[" + i + "].position");
-			int colorLocation = glGetUniformLocation(shaderProgramId, "lights[" + i + "].color");
-			int intensityLocation = glGetUniformLocation(shaderProgramId, "lights[" + i + "].intensity");
-			int radiusLocation = glGetUniformLocation(shaderProgramId, "lights[" + i + "].radius");
-			
 			SphereLight light = lights.get(i);
+			Vector3 position = light.getPosition();
+			Vector3 color = light.getColor();
+			int offset = i * lightSize;
+			
+			for(int j = 0; j < 3; j++) {
+				bufferData[offset + j] = position.getComponent(j);
+				bufferData[offset + 4 + j] = color.getComponent(j);
+			}
 			
-			// translate lights depending on the camera position
-			position = light.getPosition().getComponentsAsFloatArray();
-			Vector4 positionVector = new Vector4(position[0], position[1], position[2], 1);
-			positionVector.multiply(Camera.getTranslationMatrix());
-			float[] transformedPosition = positionVector.getComponentsAsFloatArray();
-			position = new float[] {transformedPosition[0], transformedPosition[1], transformedPosition[2]};
+			bufferData[offset + 3] = light.getIntensity();
+			bufferData[offset + 7] = light.getRadius();
 			
-			// send sphere surface vectors to shader
+			// shadow check points
 			if(!light.areSurfaceVectorsCalculated()) light.calculateSurfaceVectors();
 			ArrayList<Vector3> sphereSurfaceVectors = light.getSurfaceVectors();
-			int shadowRayCount = PROGRAM_RAY_TRACING.getRayTracingSettings().getShadowRayCount();
 			
-			if(shadowRayCount > 1) for(int j = 0; j < shadowRayCount; j++) {
-				int pointLocation = glGetUniformLocation(
-					shaderProgramId,
-					"lights[" + i + "].shadowCheckPoints[" + j + "]"
-				);
-				
-				Vector3 sphereSurfaceVector = sphereSurfaceVectors.get(j);
-				Vector3 shadowCheckPoint = new Vector3(position).add(sphereSurfaceVector);
-				glUniform3fv(pointLocation, shadowCheckPoint.getComponentsAsFloatArray());
-			} else {
-				int pointLocation = glGetUniformLocation(
-					shaderProgramId,
-					"lights[" + i + "].shadowCheckPoints[" + 0 + "]"
-				);
-				
-				glUniform3fv(pointLocation, position);
+			for(int j = 0; j < Math.max(shadowRayCount, 1); j++) {
+				for(int k = 0; k < 3; k++) {
+					float surfaceOffset = shadowRayCount > 1 ? sphereSurfaceVectors.get(j).getComponent(k) : 0;
+					bufferData[offset + 8 + j * 4 + k] = position.getComponent(k) + surfaceOffset;
+				}
 			}
-			
-			// send position, color and intensity to shader
-			color = light.getColor().getComponentsAsFloatArray();
-			intensity = light.getIntensity();
-			radius = light.getRadius();
-			
-			glUniform3fv(positionLocation, position);
-			glUniform3fv(colorLocation, color);
-			glUniform1f(intensityLocation, intensity);
-			glUniform1f(radiusLocation, radius);
 		}
+		
+		sendStorageBuffer(lightBufferId, 6, bufferData);
 	}
-	
+
 	/**
 	 * Sends {@link CookTorranceMaterial} objects to {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
 	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
 	 * 
 	 * These CookTorranceMaterial objects have to be stored by PROGRAM_RAY_TRACING's
 	 * {@link RayTracingShaderProgramBuilder#materials material list}.
+	 * 
+	 * Has no effect without an OpenGL context or while a new shader program is compiled in the background.
+	 * See {@link #canSendObjects}.
 	 */
 	public static void sendMaterialsToShader() {
-		int shaderProgramId = getAndUseProgram();
+		if(!canSendObjects()) return;
 		ArrayList<CookTorranceMaterial> materials = PROGRAM_RAY_TRACING.getMaterials();
+		float[] bufferData = new float[Math.max(materials.size(), 1) * 5];
 		
 		for(int i = 0; i < materials.size(); i++) {
-			int roughnessLocation = glGetUniformLocation(shaderProgramId, "materials[" + i + "].roughness");
-			int metalnessLocation = glGetUniformLocation(shaderProgramId, "materials[" + i + "].metalness");
-			int reflectionLocation = glGetUniformLocation(shaderProgramId, "materials[" + i + "].reflectivity");
-			int refractionLocation = glGetUniformLocation(shaderProgramId, "materials[" + i + "].refractionIndex");
-			int opacityLocation = glGetUniformLocation(shaderProgramId, "materials[" + i + "].opacity");
+			CookTorranceMaterial material = materials.get(i);
 			
-			float roughness = materials.get(i).getRoughness();
-			float metalness = materials.get(i).getMetalness();
-			float reflectionIndex = materials.get(i).getReflectivity();
-			float refractionIndex = materials.get(i).getRefractionIndex();
-			float opacity = materials.get(i).getOpacity();
-			
-			glUniform1f(roughnessLocation, roughness);
-			glUniform1f(metalnessLocation, metalness);
-			glUniform1f(reflectionLocation, reflectionIndex);
-			glUniform1f(refractionLocation, refractionIndex);
-			glUniform1f(opacityLocation, opacity);
+			bufferData[i * 5] = material.getRoughness();
+			bufferData[i * 5 + 1] = material.getMetalness();
+			bufferData[i * 5 + 2] = material.getReflectivity();
+			bufferData[i * 5 + 3] = material.getRefractionIndex();
+			bufferData[i * 5 + 4] = material.getOpacity();
 		}
+		
+		sendStorageBuffer(materialBufferId, 7, bufferData);
 	}
-	
+
 	/**
 	 * Sends {@link CookTorranceTexture} objects to {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
 	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
 	 * 
 	 * These CookTorranceTexture objects have to be stored by PROGRAM_RAY_TRACING's
 	 * {@link RayTracingShaderProgramBuilder#ctTextures texture list}.
+	 * 
+	 * Has no effect without an OpenGL context or while a new shader program is compiled in the background.
+	 * See {@link #canSendObjects}.
 	 */
 	public static void sendCtTexturesToShader() {
-		int shaderProgramId = getAndUseProgram();
+		if(!canSendObjects()) return;
+		getAndUseProgram();
 		ArrayList<CookTorranceTexture> textures = PROGRAM_RAY_TRACING.getCtTextures();
 		
+		int[] colorMapLocations = PROGRAM_RAY_TRACING.getUniformLocations("cookTorranceTextures[].colorMap");
+		int[] materialMapLocations = PROGRAM_RAY_TRACING.getUniformLocations("cookTorranceTextures[].materialMap");
+		
 		for(int i = 0; i < textures.size(); i++) {
-			String colorStr = "cookTorranceTextures[" + i + "].colorMap";
-			int colorMapLocation = glGetUniformLocation(shaderProgramId, colorStr);
+			int colorMapLocation = getUniformLocation(colorMapLocations, i);
 			glUniform1i(colorMapLocation, 3 + i * 2);
 			glActiveTexture(GL_TEXTURE3 + i * 2);
 			textures.get(i).getColorMap().bind();
 			
-			String materialStr = "cookTorranceTextures[" + i + "].materialMap";
-			int materialMapLocation = glGetUniformLocation(shaderProgramId, materialStr);
+			int materialMapLocation = getUniformLocation(materialMapLocations, i);
 			glUniform1i(materialMapLocation, 4 + i * 2);
 			glActiveTexture(GL_TEXTURE4 + i * 2);
 			textures.get(i).getMaterialMap().bind();
@@ -243,138 +529,163 @@ public class RayTracer {
 	}
 	
 	/**
-	 * Sends the triangle data of {@link Model} objects to the
+	 * Sends the triangle data of the distinct meshes of {@link Model} objects to the
 	 * <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a>
 	 * with the {@link #triangleBufferId}.
 	 * 
 	 * The Model objects have to be stored by
 	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
 	 * {@link RayTracingShaderProgramBuilder#models model list}.
+	 * 
+	 * The triangles are stored in object space, so the data only needs to be sent when the meshes change.
+	 * Model objects sharing their mesh are stored once. Their model matrices are sent through the
+	 * instance data, when the 3D objects are {@link #render rendered}.
+	 * If only the vertex colors of some meshes have been {@link Model#DIRTY_VERTEX_COLORS changed},
+	 * only the vertex colors of those meshes are sent.
+	 * The data is packed by the {@link #trianglePacker}, so that calling this method every frame
+	 * does not allocate any objects.
+	 * 
+	 * Has no effect without an OpenGL context or while a new shader program is compiled in the background, as the
+	 * triangles are packed for the new program's layout. See {@link #canSendObjects}.
 	 */
 	public static void sendTrianglesToShader() {
-		ArrayList<Model> models = PROGRAM_RAY_TRACING.getModels();
-		int[] modelVertexIndecis = new int[models.size()];
-		int vertexCount = 0;
-		int modelIndex = 0;
+		if(!canSendObjects()) return;
+		
+		PROGRAM_RAY_TRACING.getMeshes(meshes);
+		if(meshes.isEmpty()) return;
+		
+		int target = PROGRAM_RAY_TRACING.isUsingUniformBuffer() ? GL_UNIFORM_BUFFER : GL_SHADER_STORAGE_BUFFER;
 		boolean usingVertexColors = PROGRAM_RAY_TRACING.getRayTracingSettings().isUsingVertexColors();
 		boolean usingVertexNormals = PROGRAM_RAY_TRACING.getRayTracingSettings().isUsingVertexNormals();
 		
-		for (Model model : models) {
-			modelVertexIndecis[modelIndex] = vertexCount;
-			vertexCount += model.getVertices().length;
-			modelIndex++;
+		// send only changed vertex colors, if the meshes have already been sent
+		if(containsMeshes(meshes)) {
+			int vertexCount = PROGRAM_RAY_TRACING.getTriangleCapacity() * 3;
+			int meshVertexIndex = 0;
+			
+			for(int i = 0; i < meshes.size(); i++) {
+				Model mesh = meshes.get(i);
+				
+				if(usingVertexColors && mesh.isDirty(Model.DIRTY_VERTEX_COLORS)) {
+					FloatBuffer colorData = trianglePacker.packVertexColors(mesh);
+					glBindBuffer(target, triangleBufferId);
+					glBufferSubData(target, (vertexCount * 4 + meshVertexIndex * 4) * 4L, colorData);
+					uploadedBytes += colorData.remaining() * 4L;
+				}
+				
+				mesh.clearDirtyFlags(Model.DIRTY_VERTEX_COLORS);
+				meshVertexIndex += mesh.getVertices().length;
+			}
+			
+			return;
 		}
 		
-		modelIndex = 0;
-		Model currentModel = models.get(0);
-		Matrix4 triangleMatrix = currentModel.getModelMatrix();
-		Matrix4 normalMatrix = currentModel.getNormalMatrix();
+		FloatBuffer bufferData = trianglePacker.packTriangles(
+			meshes, usingVertexColors, usingVertexNormals, PROGRAM_RAY_TRACING.isUsingUniformBuffer(),
+			PROGRAM_RAY_TRACING.getTriangleCapacity()
+		);
 		
-		float[] bufferData = new float[PROGRAM_RAY_TRACING.getTriangleBufferSize()];
+		glBindBuffer(target, triangleBufferId);
+		glBufferSubData(target, 0, bufferData);
+		uploadedBytes += bufferData.remaining() * 4L;
 		
-		int vertexColorOffset = vertexCount * 4;
-		int vertexColorEnd = vertexColorOffset;
+		sentMeshes.clear();
 		
-		if(usingVertexColors) {
-			vertexColorEnd += vertexCount * 4;
+		for(int i = 0; i < meshes.size(); i++) {
+			sentMeshes.add(meshes.get(i));
+			meshes.get(i).clearDirtyFlags(Model.DIRTY_VERTEX_COLORS);
 		}
+	}
+	
+	/**
+	 * @param meshes One {@link Model} for each distinct mesh.
+	 * @return
+	 * If the {@link #sentMeshes} are the same Model objects in the same order.
+	 * Model objects can not change their vertices, so the sent meshes only differ in their vertex colors.
+	 */
+	private static boolean containsMeshes(ArrayList<Model> meshes) {
+		if(sentMeshes.size() != meshes.size()) return false;
 		
-		int vertexNormalsOffset = vertexColorEnd;
-		int vertexNormalsEnd = vertexNormalsOffset;
-		
-		if(usingVertexNormals) {
-			vertexNormalsEnd += vertexCount * 4;
+		for(int i = 0; i < meshes.size(); i++) {
+			if(sentMeshes.get(i) != meshes.get(i)) return false;
 		}
 		
-		int currentVertexUvOffsetMultiplier = PROGRAM_RAY_TRACING.isUsingUniformBuffer() ? 4 : 2;
-		int vertexUVsOffset = vertexNormalsEnd;
-		
-		int triangleNormalsVertexCountMultiplier = PROGRAM_RAY_TRACING.isUsingUniformBuffer() ? 4 : 2;
-		int triangleNormalsOffset = vertexUVsOffset + vertexCount * triangleNormalsVertexCountMultiplier;
+		return true;
+	}
+	
+	/**
+	 * Updates the {@link #sceneBvh} and sends the changed parts of it to the
+	 * <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a> with the {@link #bvhBufferId}.
+	 * Writes the instance data of the {@link Model} objects into the next segment of the {@link #instanceRing},
+	 * if any of them has been moved.
+	 * 
+	 * The Model and {@link Sphere} objects have to be stored by
+	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
+	 * {@link RayTracingShaderProgramBuilder#models model list} and
+	 * {@link RayTracingShaderProgramBuilder#spheres sphere list}.
+	 */
+	private static void sendBvhToShader() {
+		sceneBvh.setPrimitiveIndexCapacity(PROGRAM_RAY_TRACING.getBvhPrimitiveCapacity());
 		
-		int currentTextureIndexOffsetMultiplier = PROGRAM_RAY_TRACING.isUsingUniformBuffer() ? 4 : 1;
-		int textureIndecisOffset = triangleNormalsOffset + (vertexCount / 3) * 4;
+		ArrayList<Model> models = PROGRAM_RAY_TRACING.getModels();
+		int update = sceneBvh.update(PROGRAM_RAY_TRACING.getMeshes(), models, PROGRAM_RAY_TRACING.getSpheres());
+		sentModels.clear();
 		
-		Vector3[] modelVertices = currentModel.getVertices();
-		Vector3[] modelVertexColors = currentModel.getVertexColors();
-		Vector3[] modelVertexNormals = currentModel.getVertexNormals();
-		Vector2[] modelVertexUVs = currentModel.getUVCoordinates();
-		Vector3[] modelTriangleNormals = currentModel.getTriangleNormals();
+		for(int i = 0; i < models.size(); i++) {
+			sentModels.add(models.get(i));
+		}
 		
-		Vector4 currentVertex;
-		Vector4 currentVertexNormal;
-		Vector4 currentTriangleNormal;
+		int nodeOffset = sceneBvh.getNodeOffset();
+		glBindBuffer(GL_SHADER_STORAGE_BUFFER, bvhBufferId);
 		
-		for(int i = 0; i < vertexCount; i++) {
-			if(models.size() - 1 > modelIndex && i >= modelVertexIndecis[modelIndex + 1]) {
-				modelIndex++;
-				currentModel = models.get(modelIndex);
-				triangleMatrix = currentModel.getModelMatrix();
-				normalMatrix = currentModel.getNormalMatrix();
-				
-				modelVertices = currentModel.getVertices();
-				modelVertexColors = currentModel.getVertexColors();
-				modelVertexNormals = currentModel.getVertexNormals();
-				modelVertexUVs = currentModel.getUVCoordinates();
-				modelTriangleNormals = currentModel.getTriangleNormals();
-			}
-			
-			int modelVertexIndex = i - modelVertexIndecis[modelIndex];
+		if(update == TwoLevelBoundingVolumeHierarchy.UPDATE_ALL) {
+			float[] bufferData = sceneBvh.getBufferData();
+			glBufferData(GL_SHADER_STORAGE_BUFFER, bufferData, GL_DYNAMIC_DRAW);
+			glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 1, bvhBufferId);
+			uploadedBytes += bufferData.length * 4L;
+		} else if(update == TwoLevelBoundingVolumeHierarchy.UPDATE_INSTANCE_BVH) {
+			int instanceNodeCount = sceneBvh.getInstanceBvh().getNodeCount();
+			float[] indexData = sceneBvh.getInstancePrimitiveIndexData();
+			float[] nodeData = sceneBvh.getInstanceNodeData(0, instanceNodeCount);
+			glBufferSubData(GL_SHADER_STORAGE_BUFFER, 0, indexData);
+			glBufferSubData(GL_SHADER_STORAGE_BUFFER, nodeOffset * 4L, nodeData);
+			uploadedBytes += (indexData.length + nodeData.length) * 4L;
+		} else if(update == TwoLevelBoundingVolumeHierarchy.UPDATE_REFIT) {
+			BoundingVolumeHierarchy instanceBvh = sceneBvh.getInstanceBvh();
+			int[] dirtyNodeRanges = instanceBvh.getDirtyNodeRanges();
 			
-			// vertex
-			currentVertex = new Vector4(modelVertices[modelVertexIndex]);
-			currentVertex.multiply(triangleMatrix).multiply(Camera.getTranslationMatrix());
-			float[] currentVertexElements = currentVertex.getComponentsAsFloatArray();
-			
-			for(int j = 0; j < 3; j++) {
-				bufferData[i * 4 + j] = currentVertexElements[j];  
-			}
-			
-			// vertex color
-			if(usingVertexColors) {
-				float[] currentVertexColorElements = modelVertexColors[modelVertexIndex].getComponentsAsFloatArray();
-				
-				for(int j = 0; j < 3; j++) {
-					bufferData[vertexColorOffset + i * 4 + j] = currentVertexColorElements[j];
-				}
+			for(int i = 0; i < dirtyNodeRanges.length; i += 2) {
+				long byteOffset = (long) (nodeOffset + dirtyNodeRanges[i] * BoundingVolumeHierarchy.NODE_SIZE) * 4;
+				float[] nodeData = sceneBvh.getInstanceNodeData(dirtyNodeRanges[i], dirtyNodeRanges[i + 1]);
+				glBufferSubData(GL_SHADER_STORAGE_BUFFER, byteOffset, nodeData);
+				uploadedBytes += nodeData.length * 4L;
 			}
 			
-			// vertex normal
-			if(usingVertexNormals) {
-				currentVertexNormal = new Vector4(modelVertexNormals[modelVertexIndex]);
-				currentVertexNormal.multiply(normalMatrix);
-				float[] currentVertexNormalData = currentVertexNormal.getComponentsAsFloatArray();
-			
-				for(int j = 0; j < 3; j++) {
-					bufferData[vertexNormalsOffset + i * 4 + j] = currentVertexNormalData[j];
-				}
-			}
-			
-			// vertex UVs
-			float[] currentVertexUvElements = modelVertexUVs[modelVertexIndex].getComponentsAsFloatArray();
-			
-			for(int j = 0; j < 2; j++) {
-				bufferData[vertexUVsOffset + i * currentVertexUvOffsetMultiplier + j] = currentVertexUvElements[j];
-			}
-			
-			if(i % 3 == 0) {
-				// triangle normal
-				currentTriangleNormal = new Vector4(modelTriangleNormals[modelVertexIndex / 3]).multiply(normalMatrix);
-				float[] currentTriangleNormalComponents = currentTriangleNormal.getComponentsAsFloatArray();
-				
-				for(int j = 0; j < 3; j++) {
-					bufferData[triangleNormalsOffset + (i / 3) * 4 + j] = currentTriangleNormalComponents[j];
-				}
-				
-				// texture index
-				bufferData[textureIndecisOffset + (i / 3) * currentTextureIndexOffsetMultiplier] = (
-					Float.intBitsToFloat(currentModel.getTextureIndex())
-				);
+			instanceBvh.clearDirtyNodes();
+		}
+		
+		// instance data
+		int modelCount = sceneBvh.getModelCount();
+		int instanceSize = TwoLevelBoundingVolumeHierarchy.INSTANCE_SIZE;
+		boolean instancesChanged = update == TwoLevelBoundingVolumeHierarchy.UPDATE_ALL;
+		
+		if(update == TwoLevelBoundingVolumeHierarchy.UPDATE_ALL) {
+			instanceData = new float[modelCount * instanceSize];
+			instanceRing.resize(Math.max(modelCount, 1) * instanceSize * 4L);
+		}
+		
+		for(int i = 0; i < modelCount; i++) {
+			if(sceneBvh.isInstanceChanged(i)) {
+				System.arraycopy(sceneBvh.getInstanceData(i), 0, instanceData, i * instanceSize, instanceSize);
+				instancesChanged = true;
 			}
 		}
 		
-		int target = PROGRAM_RAY_TRACING.isUsingUniformBuffer() ? GL_UNIFORM_BUFFER : GL_SHADER_STORAGE_BUFFER;
-		glBufferSubData(target, 0, bufferData);
+		if(instancesChanged && modelCount > 0) {
+			instanceRing.map().asFloatBuffer().put(instanceData);
+			instanceRing.unmap();
+			uploadedBytes += instanceData.length * 4L;
+		}
 	}
 	
 	/**
@@ -383,90 +694,111 @@ public class RayTracer {
 	 * 
 	 * These Sphere objects have to be stored by PROGRAM_RAY_TRACING's
 	 * {@link RayTracingShaderProgramBuilder#spheres sphere list}.
+	 * 
+	 * Has no effect without an OpenGL context or while a new shader program is compiled in the background.
+	 * See {@link #canSendObjects}.
 	 */
 	public static void sendSpheresToShader() {
+		if(!canSendObjects()) return;
 		ArrayList<Sphere> spheres = PROGRAM_RAY_TRACING.getSpheres();
-		int shaderProgramId = getAndUseProgram();
 		
-		float[] origin;
-		float[] color;
-		float radius;
-		int material;
+		// std430 layout: origin, radius, color and material index
+		float[] bufferData = new float[Math.max(spheres.size(), 1) * 8];
 		
 		for(int i = 0; i < spheres.size(); i++) {
-			int originLocation = glGetUniformLocation(shaderProgramId, "spheres[" + i + "].origin");
-			int colorLocation = glGetUniformLocation(shaderProgramId, "spheres[" + i + "].color");
-			int radiusLocation = glGetUniformLocation(shaderProgramId, "spheres[" + i + "].radius");
-			int materialLocation = glGetUniformLocation(shaderProgramId, "spheres[" + i + "].materialIndex");
+			Sphere sphere = spheres.get(i);
+			Vector3 origin = sphere.getOrigin();
+			Vector3 color = sphere.getColor();
 			
-			Vector3 originalOrigin = spheres.get(i).getOrigin();
-			Vector4 originVector = new Vector4(originalOrigin);
-			originVector.multiply(Camera.getTranslationMatrix());
-			float[] transformedOrigin = originVector.getComponentsAsFloatArray();
-			
-			origin = new float[] {transformedOrigin[0], transformedOrigin[1], transformedOrigin[2]};
-			color = spheres.get(i).getColor().getComponentsAsFloatArray();
-			radius = spheres.get(i).getRadius();
-			material = spheres.get(i).getMaterialIndex();
+			for(int j = 0; j < 3; j++) {
+				bufferData[i * 8 + j] = origin.getComponent(j);
+				bufferData[i * 8 + 4 + j] = color.getComponent(j);
+			}
 			
-			glUniform3fv(originLocation, origin);
-			glUniform3fv(colorLocation, color);
-			glUniform1f(radiusLocation, radius);
-			glUniform1i(materialLocation, material);
+			bufferData[i * 8 + 3] = sphere.getRadius();
+			bufferData[i * 8 + 7] = Float.intBitsToFloat(sphere.getMaterialIndex());
 		}
+		
+		sendStorageBuffer(sphereBufferId, 3, bufferData);
 	}
-	
+
 	/**
 	 * Sends {@link Quadric} objects to {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
 	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
 	 * 
 	 * These Quadric objects have to be stored by PROGRAM_RAY_TRACING's
 	 * {@link RayTracingShaderProgramBuilder#quadrics quadric list}.
+	 * 
+	 * Has no effect without an OpenGL context or while a new shader program is compiled in the background.
+	 * See {@link #canSendObjects}.
 	 */
 	public static void sendQuadricsToShader() {
-		int shaderProgramId = getAndUseProgram();
+		if(!canSendObjects()) return;
 		ArrayList<Quadric> quadrics = PROGRAM_RAY_TRACING.getQuadrics();
 		
+		// std430 layout: matrix, color, material index and visibility, padded to a multiple of 16 bytes
+		float[] bufferData = new float[Math.max(quadrics.size(), 1) * 24];
+		
 		for(int i = 0; i < quadrics.size(); i++) {
-			int matrixLocation = glGetUniformLocation(shaderProgramId, "quadrics[" + i + "].matrix");
-			int colorLocation = glGetUniformLocation(shaderProgramId, "quadrics[" + i + "].color");
-			int visibleLocation = glGetUniformLocation(shaderProgramId, "quadrics[" + i + "].visible");
-			int materialLocation = glGetUniformLocation(shaderProgramId, "quadrics[" + i + "].materialIndex");
-
-			Matrix4 quadricMatrix = new QuadricMatrix(quadrics.get(i).getMatrix())
-									.applyTransformation(Camera.getTranslationMatrix());
+			Quadric quadric = quadrics.get(i);
+			Vector3 color = quadric.getColor();
 			
-			glUniformMatrix4fv(matrixLocation, false, quadricMatrix.getElementsAsArray());
-			glUniform3fv(colorLocation, quadrics.get(i).getColor().getComponentsAsFloatArray());
-			glUniform1i(materialLocation, quadrics.get(i).getMaterialIndex());
+			System.arraycopy(quadric.getMatrix().getElementsAsArray(), 0, bufferData, i * 24, 16);
+			
+			for(int j = 0; j < 3; j++) {
+				bufferData[i * 24 + 16 + j] = color.getComponent(j);
+			}
 			
-			if(quadrics.get(i).getVisible()) glUniform1i(visibleLocation, 1);
-			else glUniform1i(visibleLocation, 0);
+			bufferData[i * 24 + 19] = Float.intBitsToFloat(quadric.getMaterialIndex());
+			bufferData[i * 24 + 20] = Float.intBitsToFloat(quadric.getVisible() ? 1 : 0);
 		}
+		
+		sendStorageBuffer(quadricBufferId, 4, bufferData);
 	}
-	
+
 	/**
 	 * Sends {@link ConstructiveSolidGeometry} (CSG) objects to {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
 	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
 	 * 
 	 * These CSG objects have to be stored by PROGRAM_RAY_TRACING's
 	 * {@link RayTracingShaderProgramBuilder#csgs CSG list}.
+	 * 
+	 * Has no effect without an OpenGL context or while a new shader program is compiled in the background.
+	 * See {@link #canSendObjects}.
 	 */
 	public static void sendCsgsToShader() {
-		int shaderProgramId = getAndUseProgram();
+		if(!canSendObjects()) return;
 		ArrayList<ConstructiveSolidGeometry> csgs = PROGRAM_RAY_TRACING.getCsgs();
+		float[] bufferData = new float[Math.max(csgs.size(), 1) * 3];
 		
 		for(int i = 0; i < csgs.size(); i++) {
-			int quadric1IndexLocation = glGetUniformLocation(shaderProgramId, "csgs[" + i + "].quadric1Index");
-			int quadric2IndexLocation = glGetUniformLocation(shaderProgramId, "csgs[" + i + "].quadric2Index");
-			int operationLocation = glGetUniformLocation(shaderProgramId, "csgs[" + i + "].operation");
+			ConstructiveSolidGeometry csg = csgs.get(i);
 			
-			glUniform1i(quadric1IndexLocation, csgs.get(i).getQuadric1Index());
-			glUniform1i(quadric2IndexLocation, csgs.get(i).getQuadric2Index());
-			glUniform1i(operationLocation, csgs.get(i).getOperation());
+			bufferData[i * 3] = Float.intBitsToFloat(csg.getQuadric1Index());
+			bufferData[i * 3 + 1] = Float.intBitsToFloat(csg.getQuadric2Index());
+			bufferData[i * 3 + 2] = Float.intBitsToFloat(csg.getOperation());
 		}
+		
+		sendStorageBuffer(csgBufferId, 5, bufferData);
 	}
 	
+	/**
+	 * Replaces the data of a <a href="https://www.khronos.org/opengl/wiki/Shader_Storage_Buffer_Object">shader
+	 * storage buffer object</a> with one upload and binds it to a binding point of
+	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 * 
+	 * @param bufferId The id of the buffer object.
+	 * @param bindingIndex The binding point of the buffer within the shader program.
+	 * @param bufferData The data laid out as in the std430 buffer block. Integers are stored as their bits.
+	 */
+	private static void sendStorageBuffer(int bufferId, int bindingIndex, float[] bufferData) {
+		glBindBuffer(GL_SHADER_STORAGE_BUFFER, bufferId);
+		glBufferData(GL_SHADER_STORAGE_BUFFER, bufferData, GL_DYNAMIC_DRAW);
+		glBindBufferBase(GL_SHADER_STORAGE_BUFFER, bindingIndex, bufferId);
+		uploadedBytes += bufferData.length * 4L;
+	}
+
 	/**
 	 * Sends a sky dome to {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
 	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
@@ -475,12 +807,16 @@ public class RayTracer {
 	 * A {@link TextureBlend} for the sky dome. Updating the TextureBlend's
 	 * {@link TextureBlend#texture1Opacity texture1Opacity} field's value can be done
 	 * to simulate time of day transitions or other transition effects.
+	 *
+	 * Has no effect without an OpenGL context. See {@link Window#hasContext}.
 	 */
 	public static void sendSkyDomeToShader(TextureBlend textureBlend) {
-		int shaderProgramId = getAndUseProgram();
-		int texture0Location = glGetUniformLocation(shaderProgramId, "skyDome.texture0");
-		int texture1Location = glGetUniformLocation(shaderProgramId, "skyDome.texture1");
-		int strengthLocation = glGetUniformLocation(shaderProgramId, "skyDome.texture1Strength");
+		if(!Window.hasContext()) return;
+		
+		getAndUseProgram();
+		int texture0Location = PROGRAM_RAY_TRACING.getUniformLocation("skyDome.texture0");
+		int texture1Location = PROGRAM_RAY_TRACING.getUniformLocation("skyDome.texture1");
+		int strengthLocation = PROGRAM_RAY_TRACING.getUniformLocation("skyDome.texture1Strength");
 		
 		glActiveTexture(GL_TEXTURE1);
 		textureBlend.getTextureData0().bind();
@@ -495,21 +831,494 @@ public class RayTracer {
 	/**
 	 * Renders the 3D objects that have been sent to {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s
 	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program, using said shader program.
+	 * 
+	 * Sends changed triangle data and the bounding volume hierarchy over the {@link Model} and {@link Sphere}
+	 * objects to the shader program beforehand. See {@link #sendTrianglesToShader} and {@link #sendBvhToShader}.
+	 * 
+	 * While PROGRAM_RAY_TRACING is compiling a new shader program in the background, the current program keeps
+	 * rendering the objects, which have been sent before the compilation started, with the {@link #programSettings}.
+	 * No data is sent until the new program replaces it, as the current program still reads the buffers.
+	 * See {@link ShaderProgramBuilder#checkBackgroundCompilation} and {@link #replaceProgram}.
+	 * 
+	 * If the {@link RayTracingSettings} use a compute shader, the rays are traced by
+	 * {@link #dispatchComputeShader} or {@link #dispatchWavefront} instead of rendering the quad.
 	 */
 	public static void render() {
+		if(PROGRAM_RAY_TRACING.checkBackgroundCompilation()) replaceProgram();
+		
+		// no shader program has been compiled yet
+		if(programSettings == null) {
+			glClear(GL_COLOR_BUFFER_BIT);
+			return;
+		}
+		
+		boolean programPending = PROGRAM_RAY_TRACING.isCompilingInBackground();
 		glDisable(GL_DEPTH_TEST);
-		int shaderProgramId = getAndUseProgram();
+		
+		if(!programPending) {
+			programSettings = PROGRAM_RAY_TRACING.getRayTracingSettings();
+			sendTrianglesToShader();
+			sendBvhToShader();
+		}
+		
+		RayTracingSettings rtSettings = programSettings;
+		if(rtSettings.isUsingRasterizedPrimaryHits()) renderPrimaryHits();
+		
+		getAndUseProgram();
 		vertexArrayData.bindVAO();
 		
-		int ratioWidthModifierLocation = glGetUniformLocation(shaderProgramId, "ratioWidthModifier");
-		int ratioHeightModifierLocation = glGetUniformLocation(shaderProgramId, "ratioHeightModifier");
-		int viewLocation = glGetUniformLocation(shaderProgramId, "viewMatrix");
+		int ratioWidthModifierLocation = PROGRAM_RAY_TRACING.getUniformLocation("ratioWidthModifier");
+		int ratioHeightModifierLocation = PROGRAM_RAY_TRACING.getUniformLocation("ratioHeightModifier");
+		int viewLocation = PROGRAM_RAY_TRACING.getUniformLocation("viewMatrix");
+		int cameraPositionLocation = PROGRAM_RAY_TRACING.getUniformLocation("cameraPosition");
+
+		// the camera's translation matrix translates by the negated camera position
+		float[] cameraTranslation = Camera.getTranslationMatrix().getElementsAsArray();
 
 		glUniform1f(ratioWidthModifierLocation, ratioWidthModifier);
 		glUniform1f(ratioHeightModifierLocation, ratioHeightModifier);
 		glUniformMatrix4fv(viewLocation, false, Camera.getViewMatrix().getElementsAsArray());
+		glUniform3f(cameraPositionLocation, -cameraTranslation[12], -cameraTranslation[13], -cameraTranslation[14]);
+		
+		if(rtSettings.isUsingDynamicCounts() && !programPending) sendObjectCountsToShader();
+		if(rtSettings.isUsingOccluderCache() && !rtSettings.isTransparencyLighting()) prepareOccluderCache();
+		
+		if(rtSettings.isUsingComputeShader() && rtSettings.isUsingWavefront()) {
+			dispatchWavefront();
+		} else if(rtSettings.isUsingComputeShader()) {
+			dispatchComputeShader();
+		} else {
+			glDrawArrays(GL_TRIANGLES, 0, 6);
+		}
+		
+		instanceRing.fence();
+		
+		frameUploadedBytes = uploadedBytes;
+		uploadedBytes = 0;
+	}
+	
+	/**
+	 * Rasterizes the model instance and triangle covering each pixel of the viewport into the texture with the
+	 * {@link #primaryHitImageId}, which is then bound to the primaryHits image of
+	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s shader program.
+	 * 
+	 * The triangles are drawn by {@link ShaderProgramStorage#PROGRAM_PRIMARY_HITS}'s shader program, which reads
+	 * them from the buffer object with the {@link #triangleBufferId} and projects them like the primary rays, so
+	 * that no vertex data has to be sent and each pixel is covered by the triangle its primary ray hits.
+	 * Leaves PROGRAM_RAY_TRACING's shader program in use.
+	 * 
+	 * @see RayTracingSettings#isUsingRasterizedPrimaryHits
+	 */
+	private static void renderPrimaryHits() {
+		glGetIntegerv(GL_VIEWPORT, viewport);
+		int width = viewport[2];
+		int height = viewport[3];
+		
+		if(width != primaryHitWidth || height != primaryHitHeight) createPrimaryHitBuffer(width, height);
+		
+		int drawFramebuffer = glGetInteger(GL_DRAW_FRAMEBUFFER_BINDING);
+		boolean culling = glIsEnabled(GL_CULL_FACE);
+		
+		glBindFramebuffer(GL_DRAW_FRAMEBUFFER, primaryHitFramebufferId);
+		glViewport(0, 0, width, height);
+		glClearBufferiv(GL_COLOR, 0, NO_PRIMARY_HIT);
+		glClearBufferfv(GL_DEPTH, 0, FAR_DEPTH);
+		
+		// rays hit both sides of a triangle
+		glEnable(GL_DEPTH_TEST);
+		glDisable(GL_CULL_FACE);
+		
+		glUseProgram(PROGRAM_PRIMARY_HITS.getShaderProgram());
+		glBindVertexArray(primaryHitVertexArrayId);
+		glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 13, triangleBufferId);
+		
+		int modelMatrixLocation = PROGRAM_PRIMARY_HITS.getUniformLocation("modelMatrix");
+		int instanceIndexLocation = PROGRAM_PRIMARY_HITS.getUniformLocation("instanceIndex");
+		int viewLocation = PROGRAM_PRIMARY_HITS.getUniformLocation("viewMatrix");
+		int translationLocation = PROGRAM_PRIMARY_HITS.getUniformLocation("translationMatrix");
+		int frustumExtentLocation = PROGRAM_PRIMARY_HITS.getUniformLocation("frustumExtent");
+		
+		glUniformMatrix4fv(viewLocation, false, Camera.getViewMatrix().getElementsAsArray());
+		glUniformMatrix4fv(translationLocation, false, Camera.getTranslationMatrix().getElementsAsArray());
+		
+		glUniform2f(
+			frustumExtentLocation,
+			vertexRatioWidth * (1 - ratioWidthModifier), vertexRatioHeight * (1 - ratioHeightModifier)
+		);
+		
+		// model i is instance i, of which the mesh's vertices follow the vertices of the preceding meshes
+		for(int i = 0; i < sentModels.size(); i++) {
+			Model model = sentModels.get(i);
+			int firstVertex = 0;
+			
+			for(int j = 0; j < sentMeshes.size() && !model.sharesMesh(sentMeshes.get(j)); j++) {
+				firstVertex += sentMeshes.get(j).getVertices().length;
+			}
+			
+			glUniformMatrix4fv(modelMatrixLocation, false, model.getModelMatrix().getElementsAsArray());
+			glUniform1i(instanceIndexLocation, i);
+			glDrawArrays(GL_TRIANGLES, firstVertex, model.getVertices().length);
+		}
+		
+		glDisable(GL_DEPTH_TEST);
+		if(culling) glEnable(GL_CULL_FACE);
+		glBindFramebuffer(GL_DRAW_FRAMEBUFFER, drawFramebuffer);
+		glViewport(viewport[0], viewport[1], width, height);
+		
+		// the ray tracing shaders read the texture as an image
+		glMemoryBarrier(GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
+		glBindImageTexture(1, primaryHitImageId, 0, false, 0, GL_READ_ONLY, GL_RG32I);
+		
+		getAndUseProgram();
+		glUniform2i(PROGRAM_RAY_TRACING.getUniformLocation("viewportOffset"), viewport[0], viewport[1]);
+	}
+	
+	/**
+	 * Replaces the texture with the {@link #primaryHitImageId} and the renderbuffer with the
+	 * {@link #primaryHitDepthBufferId} with ones of the given size and attaches them to the
+	 * <a href="https://www.khronos.org/opengl/wiki/Framebuffer_Object">framebuffer</a> with the
+	 * {@link #primaryHitFramebufferId}.
+	 * 
+	 * @param width The width of the new texture and renderbuffer.
+	 * @param height The height of the new texture and renderbuffer.
+	 */
+	private static void createPrimaryHitBuffer(int width, int height) {
+		// keep the textures bound for the shader programs
+		int boundTexture = glGetInteger(GL_TEXTURE_BINDING_2D);
+		int drawFramebuffer = glGetInteger(GL_DRAW_FRAMEBUFFER_BINDING);
+		
+		if(primaryHitImageId != 0) {
+			glDeleteTextures(primaryHitImageId);
+			glDeleteRenderbuffers(primaryHitDepthBufferId);
+		}
+		
+		primaryHitImageId = glGenTextures();
+		glBindTexture(GL_TEXTURE_2D, primaryHitImageId);
+		glTexStorage2D(GL_TEXTURE_2D, 1, GL_RG32I, width, height);
+		
+		primaryHitDepthBufferId = glGenRenderbuffers();
+		glBindRenderbuffer(GL_RENDERBUFFER, primaryHitDepthBufferId);
+		glRenderbufferStorage(GL_RENDERBUFFER, GL_DEPTH_COMPONENT32F, width, height);
+		
+		glBindFramebuffer(GL_DRAW_FRAMEBUFFER, primaryHitFramebufferId);
+		glFramebufferTexture2D(GL_DRAW_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, primaryHitImageId, 0);
+		
+		glFramebufferRenderbuffer(
+			GL_DRAW_FRAMEBUFFER, GL_DEPTH_ATTACHMENT, GL_RENDERBUFFER, primaryHitDepthBufferId
+		);
+		
+		glBindFramebuffer(GL_DRAW_FRAMEBUFFER, drawFramebuffer);
+		glBindTexture(GL_TEXTURE_2D, boundTexture);
+		primaryHitWidth = width;
+		primaryHitHeight = height;
+	}
+	
+	/**
+	 * Traces the pixels of the viewport with the
+	 * <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute shader</a> of
+	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s shader program, which has to be in use.
+	 * 
+	 * The compute shader writes the pixels to the texture with the {@link #renderImageId}, which is then copied
+	 * into the viewport of the framebuffer being rendered to. Each work group traces a tile of the size
+	 * determined by the {@link RayTracingSettings}.
+	 */
+	private static void dispatchComputeShader() {
+		int[] viewport = prepareRenderImage();
+		
+		int tileWidth = programSettings.getComputeTileWidth();
+		int tileHeight = programSettings.getComputeTileHeight();
+		glDispatchCompute((viewport[2] + tileWidth - 1) / tileWidth, (viewport[3] + tileHeight - 1) / tileHeight, 1);
+		
+		copyRenderImage(viewport);
+	}
+	
+	/**
+	 * Traces the pixels of the viewport in waves with the wavefront
+	 * <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute shader</a> of
+	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s shader program, which has to be in use.
+	 * 
+	 * The primary rays form the first wave. Each wave is intersected, its shadow rays are traced and it is shaded
+	 * by separate dispatches, the shading spawning the reflections and refractions of the next wave. The rays are
+	 * passed between the dispatches through two ray queues, whose counters are incremented atomically by the
+	 * shader, which also writes the sizes of the following dispatches, so that no counter has to be read back.
+	 * 
+	 * The accumulated pixel colors are resolved into the texture with the {@link #renderImageId}, which is then
+	 * copied into the viewport of the framebuffer being rendered to.
+	 * 
+	 * @see RayTracingSettings#isUsingWavefront
+	 */
+	private static void dispatchWavefront() {
+		int[] viewport = prepareRenderImage();
+		int pixelCount = viewport[2] * viewport[3];
+		int lightCount = sentLightCount;
+		long capacity = getRayQueueCapacity(pixelCount, programSettings);
+		
+		if(capacity != rayQueueCapacity || lightCount != rayQueueLightCount) {
+			createRayQueues(pixelCount, capacity, lightCount);
+		}
+		
+		glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 8, rayQueueBufferId);
+		glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 9, rayQueueCounterBufferId);
+		glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 10, shadowStrengthBufferId);
+		glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 11, pixelColorBufferId);
+		glBindBuffer(GL_DISPATCH_INDIRECT_BUFFER, rayQueueCounterBufferId);
+		
+		int tileWidth = programSettings.getComputeTileWidth();
+		int tileHeight = programSettings.getComputeTileHeight();
+		int tileColumns = (viewport[2] + tileWidth - 1) / tileWidth;
+		int tileRows = (viewport[3] + tileHeight - 1) / tileHeight;
+		
+		// the first wave consists of a primary ray per pixel, dispatched in rows of at most 65535 work groups
+		int groupCount = (pixelCount + tileWidth * tileHeight - 1) / (tileWidth * tileHeight);
+		int groupRows = (groupCount + 65534) / 65535;
+		int groupColumns = (groupCount + groupRows - 1) / groupRows;
+		
+		glBindBuffer(GL_SHADER_STORAGE_BUFFER, rayQueueCounterBufferId);
+		glBufferSubData(GL_SHADER_STORAGE_BUFFER, 0, new int[] {
+			groupColumns, groupRows, 1, 0, // ray dispatch size
+			0, 0, 0, // shadow dispatch size
+			pixelCount, 0, // ray counts of both queues
+			0 // shadow count
+		});
+		
+		int stageLocation = PROGRAM_RAY_TRACING.getUniformLocation("wavefrontStage");
+		int inputQueueLocation = PROGRAM_RAY_TRACING.getUniformLocation("inputQueue");
+		glUniform1ui(PROGRAM_RAY_TRACING.getUniformLocation("rayQueueCapacity"), rayQueueCapacity);
+		glUniform1i(inputQueueLocation, 0);
+		
+		glUniform1i(stageLocation, WAVEFRONT_GENERATE);
+		glDispatchCompute(tileColumns, tileRows, 1);
+		
+		int traceDepth = Math.max(programSettings.getReflectionTraceDepth(), programSettings.getRefractionTraceDepth());
+		
+		for(int depth = 0; depth <= traceDepth; depth++) {
+			glUniform1i(inputQueueLocation, depth % 2);
+			
+			dispatchWavefrontStage(stageLocation, WAVEFRONT_INTERSECT);
+			glDispatchComputeIndirect(0);
+			dispatchWavefrontStage(stageLocation, WAVEFRONT_PREPARE_SHADOWS);
+			glDispatchCompute(1, 1, 1);
+			dispatchWavefrontStage(stageLocation, WAVEFRONT_SHADOW);
+			glDispatchComputeIndirect(16);
+			dispatchWavefrontStage(stageLocation, WAVEFRONT_SHADE);
+			glDispatchComputeIndirect(0);
+			dispatchWavefrontStage(stageLocation, WAVEFRONT_PREPARE_RAYS);
+			glDispatchCompute(1, 1, 1);
+		}
+		
+		dispatchWavefrontStage(stageLocation, WAVEFRONT_RESOLVE);
+		glDispatchCompute(tileColumns, tileRows, 1);
+		
+		copyRenderImage(viewport);
+	}
+	
+	/**
+	 * Selects a stage of the wavefront <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute
+	 * shader</a>, after waiting for the buffer writes of the previous stage, which include the sizes of
+	 * indirect dispatches.
+	 * 
+	 * @param stageLocation The location of the wavefrontStage uniform.
+	 * @param stage The stage, which is executed by the next dispatch.
+	 */
+	private static void dispatchWavefrontStage(int stageLocation, int stage) {
+		glMemoryBarrier(GL_SHADER_STORAGE_BARRIER_BIT | GL_COMMAND_BARRIER_BIT);
+		glUniform1i(stageLocation, stage);
+	}
+	
+	/**
+	 * Determines the largest number of rays a wave of the wavefront
+	 * <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute shader</a> can consist of.
+	 * 
+	 * The first wave consists of a primary ray per pixel. Shading a ray spawns at most one refraction and one
+	 * reflection, as long as the depth of the ray is below the respective trace depth. Each wave can therefore hold
+	 * up to twice as many rays as the previous one, while both trace depths are above its depth.
+	 * 
+	 * @param pixelCount The number of pixels of the viewport.
+	 * @param rtSettings The settings of the shader program, which determine the trace depths.
+	 * 
+	 * @return The capacity each ray queue requires.
+	 */
+	private static long getRayQueueCapacity(int pixelCount, RayTracingSettings rtSettings) {
+		int reflectionTraceDepth = rtSettings.getReflectionTraceDepth();
+		int refractionTraceDepth = rtSettings.getRefractionTraceDepth();
+		long waveSize = pixelCount;
+		long capacity = pixelCount;
+		
+		for(int depth = 0; depth < Math.max(reflectionTraceDepth, refractionTraceDepth); depth++) {
+			if(depth < reflectionTraceDepth && depth < refractionTraceDepth) waveSize *= 2;
+			capacity = Math.max(capacity, waveSize);
+		}
+		
+		return capacity;
+	}
+	
+	/**
+	 * Replaces the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer objects</a> of the
+	 * wavefront <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute shader</a> with buffer
+	 * objects for the given number of pixels, rays and lights.
+	 * 
+	 * @param pixelCount The number of pixels of the viewport.
+	 * @param capacity See {@link #rayQueueCapacity}.
+	 * @param lightCount The number of lights, for which shadow rays are traced.
+	 * 
+	 * @throws IllegalStateException If the ray queues would exceed the maximum size of a shader storage block.
+	 */
+	private static void createRayQueues(int pixelCount, long capacity, int lightCount) {
+		long shadowTaskCount = capacity * Math.max(1, lightCount);
+		long blockSize = Math.max(2 * capacity * QUEUED_RAY_SIZE, RAY_QUEUE_COUNTERS_SIZE + 8 * shadowTaskCount);
+		
+		if(blockSize > glGetInteger(GL_MAX_SHADER_STORAGE_BLOCK_SIZE)) {
+			throw new IllegalStateException(
+				"The ray queues for " + capacity + " rays exceed the maximum shader storage block size. " +
+				"The reflection or refraction trace depth has to be reduced."
+			);
+		}
+		
+		if(rayQueueBufferId == 0) {
+			rayQueueBufferId = glGenBuffers();
+			rayQueueCounterBufferId = glGenBuffers();
+			shadowStrengthBufferId = glGenBuffers();
+			pixelColorBufferId = glGenBuffers();
+		}
+		
+		glBindBuffer(GL_SHADER_STORAGE_BUFFER, rayQueueBufferId);
+		glBufferData(GL_SHADER_STORAGE_BUFFER, 2L * capacity * QUEUED_RAY_SIZE, GL_DYNAMIC_COPY);
+		glBindBuffer(GL_SHADER_STORAGE_BUFFER, rayQueueCounterBufferId);
+		glBufferData(GL_SHADER_STORAGE_BUFFER, RAY_QUEUE_COUNTERS_SIZE + 8 * shadowTaskCount, GL_DYNAMIC_COPY);
+		glBindBuffer(GL_SHADER_STORAGE_BUFFER, shadowStrengthBufferId);
+		glBufferData(GL_SHADER_STORAGE_BUFFER, 4 * shadowTaskCount, GL_DYNAMIC_COPY);
+		glBindBuffer(GL_SHADER_STORAGE_BUFFER, pixelColorBufferId);
+		glBufferData(GL_SHADER_STORAGE_BUFFER, 12L * pixelCount, GL_DYNAMIC_COPY);
 		
-		glDrawArrays(GL_TRIANGLES, 0, 6);
+		rayQueueCapacity = (int) capacity;
+		rayQueueLightCount = lightCount;
+	}
+	
+	/**
+	 * Binds the <a href="https://www.khronos.org/opengl/wiki/Buffer_Object">buffer object</a> with the
+	 * {@link #occluderCacheBufferId} to the OccluderCache buffer of
+	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s shader program, which has to be in use.
+	 * 
+	 * The buffer object holds an occluder for each light and each pixel up to the far corner of the viewport, as
+	 * the fragment shader identifies pixels by their window coordinates. It is recreated and cleared to -1,
+	 * meaning no cached occluder, if it is too small.
+	 */
+	private static void prepareOccluderCache() {
+		glGetIntegerv(GL_VIEWPORT, viewport);
+		int cacheWidth = viewport[0] + viewport[2];
+		int capacity = cacheWidth * (viewport[1] + viewport[3]) * Math.max(1, sentLightCount);
+		
+		if(occluderCacheBufferId == 0) occluderCacheBufferId = glGenBuffers();
+		glBindBuffer(GL_SHADER_STORAGE_BUFFER, occluderCacheBufferId);
+		
+		if(capacity > occluderCacheCapacity) {
+			glBufferData(GL_SHADER_STORAGE_BUFFER, 4L * capacity, GL_DYNAMIC_COPY);
+			glClearBufferData(GL_SHADER_STORAGE_BUFFER, GL_R32I, GL_RED_INTEGER, GL_INT, NO_OCCLUDER);
+			occluderCacheCapacity = capacity;
+		}
+		
+		glBindBufferBase(GL_SHADER_STORAGE_BUFFER, 12, occluderCacheBufferId);
+		glUniform1i(PROGRAM_RAY_TRACING.getUniformLocation("occluderCacheWidth"), cacheWidth);
+	}
+	
+	/**
+	 * Prepares the texture with the {@link #renderImageId} for being written to by the
+	 * <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute shader</a> of
+	 * {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}'s shader program, which has to be in use.
+	 * The texture is recreated if the size of the viewport has changed.
+	 * 
+	 * @return The x, y, width and height of the viewport.
+	 */
+	private static int[] prepareRenderImage() {
+		int[] viewport = new int[4];
+		glGetIntegerv(GL_VIEWPORT, viewport);
+		int width = viewport[2];
+		int height = viewport[3];
+		
+		if(width != renderImageWidth || height != renderImageHeight) createRenderImage(width, height);
+		
+		int renderSizeLocation = PROGRAM_RAY_TRACING.getUniformLocation("renderSize");
+		int vertexRatioExtentLocation = PROGRAM_RAY_TRACING.getUniformLocation("vertexRatioExtent");
+		glUniform2i(renderSizeLocation, width, height);
+		glUniform2f(vertexRatioExtentLocation, vertexRatioWidth, vertexRatioHeight);
+		glBindImageTexture(0, renderImageId, 0, false, 0, GL_WRITE_ONLY, GL_RGBA8);
+		
+		return viewport;
+	}
+	
+	/**
+	 * Copies the texture with the {@link #renderImageId} into the viewport of the framebuffer being rendered to,
+	 * after the <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute shader</a> has written it.
+	 * 
+	 * @param viewport The x, y, width and height of the viewport. See {@link #prepareRenderImage}.
+	 */
+	private static void copyRenderImage(int[] viewport) {
+		int width = viewport[2];
+		int height = viewport[3];
+		
+		// the copy reads the texture as a framebuffer attachment
+		glMemoryBarrier(GL_FRAMEBUFFER_BARRIER_BIT);
+		
+		int readFramebuffer = glGetInteger(GL_READ_FRAMEBUFFER_BINDING);
+		glBindFramebuffer(GL_READ_FRAMEBUFFER, renderImageFramebufferId);
+		
+		glBlitFramebuffer(
+			0, 0, width, height,
+			viewport[0], viewport[1], viewport[0] + width, viewport[1] + height,
+			GL_COLOR_BUFFER_BIT, GL_NEAREST
+		);
+		
+		glBindFramebuffer(GL_READ_FRAMEBUFFER, readFramebuffer);
+	}
+	
+	/**
+	 * Replaces the texture with the {@link #renderImageId} with a texture of the given size and attaches it to the
+	 * <a href="https://www.khronos.org/opengl/wiki/Framebuffer_Object">framebuffer</a> with the
+	 * {@link #renderImageFramebufferId}.
+	 * 
+	 * @param width The width of the new texture.
+	 * @param height The height of the new texture.
+	 */
+	private static void createRenderImage(int width, int height) {
+		// keep the textures bound for the shader programs
+		int boundTexture = glGetInteger(GL_TEXTURE_BINDING_2D);
+		int readFramebuffer = glGetInteger(GL_READ_FRAMEBUFFER_BINDING);
+		
+		if(renderImageId != 0) glDeleteTextures(renderImageId);
+		renderImageId = glGenTextures();
+		glBindTexture(GL_TEXTURE_2D, renderImageId);
+		glTexStorage2D(GL_TEXTURE_2D, 1, GL_RGBA8, width, height);
+		
+		glBindFramebuffer(GL_READ_FRAMEBUFFER, renderImageFramebufferId);
+		glFramebufferTexture2D(GL_READ_FRAMEBUFFER, GL_COLOR_ATTACHMENT0, GL_TEXTURE_2D, renderImageId, 0);
+		
+		glBindFramebuffer(GL_READ_FRAMEBUFFER, readFramebuffer);
+		glBindTexture(GL_TEXTURE_2D, boundTexture);
+		renderImageWidth = width;
+		renderImageHeight = height;
+	}
+	
+	/**
+	 * Sends the numbers of objects stored by {@link ShaderProgramStorage#PROGRAM_RAY_TRACING} to the count
+	 * <a href="https://www.khronos.org/opengl/wiki/Uniform_(GLSL)">uniforms</a> of its
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 * 
+	 * The uniforms only exist if the {@link RayTracingSettings} use
+	 * {@link RayTracingSettings#isUsingDynamicCounts dynamic counts}.
+	 */
+	private static void sendObjectCountsToShader() {
+		glUniform1i(PROGRAM_RAY_TRACING.getUniformLocation("lightCount"), PROGRAM_RAY_TRACING.getLights().size());
+		glUniform1i(PROGRAM_RAY_TRACING.getUniformLocation("modelCount"), PROGRAM_RAY_TRACING.getModels().size());
+		glUniform1i(PROGRAM_RAY_TRACING.getUniformLocation("sphereCount"), PROGRAM_RAY_TRACING.getSpheres().size());
+		glUniform1i(PROGRAM_RAY_TRACING.getUniformLocation("quadricCount"), PROGRAM_RAY_TRACING.getQuadrics().size());
+		glUniform1i(PROGRAM_RAY_TRACING.getUniformLocation("csgCount"), PROGRAM_RAY_TRACING.getCsgs().size());
+	}
+	
+	/**
+	 * See {@link RayTracer#frameUploadedBytes}.
+	 */
+	public static long getFrameUploadedBytes() {
+		return frameUploadedBytes;
 	}
 	
 	/**
@@ -520,11 +1329,11 @@ public class RayTracer {
 	 * The uniforms are set according to the {@link RenderSettings}.
 	 */
 	public static void refreshUniforms() {
-		int shaderProgramId = getAndUseProgram();
+		getAndUseProgram();
 		
-		int gammaLocation = glGetUniformLocation(shaderProgramId, "gammaCorrection");
-		int ambientLocation = glGetUniformLocation(shaderProgramId, "ambientLight");
-		int lightRenderingLocation = glGetUniformLocation(shaderProgramId, "lightRendering");
+		int gammaLocation = PROGRAM_RAY_TRACING.getUniformLocation("gammaCorrection");
+		int ambientLocation = PROGRAM_RAY_TRACING.getUniformLocation("ambientLight");
+		int lightRenderingLocation = PROGRAM_RAY_TRACING.getUniformLocation("lightRendering");
 		glUniform1i(gammaLocation, RenderSettings.isGammaCorrection() ? 1 : 0);
 		glUniform1i(ambientLocation, RenderSettings.isAmbientLight() ? 1 : 0);
 		glUniform1i(lightRenderingLocation, RenderSettings.isLightRendering() ? 1 : 0);
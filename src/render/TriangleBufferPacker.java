@@ -0,0 +1,146 @@
+package render;
+
+import static org.lwjgl.system.MemoryUtil.memAllocFloat;
+import static org.lwjgl.system.MemoryUtil.memFree;
+import static org.lwjgl.system.MemoryUtil.memRealloc;
+
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import cgi.Model;
+import math.vector.Vector2;
+import math.vector.Vector3;
+
+/**
+ * Packs the triangle data of {@link Model} meshes into the layout of the
+ * <a href="https://www.khronos.org/opengl/wiki/Fragment_Shader">fragment shader</a>'s Triangles buffer.
+ *
+ * The data is written into one reused off-heap {@link FloatBuffer}, which only grows when more data has to be
+ * packed than fits into it. Components are read directly from the {@link Model}'s vectors, so that packing
+ * does not allocate any objects once the {@link #buffer} is large enough.
+ *
+ * @author Tizian Kirchner
+ */
+public class TriangleBufferPacker {
+	/**
+	 * The off-heap buffer the triangle data is written into. Null until data has been packed for the first time.
+	 */
+	private FloatBuffer buffer = null;
+
+	/**
+	 * Packs the vertices, vertex colors, vertex normals, UV coordinates and triangle normals of meshes.
+	 *
+	 * @param meshes One {@link Model} for each distinct mesh.
+	 * @param usingVertexColors If the Triangles buffer contains vertex colors.
+	 * @param usingVertexNormals If the Triangles buffer contains vertex normals.
+	 * @param usingUniformBuffer
+	 * If the Triangles buffer is a uniform buffer, in which case UV coordinates are padded to four components.
+	 *
+	 * @param triangleCapacity
+	 * For how many triangles the Triangles buffer's arrays reserve memory. Has to be at least the number of
+	 * triangles of the meshes.
+	 *
+	 * @return The {@link #buffer}, containing the packed data between its position and limit.
+	 */
+	public FloatBuffer packTriangles(
+		ArrayList<Model> meshes, boolean usingVertexColors, boolean usingVertexNormals, boolean usingUniformBuffer,
+		int triangleCapacity
+	) {
+		int vertexCount = triangleCapacity * 3;
+
+		// offsets of the Triangles buffer's arrays in 32bit units
+		int uvStride = usingUniformBuffer ? 4 : 2;
+		int vertexColorOffset = vertexCount * 4;
+		int vertexNormalsOffset = vertexColorOffset + (usingVertexColors ? vertexCount * 4 : 0);
+		int vertexUVsOffset = vertexNormalsOffset + (usingVertexNormals ? vertexCount * 4 : 0);
+		int triangleNormalsOffset = vertexUVsOffset + vertexCount * uvStride;
+		int size = triangleNormalsOffset + (vertexCount / 3) * 4;
+
+		FloatBuffer data = prepare(size);
+		int vertexIndex = 0;
+
+		for(int i = 0; i < meshes.size(); i++) {
+			Model mesh = meshes.get(i);
+			Vector3[] vertices = mesh.getVertices();
+			Vector2[] uvCoordinates = mesh.getUVCoordinates();
+			Vector3[] triangleNormals = mesh.getTriangleNormals();
+
+			putVector3s(data, vertexIndex * 4, vertices);
+			if(usingVertexColors) putVector3s(data, vertexColorOffset + vertexIndex * 4, mesh.getVertexColors());
+			if(usingVertexNormals) putVector3s(data, vertexNormalsOffset + vertexIndex * 4, mesh.getVertexNormals());
+			putVector3s(data, triangleNormalsOffset + (vertexIndex / 3) * 4, triangleNormals);
+
+			for(int j = 0; j < vertices.length; j++) {
+				int index = vertexUVsOffset + (vertexIndex + j) * uvStride;
+				data.put(index, uvCoordinates[j].getComponent(0));
+				data.put(index + 1, uvCoordinates[j].getComponent(1));
+
+				if(usingUniformBuffer) {
+					data.put(index + 2, 0);
+					data.put(index + 3, 0);
+				}
+			}
+
+			vertexIndex += vertices.length;
+		}
+
+		return data;
+	}
+
+	/**
+	 * Packs only the vertex colors of a mesh.
+	 *
+	 * @param mesh The {@link Model} of the mesh.
+	 * @return The {@link #buffer}, containing the packed data between its position and limit.
+	 */
+	public FloatBuffer packVertexColors(Model mesh) {
+		Vector3[] vertexColors = mesh.getVertexColors();
+		FloatBuffer data = prepare(vertexColors.length * 4);
+		putVector3s(data, 0, vertexColors);
+		return data;
+	}
+
+	/**
+	 * Frees the {@link #buffer}. The {@link TriangleBufferPacker} can still be used afterwards.
+	 */
+	public void free() {
+		if(buffer != null) memFree(buffer);
+		buffer = null;
+	}
+
+	/**
+	 * Makes sure the {@link #buffer} can hold a number of floats.
+	 *
+	 * @param size How many floats are about to be packed.
+	 * @return The buffer, with its position set to 0 and its limit set to the size.
+	 */
+	private FloatBuffer prepare(int size) {
+		if(buffer == null) {
+			buffer = memAllocFloat(Math.max(size, 1));
+		} else if(buffer.capacity() < size) {
+			buffer = memRealloc(buffer, Math.max(size, buffer.capacity() * 2));
+		}
+
+		buffer.clear();
+		buffer.limit(size);
+		return buffer;
+	}
+
+	/**
+	 * Writes the x, y and z components of vectors into a buffer, padding each vector to four components.
+	 * The padding is written as well, as the buffer is reused.
+	 *
+	 * @param data The buffer.
+	 * @param offset The index of the first vector's x component within the buffer.
+	 * @param vectors The vectors.
+	 */
+	private static void putVector3s(FloatBuffer data, int offset, Vector3[] vectors) {
+		for(int i = 0; i < vectors.length; i++) {
+			int index = offset + i * 4;
+			data.put(index, vectors[i].getComponent(0));
+			data.put(index + 1, vectors[i].getComponent(1));
+			data.put(index + 2, vectors[i].getComponent(2));
+			data.put(index + 3, 0);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package render;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+
+import org.junit.jupiter.api.Test;
+
+import com.sun.management.ThreadMXBean;
+
+import cgi.Model;
+
+/**
+ * Provides tests for the {@link TriangleBufferPacker} class.
+ *
+ * @author Tizian Kirchner
+ */
+class TriangleBufferPackerTest {
+
+	@Test
+	void testPackTriangles() {
+		ArrayList<Model> meshes = new ArrayList<>();
+		meshes.add(new Model("Sphere", Model.SHADING_FLAT));
+		meshes.add(new Model("Cube", Model.SHADING_FLAT));
+
+		int vertexCount = meshes.get(0).getVertices().length + meshes.get(1).getVertices().length;
+		TriangleBufferPacker packer = new TriangleBufferPacker();
+		FloatBuffer data = packer.packTriangles(meshes, true, true, true, vertexCount / 3);
+
+		// same size as the Triangles buffer reserved by the RayTracingShaderProgramBuilder
+		assertEquals(16 * vertexCount + 4 * (vertexCount / 3), data.remaining());
+
+		int firstCubeVertex = meshes.get(0).getVertices().length;
+		float[] cubeVertex = meshes.get(1).getVertices()[0].getComponentsAsFloatArray();
+
+		for(int i = 0; i < 3; i++) {
+			assertEquals(cubeVertex[i], data.get(firstCubeVertex * 4 + i));
+		}
+
+		packer.free();
+	}
+
+	@Test
+	void testSteadyStateAllocation() {
+		ArrayList<Model> meshes = new ArrayList<>();
+		meshes.add(new Model("Sphere", Model.SHADING_FLAT));
+		meshes.add(new Model("Cube", Model.SHADING_FLAT));
+
+		TriangleBufferPacker packer = new TriangleBufferPacker();
+		ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		// the first frames grow the off-heap buffer
+		for(int frame = 0; frame < 3; frame++) {
+			packFrame(packer, meshes);
+		}
+
+		int frameCount = 1000;
+		long frameBytes = packFrame(packer, meshes) * 4L;
+		long allocatedBytes = threadBean.getCurrentThreadAllocatedBytes();
+
+		for(int frame = 0; frame < frameCount; frame++) {
+			packFrame(packer, meshes);
+		}
+
+		allocatedBytes = threadBean.getCurrentThreadAllocatedBytes() - allocatedBytes;
+
+		/*
+		 * JIT compilation of the packing methods may allocate a few hundred bytes on this thread while the frames
+		 * are measured, depending on when it happens. Copying the packed data to the heap each frame would allocate
+		 * more than a whole frame's data in every frame, so all measured frames together have to stay below that.
+		 */
+		assertTrue(
+			allocatedBytes < frameBytes,
+			allocatedBytes + " bytes allocated in " + frameCount + " frames of " + frameBytes + " bytes"
+		);
+
+		packer.free();
+	}
+
+	private static int packFrame(TriangleBufferPacker packer, ArrayList<Model> meshes) {
+		int triangleCount = (meshes.get(0).getVertices().length + meshes.get(1).getVertices().length) / 3;
+		int packedFloats = packer.packTriangles(meshes, true, true, false, triangleCount).remaining();
+
+		for(int i = 0; i < meshes.size(); i++) {
+			packer.packVertexColors(meshes.get(i));
+		}
+
+		return packedFloats;
+	}
+
+}
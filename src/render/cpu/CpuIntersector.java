@@ -0,0 +1,1029 @@
+package render.cpu;
+
+import bvh.BoundingVolumeHierarchy;
+import cgi.ConstructiveSolidGeometry;
+
+/**
+ * Intersects rays with the 3D objects of a {@link CpuScene}, like object_information.glsl and shadow.glsl do
+ * within the ray tracing <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+ *
+ * An intersector keeps the node stacks and the results of its last query in fields, so that tracing a ray does not
+ * allocate any objects. Each thread therefore needs its own intersector.
+ *
+ * @author Tizian Kirchner
+ */
+class CpuIntersector {
+	static final int TYPE_NONE = -1;
+	static final int TYPE_LIGHT = 0;
+	static final int TYPE_TRIANGLE = 1;
+	static final int TYPE_SPHERE = 2;
+	static final int TYPE_QUADRIC = 3;
+
+	private static final int OUTSIDE_MISS = 0;
+	private static final int OUTSIDE_HIT = 1;
+	private static final int INSIDE_HIT = 2;
+
+	/**
+	 * The scene, whose objects are intersected.
+	 */
+	private CpuScene scene;
+
+	/**
+	 * The nodes, which still have to be visited by the traversal of the scene's bounding volume hierarchy
+	 * and of an instance's mesh bounding volume hierarchy. Nearer children are visited first, so the stacks hold
+	 * at most one node per level.
+	 */
+	private int[] sceneNodeStack = new int[BoundingVolumeHierarchy.MAX_DEPTH + 1];
+	private int[] instanceNodeStack = new int[BoundingVolumeHierarchy.MAX_DEPTH + 1];
+
+	/**
+	 * The texel of a color map sampled by {@link #getInstanceShadowStrength}.
+	 */
+	private float[] texel = new float[4];
+
+	/* Nearest Hit */
+
+	/**
+	 * The type of the object found by {@link #findNearestHit}, {@link #TYPE_NONE} if no object has been hit.
+	 */
+	int hitType;
+
+	/**
+	 * The index of the light, triangle, sphere or quadric, which has been hit.
+	 */
+	int hitIndex;
+
+	float hitDistance;
+	boolean hitInvertNormal;
+
+	/**
+	 * The inside tests of the hit triangle's edges BC and CA, from which its barycentric coordinates are
+	 * calculated.
+	 */
+	float hitBcInsideTest;
+	float hitCaInsideTest;
+
+	/**
+	 * The index of the model instance, whose triangle has been hit.
+	 */
+	int hitInstance;
+
+	/* Temporary Results */
+
+	private float triangleBcInsideTest;
+	private float triangleCaInsideTest;
+
+	private int instanceTriangle;
+	private float instanceDistance;
+	private float instanceBcInsideTest;
+	private float instanceCaInsideTest;
+
+	private float closerDistance;
+	private float fartherDistance;
+
+	/**
+	 * The distance to the surface of the sphere or quadric intersected last and if the ray starts inside of it.
+	 * Read by the {@link CpuPacketIntersector} after {@link #intersectSphere}.
+	 */
+	float objectDistance;
+	boolean objectInvertNormal;
+
+	private int csgQuadric;
+	private float csgDistance;
+	private boolean csgInvertNormal;
+
+	/**
+	 * @param scene See {@link #scene}.
+	 */
+	CpuIntersector(CpuScene scene) {
+		this.scene = scene;
+	}
+
+	/* Nearest Hit */
+
+	/**
+	 * Finds the object nearest to the ray origin, which is hit by the ray, and stores it in the hit fields.
+	 *
+	 * @param lightRendering Determines if the lights are hit as spheres, see render settings.
+	 */
+	void findNearestHit(float ox, float oy, float oz, float dx, float dy, float dz, boolean lightRendering) {
+		findNearestQuadric(ox, oy, oz, dx, dy, dz);
+		if(scene.modelCount + scene.sphereCount > 0) findNearestBvhObject(ox, oy, oz, dx, dy, dz);
+		completeNearestHit(ox, oy, oz, dx, dy, dz, lightRendering);
+	}
+
+	/**
+	 * Resets the hit fields and finds the nearest quadric or CSG hit by the ray, which are not part of the
+	 * bounding volume hierarchy. The first step of {@link #findNearestHit}.
+	 */
+	void findNearestQuadric(float ox, float oy, float oz, float dx, float dy, float dz) {
+		hitType = TYPE_NONE;
+		hitIndex = -1;
+		hitDistance = -1;
+		hitInvertNormal = false;
+		hitBcInsideTest = 0;
+		hitCaInsideTest = 0;
+		hitInstance = 0;
+
+		// check for nearest quadric
+		for(int i = 0; i < scene.quadricCount; i++) { if(scene.quadricsVisible[i]) {
+			calculateQuadricDistances(i, ox, oy, oz, dx, dy, dz);
+
+			if((hitDistance < 0 || objectDistance < hitDistance) && objectDistance > 0) {
+				hitType = TYPE_QUADRIC;
+				hitIndex = i;
+				hitDistance = objectDistance;
+				hitInvertNormal = objectInvertNormal;
+			}
+		}}
+
+		// check for nearest CSG
+		for(int i = 0; i < scene.csgCount; i++) {
+			calculateCsg(i, ox, oy, oz, dx, dy, dz);
+
+			if((hitDistance < 0 || csgDistance < hitDistance) && csgDistance > 0) {
+				hitType = TYPE_QUADRIC;
+				hitIndex = csgQuadric;
+				hitDistance = csgDistance;
+				hitInvertNormal = csgInvertNormal;
+			}
+		}
+	}
+
+	/**
+	 * Finds the nearest model instance triangle or sphere hit by the ray by traversing the bounding volume
+	 * hierarchy. Only objects nearer than the object stored in the hit fields are found.
+	 */
+	private void findNearestBvhObject(float ox, float oy, float oz, float dx, float dy, float dz) {
+		float ix = getInverseComponent(dx), iy = getInverseComponent(dy), iz = getInverseComponent(dz);
+		float A = dx * dx + dy * dy + dz * dz;
+
+		int stackSize = 0;
+		int nodeIndex = getNodeDistance(0, ox, oy, oz, ix, iy, iz, hitDistance) >= 0 ? 0 : -1;
+
+		while(nodeIndex >= 0) {
+			int node = getNode(nodeIndex);
+			int childOrFirst = Float.floatToRawIntBits(scene.bvhData[node + 3]);
+			int primitiveCount = Float.floatToRawIntBits(scene.bvhData[node + 7]);
+
+			if(primitiveCount > 0) {
+				for(int i = childOrFirst; i < childOrFirst + primitiveCount; i++) {
+					int primitiveIndex = Float.floatToRawIntBits(scene.bvhData[i]);
+
+					if(primitiveIndex < scene.modelCount) {
+						intersectInstance(primitiveIndex, ox, oy, oz, dx, dy, dz, hitDistance);
+
+						if(instanceTriangle >= 0) {
+							hitType = TYPE_TRIANGLE;
+							hitIndex = instanceTriangle;
+							hitDistance = instanceDistance;
+							hitBcInsideTest = instanceBcInsideTest;
+							hitCaInsideTest = instanceCaInsideTest;
+							hitInstance = primitiveIndex;
+						}
+					} else {
+						int sphereIndex = primitiveIndex - scene.modelCount;
+						calculateSphereDistances(sphereIndex, A, ox, oy, oz, dx, dy, dz);
+
+						if((hitDistance < 0 || objectDistance < hitDistance) && objectDistance > 0) {
+							hitType = TYPE_SPHERE;
+							hitIndex = sphereIndex;
+							hitDistance = objectDistance;
+							hitInvertNormal = objectInvertNormal;
+						}
+					}
+				}
+
+				nodeIndex = stackSize > 0 ? sceneNodeStack[--stackSize] : -1;
+			} else {
+				// visit the nearer child first and store the farther child on the stack
+				int leftIndex = childOrFirst;
+				int rightIndex = leftIndex + 1;
+				float leftDistance = getNodeDistance(leftIndex, ox, oy, oz, ix, iy, iz, hitDistance);
+				float rightDistance = getNodeDistance(rightIndex, ox, oy, oz, ix, iy, iz, hitDistance);
+
+				if(leftDistance >= 0 && rightDistance >= 0) {
+					nodeIndex = leftDistance <= rightDistance ? leftIndex : rightIndex;
+					sceneNodeStack[stackSize++] = leftDistance <= rightDistance ? rightIndex : leftIndex;
+				} else if(leftDistance >= 0) {
+					nodeIndex = leftIndex;
+				} else if(rightDistance >= 0) {
+					nodeIndex = rightIndex;
+				} else {
+					nodeIndex = stackSize > 0 ? sceneNodeStack[--stackSize] : -1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Determines which side of a hit triangle has been hit and checks if a light is nearer than the object
+	 * stored in the hit fields. The last step of {@link #findNearestHit}.
+	 *
+	 * @param lightRendering Determines if the lights are hit as spheres, see render settings.
+	 */
+	void completeNearestHit(float ox, float oy, float oz, float dx, float dy, float dz, boolean lightRendering) {
+		if(hitType == TYPE_TRIANGLE) {
+			// the normal does not need to be normalized to determine which side of the triangle has been hit
+			float[] normals = scene.triangleNormals;
+			int normal = hitIndex * 3;
+			int matrix = hitInstance * 36 + 16;
+			float[] instances = scene.instanceData;
+
+			float nx = transformX(instances, matrix, normals[normal], normals[normal + 1], normals[normal + 2]);
+			float ny = transformY(instances, matrix, normals[normal], normals[normal + 1], normals[normal + 2]);
+			float nz = transformZ(instances, matrix, normals[normal], normals[normal + 1], normals[normal + 2]);
+			hitInvertNormal = dx * nx + dy * ny + dz * nz > 0;
+		}
+
+		if(!lightRendering) return;
+
+		float A = dx * dx + dy * dy + dz * dz;
+		float[] lights = scene.lights;
+
+		for(int i = 0; i < scene.lightCount; i++) {
+			int light = i * CpuScene.LIGHT_SIZE;
+
+			calculateSphereDistances(
+				lights[light], lights[light + 1], lights[light + 2], lights[light + 7], A, ox, oy, oz, dx, dy, dz
+			);
+
+			if((hitDistance < 0 || objectDistance < hitDistance) && objectDistance > 0) {
+				hitType = TYPE_LIGHT;
+				hitIndex = i;
+				hitDistance = objectDistance;
+			}
+		}
+	}
+
+	/**
+	 * Finds the triangle of a model instance nearest to the ray origin and stores it in the instance fields.
+	 * The ray is transformed into the object space of the instance's mesh without being normalized,
+	 * so that distances stay the same.
+	 *
+	 * @param maxDistance Only triangles nearer than this distance are found, unless it is negative.
+	 */
+	private void intersectInstance(
+		int instanceIndex, float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance
+	) {
+		float[] instances = scene.instanceData;
+		int instance = instanceIndex * 36;
+
+		float iox = transformX(instances, instance, ox, oy, oz) + instances[instance + 12];
+		float ioy = transformY(instances, instance, ox, oy, oz) + instances[instance + 13];
+		float ioz = transformZ(instances, instance, ox, oy, oz) + instances[instance + 14];
+		float idx = transformX(instances, instance, dx, dy, dz);
+		float idy = transformY(instances, instance, dx, dy, dz);
+		float idz = transformZ(instances, instance, dx, dy, dz);
+		float ix = getInverseComponent(idx), iy = getInverseComponent(idy), iz = getInverseComponent(idz);
+
+		instanceTriangle = -1;
+		instanceDistance = maxDistance;
+		instanceBcInsideTest = 0;
+		instanceCaInsideTest = 0;
+
+		int stackSize = 0;
+		int nodeIndex = Float.floatToRawIntBits(instances[instance + 32]);
+		if(getNodeDistance(nodeIndex, iox, ioy, ioz, ix, iy, iz, maxDistance) < 0) nodeIndex = -1;
+
+		while(nodeIndex >= 0) {
+			int node = getNode(nodeIndex);
+			int childOrFirst = Float.floatToRawIntBits(scene.bvhData[node + 3]);
+			int primitiveCount = Float.floatToRawIntBits(scene.bvhData[node + 7]);
+			float nearestDistance = instanceDistance;
+
+			if(primitiveCount > 0) {
+				for(int i = childOrFirst; i < childOrFirst + primitiveCount; i++) {
+					int triangleIndex = Float.floatToRawIntBits(scene.bvhData[i]);
+					float triangleDistance = intersectTriangle(
+						triangleIndex, iox, ioy, ioz, idx, idy, idz, instanceDistance
+					);
+
+					if((instanceDistance < 0 || triangleDistance < instanceDistance) && triangleDistance > 0) {
+						instanceTriangle = triangleIndex;
+						instanceDistance = triangleDistance;
+						instanceBcInsideTest = triangleBcInsideTest;
+						instanceCaInsideTest = triangleCaInsideTest;
+					}
+				}
+
+				nodeIndex = stackSize > 0 ? instanceNodeStack[--stackSize] : -1;
+			} else {
+				// visit the nearer child first and store the farther child on the stack
+				int leftIndex = childOrFirst;
+				int rightIndex = leftIndex + 1;
+				float leftDistance = getNodeDistance(leftIndex, iox, ioy, ioz, ix, iy, iz, nearestDistance);
+				float rightDistance = getNodeDistance(rightIndex, iox, ioy, ioz, ix, iy, iz, nearestDistance);
+
+				if(leftDistance >= 0 && rightDistance >= 0) {
+					nodeIndex = leftDistance <= rightDistance ? leftIndex : rightIndex;
+					instanceNodeStack[stackSize++] = leftDistance <= rightDistance ? rightIndex : leftIndex;
+				} else if(leftDistance >= 0) {
+					nodeIndex = leftIndex;
+				} else if(rightDistance >= 0) {
+					nodeIndex = rightIndex;
+				} else {
+					nodeIndex = stackSize > 0 ? instanceNodeStack[--stackSize] : -1;
+				}
+			}
+		}
+	}
+
+	/* Shadows */
+
+	/**
+	 * Checks if any object lies between the ray origin and a light. Unlike {@link #findNearestHit}, the traversal
+	 * stops at the first occluder found.
+	 *
+	 * @param lightDistance The distance between the ray origin and the light.
+	 * @return If the ray origin is in the shadow of an object.
+	 */
+	boolean isOccluded(float ox, float oy, float oz, float dx, float dy, float dz, float lightDistance) {
+		// check the model instances and spheres by traversing the bounding volume hierarchy,
+		// whose nodes are clipped to the light distance
+		if(scene.modelCount + scene.sphereCount > 0) {
+			float ix = getInverseComponent(dx), iy = getInverseComponent(dy), iz = getInverseComponent(dz);
+			float A = dx * dx + dy * dy + dz * dz;
+
+			int stackSize = 0;
+			int nodeIndex = getNodeDistance(0, ox, oy, oz, ix, iy, iz, lightDistance) >= 0 ? 0 : -1;
+
+			while(nodeIndex >= 0) {
+				int node = getNode(nodeIndex);
+				int childOrFirst = Float.floatToRawIntBits(scene.bvhData[node + 3]);
+				int primitiveCount = Float.floatToRawIntBits(scene.bvhData[node + 7]);
+
+				if(primitiveCount > 0) {
+					for(int j = childOrFirst; j < childOrFirst + primitiveCount; j++) {
+						int primitiveIndex = Float.floatToRawIntBits(scene.bvhData[j]);
+
+						if(primitiveIndex < scene.modelCount) {
+							if(isInstanceOccluding(primitiveIndex, ox, oy, oz, dx, dy, dz, lightDistance)) return true;
+						} else {
+							calculateSphereDistances(primitiveIndex - scene.modelCount, A, ox, oy, oz, dx, dy, dz);
+							if(objectDistance >= 0 && objectDistance < lightDistance) return true;
+						}
+					}
+
+					nodeIndex = stackSize > 0 ? sceneNodeStack[--stackSize] : -1;
+				} else {
+					// visit the nearer child first, as it is more likely to contain an occluder
+					int leftIndex = childOrFirst;
+					int rightIndex = leftIndex + 1;
+					float leftDistance = getNodeDistance(leftIndex, ox, oy, oz, ix, iy, iz, lightDistance);
+					float rightDistance = getNodeDistance(rightIndex, ox, oy, oz, ix, iy, iz, lightDistance);
+
+					if(leftDistance >= 0 && rightDistance >= 0) {
+						nodeIndex = leftDistance <= rightDistance ? leftIndex : rightIndex;
+						sceneNodeStack[stackSize++] = leftDistance <= rightDistance ? rightIndex : leftIndex;
+					} else if(leftDistance >= 0) {
+						nodeIndex = leftIndex;
+					} else if(rightDistance >= 0) {
+						nodeIndex = rightIndex;
+					} else {
+						nodeIndex = stackSize > 0 ? sceneNodeStack[--stackSize] : -1;
+					}
+				}
+			}
+		}
+
+		// check the quadrics and csgs, which are not part of the bounding volume hierarchy
+		for(int i = 0; i < scene.quadricCount; i++) { if(scene.quadricsVisible[i]) {
+			calculateQuadricDistances(i, ox, oy, oz, dx, dy, dz);
+			if(objectDistance >= 0 && objectDistance < lightDistance) return true;
+		}}
+
+		for(int i = 0; i < scene.csgCount; i++) {
+			calculateCsg(i, ox, oy, oz, dx, dy, dz);
+			if(csgDistance >= 0 && csgDistance < lightDistance) return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return If any triangle of a model instance lies between the ray origin and a light.
+	 */
+	private boolean isInstanceOccluding(
+		int instanceIndex, float ox, float oy, float oz, float dx, float dy, float dz, float lightDistance
+	) {
+		float[] instances = scene.instanceData;
+		int instance = instanceIndex * 36;
+
+		float iox = transformX(instances, instance, ox, oy, oz) + instances[instance + 12];
+		float ioy = transformY(instances, instance, ox, oy, oz) + instances[instance + 13];
+		float ioz = transformZ(instances, instance, ox, oy, oz) + instances[instance + 14];
+		float idx = transformX(instances, instance, dx, dy, dz);
+		float idy = transformY(instances, instance, dx, dy, dz);
+		float idz = transformZ(instances, instance, dx, dy, dz);
+		float ix = getInverseComponent(idx), iy = getInverseComponent(idy), iz = getInverseComponent(idz);
+
+		int stackSize = 0;
+		int rootIndex = Float.floatToRawIntBits(instances[instance + 32]);
+		int nodeIndex = getNodeDistance(rootIndex, iox, ioy, ioz, ix, iy, iz, lightDistance) >= 0 ? rootIndex : -1;
+
+		while(nodeIndex >= 0) {
+			int node = getNode(nodeIndex);
+			int childOrFirst = Float.floatToRawIntBits(scene.bvhData[node + 3]);
+			int primitiveCount = Float.floatToRawIntBits(scene.bvhData[node + 7]);
+
+			if(primitiveCount > 0) {
+				for(int j = childOrFirst; j < childOrFirst + primitiveCount; j++) {
+					int triangleIndex = Float.floatToRawIntBits(scene.bvhData[j]);
+					if(intersectTriangle(triangleIndex, iox, ioy, ioz, idx, idy, idz, lightDistance) >= 0) return true;
+				}
+
+				nodeIndex = stackSize > 0 ? instanceNodeStack[--stackSize] : -1;
+			} else {
+				// visit the nearer child first, as it is more likely to contain an occluder
+				int leftIndex = childOrFirst;
+				int rightIndex = leftIndex + 1;
+				float leftDistance = getNodeDistance(leftIndex, iox, ioy, ioz, ix, iy, iz, lightDistance);
+				float rightDistance = getNodeDistance(rightIndex, iox, ioy, ioz, ix, iy, iz, lightDistance);
+
+				if(leftDistance >= 0 && rightDistance >= 0) {
+					nodeIndex = leftDistance <= rightDistance ? leftIndex : rightIndex;
+					instanceNodeStack[stackSize++] = leftDistance <= rightDistance ? rightIndex : leftIndex;
+				} else if(leftDistance >= 0) {
+					nodeIndex = leftIndex;
+				} else if(rightDistance >= 0) {
+					nodeIndex = rightIndex;
+				} else {
+					nodeIndex = stackSize > 0 ? instanceNodeStack[--stackSize] : -1;
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Sums up the opacities of all objects between the ray origin and a light, which is used if the lighting
+	 * handles transparency.
+	 *
+	 * @param lightDistance The distance between the ray origin and the light.
+	 * @return The shadow strength between 0 and 1.
+	 */
+	float getShadowStrength(float ox, float oy, float oz, float dx, float dy, float dz, float lightDistance) {
+		float shadowStrength = 0;
+		float[] materials = scene.materials;
+
+		// check for nearest quadrics
+		for(int i = 0; i < scene.quadricCount; i++) { if(scene.quadricsVisible[i]) {
+			calculateQuadricDistances(i, ox, oy, oz, dx, dy, dz);
+
+			if(objectDistance >= 0 && objectDistance < lightDistance) {
+				shadowStrength += materials[scene.quadricMaterials[i] * 5 + 4];
+				if(shadowStrength >= 1) return 1;
+			}
+		}}
+
+		// check for nearest csgs, whose opacity is read like shadow.glsl reads it
+		for(int i = 0; i < scene.csgCount; i++) {
+			calculateCsg(i, ox, oy, oz, dx, dy, dz);
+
+			if(csgDistance >= 0 && csgDistance < lightDistance) {
+				shadowStrength += materials[scene.quadricMaterials[i] * 5 + 4];
+				if(shadowStrength >= 1) return 1;
+			}
+		}
+
+		// check for nearest model instances and spheres by traversing the bounding volume hierarchy
+		if(scene.modelCount + scene.sphereCount > 0) {
+			float ix = getInverseComponent(dx), iy = getInverseComponent(dy), iz = getInverseComponent(dz);
+			float A = dx * dx + dy * dy + dz * dz;
+
+			int stackSize = 0;
+			int nodeIndex = getNodeDistance(0, ox, oy, oz, ix, iy, iz, lightDistance) >= 0 ? 0 : -1;
+
+			while(nodeIndex >= 0) {
+				int node = getNode(nodeIndex);
+				int childOrFirst = Float.floatToRawIntBits(scene.bvhData[node + 3]);
+				int primitiveCount = Float.floatToRawIntBits(scene.bvhData[node + 7]);
+
+				if(primitiveCount > 0) {
+					for(int j = childOrFirst; j < childOrFirst + primitiveCount; j++) {
+						int primitiveIndex = Float.floatToRawIntBits(scene.bvhData[j]);
+
+						if(primitiveIndex < scene.modelCount) {
+							shadowStrength = getInstanceShadowStrength(
+								primitiveIndex, ox, oy, oz, dx, dy, dz, lightDistance, shadowStrength
+							);
+
+							if(shadowStrength >= 1) return 1;
+						} else {
+							int sphereIndex = primitiveIndex - scene.modelCount;
+							calculateSphereDistances(sphereIndex, A, ox, oy, oz, dx, dy, dz);
+
+							if(objectDistance >= 0 && objectDistance < lightDistance) {
+								shadowStrength += materials[scene.sphereMaterials[sphereIndex] * 5 + 4];
+								if(shadowStrength >= 1) return 1;
+							}
+						}
+					}
+
+					nodeIndex = stackSize > 0 ? sceneNodeStack[--stackSize] : -1;
+				} else {
+					int leftIndex = childOrFirst;
+					int rightIndex = leftIndex + 1;
+					boolean leftHit = getNodeDistance(leftIndex, ox, oy, oz, ix, iy, iz, lightDistance) >= 0;
+					boolean rightHit = getNodeDistance(rightIndex, ox, oy, oz, ix, iy, iz, lightDistance) >= 0;
+
+					if(leftHit && rightHit) {
+						nodeIndex = leftIndex;
+						sceneNodeStack[stackSize++] = rightIndex;
+					} else if(leftHit) {
+						nodeIndex = leftIndex;
+					} else if(rightHit) {
+						nodeIndex = rightIndex;
+					} else {
+						nodeIndex = stackSize > 0 ? sceneNodeStack[--stackSize] : -1;
+					}
+				}
+			}
+		}
+
+		return shadowStrength;
+	}
+
+	/**
+	 * Adds the opacities of the triangles of a model instance between the ray origin and a light to a shadow
+	 * strength. The opacity of a triangle is the alpha value of the instance's color map.
+	 *
+	 * @param shadowStrength The shadow strength of the objects checked before.
+	 * @return The shadow strength including the triangles of the instance, 1 at most.
+	 */
+	private float getInstanceShadowStrength(
+		int instanceIndex, float ox, float oy, float oz, float dx, float dy, float dz, float lightDistance,
+		float shadowStrength
+	) {
+		float[] instances = scene.instanceData;
+		int instance = instanceIndex * 36;
+		int textureIndex = Float.floatToRawIntBits(instances[instance + 33]);
+		boolean hasTexture = textureIndex >= 0 && textureIndex < scene.colorMaps.length;
+		CpuTexture colorMap = hasTexture ? scene.colorMaps[textureIndex] : null;
+
+		float iox = transformX(instances, instance, ox, oy, oz) + instances[instance + 12];
+		float ioy = transformY(instances, instance, ox, oy, oz) + instances[instance + 13];
+		float ioz = transformZ(instances, instance, ox, oy, oz) + instances[instance + 14];
+		float idx = transformX(instances, instance, dx, dy, dz);
+		float idy = transformY(instances, instance, dx, dy, dz);
+		float idz = transformZ(instances, instance, dx, dy, dz);
+		float ix = getInverseComponent(idx), iy = getInverseComponent(idy), iz = getInverseComponent(idz);
+
+		int stackSize = 0;
+		int rootIndex = Float.floatToRawIntBits(instances[instance + 32]);
+		int nodeIndex = getNodeDistance(rootIndex, iox, ioy, ioz, ix, iy, iz, lightDistance) >= 0 ? rootIndex : -1;
+
+		while(nodeIndex >= 0) {
+			int node = getNode(nodeIndex);
+			int childOrFirst = Float.floatToRawIntBits(scene.bvhData[node + 3]);
+			int primitiveCount = Float.floatToRawIntBits(scene.bvhData[node + 7]);
+
+			if(primitiveCount > 0) {
+				for(int j = childOrFirst; j < childOrFirst + primitiveCount; j++) {
+					int i = Float.floatToRawIntBits(scene.bvhData[j]);
+
+					if(intersectTriangle(i, iox, ioy, ioz, idx, idy, idz, lightDistance) >= 0) {
+						float denominator = getTriangleNormalLengthSquared(i);
+						float u = triangleBcInsideTest / denominator;
+						float v = triangleCaInsideTest / denominator;
+						float w = 1 - u - v;
+
+						float[] uvs = scene.vertexUVs;
+						float textureU = u * uvs[i * 6] + v * uvs[i * 6 + 2] + w * uvs[i * 6 + 4];
+						float textureV = u * uvs[i * 6 + 1] + v * uvs[i * 6 + 3] + w * uvs[i * 6 + 5];
+
+						CpuTexture.sample(colorMap, textureU, textureV, texel);
+						shadowStrength += texel[3];
+						if(shadowStrength >= 1) return 1;
+					}
+				}
+
+				nodeIndex = stackSize > 0 ? instanceNodeStack[--stackSize] : -1;
+			} else {
+				int leftIndex = childOrFirst;
+				int rightIndex = leftIndex + 1;
+				boolean leftHit = getNodeDistance(leftIndex, iox, ioy, ioz, ix, iy, iz, lightDistance) >= 0;
+				boolean rightHit = getNodeDistance(rightIndex, iox, ioy, ioz, ix, iy, iz, lightDistance) >= 0;
+
+				if(leftHit && rightHit) {
+					nodeIndex = leftIndex;
+					instanceNodeStack[stackSize++] = rightIndex;
+				} else if(leftHit) {
+					nodeIndex = leftIndex;
+				} else if(rightHit) {
+					nodeIndex = rightIndex;
+				} else {
+					nodeIndex = stackSize > 0 ? instanceNodeStack[--stackSize] : -1;
+				}
+			}
+		}
+
+		return shadowStrength;
+	}
+
+	/* Triangles */
+
+	/**
+	 * Intersects a ray with a triangle and stores the inside tests of the triangle's edges BC and CA.
+	 *
+	 * @param maxDistance Only intersections nearer than this distance are found, unless it is negative.
+	 * @return The distance between the ray origin and the intersection, -1 if the ray misses the triangle.
+	 */
+	private float intersectTriangle(
+		int triangleIndex, float ox, float oy, float oz, float dx, float dy, float dz, float maxDistance
+	) {
+		float[] normals = scene.triangleNormals;
+		int normal = triangleIndex * 3;
+		float nx = normals[normal], ny = normals[normal + 1], nz = normals[normal + 2];
+		float normalDirectionAlignment = nx * dx + ny * dy + nz * dz;
+		if(normalDirectionAlignment == 0) return -1;
+
+		float[] vertices = scene.vertices;
+		int vertex = triangleIndex * 9;
+		float ax = vertices[vertex], ay = vertices[vertex + 1], az = vertices[vertex + 2];
+
+		float triangleDistance = (
+			-((nx * ox + ny * oy + nz * oz) - (nx * ax + ny * ay + nz * az)) / normalDirectionAlignment
+		);
+
+		if(triangleDistance < 0 || (triangleDistance >= maxDistance && maxDistance >= 0)) return -1;
+
+		float px = ox + triangleDistance * dx;
+		float py = oy + triangleDistance * dy;
+		float pz = oz + triangleDistance * dz;
+
+		float bx = vertices[vertex + 3], by = vertices[vertex + 4], bz = vertices[vertex + 5];
+		float cx = vertices[vertex + 6], cy = vertices[vertex + 7], cz = vertices[vertex + 8];
+
+		float bcInsideTest = getInsideTest(nx, ny, nz, cx - bx, cy - by, cz - bz, px - bx, py - by, pz - bz);
+		float caInsideTest = getInsideTest(nx, ny, nz, ax - cx, ay - cy, az - cz, px - cx, py - cy, pz - cz);
+		float abInsideTest = getInsideTest(nx, ny, nz, bx - ax, by - ay, bz - az, px - ax, py - ay, pz - az);
+
+		if(bcInsideTest > 0 && caInsideTest > 0 && abInsideTest > 0) {
+			triangleBcInsideTest = bcInsideTest;
+			triangleCaInsideTest = caInsideTest;
+			return triangleDistance;
+		}
+
+		return -1;
+	}
+
+	/**
+	 * @return The dot product of the normal n and the cross product of the edge e and the vector p.
+	 */
+	private static float getInsideTest(
+		float nx, float ny, float nz, float ex, float ey, float ez, float px, float py, float pz
+	) {
+		return nx * (ey * pz - ez * py) + ny * (ez * px - ex * pz) + nz * (ex * py - ey * px);
+	}
+
+	/**
+	 * @return
+	 * The squared length of a triangle's normal, which divides the inside tests to get the triangle's barycentric
+	 * coordinates.
+	 */
+	float getTriangleNormalLengthSquared(int triangleIndex) {
+		float[] normals = scene.triangleNormals;
+		int normal = triangleIndex * 3;
+		return normals[normal] * normals[normal] + normals[normal + 1] * normals[normal + 1] +
+		       normals[normal + 2] * normals[normal + 2];
+	}
+
+	/* Bounding Volume Hierarchy */
+
+	/**
+	 * @return The position of a node's data within the {@link CpuScene#bvhData}.
+	 */
+	int getNode(int nodeIndex) {
+		return scene.bvhNodeOffset + nodeIndex * BoundingVolumeHierarchy.NODE_SIZE;
+	}
+
+	/**
+	 * @return
+	 * The component of the inverse ray direction, which is used by {@link #getNodeDistance}.
+	 * Components near 0 are replaced, so that the inverse stays finite.
+	 */
+	private static float getInverseComponent(float component) {
+		return 1 / (Math.abs(component) < 1e-30f ? 1e-30f : component);
+	}
+
+	/**
+	 * Intersects a ray with the bounding box of a node through the slab test.
+	 *
+	 * @param ix The x component of the inverse ray direction.
+	 * @param maxDistance The box is only hit if the ray enters it before this distance, unless it is negative.
+	 * @return The distance at which the ray enters the box, 0 if the ray starts inside of it, -1 if it misses it.
+	 */
+	private float getNodeDistance(
+		int nodeIndex, float ox, float oy, float oz, float ix, float iy, float iz, float maxDistance
+	) {
+		float[] data = scene.bvhData;
+		int node = getNode(nodeIndex);
+
+		float minimumX = (data[node] - ox) * ix, maximumX = (data[node + 4] - ox) * ix;
+		float minimumY = (data[node + 1] - oy) * iy, maximumY = (data[node + 5] - oy) * iy;
+		float minimumZ = (data[node + 2] - oz) * iz, maximumZ = (data[node + 6] - oz) * iz;
+
+		float entryDistance = Math.max(
+			Math.max(Math.max(Math.min(minimumX, maximumX), Math.min(minimumY, maximumY)), Math.min(minimumZ, maximumZ)),
+			0
+		);
+
+		float exitDistance = Math.min(
+			Math.min(Math.max(minimumX, maximumX), Math.max(minimumY, maximumY)), Math.max(minimumZ, maximumZ)
+		);
+
+		if(exitDistance < entryDistance || (maxDistance >= 0 && entryDistance > maxDistance)) return -1;
+		return entryDistance;
+	}
+
+	/* Instance Transformations */
+
+	/**
+	 * @param data The array storing a column major matrix.
+	 * @param matrix The position of the matrix within the data.
+	 * @return The x component of the vector (x, y, z) transformed by the upper left 3x3 part of the matrix.
+	 */
+	static float transformX(float[] data, int matrix, float x, float y, float z) {
+		return data[matrix] * x + data[matrix + 4] * y + data[matrix + 8] * z;
+	}
+
+	/**
+	 * See {@link #transformX}.
+	 */
+	static float transformY(float[] data, int matrix, float x, float y, float z) {
+		return data[matrix + 1] * x + data[matrix + 5] * y + data[matrix + 9] * z;
+	}
+
+	/**
+	 * See {@link #transformX}.
+	 */
+	static float transformZ(float[] data, int matrix, float x, float y, float z) {
+		return data[matrix + 2] * x + data[matrix + 6] * y + data[matrix + 10] * z;
+	}
+
+	/* Spheres and Quadrics */
+
+	/**
+	 * Intersects a ray with a sphere of the scene like the traversal of {@link #findNearestHit} does.
+	 *
+	 * @return The distance to the sphere's surface, see {@link #objectDistance}.
+	 */
+	float intersectSphere(int sphereIndex, float ox, float oy, float oz, float dx, float dy, float dz) {
+		calculateSphereDistances(sphereIndex, dx * dx + dy * dy + dz * dz, ox, oy, oz, dx, dy, dz);
+		return objectDistance;
+	}
+
+	/**
+	 * Calculates the distances of a sphere of the scene, see {@link #calculateSphereDistances(float, float, float,
+	 * float, float, float, float, float, float, float, float)}.
+	 */
+	private void calculateSphereDistances(
+		int sphereIndex, float A, float ox, float oy, float oz, float dx, float dy, float dz
+	) {
+		float[] spheres = scene.spheres;
+		int sphere = sphereIndex * 4;
+
+		calculateSphereDistances(
+			spheres[sphere], spheres[sphere + 1], spheres[sphere + 2], spheres[sphere + 3], A, ox, oy, oz, dx, dy, dz
+		);
+	}
+
+	/**
+	 * Calculates the distances between the ray origin and the points at which the ray enters and leaves a sphere
+	 * and stores them in the object fields.
+	 *
+	 * @param A The squared length of the ray direction.
+	 */
+	private void calculateSphereDistances(
+		float sx, float sy, float sz, float radius, float A, float ox, float oy, float oz, float dx, float dy, float dz
+	) {
+		float B = (2 * ox * dx - 2 * sx * dx) + (2 * oy * dy - 2 * sy * dy) + (2 * oz * dz - 2 * sz * dz);
+
+		float C = (
+			(ox * ox + sx * sx - 2 * sx * ox) + (oy * oy + sy * sy - 2 * sy * oy) + (oz * oz + sz * sz - 2 * sz * oz) -
+			radius * radius
+		);
+
+		calculateObjectDistances(A, B, C);
+	}
+
+	/**
+	 * Calculates the distances between the ray origin and the points at which the ray enters and leaves a quadric
+	 * and stores them in the object fields.
+	 */
+	private void calculateQuadricDistances(
+		int quadricIndex, float ox, float oy, float oz, float dx, float dy, float dz
+	) {
+		float[] q = scene.quadrics;
+		int quadric = quadricIndex * 10;
+		float qA = q[quadric], qB = q[quadric + 1], qC = q[quadric + 2], qD = q[quadric + 3], qE = q[quadric + 4];
+		float qF = q[quadric + 5], qG = q[quadric + 6], qH = q[quadric + 7], qI = q[quadric + 8], qJ = q[quadric + 9];
+
+		float A = (qA * dx * dx + qB * dy * dy + qC * dz * dz) + 2 * (qD * dx * dy + qE * dx * dz + qF * dy * dz);
+
+		float B = 2 * (
+			(qA * ox * dx + qB * oy * dy + qC * oz * dz) +
+			qD * ox * dy + qD * oy * dx +
+			qE * ox * dz + qE * oz * dx +
+			qF * oy * dz + qF * oz * dy +
+			(qG * dx + qH * dy + qI * dz)
+		);
+
+		float C = (
+			(qA * ox * ox + qB * oy * oy + qC * oz * oz) + 2 * (
+				qD * ox * oy +
+				qE * ox * oz +
+				qF * oy * oz +
+				(qG * ox + qH * oy + qI * oz)
+			) + qJ
+		);
+
+		calculateObjectDistances(A, B, C);
+	}
+
+	/**
+	 * Calculates the normal of a quadric at a position on its surface.
+	 *
+	 * @param normal Stores the normalized normal.
+	 */
+	void calculateQuadricNormal(int quadricIndex, float x, float y, float z, float[] normal) {
+		float[] q = scene.quadrics;
+		int quadric = quadricIndex * 10;
+		float qA = q[quadric], qB = q[quadric + 1], qC = q[quadric + 2], qD = q[quadric + 3], qE = q[quadric + 4];
+		float qF = q[quadric + 5], qG = q[quadric + 6], qH = q[quadric + 7], qI = q[quadric + 8];
+
+		normal[0] = qA * x + qD * y + qE * z + qG;
+		normal[1] = qD * x + qB * y + qF * z + qH;
+		normal[2] = qE * x + qF * y + qC * z + qI;
+		CpuRayTracer.normalize(normal);
+	}
+
+	/**
+	 * Solves the quadratic equation A * t^2 + B * t + C = 0 like calculateDistances of math.glsl and stores the
+	 * solutions as the closer and farther distance. Then determines the distance to the object's surface and if
+	 * the ray starts inside of the object, in which case the normal has to be inverted.
+	 */
+	private void calculateObjectDistances(float A, float B, float C) {
+		float p = B / A;
+		float q = C / A;
+
+		if((p / 2) * (p / 2) - q >= 0) {
+			if(A == 0) {
+				closerDistance = fartherDistance = -C / B;
+			} else {
+				int bSign = B > 0 ? 1 : B < 0 ? -1 : 0;
+				float k = (float) (-B - bSign * Math.sqrt(B * B - 4 * A * C)) / 2;
+				closerDistance = C / k;
+				fartherDistance = k / A;
+			}
+		} else {
+			closerDistance = -1;
+			fartherDistance = -1;
+		}
+
+		objectInvertNormal = false;
+
+		if(closerDistance >= 0) {
+			objectDistance = closerDistance;
+			if(fartherDistance < closerDistance) objectInvertNormal = true;
+		} else if(fartherDistance >= 0) {
+			objectDistance = fartherDistance;
+			objectInvertNormal = true;
+		} else objectDistance = -1;
+	}
+
+	/**
+	 * @return Either {@link #OUTSIDE_MISS}, {@link #OUTSIDE_HIT} or {@link #INSIDE_HIT}.
+	 */
+	private static int getObjectPositionState(float closer, float farther) {
+		if(closer >= 0) return farther < closer ? INSIDE_HIT : OUTSIDE_HIT;
+		return farther >= 0 ? INSIDE_HIT : OUTSIDE_MISS;
+	}
+
+	/**
+	 * Intersects a ray with a {@link ConstructiveSolidGeometry} like getCsgInformation of object_information.glsl
+	 * and stores the hit quadric, the distance and if the normal has to be inverted in the CSG fields.
+	 */
+	private void calculateCsg(int csgIndex, float ox, float oy, float oz, float dx, float dy, float dz) {
+		int quadric1Index = scene.csgs[csgIndex * 3];
+		int quadric2Index = scene.csgs[csgIndex * 3 + 1];
+		int operation = scene.csgs[csgIndex * 3 + 2];
+
+		calculateQuadricDistances(quadric1Index, ox, oy, oz, dx, dy, dz);
+		float quadric1CloserDistance = closerDistance;
+		float quadric1FartherDistance = fartherDistance;
+		float quadric1Distance = objectDistance;
+		boolean quadric1InvertNormal = objectInvertNormal;
+
+		calculateQuadricDistances(quadric2Index, ox, oy, oz, dx, dy, dz);
+		float quadric2CloserDistance = closerDistance;
+		float quadric2FartherDistance = fartherDistance;
+		float quadric2Distance = objectDistance;
+		boolean quadric2InvertNormal = objectInvertNormal;
+
+		int quadric1PositionState = getObjectPositionState(quadric1CloserDistance, quadric1FartherDistance);
+		int quadric2PositionState = getObjectPositionState(quadric2CloserDistance, quadric2FartherDistance);
+
+		csgQuadric = 0;
+		csgDistance = -1;
+		csgInvertNormal = false;
+
+		switch(operation) {
+		case ConstructiveSolidGeometry.CSG_UNION:
+			if(
+				quadric1PositionState != OUTSIDE_MISS &&
+				(quadric2PositionState == OUTSIDE_MISS || quadric1Distance < quadric2Distance)
+			) {
+				csgQuadric = quadric1Index;
+				csgDistance = quadric1Distance;
+				csgInvertNormal = quadric1InvertNormal;
+			} else if(quadric2PositionState != OUTSIDE_MISS) {
+				csgQuadric = quadric2Index;
+				csgDistance = quadric2Distance;
+				csgInvertNormal = quadric2InvertNormal;
+			}
+		break;
+		case ConstructiveSolidGeometry.CSG_DIFFERENCE:
+			if(quadric1PositionState == OUTSIDE_MISS) break;
+
+			if(quadric2PositionState == OUTSIDE_MISS) {
+				csgQuadric = quadric1Index;
+				csgDistance = quadric1Distance;
+				csgInvertNormal = quadric1InvertNormal;
+			} else if(quadric1PositionState == OUTSIDE_HIT) {
+				if((
+					quadric2PositionState == OUTSIDE_HIT &&
+					(
+						quadric1CloserDistance < quadric2CloserDistance ||
+						quadric2FartherDistance < quadric1CloserDistance
+					)
+				) || (
+					quadric2PositionState == INSIDE_HIT &&
+					quadric2Distance < quadric1CloserDistance
+				)) {
+					csgQuadric = quadric1Index;
+					csgDistance = quadric1CloserDistance;
+				} else if((
+					quadric2PositionState == OUTSIDE_HIT &&
+					quadric1CloserDistance < quadric2FartherDistance &&
+					quadric2FartherDistance < quadric1FartherDistance
+				) || (
+					quadric2PositionState == INSIDE_HIT && quadric2Distance < quadric1FartherDistance
+				)) {
+					csgQuadric = quadric2Index;
+					csgDistance = quadric2Distance;
+					csgInvertNormal = true;
+				}
+			} else if(quadric1PositionState == INSIDE_HIT) {
+				if(quadric2PositionState == OUTSIDE_HIT && quadric1Distance < quadric2Distance) {
+					csgQuadric = quadric1Index;
+					csgDistance = quadric1Distance;
+					csgInvertNormal = true;
+				} else if(quadric2Distance < quadric1Distance) {
+					csgQuadric = quadric2Index;
+					csgDistance = quadric2Distance;
+					if(quadric2PositionState != OUTSIDE_HIT) csgInvertNormal = true;
+				}
+			}
+		break;
+		case ConstructiveSolidGeometry.CSG_INTERSECTION:
+			if(quadric1PositionState == OUTSIDE_HIT) {
+				if(
+					quadric2PositionState == OUTSIDE_HIT &&
+					quadric2CloserDistance < quadric1FartherDistance &&
+					quadric1CloserDistance < quadric2FartherDistance
+				) {
+					if(quadric2CloserDistance < quadric1CloserDistance) {
+						csgQuadric = quadric1Index;
+						csgDistance = quadric1CloserDistance;
+					} else {
+						csgQuadric = quadric2Index;
+						csgDistance = quadric2CloserDistance;
+					}
+				} else if(quadric2PositionState == INSIDE_HIT && quadric1CloserDistance < quadric2Distance) {
+					csgQuadric = quadric1Index;
+					csgDistance = quadric1Distance;
+				}
+			} else if(quadric1PositionState == INSIDE_HIT) {
+				if(quadric2PositionState == OUTSIDE_HIT && quadric2CloserDistance < quadric1Distance) {
+					csgQuadric = quadric2Index;
+					csgDistance = quadric2Distance;
+				} else if(quadric2PositionState == INSIDE_HIT) {
+					if(quadric1Distance < quadric2Distance) {
+						csgQuadric = quadric1Index;
+						csgDistance = quadric1Distance;
+					} else {
+						csgQuadric = quadric2Index;
+						csgDistance = quadric2Distance;
+					}
+
+					csgInvertNormal = true;
+				}
+			}
+		break;
+		}
+	}
+}
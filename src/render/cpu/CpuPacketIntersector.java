@@ -0,0 +1,451 @@
+package render.cpu;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import bvh.BoundingVolumeHierarchy;
+
+/**
+ * Finds the nearest hits of packets of coherent rays, like the primary rays of neighboring pixels, by traversing
+ * the bounding volume hierarchy of a {@link CpuScene} once for the whole packet.
+ *
+ * Each ray of a packet occupies one lane of a {@link FloatVector}, so that the slab tests of the nodes and the
+ * intersection tests of the triangles are calculated for all rays at once by the SIMD instructions of the CPU.
+ * A node is visited if any ray of the packet hits it. The tests perform the same floating point operations in the
+ * same order as the ones of the {@link CpuIntersector}, so that a ray hits the same objects as it does when traced
+ * on its own. Spheres, quadrics, CSGs and lights are intersected ray by ray through the CpuIntersector.
+ *
+ * Requires the jdk.incubator.vector module, see {@link CpuRayTracer#isPacketTracingSupported}.
+ *
+ * @author Tizian Kirchner
+ */
+class CpuPacketIntersector {
+	/**
+	 * The widest vector shape supported by the CPU, which has 8 float lanes with AVX2 and 16 with AVX-512.
+	 */
+	static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	/**
+	 * How many rays a packet consists of.
+	 */
+	static final int PACKET_SIZE = SPECIES.length();
+
+	private CpuScene scene;
+
+	/**
+	 * Intersects the objects, which are not intersected through vectors, and stores the hit loaded by
+	 * {@link #loadHit}.
+	 */
+	private CpuIntersector intersector;
+
+	/**
+	 * The nodes, which still have to be visited, and the lanes of the rays, which hit them, as the bits of a
+	 * {@link VectorMask}. See {@link CpuIntersector}.
+	 */
+	private int[] sceneNodeStack = new int[BoundingVolumeHierarchy.MAX_DEPTH + 1];
+	private long[] sceneMaskStack = new long[BoundingVolumeHierarchy.MAX_DEPTH + 1];
+	private int[] instanceNodeStack = new int[BoundingVolumeHierarchy.MAX_DEPTH + 1];
+	private long[] instanceMaskStack = new long[BoundingVolumeHierarchy.MAX_DEPTH + 1];
+
+	/**
+	 * The entry distances calculated by the last call of {@link #intersectNode}.
+	 */
+	private FloatVector nodeEntryDistances;
+
+	/* Rays */
+
+	float[] originX = new float[PACKET_SIZE];
+	float[] originY = new float[PACKET_SIZE];
+	float[] originZ = new float[PACKET_SIZE];
+	float[] directionX = new float[PACKET_SIZE];
+	float[] directionY = new float[PACKET_SIZE];
+	float[] directionZ = new float[PACKET_SIZE];
+
+	/* Nearest Hits, see the hit fields of the CpuIntersector */
+
+	private int[] hitTypes = new int[PACKET_SIZE];
+	private int[] hitIndecis = new int[PACKET_SIZE];
+	private float[] hitDistances = new float[PACKET_SIZE];
+	private boolean[] hitInvertNormals = new boolean[PACKET_SIZE];
+	private float[] hitBcInsideTests = new float[PACKET_SIZE];
+	private float[] hitCaInsideTests = new float[PACKET_SIZE];
+	private int[] hitInstances = new int[PACKET_SIZE];
+
+	/**
+	 * @param scene See {@link #scene}.
+	 * @param intersector See {@link #intersector}.
+	 */
+	CpuPacketIntersector(CpuScene scene, CpuIntersector intersector) {
+		this.scene = scene;
+		this.intersector = intersector;
+	}
+
+	/**
+	 * Finds the nearest quadric, CSG, model instance triangle or sphere hit by each ray of the packet stored in
+	 * the ray fields. The hit of a ray is completed by {@link #loadHit}.
+	 *
+	 * @param rayCount How many lanes of the ray fields store a ray, starting at the first lane.
+	 */
+	void findNearestHits(int rayCount) {
+		for(int i = 0; i < PACKET_SIZE; i++) {
+			if(i < rayCount) {
+				intersector.findNearestQuadric(
+					originX[i], originY[i], originZ[i], directionX[i], directionY[i], directionZ[i]
+				);
+			}
+
+			hitTypes[i] = intersector.hitType;
+			hitIndecis[i] = intersector.hitIndex;
+			hitDistances[i] = intersector.hitDistance;
+			hitInvertNormals[i] = intersector.hitInvertNormal;
+			hitBcInsideTests[i] = intersector.hitBcInsideTest;
+			hitCaInsideTests[i] = intersector.hitCaInsideTest;
+			hitInstances[i] = intersector.hitInstance;
+		}
+
+		if(scene.modelCount + scene.sphereCount > 0) findNearestBvhObjects(SPECIES.indexInRange(0, rayCount));
+	}
+
+	/**
+	 * Stores the nearest hit of a ray of the packet in the hit fields of the {@link #intersector} and completes it
+	 * like {@link CpuIntersector#completeNearestHit} does.
+	 *
+	 * @param ray The lane of the ray.
+	 * @param lightRendering Determines if the lights are hit as spheres, see render settings.
+	 */
+	void loadHit(int ray, boolean lightRendering) {
+		intersector.hitType = hitTypes[ray];
+		intersector.hitIndex = hitIndecis[ray];
+		intersector.hitDistance = hitDistances[ray];
+		intersector.hitInvertNormal = hitInvertNormals[ray];
+		intersector.hitBcInsideTest = hitBcInsideTests[ray];
+		intersector.hitCaInsideTest = hitCaInsideTests[ray];
+		intersector.hitInstance = hitInstances[ray];
+
+		intersector.completeNearestHit(
+			originX[ray], originY[ray], originZ[ray], directionX[ray], directionY[ray], directionZ[ray], lightRendering
+		);
+	}
+
+	/**
+	 * Traverses the scene's bounding volume hierarchy with the rays of the packet and updates the nearest hits.
+	 *
+	 * @param rays The lanes storing a ray.
+	 */
+	private void findNearestBvhObjects(VectorMask<Float> rays) {
+		FloatVector ox = FloatVector.fromArray(SPECIES, originX, 0);
+		FloatVector oy = FloatVector.fromArray(SPECIES, originY, 0);
+		FloatVector oz = FloatVector.fromArray(SPECIES, originZ, 0);
+		FloatVector dx = FloatVector.fromArray(SPECIES, directionX, 0);
+		FloatVector dy = FloatVector.fromArray(SPECIES, directionY, 0);
+		FloatVector dz = FloatVector.fromArray(SPECIES, directionZ, 0);
+		FloatVector ix = getInverse(dx), iy = getInverse(dy), iz = getInverse(dz);
+
+		int stackSize = 0;
+		int nodeIndex = 0;
+		VectorMask<Float> nodeRays = intersectNode(0, ox, oy, oz, ix, iy, iz, rays);
+
+		while(true) {
+			// pop nodes, which are not hit by any ray anymore, as nearer hits have been found since they were pushed
+			while(!nodeRays.anyTrue()) {
+				if(stackSize == 0) return;
+				stackSize--;
+				nodeIndex = sceneNodeStack[stackSize];
+				nodeRays = VectorMask.fromLong(SPECIES, sceneMaskStack[stackSize]);
+				nodeRays = intersectNode(nodeIndex, ox, oy, oz, ix, iy, iz, nodeRays);
+			}
+
+			int node = intersector.getNode(nodeIndex);
+			int childOrFirst = Float.floatToRawIntBits(scene.bvhData[node + 3]);
+			int primitiveCount = Float.floatToRawIntBits(scene.bvhData[node + 7]);
+
+			if(primitiveCount > 0) {
+				for(int i = childOrFirst; i < childOrFirst + primitiveCount; i++) {
+					int primitiveIndex = Float.floatToRawIntBits(scene.bvhData[i]);
+
+					if(primitiveIndex < scene.modelCount) {
+						intersectInstance(primitiveIndex, ox, oy, oz, dx, dy, dz, nodeRays);
+					} else {
+						intersectSphere(primitiveIndex - scene.modelCount, nodeRays.toLong());
+					}
+				}
+
+				nodeRays = SPECIES.maskAll(false);
+			} else {
+				int leftIndex = childOrFirst;
+				int rightIndex = leftIndex + 1;
+				VectorMask<Float> leftRays = intersectNode(leftIndex, ox, oy, oz, ix, iy, iz, nodeRays);
+				FloatVector leftDistances = nodeEntryDistances;
+				VectorMask<Float> rightRays = intersectNode(rightIndex, ox, oy, oz, ix, iy, iz, nodeRays);
+
+				if(leftRays.anyTrue() && rightRays.anyTrue()) {
+					// visit the child, which is nearer for most rays hitting both children, first
+					VectorMask<Float> bothRays = leftRays.and(rightRays);
+					VectorMask<Float> leftNearerRays = leftDistances.compare(VectorOperators.LE, nodeEntryDistances);
+					boolean leftFirst = leftNearerRays.and(bothRays).trueCount() * 2 >= bothRays.trueCount();
+
+					sceneNodeStack[stackSize] = leftFirst ? rightIndex : leftIndex;
+					sceneMaskStack[stackSize] = (leftFirst ? rightRays : leftRays).toLong();
+					stackSize++;
+
+					nodeIndex = leftFirst ? leftIndex : rightIndex;
+					nodeRays = leftFirst ? leftRays : rightRays;
+				} else if(leftRays.anyTrue()) {
+					nodeIndex = leftIndex;
+					nodeRays = leftRays;
+				} else {
+					nodeIndex = rightIndex;
+					nodeRays = rightRays;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the triangles of a model instance nearer than the nearest hits of the rays. The rays are transformed
+	 * into the object space of the instance's mesh like {@link CpuIntersector} transforms them.
+	 *
+	 * @param rays The lanes of the rays, which hit the node storing the instance.
+	 */
+	private void intersectInstance(
+		int instanceIndex, FloatVector ox, FloatVector oy, FloatVector oz,
+		FloatVector dx, FloatVector dy, FloatVector dz, VectorMask<Float> rays
+	) {
+		float[] instances = scene.instanceData;
+		int instance = instanceIndex * 36;
+
+		FloatVector iox = transformX(instances, instance, ox, oy, oz).add(instances[instance + 12]);
+		FloatVector ioy = transformY(instances, instance, ox, oy, oz).add(instances[instance + 13]);
+		FloatVector ioz = transformZ(instances, instance, ox, oy, oz).add(instances[instance + 14]);
+		FloatVector idx = transformX(instances, instance, dx, dy, dz);
+		FloatVector idy = transformY(instances, instance, dx, dy, dz);
+		FloatVector idz = transformZ(instances, instance, dx, dy, dz);
+		FloatVector ix = getInverse(idx), iy = getInverse(idy), iz = getInverse(idz);
+
+		int stackSize = 0;
+		int nodeIndex = Float.floatToRawIntBits(instances[instance + 32]);
+		VectorMask<Float> nodeRays = intersectNode(nodeIndex, iox, ioy, ioz, ix, iy, iz, rays);
+
+		while(true) {
+			while(!nodeRays.anyTrue()) {
+				if(stackSize == 0) return;
+				stackSize--;
+				nodeIndex = instanceNodeStack[stackSize];
+				nodeRays = VectorMask.fromLong(SPECIES, instanceMaskStack[stackSize]);
+				nodeRays = intersectNode(nodeIndex, iox, ioy, ioz, ix, iy, iz, nodeRays);
+			}
+
+			int node = intersector.getNode(nodeIndex);
+			int childOrFirst = Float.floatToRawIntBits(scene.bvhData[node + 3]);
+			int primitiveCount = Float.floatToRawIntBits(scene.bvhData[node + 7]);
+
+			if(primitiveCount > 0) {
+				for(int i = childOrFirst; i < childOrFirst + primitiveCount; i++) {
+					int triangleIndex = Float.floatToRawIntBits(scene.bvhData[i]);
+					intersectTriangle(triangleIndex, instanceIndex, iox, ioy, ioz, idx, idy, idz, nodeRays);
+				}
+
+				nodeRays = SPECIES.maskAll(false);
+			} else {
+				int leftIndex = childOrFirst;
+				int rightIndex = leftIndex + 1;
+				VectorMask<Float> leftRays = intersectNode(leftIndex, iox, ioy, ioz, ix, iy, iz, nodeRays);
+				FloatVector leftDistances = nodeEntryDistances;
+				VectorMask<Float> rightRays = intersectNode(rightIndex, iox, ioy, ioz, ix, iy, iz, nodeRays);
+
+				if(leftRays.anyTrue() && rightRays.anyTrue()) {
+					VectorMask<Float> bothRays = leftRays.and(rightRays);
+					VectorMask<Float> leftNearerRays = leftDistances.compare(VectorOperators.LE, nodeEntryDistances);
+					boolean leftFirst = leftNearerRays.and(bothRays).trueCount() * 2 >= bothRays.trueCount();
+
+					instanceNodeStack[stackSize] = leftFirst ? rightIndex : leftIndex;
+					instanceMaskStack[stackSize] = (leftFirst ? rightRays : leftRays).toLong();
+					stackSize++;
+
+					nodeIndex = leftFirst ? leftIndex : rightIndex;
+					nodeRays = leftFirst ? leftRays : rightRays;
+				} else if(leftRays.anyTrue()) {
+					nodeIndex = leftIndex;
+					nodeRays = leftRays;
+				} else {
+					nodeIndex = rightIndex;
+					nodeRays = rightRays;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Intersects the rays with a triangle like {@link CpuIntersector} does and stores the triangle as the nearest
+	 * hit of each ray, which hits it before its nearest hit.
+	 *
+	 * @param rays The lanes of the rays, which hit the leaf storing the triangle.
+	 */
+	private void intersectTriangle(
+		int triangleIndex, int instanceIndex, FloatVector ox, FloatVector oy, FloatVector oz,
+		FloatVector dx, FloatVector dy, FloatVector dz, VectorMask<Float> rays
+	) {
+		float[] normals = scene.triangleNormals;
+		int normal = triangleIndex * 3;
+		float nx = normals[normal], ny = normals[normal + 1], nz = normals[normal + 2];
+
+		FloatVector normalDirectionAlignment = dx.mul(nx).add(dy.mul(ny)).add(dz.mul(nz));
+		VectorMask<Float> hits = rays.andNot(normalDirectionAlignment.eq(0));
+		if(!hits.anyTrue()) return;
+
+		float[] vertices = scene.vertices;
+		int vertex = triangleIndex * 9;
+		float ax = vertices[vertex], ay = vertices[vertex + 1], az = vertices[vertex + 2];
+
+		FloatVector normalOriginAlignment = ox.mul(nx).add(oy.mul(ny)).add(oz.mul(nz));
+		FloatVector triangleDistances = normalOriginAlignment.sub(nx * ax + ny * ay + nz * az).neg()
+			.div(normalDirectionAlignment);
+
+		// only intersections before the nearest hits are found, unless a ray has not hit anything yet
+		FloatVector nearestDistances = FloatVector.fromArray(SPECIES, hitDistances, 0);
+		hits = hits.and(triangleDistances.compare(VectorOperators.GT, 0)).andNot(
+			triangleDistances.compare(VectorOperators.GE, nearestDistances)
+				.and(nearestDistances.compare(VectorOperators.GE, 0))
+		);
+
+		if(!hits.anyTrue()) return;
+
+		FloatVector px = ox.add(triangleDistances.mul(dx));
+		FloatVector py = oy.add(triangleDistances.mul(dy));
+		FloatVector pz = oz.add(triangleDistances.mul(dz));
+
+		float bx = vertices[vertex + 3], by = vertices[vertex + 4], bz = vertices[vertex + 5];
+		float cx = vertices[vertex + 6], cy = vertices[vertex + 7], cz = vertices[vertex + 8];
+
+		FloatVector bcInsideTests = getInsideTests(
+			nx, ny, nz, cx - bx, cy - by, cz - bz, px.sub(bx), py.sub(by), pz.sub(bz)
+		);
+
+		FloatVector caInsideTests = getInsideTests(
+			nx, ny, nz, ax - cx, ay - cy, az - cz, px.sub(cx), py.sub(cy), pz.sub(cz)
+		);
+
+		FloatVector abInsideTests = getInsideTests(
+			nx, ny, nz, bx - ax, by - ay, bz - az, px.sub(ax), py.sub(ay), pz.sub(az)
+		);
+
+		hits = hits.and(bcInsideTests.compare(VectorOperators.GT, 0))
+			.and(caInsideTests.compare(VectorOperators.GT, 0))
+			.and(abInsideTests.compare(VectorOperators.GT, 0));
+
+		if(!hits.anyTrue()) return;
+
+		nearestDistances.blend(triangleDistances, hits).intoArray(hitDistances, 0);
+		FloatVector.fromArray(SPECIES, hitBcInsideTests, 0).blend(bcInsideTests, hits).intoArray(hitBcInsideTests, 0);
+		FloatVector.fromArray(SPECIES, hitCaInsideTests, 0).blend(caInsideTests, hits).intoArray(hitCaInsideTests, 0);
+
+		for(long lanes = hits.toLong(); lanes != 0; lanes &= lanes - 1) {
+			int lane = Long.numberOfTrailingZeros(lanes);
+			hitTypes[lane] = CpuIntersector.TYPE_TRIANGLE;
+			hitIndecis[lane] = triangleIndex;
+			hitInstances[lane] = instanceIndex;
+		}
+	}
+
+	/**
+	 * Intersects the rays with a sphere one by one and stores the sphere as the nearest hit of each ray, which
+	 * hits it before its nearest hit.
+	 *
+	 * @param rays The lanes of the rays, which hit the leaf storing the sphere, as the bits of a VectorMask.
+	 */
+	private void intersectSphere(int sphereIndex, long rays) {
+		for(long lanes = rays; lanes != 0; lanes &= lanes - 1) {
+			int lane = Long.numberOfTrailingZeros(lanes);
+
+			float sphereDistance = intersector.intersectSphere(
+				sphereIndex, originX[lane], originY[lane], originZ[lane],
+				directionX[lane], directionY[lane], directionZ[lane]
+			);
+
+			if((hitDistances[lane] < 0 || sphereDistance < hitDistances[lane]) && sphereDistance > 0) {
+				hitTypes[lane] = CpuIntersector.TYPE_SPHERE;
+				hitIndecis[lane] = sphereIndex;
+				hitDistances[lane] = sphereDistance;
+				hitInvertNormals[lane] = intersector.objectInvertNormal;
+			}
+		}
+	}
+
+	/**
+	 * Intersects the rays with the bounding box of a node through the slab test and stores the distances at which
+	 * they enter the box in the {@link #nodeEntryDistances}. Like the slab test of the {@link CpuIntersector},
+	 * a ray only hits the box if it enters it before its nearest hit.
+	 *
+	 * @param ix The x components of the inverse ray directions.
+	 * @param rays The lanes of the rays, which are tested.
+	 * @return The lanes of the rays, which hit the box.
+	 */
+	private VectorMask<Float> intersectNode(
+		int nodeIndex, FloatVector ox, FloatVector oy, FloatVector oz,
+		FloatVector ix, FloatVector iy, FloatVector iz, VectorMask<Float> rays
+	) {
+		float[] data = scene.bvhData;
+		int node = intersector.getNode(nodeIndex);
+
+		FloatVector minimumX = ox.neg().add(data[node]).mul(ix), maximumX = ox.neg().add(data[node + 4]).mul(ix);
+		FloatVector minimumY = oy.neg().add(data[node + 1]).mul(iy), maximumY = oy.neg().add(data[node + 5]).mul(iy);
+		FloatVector minimumZ = oz.neg().add(data[node + 2]).mul(iz), maximumZ = oz.neg().add(data[node + 6]).mul(iz);
+
+		FloatVector entryDistances = minimumX.min(maximumX).max(minimumY.min(maximumY)).max(minimumZ.min(maximumZ))
+			.max(0);
+
+		FloatVector exitDistances = minimumX.max(maximumX).min(minimumY.max(maximumY)).min(minimumZ.max(maximumZ));
+		FloatVector nearestDistances = FloatVector.fromArray(SPECIES, hitDistances, 0);
+		nodeEntryDistances = entryDistances;
+
+		return rays.andNot(exitDistances.compare(VectorOperators.LT, entryDistances)).andNot(
+			nearestDistances.compare(VectorOperators.GE, 0)
+				.and(entryDistances.compare(VectorOperators.GT, nearestDistances))
+		);
+	}
+
+	/**
+	 * @return
+	 * The inverse components of the ray directions, with components near 0 being replaced like
+	 * {@link CpuIntersector} replaces them.
+	 */
+	private static FloatVector getInverse(FloatVector components) {
+		VectorMask<Float> nearZero = components.abs().compare(VectorOperators.LT, 1e-30f);
+		return FloatVector.broadcast(SPECIES, 1).div(components.blend(1e-30f, nearZero));
+	}
+
+	/**
+	 * @return The dot products of the normal n and the cross products of the edge e and the vectors p.
+	 */
+	private static FloatVector getInsideTests(
+		float nx, float ny, float nz, float ex, float ey, float ez, FloatVector px, FloatVector py, FloatVector pz
+	) {
+		FloatVector x = pz.mul(ey).sub(py.mul(ez)).mul(nx);
+		FloatVector y = px.mul(ez).sub(pz.mul(ex)).mul(ny);
+		FloatVector z = py.mul(ex).sub(px.mul(ey)).mul(nz);
+		return x.add(y).add(z);
+	}
+
+	/**
+	 * @return The x components of the vectors transformed like {@link CpuIntersector#transformX} transforms them.
+	 */
+	private static FloatVector transformX(float[] data, int matrix, FloatVector x, FloatVector y, FloatVector z) {
+		return x.mul(data[matrix]).add(y.mul(data[matrix + 4])).add(z.mul(data[matrix + 8]));
+	}
+
+	/**
+	 * See {@link #transformX}.
+	 */
+	private static FloatVector transformY(float[] data, int matrix, FloatVector x, FloatVector y, FloatVector z) {
+		return x.mul(data[matrix + 1]).add(y.mul(data[matrix + 5])).add(z.mul(data[matrix + 9]));
+	}
+
+	/**
+	 * See {@link #transformX}.
+	 */
+	private static FloatVector transformZ(float[] data, int matrix, FloatVector x, FloatVector y, FloatVector z) {
+		return x.mul(data[matrix + 2]).add(y.mul(data[matrix + 6])).add(z.mul(data[matrix + 10]));
+	}
+}
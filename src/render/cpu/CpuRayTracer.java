@@ -0,0 +1,972 @@
+package render.cpu;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import math.matrix.Matrix4;
+import math.vector.Vector3;
+import settings.RayTracingSettings;
+import settings.RenderSettings;
+import util.Camera;
+
+/**
+ * Ray traces the 3D objects of a {@link CpuScene} on the CPU, without an OpenGL context.
+ *
+ * The rays are traced and shaded like the ray stack of ray_tracing.glsl traces and shades them: the same
+ * bounding volume hierarchy is traversed, the same intersection tests are used and the surfaces are lit with the
+ * same Cook-Torrance shading, reflections and refractions. This makes the CpuRayTracer a reference for the ray
+ * tracing <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program, which can render frames
+ * headless, for example on machines without a GPU.
+ *
+ * The frame is divided into tiles of {@link #TILE_SIZE} x TILE_SIZE pixels, which are traced in parallel through a
+ * {@link ForkJoinPool}. The sky dome is black, like the default sky dome of ray tracing scenes.
+ *
+ * If the jdk.incubator.vector module is available, the primary rays of each tile row are traced in packets of
+ * neighboring pixels by a {@link CpuPacketIntersector}, which intersects a whole packet with the SIMD instructions
+ * of the CPU. Otherwise, or if packet tracing is turned off, every ray is traced on its own.
+ *
+ * @author Tizian Kirchner
+ */
+public class CpuRayTracer {
+	/**
+	 * How many pixels wide and high a tile is.
+	 */
+	public static final int TILE_SIZE = 16;
+
+	/**
+	 * How many tasks each thread of the {@link #pool} is given on average. More tasks balance the load better,
+	 * as tiles showing complex objects take longer to trace.
+	 */
+	private static final int TASKS_PER_THREAD = 16;
+
+	private static final int ROOT_SURFACE = 0;
+	private static final int REFLECTION_SURFACE = 1;
+	private static final int REFRACTION_SURFACE = 2;
+
+	/**
+	 * How far rays are moved along their direction, so that they do not hit the surface they start on.
+	 */
+	private static final float RAY_OFFSET = 0.001f;
+
+	/**
+	 * Whether the jdk.incubator.vector module has been added to the JVM, for example through
+	 * {@code --add-modules jdk.incubator.vector}.
+	 */
+	private static final boolean PACKET_TRACING_SUPPORTED = (
+		ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+	);
+
+	/**
+	 * Executes the tracing of the tiles.
+	 */
+	private ForkJoinPool pool;
+
+	/**
+	 * See {@link render.RayTracer#ratioWidthModifier}.
+	 */
+	private float ratioWidthModifier;
+
+	/**
+	 * See {@link render.RayTracer#ratioHeightModifier}.
+	 */
+	private float ratioHeightModifier;
+
+	/**
+	 * The x and y extent of the vertex ratio coordinates of the quad rendered by ray_tracing.vert.
+	 */
+	private float vertexRatioWidth;
+	private float vertexRatioHeight;
+
+	/**
+	 * Determines if the primary rays are traced in packets, see {@link CpuPacketIntersector}. Only takes effect if
+	 * packet tracing is supported.
+	 */
+	private boolean usingPackets = PACKET_TRACING_SUPPORTED;
+
+	/**
+	 * Creates a {@link CpuRayTracer} using the common ForkJoinPool.
+	 */
+	public CpuRayTracer() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Creates a {@link CpuRayTracer} with the same 16:9 frustum as the {@link render.RayTracer RayTracer}.
+	 *
+	 * @param pool See {@link #pool}.
+	 */
+	public CpuRayTracer(ForkJoinPool pool) {
+		this.pool = pool;
+
+		float ratioWidth = 16;
+		float ratioHeight = 9;
+		ratioWidthModifier = ratioWidth / (ratioWidth * ratioHeight);
+		ratioHeightModifier = ratioHeight / (ratioWidth * ratioHeight);
+		vertexRatioWidth = ratioWidth / 16;
+		vertexRatioHeight = ratioHeight / 16;
+	}
+
+	/**
+	 * Traces a frame as seen by the {@link Camera}. See {@link #render(CpuScene, RayTracingSettings, Matrix4,
+	 * Vector3, int, int, int[])}.
+	 *
+	 * @return The pixels of the frame.
+	 */
+	public int[] render(CpuScene scene, RayTracingSettings rtSettings, int width, int height) {
+		// the camera's translation matrix translates by the negated camera position
+		float[] cameraTranslation = Camera.getTranslationMatrix().getElementsAsArray();
+		Vector3 cameraPosition = new Vector3(-cameraTranslation[12], -cameraTranslation[13], -cameraTranslation[14]);
+
+		int[] pixels = new int[width * height];
+		render(scene, rtSettings, Camera.getViewMatrix(), cameraPosition, width, height, pixels);
+		return pixels;
+	}
+
+	/**
+	 * Traces a frame of a {@link CpuScene}. Blocks until every tile of the frame has been traced.
+	 *
+	 * The gamma correction, ambient light and light rendering are taken from the {@link RenderSettings}.
+	 * Whether the {@link RayTracingSettings} use a ray stack, a compute shader or the GPU specific optimizations
+	 * does not change the traced frame.
+	 *
+	 * @param scene The scene, whose 3D objects are traced.
+	 * @param rtSettings Determine the lighting, shadows, trace depths and the contribution cut-off.
+	 * @param viewMatrix The rotation of the camera.
+	 * @param cameraPosition The position of the camera, from which the primary rays start.
+	 * @param width How many pixels wide the frame is.
+	 * @param height How many pixels high the frame is.
+	 * @param pixels
+	 * Stores the color of each pixel as 0xRRGGBB, row by row from the top of the frame to the bottom, like the
+	 * pixels of a {@link java.awt.image.BufferedImage#TYPE_INT_RGB} image. Has to hold width * height pixels.
+	 */
+	public void render(
+		CpuScene scene, RayTracingSettings rtSettings, Matrix4 viewMatrix, Vector3 cameraPosition,
+		int width, int height, int[] pixels
+	) {
+		Frame frame = new Frame(scene, rtSettings, viewMatrix, cameraPosition, width, height, pixels);
+		int tileCount = frame.tilesX * ((height + TILE_SIZE - 1) / TILE_SIZE);
+		if(tileCount == 0) return;
+
+		int tilesPerTask = Math.max(tileCount / (pool.getParallelism() * TASKS_PER_THREAD), 1);
+		pool.invoke(new TileAction(frame, 0, tileCount, tilesPerTask));
+	}
+
+	/**
+	 * @return Whether the primary rays can be traced in packets, which requires the jdk.incubator.vector module.
+	 */
+	public static boolean isPacketTracingSupported() {
+		return PACKET_TRACING_SUPPORTED;
+	}
+
+	/**
+	 * @return See {@link #usingPackets}.
+	 */
+	public boolean isUsingPackets() {
+		return usingPackets;
+	}
+
+	/**
+	 * @param usingPackets See {@link #usingPackets}.
+	 */
+	public void setUsingPackets(boolean usingPackets) {
+		this.usingPackets = usingPackets;
+	}
+
+	/**
+	 * Normalizes a vector.
+	 *
+	 * @param vector The x, y and z component of the vector, which are replaced by the normalized vector.
+	 */
+	static void normalize(float[] vector) {
+		float length = (float) Math.sqrt(vector[0] * vector[0] + vector[1] * vector[1] + vector[2] * vector[2]);
+		vector[0] /= length;
+		vector[1] /= length;
+		vector[2] /= length;
+	}
+
+	/**
+	 * @param color A color component of a pixel.
+	 * @return The component clamped between 0 and 1 and converted to 8 bits like an RGBA8 image converts it.
+	 */
+	private static int toByte(float color) {
+		return Math.round(Math.min(Math.max(color, 0), 1) * 255);
+	}
+
+	/**
+	 * The state of a frame, which is shared by all tiles. Snapshots the settings, so that they can not change
+	 * while the frame is traced.
+	 */
+	private class Frame {
+		private CpuScene scene;
+		private int width;
+		private int height;
+		private int tilesX;
+		private int[] pixels;
+		private boolean usingPackets;
+
+		private boolean lighting;
+		private boolean transparencyLighting;
+		private int shadowRayCount;
+		private int reflectionTraceDepth;
+		private int reflectionLightingDepth;
+		private int reflectionShadowDepth;
+		private int refractionTraceDepth;
+		private int refractionLightingDepth;
+		private int refractionShadowDepth;
+		private boolean usingVertexColors;
+		private boolean usingVertexNormals;
+		private float contributionCutoff;
+
+		private boolean gammaCorrection;
+		private boolean ambientLight;
+		private boolean lightRendering;
+
+		/**
+		 * The shadow check points of each light, one position for each shadow ray.
+		 */
+		private float[] shadowCheckPoints;
+
+		private float[] cameraPosition;
+
+		/**
+		 * The ray directions of the corners of the frame, see getVertexRayDirection of camera_ray.glsl.
+		 */
+		private float[] leftBottom;
+		private float[] rightTop;
+		private float[] leftTop;
+		private float[] rightBottom;
+
+		private Frame(
+			CpuScene scene, RayTracingSettings rtSettings, Matrix4 viewMatrix, Vector3 cameraPosition,
+			int width, int height, int[] pixels
+		) {
+			this.scene = scene;
+			this.width = width;
+			this.height = height;
+			this.tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+			this.pixels = pixels;
+			usingPackets = CpuRayTracer.this.usingPackets && PACKET_TRACING_SUPPORTED;
+
+			lighting = rtSettings.isLighting();
+			transparencyLighting = rtSettings.isTransparencyLighting();
+			shadowRayCount = rtSettings.getShadowRayCount();
+			reflectionTraceDepth = rtSettings.getReflectionTraceDepth();
+			reflectionLightingDepth = rtSettings.getReflectionLightingDepth();
+			reflectionShadowDepth = rtSettings.getReflectionShadowDepth();
+			refractionTraceDepth = rtSettings.getRefractionTraceDepth();
+			refractionLightingDepth = rtSettings.getRefractionLightingDepth();
+			refractionShadowDepth = rtSettings.getRefractionShadowDepth();
+			usingVertexColors = rtSettings.isUsingVertexColors();
+			usingVertexNormals = rtSettings.isUsingVertexNormals();
+			contributionCutoff = rtSettings.getContributionCutoff();
+
+			gammaCorrection = RenderSettings.isGammaCorrection();
+			ambientLight = RenderSettings.isAmbientLight();
+			lightRendering = RenderSettings.isLightRendering();
+
+			// like the lights buffer, which stores the light's position as the only check point of a single shadow ray
+			int checkPointCount = Math.max(shadowRayCount, 1);
+			shadowCheckPoints = new float[scene.lightCount * checkPointCount * 3];
+
+			for(int i = 0; i < scene.lightCount; i++) {
+				for(int j = 0; j < checkPointCount; j++) {
+					for(int k = 0; k < 3; k++) {
+						float surfaceOffset = shadowRayCount > 1 ?
+							scene.lightSurfaceVectors[(i * CpuScene.CHECK_POINT_COUNT + j) * 3 + k] : 0;
+
+						shadowCheckPoints[(i * checkPointCount + j) * 3 + k] = (
+							scene.lights[i * CpuScene.LIGHT_SIZE + k] + surfaceOffset
+						);
+					}
+				}
+			}
+
+			this.cameraPosition = cameraPosition.getComponentsAsFloatArray();
+			float[] view = viewMatrix.getElementsAsArray();
+			leftBottom = getVertexRayDirection(view, -vertexRatioWidth, -vertexRatioHeight);
+			rightTop = getVertexRayDirection(view, vertexRatioWidth, vertexRatioHeight);
+			leftTop = getVertexRayDirection(view, -vertexRatioWidth, vertexRatioHeight);
+			rightBottom = getVertexRayDirection(view, vertexRatioWidth, -vertexRatioHeight);
+		}
+
+		/**
+		 * @param view The column major elements of the view matrix.
+		 * @return The normalized ray direction of a vertex of the quad rendered by ray_tracing.vert.
+		 */
+		private float[] getVertexRayDirection(float[] view, float vertexRatioX, float vertexRatioY) {
+			float[] rayDirection = {
+				vertexRatioX - vertexRatioX * ratioWidthModifier,
+				vertexRatioY - vertexRatioY * ratioHeightModifier,
+				-1
+			};
+
+			// the direction is multiplied from the left with the view matrix
+			float[] direction = new float[3];
+
+			for(int j = 0; j < 3; j++) {
+				direction[j] = (
+					rayDirection[0] * view[j * 4] + rayDirection[1] * view[j * 4 + 1] +
+					rayDirection[2] * view[j * 4 + 2] + view[j * 4 + 3]
+				);
+			}
+
+			normalize(direction);
+			return direction;
+		}
+	}
+
+	/**
+	 * Traces a range of the tiles of a frame by recursively splitting the range in half.
+	 */
+	@SuppressWarnings("serial")
+	private class TileAction extends RecursiveAction {
+		private Frame frame;
+		private int firstTile;
+		private int endTile;
+		private int tilesPerTask;
+
+		private TileAction(Frame frame, int firstTile, int endTile, int tilesPerTask) {
+			this.frame = frame;
+			this.firstTile = firstTile;
+			this.endTile = endTile;
+			this.tilesPerTask = tilesPerTask;
+		}
+
+		@Override
+		protected void compute() {
+			if(endTile - firstTile > tilesPerTask) {
+				int middleTile = (firstTile + endTile) / 2;
+
+				invokeAll(
+					new TileAction(frame, firstTile, middleTile, tilesPerTask),
+					new TileAction(frame, middleTile, endTile, tilesPerTask)
+				);
+			} else {
+				Tracer tracer = new Tracer(frame);
+
+				for(int tile = firstTile; tile < endTile; tile++) {
+					tracer.traceTile(tile);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Traces the pixels of tiles on one thread. Keeps the ray stack and the last surface in fields, so that tracing
+	 * a pixel does not allocate any objects.
+	 */
+	private class Tracer {
+		private Frame frame;
+		private CpuScene scene;
+		private CpuIntersector intersector;
+
+		/**
+		 * Finds the nearest hits of the primary rays, if the frame is traced in packets.
+		 */
+		private CpuPacketIntersector packetIntersector;
+
+		/**
+		 * Whether the {@link #intersector} already stores the nearest hit of the primary ray traced next, which has
+		 * been found by the {@link #packetIntersector}.
+		 */
+		private boolean primaryHitFound;
+
+		/* Ray Stack */
+
+		private float[] stackOrigins;
+		private float[] stackDirections;
+		private float[] stackThroughputs;
+		private int[] stackTypes;
+		private int[] stackDepths;
+
+		/* Surface */
+
+		private float[] surfacePosition = new float[3];
+		private float[] surfaceColor = new float[3];
+		private float[] fresnelColor = new float[3];
+		private float reflectionStrength;
+		private float reflectionNormalAlignment;
+		private float[] reflectionDirection = new float[3];
+		private float refractionStrength;
+		private float[] refractionDirection = new float[3];
+
+		/**
+		 * The opacity of the triangle surface calculated last, which is the alpha value of its color map.
+		 */
+		private float surfaceOpacity;
+
+		/* Temporary Values */
+
+		private float[] normal = new float[3];
+		private float[] objectColor = new float[3];
+		private float[] texel = new float[4];
+		private float[] pixelColor = new float[3];
+		private float[] rayDirection = new float[3];
+		private float[] reflectionWeight = new float[3];
+
+		private Tracer(Frame frame) {
+			this.frame = frame;
+			this.scene = frame.scene;
+			this.intersector = new CpuIntersector(scene);
+			if(frame.usingPackets) packetIntersector = new CpuPacketIntersector(scene, intersector);
+
+			// every traced ray pushes at most two rays one layer deeper, while being popped itself
+			int rayStackSize = Math.max(frame.reflectionTraceDepth, frame.refractionTraceDepth) + 1;
+			stackOrigins = new float[rayStackSize * 3];
+			stackDirections = new float[rayStackSize * 3];
+			stackThroughputs = new float[rayStackSize * 3];
+			stackTypes = new int[rayStackSize];
+			stackDepths = new int[rayStackSize];
+		}
+
+		/**
+		 * Traces the pixels of a tile and stores their colors in the pixels of the frame.
+		 *
+		 * @param tile The index of the tile, counted row by row from the bottom left of the frame.
+		 */
+		private void traceTile(int tile) {
+			int firstX = (tile % frame.tilesX) * TILE_SIZE;
+			int firstY = (tile / frame.tilesX) * TILE_SIZE;
+			int endX = Math.min(firstX + TILE_SIZE, frame.width);
+			int endY = Math.min(firstY + TILE_SIZE, frame.height);
+
+			for(int y = firstY; y < endY; y++) {
+				if(packetIntersector != null) {
+					for(int x = firstX; x < endX; x += CpuPacketIntersector.PACKET_SIZE) {
+						tracePacket(x, y, Math.min(CpuPacketIntersector.PACKET_SIZE, endX - x));
+					}
+				} else {
+					for(int x = firstX; x < endX; x++) {
+						calculatePixelRayDirection(x, y);
+						calculateStackedRayColor(frame.cameraPosition, rayDirection);
+						storePixelColor(x, y);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Finds the nearest hits of the primary rays of neighboring pixels of a row through the
+		 * {@link #packetIntersector} and then traces the pixels one by one, starting at their nearest hits.
+		 *
+		 * @param firstX The x coordinate of the packet's first pixel.
+		 * @param y The y coordinate of the row.
+		 * @param pixelCount How many pixels the packet consists of.
+		 */
+		private void tracePacket(int firstX, int y, int pixelCount) {
+			for(int i = 0; i < pixelCount; i++) {
+				calculatePixelRayDirection(firstX + i, y);
+				packetIntersector.originX[i] = frame.cameraPosition[0];
+				packetIntersector.originY[i] = frame.cameraPosition[1];
+				packetIntersector.originZ[i] = frame.cameraPosition[2];
+				packetIntersector.directionX[i] = rayDirection[0];
+				packetIntersector.directionY[i] = rayDirection[1];
+				packetIntersector.directionZ[i] = rayDirection[2];
+			}
+
+			packetIntersector.findNearestHits(pixelCount);
+
+			for(int i = 0; i < pixelCount; i++) {
+				packetIntersector.loadHit(i, frame.lightRendering);
+				primaryHitFound = true;
+
+				rayDirection[0] = packetIntersector.directionX[i];
+				rayDirection[1] = packetIntersector.directionY[i];
+				rayDirection[2] = packetIntersector.directionZ[i];
+				calculateStackedRayColor(frame.cameraPosition, rayDirection);
+				storePixelColor(firstX + i, y);
+			}
+		}
+
+		/**
+		 * Stores the {@link #pixelColor} in the pixels of the frame.
+		 */
+		private void storePixelColor(int x, int y) {
+			// the pixel y coordinate starts at the bottom of the frame like the one of OpenGL
+			int pixel = (frame.height - 1 - y) * frame.width + x;
+			frame.pixels[pixel] = toByte(pixelColor[0]) << 16 | toByte(pixelColor[1]) << 8 | toByte(pixelColor[2]);
+		}
+
+		/**
+		 * Interpolates the ray directions of the frame's corners like the rasterizer does for the two triangles of
+		 * the quad rendered by ray_tracing.vert and stores the direction in the {@link #rayDirection}.
+		 */
+		private void calculatePixelRayDirection(int x, int y) {
+			float positionX = (x + 0.5f) / frame.width;
+			float positionY = (y + 0.5f) / frame.height;
+
+			for(int i = 0; i < 3; i++) {
+				if(positionY >= positionX) {
+					rayDirection[i] = (
+						(1 - positionY) * frame.leftBottom[i] + positionX * frame.rightTop[i] +
+						(positionY - positionX) * frame.leftTop[i]
+					);
+				} else {
+					rayDirection[i] = (
+						(1 - positionX) * frame.leftBottom[i] + (positionX - positionY) * frame.rightBottom[i] +
+						positionY * frame.rightTop[i]
+					);
+				}
+			}
+		}
+
+		/**
+		 * Traces a primary ray and the reflection and refraction rays following it through the ray stack and
+		 * stores the sum of their weighted surface colors in the {@link #pixelColor}.
+		 */
+		private void calculateStackedRayColor(float[] origin, float[] direction) {
+			push(0, origin, 0, direction, 1, 1, 1, ROOT_SURFACE, 0);
+			int rayStackTop = 1;
+			pixelColor[0] = pixelColor[1] = pixelColor[2] = 0;
+
+			while(rayStackTop > 0) {
+				rayStackTop--;
+				int ray = rayStackTop * 3;
+				int type = stackTypes[rayStackTop];
+				int depth = stackDepths[rayStackTop];
+				float throughputR = stackThroughputs[ray];
+				float throughputG = stackThroughputs[ray + 1];
+				float throughputB = stackThroughputs[ray + 2];
+
+				calculateSurface(
+					stackOrigins[ray], stackOrigins[ray + 1], stackOrigins[ray + 2],
+					stackDirections[ray], stackDirections[ray + 1], stackDirections[ray + 2],
+					isCalculatingLighting(type, depth), isCalculatingShadows(type, depth)
+				);
+
+				// the refracted color replaces the part of the surface color it shines through
+				if(frame.refractionTraceDepth > depth && refractionStrength > 0) {
+					float r = throughputR * refractionStrength;
+					float g = throughputG * refractionStrength;
+					float b = throughputB * refractionStrength;
+
+					if(Math.max(Math.max(r, g), b) >= frame.contributionCutoff) {
+						push(
+							rayStackTop, surfacePosition, RAY_OFFSET, refractionDirection, r, g, b,
+							REFRACTION_SURFACE, depth + 1
+						);
+
+						rayStackTop++;
+					}
+
+					throughputR *= 1 - refractionStrength;
+					throughputG *= 1 - refractionStrength;
+					throughputB *= 1 - refractionStrength;
+				}
+
+				pixelColor[0] += throughputR * surfaceColor[0];
+				pixelColor[1] += throughputG * surfaceColor[1];
+				pixelColor[2] += throughputB * surfaceColor[2];
+
+				// the reflected color is weighted like the reflection color of a fully white surface
+				if(frame.reflectionTraceDepth > depth && reflectionStrength > 0) {
+					calculateReflectionWeight();
+					float r = throughputR * reflectionWeight[0];
+					float g = throughputG * reflectionWeight[1];
+					float b = throughputB * reflectionWeight[2];
+
+					if(Math.max(Math.max(r, g), b) >= frame.contributionCutoff) {
+						push(
+							rayStackTop, surfacePosition, RAY_OFFSET, reflectionDirection, r, g, b,
+							REFLECTION_SURFACE, depth + 1
+						);
+
+						rayStackTop++;
+					}
+				}
+			}
+		}
+
+		/**
+		 * Stores a ray on the ray stack. The origin is moved along the direction by the offset.
+		 */
+		private void push(
+			int index, float[] origin, float offset, float[] direction,
+			float throughputR, float throughputG, float throughputB, int type, int depth
+		) {
+			int ray = index * 3;
+
+			for(int i = 0; i < 3; i++) {
+				stackOrigins[ray + i] = origin[i] + offset * direction[i];
+				stackDirections[ray + i] = direction[i];
+			}
+
+			stackThroughputs[ray] = throughputR;
+			stackThroughputs[ray + 1] = throughputG;
+			stackThroughputs[ray + 2] = throughputB;
+			stackTypes[index] = type;
+			stackDepths[index] = depth;
+		}
+
+		/**
+		 * Calculates the reflection color of a fully white surface like getReflectionColor of ray_tracing.glsl
+		 * and stores it in the {@link #reflectionWeight}.
+		 */
+		private void calculateReflectionWeight() {
+			float[] lights = scene.lights;
+			float reflectivity = reflectionStrength * reflectionNormalAlignment;
+
+			for(int k = 0; k < 3; k++) {
+				float reflectionObjectColor = reflectivity * fresnelColor[k];
+				float reflectionColor = 0;
+
+				for(int i = 0; i < scene.lightCount; i++) {
+					int light = i * CpuScene.LIGHT_SIZE;
+					reflectionColor += lights[light + 4 + k] * lights[light + 3] * reflectionObjectColor;
+				}
+
+				reflectionWeight[k] = frame.gammaCorrection ? pow(reflectionColor, 0.45f) : reflectionColor;
+			}
+		}
+
+		private boolean isCalculatingLighting(int surfaceType, int layer) {
+			if(surfaceType == REFLECTION_SURFACE) return frame.lighting && frame.reflectionLightingDepth >= layer;
+			if(surfaceType == REFRACTION_SURFACE) return frame.lighting && frame.refractionLightingDepth >= layer;
+			return frame.lighting;
+		}
+
+		private boolean isCalculatingShadows(int surfaceType, int layer) {
+			if(surfaceType == REFLECTION_SURFACE) return frame.reflectionShadowDepth >= layer;
+			if(surfaceType == REFRACTION_SURFACE) return frame.refractionShadowDepth >= layer;
+			return true;
+		}
+
+		/**
+		 * Finds the surface hit by a ray and calculates its color, reflection and refraction like getSurface of
+		 * ray_tracing.glsl. The results are stored in the surface fields.
+		 */
+		private void calculateSurface(
+			float ox, float oy, float oz, float dx, float dy, float dz,
+			boolean calculateLighting, boolean calculateShadows
+		) {
+			// the nearest hit of a primary ray may have been found by the packet intersector
+			if(primaryHitFound) primaryHitFound = false;
+			else intersector.findNearestHit(ox, oy, oz, dx, dy, dz, frame.lightRendering);
+
+			int nearestObjectType = intersector.hitType;
+			int nearestObjectIndex = intersector.hitIndex;
+
+			surfaceColor[0] = surfaceColor[1] = surfaceColor[2] = 0;
+			fresnelColor[0] = fresnelColor[1] = fresnelColor[2] = 0;
+			reflectionStrength = 0;
+			reflectionNormalAlignment = 0;
+			reflectionDirection[0] = reflectionDirection[1] = reflectionDirection[2] = 0;
+			refractionStrength = 0;
+			refractionDirection[0] = refractionDirection[1] = refractionDirection[2] = 0;
+
+			// the black default sky dome
+			if(nearestObjectType == CpuIntersector.TYPE_NONE) {
+				surfacePosition[0] = surfacePosition[1] = surfacePosition[2] = 0;
+				return;
+			}
+
+			if(nearestObjectType == CpuIntersector.TYPE_LIGHT) {
+				int light = nearestObjectIndex * CpuScene.LIGHT_SIZE;
+
+				for(int k = 0; k < 3; k++) {
+					surfacePosition[k] = scene.lights[light + k];
+					surfaceColor[k] = scene.lights[light + 4 + k] * scene.lights[light + 3];
+				}
+
+				return;
+			}
+
+			// calculate the the position where the ray hit the object's surface
+			float distance = intersector.hitDistance;
+			float px = ox + distance * dx, py = oy + distance * dy, pz = oz + distance * dz;
+			surfacePosition[0] = px;
+			surfacePosition[1] = py;
+			surfacePosition[2] = pz;
+
+			// determine the surface's normal vector and its object's color, material and opacity
+			int material = 0;
+			float roughness, metalness, reflectivity, refractionIndex, opacity;
+
+			if(nearestObjectType == CpuIntersector.TYPE_SPHERE) {
+				int sphere = nearestObjectIndex * 4;
+				normal[0] = px - scene.spheres[sphere];
+				normal[1] = py - scene.spheres[sphere + 1];
+				normal[2] = pz - scene.spheres[sphere + 2];
+				normalize(normal);
+				System.arraycopy(scene.sphereColors, nearestObjectIndex * 3, objectColor, 0, 3);
+				material = scene.sphereMaterials[nearestObjectIndex] * 5;
+			} else if(nearestObjectType == CpuIntersector.TYPE_QUADRIC) {
+				intersector.calculateQuadricNormal(nearestObjectIndex, px, py, pz, normal);
+				System.arraycopy(scene.quadricColors, nearestObjectIndex * 3, objectColor, 0, 3);
+				material = scene.quadricMaterials[nearestObjectIndex] * 5;
+			}
+
+			if(nearestObjectType == CpuIntersector.TYPE_TRIANGLE) {
+				calculateTriangleSurface(nearestObjectIndex);
+				roughness = texel[0];
+				metalness = texel[1];
+				reflectivity = texel[2];
+				refractionIndex = 10 - texel[3] * 9;
+				opacity = surfaceOpacity;
+			} else {
+				roughness = scene.materials[material];
+				metalness = scene.materials[material + 1];
+				reflectivity = scene.materials[material + 2];
+				refractionIndex = scene.materials[material + 3];
+				opacity = scene.materials[material + 4];
+			}
+
+			if(intersector.hitInvertNormal) {
+				normal[0] = -normal[0];
+				normal[1] = -normal[1];
+				normal[2] = -normal[2];
+			}
+
+			// calculate vector alignments
+			float nx = normal[0], ny = normal[1], nz = normal[2];
+			float normalRayAlignment = nx * dx + ny * dy + nz * dz;
+			float normalCameraDirectionAlignment = Math.min(1, Math.max(0, -normalRayAlignment));
+			float normalRayDirectionAlignment = Math.max(0, normalRayAlignment);
+			float negativeNormalRayDirectionAlignment = Math.max(0, -normalRayAlignment);
+
+			// calculate reflection direction and refraction direction
+			reflectionDirection[0] = dx - 2 * normalRayAlignment * nx;
+			reflectionDirection[1] = dy - 2 * normalRayAlignment * ny;
+			reflectionDirection[2] = dz - 2 * normalRayAlignment * nz;
+			normalize(reflectionDirection);
+			float rayRefractionIndex = 1;
+
+			if(opacity < 1) {
+				float objectRefractionIndex = refractionIndex;
+				float relativeRefractionIndex = rayRefractionIndex / objectRefractionIndex;
+				float b = 1 - square(relativeRefractionIndex) * (1 - square(normalCameraDirectionAlignment));
+
+				if(b >= 0) {
+					float normalFactor = relativeRefractionIndex * normalCameraDirectionAlignment - (float) Math.sqrt(b);
+					refractionDirection[0] = relativeRefractionIndex * dx + normalFactor * nx;
+					refractionDirection[1] = relativeRefractionIndex * dy + normalFactor * ny;
+					refractionDirection[2] = relativeRefractionIndex * dz + normalFactor * nz;
+					normalize(refractionDirection);
+
+					float perpendicularLight = square((
+						rayRefractionIndex * normalRayDirectionAlignment -
+						objectRefractionIndex * negativeNormalRayDirectionAlignment
+					) / (
+						rayRefractionIndex * normalRayDirectionAlignment +
+						objectRefractionIndex * negativeNormalRayDirectionAlignment
+					));
+
+					float parallelLight = square((
+						objectRefractionIndex * normalRayDirectionAlignment -
+						rayRefractionIndex * negativeNormalRayDirectionAlignment
+					) / (
+						objectRefractionIndex * normalRayDirectionAlignment +
+						rayRefractionIndex * negativeNormalRayDirectionAlignment
+					));
+
+					refractionStrength = 1 - opacity * ((perpendicularLight + parallelLight) / 2);
+				} else {
+					System.arraycopy(reflectionDirection, 0, refractionDirection, 0, 3);
+				}
+			}
+
+			if(opacity == 0) {
+				reflectionDirection[0] = reflectionDirection[1] = reflectionDirection[2] = 0;
+				refractionStrength = 1;
+				return;
+			}
+
+			// calculate reflection color and fresnel color and prepare gamma correction
+			reflectionStrength = reflectivity;
+			reflectionNormalAlignment = Math.max(
+				0, nx * reflectionDirection[0] + ny * reflectionDirection[1] + nz * reflectionDirection[2]
+			);
+
+			if(!calculateLighting) {
+				System.arraycopy(objectColor, 0, surfaceColor, 0, 3);
+				return;
+			}
+
+			roughness = Math.max(0.01f, roughness);
+
+			if(frame.gammaCorrection) {
+				for(int k = 0; k < 3; k++) objectColor[k] = pow(objectColor[k], 2.2f);
+			}
+
+			float f0 = square((rayRefractionIndex - refractionIndex) / (rayRefractionIndex + refractionIndex));
+			float fresnelFactor = pow(1 - normalCameraDirectionAlignment, 5);
+
+			for(int k = 0; k < 3; k++) {
+				float reflectionTint = (1 - metalness) * f0 + metalness * objectColor[k];
+				fresnelColor[k] = reflectionTint + (1 - reflectionTint) * fresnelFactor;
+			}
+
+			// perform light calculations for each light
+			float[] lights = scene.lights;
+
+			for(int i = 0; i < scene.lightCount; i++) {
+				int light = i * CpuScene.LIGHT_SIZE;
+				float intensity = lights[light + 3];
+				if(intensity <= 0) continue;
+
+				// check if object is in shadow
+				float shadowStrength = 0;
+				if(calculateShadows) shadowStrength = traceShadowStrength(i, px, py, pz);
+
+				// apply light to object
+				if(frame.shadowRayCount >= 1 && shadowStrength == frame.shadowRayCount) continue;
+
+				float lx = lights[light] - px, ly = lights[light + 1] - py, lz = lights[light + 2] - pz;
+				float lightLength = (float) Math.sqrt(lx * lx + ly * ly + lz * lz);
+				lx /= lightLength;
+				ly /= lightLength;
+				lz /= lightLength;
+
+				float sx = (-dx + lx) / 2, sy = (-dy + ly) / 2, sz = (-dz + lz) / 2;
+				float specularLength = (float) Math.sqrt(sx * sx + sy * sy + sz * sz);
+				sx /= specularLength;
+				sy /= specularLength;
+				sz /= specularLength;
+
+				float normalLightAlignment = Math.max(0, nx * lx + ny * ly + nz * lz);
+				float normalSpecularAlignment = Math.max(0, nx * sx + ny * sy + nz * sz);
+
+				float distributionValue = (
+					square(roughness) /
+					((float) Math.PI * square(square(normalSpecularAlignment) * (square(roughness) - 1) + 1))
+				);
+
+				float geometryValue = ((
+					normalCameraDirectionAlignment /
+					(normalCameraDirectionAlignment * (1 - roughness / 2) + roughness / 2)
+				) * (
+					normalLightAlignment /
+					(normalLightAlignment * (1 - roughness / 2) + roughness / 2)
+				));
+
+				if(frame.shadowRayCount > 0) shadowStrength /= frame.shadowRayCount;
+				else shadowStrength = 0;
+
+				for(int k = 0; k < 3; k++) {
+					float lightColor = lights[light + 4 + k];
+					if(frame.gammaCorrection) lightColor = pow(lightColor, 2.2f);
+
+					float diffuseColor = (1 - fresnelColor[k]) * objectColor[k];
+					float specularColor = distributionValue * geometryValue * fresnelColor[k];
+
+					surfaceColor[k] += (
+						(1 - shadowStrength) *
+						lightColor *
+						intensity *
+						normalLightAlignment *
+						(diffuseColor + specularColor)
+					);
+				}
+			}
+
+			// apply ambient light, reflectivity and gamma correction
+			for(int k = 0; k < 3; k++) {
+				surfaceColor[k] *= 1 - reflectivity;
+				if(frame.gammaCorrection) surfaceColor[k] = pow(surfaceColor[k], 0.45f);
+				if(frame.ambientLight) surfaceColor[k] += objectColor[k] * 0.1f;
+			}
+		}
+
+		/**
+		 * Interpolates the normal, color and texture coordinates of the triangle hit last at the hit position and
+		 * samples the color map and material map of the hit instance. Stores the normal in the {@link #normal},
+		 * the color in the {@link #objectColor}, the opacity in the {@link #surfaceOpacity} and the material map's
+		 * texel in the {@link #texel}.
+		 */
+		private void calculateTriangleSurface(int triangleIndex) {
+			float denominator = intersector.getTriangleNormalLengthSquared(triangleIndex);
+			float u = intersector.hitBcInsideTest / denominator;
+			float v = intersector.hitCaInsideTest / denominator;
+			float w = 1 - u - v;
+			int vertex = triangleIndex * 9;
+
+			if(frame.usingVertexNormals) {
+				interpolate(scene.vertexNormals, vertex, u, v, w, normal);
+			} else {
+				System.arraycopy(scene.triangleNormals, triangleIndex * 3, normal, 0, 3);
+				normalize(normal);
+			}
+
+			// transform the normal into world space by the instance's normal matrix
+			int matrix = intersector.hitInstance * 36 + 16;
+			float[] instances = scene.instanceData;
+			float nx = CpuIntersector.transformX(instances, matrix, normal[0], normal[1], normal[2]);
+			float ny = CpuIntersector.transformY(instances, matrix, normal[0], normal[1], normal[2]);
+			float nz = CpuIntersector.transformZ(instances, matrix, normal[0], normal[1], normal[2]);
+			normal[0] = nx;
+			normal[1] = ny;
+			normal[2] = nz;
+			normalize(normal);
+
+			int uv = triangleIndex * 6;
+			float[] uvs = scene.vertexUVs;
+			float textureU = u * uvs[uv] + v * uvs[uv + 2] + w * uvs[uv + 4];
+			float textureV = u * uvs[uv + 1] + v * uvs[uv + 3] + w * uvs[uv + 5];
+
+			int textureIndex = Float.floatToRawIntBits(instances[intersector.hitInstance * 36 + 33]);
+			boolean hasTexture = textureIndex >= 0 && textureIndex < scene.colorMaps.length;
+
+			CpuTexture.sample(hasTexture ? scene.colorMaps[textureIndex] : null, textureU, textureV, texel);
+			surfaceOpacity = texel[3];
+
+			if(frame.usingVertexColors) {
+				interpolate(scene.vertexColors, vertex, u, v, w, objectColor);
+				for(int k = 0; k < 3; k++) objectColor[k] *= texel[k];
+			} else {
+				System.arraycopy(texel, 0, objectColor, 0, 3);
+			}
+
+			CpuTexture.sample(hasTexture ? scene.materialMaps[textureIndex] : null, textureU, textureV, texel);
+		}
+
+		/**
+		 * Interpolates the values of the three vertices of a triangle with barycentric coordinates.
+		 *
+		 * @param data The array storing three vectors per triangle.
+		 * @param vertex The position of the triangle's first vector within the data.
+		 * @param result Stores the interpolated vector.
+		 */
+		private void interpolate(float[] data, int vertex, float u, float v, float w, float[] result) {
+			for(int k = 0; k < 3; k++) {
+				result[k] = u * data[vertex + k] + v * data[vertex + 3 + k] + w * data[vertex + 6 + k];
+			}
+		}
+
+		/**
+		 * Casts the shadow rays from a surface position to the shadow check points of a light like
+		 * traceSurfaceShadowStrength of ray_tracing.glsl.
+		 *
+		 * @return The sum of the shadow strengths of the shadow rays.
+		 */
+		private float traceShadowStrength(int lightIndex, float px, float py, float pz) {
+			float shadowStrength = 0;
+			int checkPointCount = Math.max(frame.shadowRayCount, 1);
+
+			for(int j = 0; j < frame.shadowRayCount; j++) {
+				int checkPoint = (lightIndex * checkPointCount + j) * 3;
+				float lx = frame.shadowCheckPoints[checkPoint] - px;
+				float ly = frame.shadowCheckPoints[checkPoint + 1] - py;
+				float lz = frame.shadowCheckPoints[checkPoint + 2] - pz;
+				float lightDistance = (float) Math.sqrt(lx * lx + ly * ly + lz * lz);
+				float dx = lx / lightDistance, dy = ly / lightDistance, dz = lz / lightDistance;
+				float ox = px + RAY_OFFSET * dx, oy = py + RAY_OFFSET * dy, oz = pz + RAY_OFFSET * dz;
+
+				if(frame.transparencyLighting) {
+					shadowStrength += intersector.getShadowStrength(ox, oy, oz, dx, dy, dz, lightDistance);
+				} else if(intersector.isOccluded(ox, oy, oz, dx, dy, dz, lightDistance)) {
+					shadowStrength += 1;
+				}
+			}
+
+			return shadowStrength;
+		}
+	}
+
+	private static float square(float x) {
+		return x * x;
+	}
+
+	private static float pow(float x, float power) {
+		return (float) Math.pow(x, power);
+	}
+}
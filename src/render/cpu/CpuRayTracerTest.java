@@ -0,0 +1,99 @@
+package render.cpu;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import org.junit.jupiter.api.Test;
+
+import cgi.Model;
+import cgi.Sphere;
+import cgi.SphereLight;
+import material.CookTorranceMaterial;
+import math.matrix.Matrix4;
+import math.vector.Vector3;
+import settings.RayTracingSettings;
+import shader.RayTracingShaderProgramBuilder;
+
+/**
+ * Provides tests for the {@link CpuRayTracer#render} method.
+ *
+ * @author Tizian Kirchner
+ */
+class CpuRayTracerTest {
+
+	@Test
+	void testRender() {
+		RayTracingShaderProgramBuilder builder = new RayTracingShaderProgramBuilder("rt/ray_tracing", false);
+		builder.getSpheres().add(new Sphere(0, 0, -5, 1, 0, 0, 1, 0));
+		builder.getLights().add(new SphereLight(0, 10, 0, 1, 1, 1, 1, 0.5f));
+		builder.getMaterials().add(new CookTorranceMaterial(0.5f, 0, 0, 1.5f, 1));
+
+		int width = 64;
+		int height = 36;
+		int center = (height / 2) * width + width / 2;
+
+		CpuScene scene = new CpuScene();
+		scene.update(builder);
+
+		CpuRayTracer rayTracer = new CpuRayTracer();
+		RayTracingSettings rtSettings = new RayTracingSettings();
+		Vector3 cameraPosition = new Vector3(0, 0, 0);
+		int[] pixels = new int[width * height];
+		rayTracer.render(scene, rtSettings, new Matrix4(), cameraPosition, width, height, pixels);
+
+		// the red sphere is lit from above and the sky dome around it is black
+		int spherePixel = pixels[center];
+		assertTrue((spherePixel >> 16 & 0xff) > (spherePixel >> 8 & 0xff));
+		assertEquals(0, pixels[0]);
+		assertEquals(0, pixels[pixels.length - 1]);
+
+		// a model instance in front of the sphere covers it
+		Model model = new Model("Sphere", Model.SHADING_SMOOTH);
+		model.getModelMatrix().scale(0.5f).translate(0, 0, -3);
+		builder.getModels().add(model);
+		scene.update(builder);
+
+		rayTracer.render(scene, rtSettings, new Matrix4(), cameraPosition, width, height, pixels);
+		assertNotEquals(spherePixel, pixels[center]);
+		assertEquals(0, pixels[0]);
+	}
+
+	@Test
+	void testPacketTracing() {
+		assumeTrue(CpuRayTracer.isPacketTracingSupported());
+
+		RayTracingShaderProgramBuilder builder = new RayTracingShaderProgramBuilder("rt/ray_tracing", false);
+		builder.getSpheres().add(new Sphere(-1.5f, 0, -6, 1, 0, 0, 1, 0));
+		builder.getSpheres().add(new Sphere(1.5f, -0.5f, -7, 1, 1, 0, 0, 0));
+		builder.getLights().add(new SphereLight(0, 10, 0, 1, 1, 1, 1, 0.5f));
+		builder.getMaterials().add(new CookTorranceMaterial(0.5f, 0, 0.3f, 1.5f, 1));
+
+		for(int i = 0; i < 3; i++) {
+			Model model = new Model("Sphere", Model.SHADING_SMOOTH);
+			model.getModelMatrix().scale(0.4f).translate(i - 1, 0.8f, -4 - i);
+			builder.getModels().add(model);
+		}
+
+		CpuScene scene = new CpuScene();
+		scene.update(builder);
+
+		// an odd width leaves partially filled packets at the end of the rows
+		int width = 67;
+		int height = 37;
+		RayTracingSettings rtSettings = new RayTracingSettings();
+		Vector3 cameraPosition = new Vector3(0, 0, 0);
+		int[] packetPixels = new int[width * height];
+		int[] scalarPixels = new int[width * height];
+
+		CpuRayTracer rayTracer = new CpuRayTracer();
+		rayTracer.render(scene, rtSettings, new Matrix4(), cameraPosition, width, height, packetPixels);
+		rayTracer.setUsingPackets(false);
+		rayTracer.render(scene, rtSettings, new Matrix4(), cameraPosition, width, height, scalarPixels);
+
+		// the packets perform the same intersection tests as single rays
+		assertArrayEquals(scalarPixels, packetPixels);
+	}
+}
@@ -0,0 +1,449 @@
+package render.cpu;
+
+import java.util.ArrayList;
+
+import bvh.BoundingVolumeHierarchy;
+import bvh.TwoLevelBoundingVolumeHierarchy;
+import cgi.ConstructiveSolidGeometry;
+import cgi.Model;
+import cgi.Quadric;
+import cgi.Sphere;
+import cgi.SphereLight;
+import material.CookTorranceMaterial;
+import math.vector.Vector2;
+import math.vector.Vector3;
+import shader.RayTracingShaderProgramBuilder;
+import shader.ShaderProgramStorage;
+import texture.CookTorranceTexture;
+
+/**
+ * A copy of the 3D objects of a {@link RayTracingShaderProgramBuilder}, which is traced by the
+ * {@link CpuRayTracer}.
+ *
+ * The objects are stored in arrays laid out like the buffers of the ray tracing
+ * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program, so that the CpuRayTracer can
+ * traverse the same {@link TwoLevelBoundingVolumeHierarchy} as the shaders do. Like the buffers, the copy only
+ * changes when it is {@link #update updated}, so that the objects can be changed while a frame is traced.
+ *
+ * @author Tizian Kirchner
+ */
+public class CpuScene {
+	/**
+	 * How many floats the data of one {@link SphereLight} within the {@link #lights} takes up:
+	 * position, intensity, color and radius.
+	 */
+	static final int LIGHT_SIZE = 8;
+
+	/**
+	 * How many shadow check points are stored for each SphereLight, see {@link SphereLight#calculateSurfaceVectors}.
+	 */
+	static final int CHECK_POINT_COUNT = 200;
+
+	/**
+	 * The positions of the coefficients A to J of a {@link Quadric} within its column major matrix,
+	 * from which the shaders read them.
+	 */
+	private static final int[] QUADRIC_COEFFICIENT_INDECIS = {0, 5, 10, 4, 8, 9, 12, 13, 14, 15};
+
+	/**
+	 * The bounding volume hierarchy over the {@link Model} and {@link Sphere} objects of the scene.
+	 */
+	private TwoLevelBoundingVolumeHierarchy sceneBvh = new TwoLevelBoundingVolumeHierarchy();
+
+	/**
+	 * One Model for each distinct mesh, in the order their triangles are stored in.
+	 */
+	private ArrayList<Model> meshes = new ArrayList<>();
+
+	/**
+	 * The Model objects of the scene, see {@link RayTracingShaderProgramBuilder#getModels}.
+	 */
+	private ArrayList<Model> models = new ArrayList<>();
+
+	/* Triangles */
+
+	int triangleCount = 0;
+
+	/**
+	 * The x, y and z coordinates of the three vertices of each triangle in object space.
+	 */
+	float[] vertices = new float[0];
+
+	float[] vertexColors = new float[0];
+
+	float[] vertexNormals = new float[0];
+
+	/**
+	 * The u and v texture coordinates of the three vertices of each triangle.
+	 */
+	float[] vertexUVs = new float[0];
+
+	float[] triangleNormals = new float[0];
+
+	/* Bounding Volume Hierarchy */
+
+	/**
+	 * The BoundingVolumeHierarchy buffer, see {@link TwoLevelBoundingVolumeHierarchy#getBufferData}.
+	 * The primitive indecis are stored as the bits of the floats.
+	 */
+	float[] bvhData = new float[0];
+
+	/**
+	 * See {@link TwoLevelBoundingVolumeHierarchy#getNodeOffset}.
+	 */
+	int bvhNodeOffset = 0;
+
+	/**
+	 * The data of each Model within the ModelInstances buffer, see
+	 * {@link TwoLevelBoundingVolumeHierarchy#getInstanceData}.
+	 */
+	float[] instanceData = new float[0];
+
+	/* Objects */
+
+	int modelCount = 0;
+	int sphereCount = 0;
+	int quadricCount = 0;
+	int csgCount = 0;
+	int lightCount = 0;
+
+	/**
+	 * The origin and radius of each Sphere.
+	 */
+	float[] spheres = new float[0];
+	float[] sphereColors = new float[0];
+	int[] sphereMaterials = new int[0];
+
+	/**
+	 * The coefficients A to J of each {@link Quadric}.
+	 */
+	float[] quadrics = new float[0];
+	float[] quadricColors = new float[0];
+	int[] quadricMaterials = new int[0];
+	boolean[] quadricsVisible = new boolean[0];
+
+	/**
+	 * The indecis of both quadrics and the operation of each {@link ConstructiveSolidGeometry}.
+	 */
+	int[] csgs = new int[0];
+
+	/**
+	 * The data of each SphereLight, see {@link #LIGHT_SIZE}.
+	 */
+	float[] lights = new float[0];
+
+	/**
+	 * The {@link #CHECK_POINT_COUNT} surface vectors of each SphereLight.
+	 */
+	float[] lightSurfaceVectors = new float[0];
+
+	/**
+	 * The roughness, metalness, reflectivity, refraction index and opacity of each {@link CookTorranceMaterial}.
+	 */
+	float[] materials = new float[5];
+
+	CpuTexture[] colorMaps = new CpuTexture[0];
+	CpuTexture[] materialMaps = new CpuTexture[0];
+
+	/**
+	 * Copies the 3D objects of {@link ShaderProgramStorage#PROGRAM_RAY_TRACING}. See {@link #update}.
+	 */
+	public void update() {
+		update(ShaderProgramStorage.PROGRAM_RAY_TRACING);
+	}
+
+	/**
+	 * Copies the 3D objects stored by the lists of a {@link RayTracingShaderProgramBuilder}.
+	 *
+	 * The triangles are only copied again if the meshes have changed, apart from their vertex colors.
+	 * The bounding volume hierarchy is updated like the one of the {@link render.RayTracer RayTracer}.
+	 * The image files of {@link CookTorranceTexture} objects are read once, see {@link CpuTexture#load}.
+	 *
+	 * @param builder The builder, whose lists store the 3D objects.
+	 */
+	public void update(RayTracingShaderProgramBuilder builder) {
+		models = builder.getModels();
+		ArrayList<Model> currentMeshes = builder.getMeshes();
+
+		if(containsMeshes(currentMeshes)) {
+			updateVertexColors();
+		} else {
+			meshes = currentMeshes;
+			updateTriangles();
+		}
+
+		updateBvh(builder.getSpheres());
+		updateSpheres(builder.getSpheres());
+		updateQuadrics(builder.getQuadrics());
+		updateCsgs(builder.getCsgs());
+		updateLights(builder.getLights());
+		updateMaterials(builder.getMaterials());
+		updateTextures(builder.getCtTextures());
+	}
+
+	/**
+	 * @param currentMeshes One Model for each distinct mesh.
+	 * @return If the {@link #meshes} are the same Model objects in the same order.
+	 */
+	private boolean containsMeshes(ArrayList<Model> currentMeshes) {
+		if(meshes.size() != currentMeshes.size()) return false;
+
+		for(int i = 0; i < meshes.size(); i++) {
+			if(meshes.get(i) != currentMeshes.get(i)) return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Copies the triangles of the {@link #meshes} in the order of the meshes.
+	 * Missing vertex normals are replaced by the triangle normals.
+	 */
+	private void updateTriangles() {
+		triangleCount = 0;
+
+		for(int i = 0; i < meshes.size(); i++) {
+			triangleCount += meshes.get(i).getVertices().length / 3;
+		}
+
+		vertices = new float[triangleCount * 9];
+		vertexColors = new float[triangleCount * 9];
+		vertexNormals = new float[triangleCount * 9];
+		vertexUVs = new float[triangleCount * 6];
+		triangleNormals = new float[triangleCount * 3];
+		int vertexIndex = 0;
+
+		for(int i = 0; i < meshes.size(); i++) {
+			Model mesh = meshes.get(i);
+			Vector3[] meshVertices = mesh.getVertices();
+			Vector3[] meshNormals = mesh.getVertexNormals();
+			Vector3[] meshTriangleNormals = mesh.getTriangleNormals();
+			Vector2[] uvCoordinates = mesh.getUVCoordinates();
+
+			putVector3s(vertices, vertexIndex * 3, meshVertices);
+			putVector3s(vertexColors, vertexIndex * 3, mesh.getVertexColors());
+			putVector3s(triangleNormals, vertexIndex, meshTriangleNormals);
+
+			for(int j = 0; j < meshVertices.length; j++) {
+				Vector3 normal = meshNormals != null ? meshNormals[j] : meshTriangleNormals[j / 3];
+
+				for(int k = 0; k < 3; k++) {
+					vertexNormals[(vertexIndex + j) * 3 + k] = normal.getComponent(k);
+				}
+
+				if(uvCoordinates == null) continue;
+				vertexUVs[(vertexIndex + j) * 2] = uvCoordinates[j].getComponent(0);
+				vertexUVs[(vertexIndex + j) * 2 + 1] = uvCoordinates[j].getComponent(1);
+			}
+
+			vertexIndex += meshVertices.length;
+		}
+	}
+
+	/**
+	 * Copies the vertex colors of the {@link #meshes}, which can change without the meshes changing.
+	 * The dirty flags of the meshes are left to the {@link render.RayTracer RayTracer}.
+	 */
+	private void updateVertexColors() {
+		int vertexIndex = 0;
+
+		for(int i = 0; i < meshes.size(); i++) {
+			Model mesh = meshes.get(i);
+			putVector3s(vertexColors, vertexIndex * 3, mesh.getVertexColors());
+			vertexIndex += mesh.getVertices().length;
+		}
+	}
+
+	/**
+	 * Updates the {@link #sceneBvh} and copies the changed parts of its buffer and instance data.
+	 *
+	 * @param sphereList The Sphere objects of the scene.
+	 */
+	private void updateBvh(ArrayList<Sphere> sphereList) {
+		int update = sceneBvh.update(meshes, models, sphereList);
+		modelCount = sceneBvh.getModelCount();
+		bvhNodeOffset = sceneBvh.getNodeOffset();
+		int instanceSize = TwoLevelBoundingVolumeHierarchy.INSTANCE_SIZE;
+
+		if(update == TwoLevelBoundingVolumeHierarchy.UPDATE_ALL) {
+			bvhData = sceneBvh.getBufferData();
+			instanceData = new float[modelCount * instanceSize];
+		} else if(update == TwoLevelBoundingVolumeHierarchy.UPDATE_INSTANCE_BVH) {
+			int instanceNodeCount = sceneBvh.getInstanceBvh().getNodeCount();
+			float[] indexData = sceneBvh.getInstancePrimitiveIndexData();
+			float[] nodeData = sceneBvh.getInstanceNodeData(0, instanceNodeCount);
+			System.arraycopy(indexData, 0, bvhData, 0, indexData.length);
+			System.arraycopy(nodeData, 0, bvhData, bvhNodeOffset, nodeData.length);
+		} else if(update == TwoLevelBoundingVolumeHierarchy.UPDATE_REFIT) {
+			BoundingVolumeHierarchy instanceBvh = sceneBvh.getInstanceBvh();
+			int[] dirtyNodeRanges = instanceBvh.getDirtyNodeRanges();
+
+			for(int i = 0; i < dirtyNodeRanges.length; i += 2) {
+				int offset = bvhNodeOffset + dirtyNodeRanges[i] * BoundingVolumeHierarchy.NODE_SIZE;
+				float[] nodeData = sceneBvh.getInstanceNodeData(dirtyNodeRanges[i], dirtyNodeRanges[i + 1]);
+				System.arraycopy(nodeData, 0, bvhData, offset, nodeData.length);
+			}
+
+			instanceBvh.clearDirtyNodes();
+		}
+
+		for(int i = 0; i < modelCount; i++) {
+			if(sceneBvh.isInstanceChanged(i)) {
+				System.arraycopy(sceneBvh.getInstanceData(i), 0, instanceData, i * instanceSize, instanceSize);
+			}
+		}
+	}
+
+	/**
+	 * @param sphereList The Sphere objects of the scene.
+	 */
+	private void updateSpheres(ArrayList<Sphere> sphereList) {
+		sphereCount = sphereList.size();
+		spheres = new float[sphereCount * 4];
+		sphereColors = new float[sphereCount * 3];
+		sphereMaterials = new int[sphereCount];
+
+		for(int i = 0; i < sphereCount; i++) {
+			Sphere sphere = sphereList.get(i);
+			putVector3(spheres, i * 4, sphere.getOrigin());
+			putVector3(sphereColors, i * 3, sphere.getColor());
+			spheres[i * 4 + 3] = sphere.getRadius();
+			sphereMaterials[i] = sphere.getMaterialIndex();
+		}
+	}
+
+	/**
+	 * @param quadricList The Quadric objects of the scene.
+	 */
+	private void updateQuadrics(ArrayList<Quadric> quadricList) {
+		quadricCount = quadricList.size();
+		quadrics = new float[quadricCount * 10];
+		quadricColors = new float[quadricCount * 3];
+		quadricMaterials = new int[quadricCount];
+		quadricsVisible = new boolean[quadricCount];
+
+		for(int i = 0; i < quadricCount; i++) {
+			Quadric quadric = quadricList.get(i);
+			float[] matrix = quadric.getMatrix().getElementsAsArray();
+
+			for(int j = 0; j < 10; j++) {
+				quadrics[i * 10 + j] = matrix[QUADRIC_COEFFICIENT_INDECIS[j]];
+			}
+
+			putVector3(quadricColors, i * 3, quadric.getColor());
+			quadricMaterials[i] = quadric.getMaterialIndex();
+			quadricsVisible[i] = quadric.getVisible();
+		}
+	}
+
+	/**
+	 * @param csgList The ConstructiveSolidGeometry objects of the scene.
+	 */
+	private void updateCsgs(ArrayList<ConstructiveSolidGeometry> csgList) {
+		csgCount = csgList.size();
+		csgs = new int[csgCount * 3];
+
+		for(int i = 0; i < csgCount; i++) {
+			ConstructiveSolidGeometry csg = csgList.get(i);
+			csgs[i * 3] = csg.getQuadric1Index();
+			csgs[i * 3 + 1] = csg.getQuadric2Index();
+			csgs[i * 3 + 2] = csg.getOperation();
+		}
+	}
+
+	/**
+	 * Copies the SphereLight objects and their surface vectors, from which the shadow check points are chosen
+	 * depending on the shadow ray count of the traced frame.
+	 *
+	 * @param lightList The SphereLight objects of the scene.
+	 */
+	private void updateLights(ArrayList<SphereLight> lightList) {
+		lightCount = lightList.size();
+		lights = new float[lightCount * LIGHT_SIZE];
+		lightSurfaceVectors = new float[lightCount * CHECK_POINT_COUNT * 3];
+
+		for(int i = 0; i < lightCount; i++) {
+			SphereLight light = lightList.get(i);
+			putVector3(lights, i * LIGHT_SIZE, light.getPosition());
+			putVector3(lights, i * LIGHT_SIZE + 4, light.getColor());
+			lights[i * LIGHT_SIZE + 3] = light.getIntensity();
+			lights[i * LIGHT_SIZE + 7] = light.getRadius();
+
+			if(!light.areSurfaceVectorsCalculated()) light.calculateSurfaceVectors();
+			ArrayList<Vector3> surfaceVectors = light.getSurfaceVectors();
+
+			for(int j = 0; j < Math.min(surfaceVectors.size(), CHECK_POINT_COUNT); j++) {
+				putVector3(lightSurfaceVectors, (i * CHECK_POINT_COUNT + j) * 3, surfaceVectors.get(j));
+			}
+		}
+	}
+
+	/**
+	 * @param materialList The CookTorranceMaterial objects of the scene.
+	 */
+	private void updateMaterials(ArrayList<CookTorranceMaterial> materialList) {
+		// like the Materials buffer, which holds at least one material
+		materials = new float[Math.max(materialList.size(), 1) * 5];
+
+		for(int i = 0; i < materialList.size(); i++) {
+			CookTorranceMaterial material = materialList.get(i);
+			materials[i * 5] = material.getRoughness();
+			materials[i * 5 + 1] = material.getMetalness();
+			materials[i * 5 + 2] = material.getReflectivity();
+			materials[i * 5 + 3] = material.getRefractionIndex();
+			materials[i * 5 + 4] = material.getOpacity();
+		}
+	}
+
+	/**
+	 * @param textureList The CookTorranceTexture objects of the scene.
+	 */
+	private void updateTextures(ArrayList<CookTorranceTexture> textureList) {
+		// like the cookTorranceTextures uniform, which holds at least one texture
+		colorMaps = new CpuTexture[Math.max(textureList.size(), 1)];
+		materialMaps = new CpuTexture[Math.max(textureList.size(), 1)];
+
+		for(int i = 0; i < textureList.size(); i++) {
+			colorMaps[i] = CpuTexture.load(textureList.get(i).getColorMap());
+			materialMaps[i] = CpuTexture.load(textureList.get(i).getMaterialMap());
+		}
+	}
+
+	/**
+	 * @param data The array the components are stored in.
+	 * @param offset The index of the first component within the data.
+	 * @param vector The vector, whose x, y and z components are stored.
+	 */
+	private static void putVector3(float[] data, int offset, Vector3 vector) {
+		data[offset] = vector.getComponent(0);
+		data[offset + 1] = vector.getComponent(1);
+		data[offset + 2] = vector.getComponent(2);
+	}
+
+	/**
+	 * @param data The array the components are stored in.
+	 * @param offset The index of the first component within the data.
+	 * @param vectors The vectors, whose components are stored one after another.
+	 */
+	private static void putVector3s(float[] data, int offset, Vector3[] vectors) {
+		if(vectors == null) return;
+
+		for(int i = 0; i < vectors.length; i++) {
+			putVector3(data, offset + i * 3, vectors[i]);
+		}
+	}
+
+	/**
+	 * @return How many triangles the meshes of the scene consist of.
+	 */
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+
+	/**
+	 * See {@link #modelCount}.
+	 */
+	public int getModelCount() {
+		return modelCount;
+	}
+}
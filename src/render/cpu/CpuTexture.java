@@ -0,0 +1,162 @@
+package render.cpu;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.imageio.ImageIO;
+
+import texture.TextureData;
+
+/**
+ * A copy of the image of a {@link TextureData} object in main memory, which is sampled by the {@link CpuRayTracer}.
+ *
+ * The texture is sampled like the samplers of the ray tracing
+ * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program sample the texture on the GPU:
+ * bilinearly filtered, repeated outside of [0, 1] and with the texture coordinate v = 0 at the bottom of the
+ * image. Only the base level is sampled, as a ray tracer has no screen space derivatives to select a mip map with.
+ *
+ * @author Tizian Kirchner
+ */
+public class CpuTexture {
+	/**
+	 * The CpuTexture objects, which have already been loaded, with the paths of their image files as keys.
+	 */
+	private static final ConcurrentHashMap<String, CpuTexture> LOADED_TEXTURES = new ConcurrentHashMap<>();
+
+	/**
+	 * How many texels wide the texture is.
+	 */
+	private int width;
+
+	/**
+	 * How many texels high the texture is.
+	 */
+	private int height;
+
+	/**
+	 * The red, green, blue and alpha value of each texel between 0 and 1.
+	 * The rows are stored from the bottom of the image to the top, like the rows of the texture on the GPU.
+	 */
+	private float[] texels;
+
+	/**
+	 * Constructs a {@link CpuTexture} from an image.
+	 * Images without an alpha channel are opaque, like textures with the GL_RGB format.
+	 *
+	 * @param image The image of the texture.
+	 */
+	public CpuTexture(BufferedImage image) {
+		width = image.getWidth();
+		height = image.getHeight();
+		texels = new float[width * height * 4];
+		boolean hasAlpha = image.getColorModel().hasAlpha();
+
+		for(int y = 0; y < height; y++) {
+			for(int x = 0; x < width; x++) {
+				int argb = image.getRGB(x, height - 1 - y);
+				int index = (y * width + x) * 4;
+
+				texels[index] = ((argb >> 16) & 0xff) / 255f;
+				texels[index + 1] = ((argb >> 8) & 0xff) / 255f;
+				texels[index + 2] = (argb & 0xff) / 255f;
+				texels[index + 3] = hasAlpha ? ((argb >> 24) & 0xff) / 255f : 1;
+			}
+		}
+	}
+
+	/**
+	 * Loads the image file of a {@link TextureData} object. Each image file is only read once.
+	 *
+	 * @param textureData The TextureData object.
+	 * @return
+	 * The CpuTexture of the image file. Null if the TextureData object has no image file, in which case the
+	 * texture is sampled like a sampler without a texture.
+	 *
+	 * @throws RuntimeException If the image file can not be read.
+	 */
+	public static CpuTexture load(TextureData textureData) {
+		if(textureData == null || textureData.getPath() == null) return null;
+		return LOADED_TEXTURES.computeIfAbsent(textureData.getPath(), CpuTexture::read);
+	}
+
+	/**
+	 * @param path The path to the image file with "/res/textures/" as the root folder.
+	 * @return A new CpuTexture of the image file. Missing image files are replaced by "Missing.jpg".
+	 */
+	private static CpuTexture read(String path) {
+		InputStream stream = CpuTexture.class.getResourceAsStream("/res/textures/" + path);
+		if(stream == null) stream = CpuTexture.class.getResourceAsStream("/res/textures/Missing.jpg");
+
+		try(InputStream imageStream = stream) {
+			return new CpuTexture(ImageIO.read(imageStream));
+		} catch(IOException e) {
+			throw new RuntimeException("Unable to read texture from stream: ", e);
+		}
+	}
+
+	/**
+	 * Samples a texture like a sampler with linear filtering and the repeat wrap mode.
+	 *
+	 * @param texture The texture, which may be null.
+	 * @param u The horizontal texture coordinate.
+	 * @param v The vertical texture coordinate, 0 at the bottom of the image.
+	 * @param result Stores the red, green, blue and alpha value of the sample. (0, 0, 0, 1) if the texture is null.
+	 */
+	public static void sample(CpuTexture texture, float u, float v, float[] result) {
+		if(texture == null) {
+			result[0] = 0;
+			result[1] = 0;
+			result[2] = 0;
+			result[3] = 1;
+			return;
+		}
+
+		texture.sample(u, v, result);
+	}
+
+	/**
+	 * See {@link #sample(CpuTexture, float, float, float[])}.
+	 */
+	public void sample(float u, float v, float[] result) {
+		// the texel centers lie at half texel offsets
+		float x = u * width - 0.5f;
+		float y = v * height - 0.5f;
+
+		float floorX = (float) Math.floor(x);
+		float floorY = (float) Math.floor(y);
+		float weightX = x - floorX;
+		float weightY = y - floorY;
+
+		int x0 = Math.floorMod((int) floorX, width);
+		int y0 = Math.floorMod((int) floorY, height);
+		int x1 = x0 + 1 == width ? 0 : x0 + 1;
+		int y1 = y0 + 1 == height ? 0 : y0 + 1;
+
+		int index00 = (y0 * width + x0) * 4;
+		int index10 = (y0 * width + x1) * 4;
+		int index01 = (y1 * width + x0) * 4;
+		int index11 = (y1 * width + x1) * 4;
+
+		for(int i = 0; i < 4; i++) {
+			float bottom = texels[index00 + i] + (texels[index10 + i] - texels[index00 + i]) * weightX;
+			float top = texels[index01 + i] + (texels[index11 + i] - texels[index01 + i]) * weightX;
+			result[i] = bottom + (top - bottom) * weightY;
+		}
+	}
+
+	/**
+	 * See {@link #width}.
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * See {@link #height}.
+	 */
+	public int getHeight() {
+		return height;
+	}
+}
@@ -0,0 +1,121 @@
+package render.cpu;
+
+import cgi.Model;
+import cgi.Sphere;
+import material.CookTorranceMaterial;
+import math.matrix.Matrix4;
+import math.vector.Vector3;
+import settings.RayTracingSettings;
+import shader.RayTracingShaderProgramBuilder;
+
+/**
+ * Compares how many primary rays per second the {@link CpuRayTracer} traces with and without packet tracing,
+ * see {@link CpuPacketIntersector}.
+ *
+ * The benchmarked scene is a wall of Sphere model instances and spheres in front of the camera. Lighting,
+ * reflections and refractions are turned off, so that only the primary rays are traced. Each mode renders several
+ * frames before being measured, so that the measured frames use compiled code. Requires the jdk.incubator.vector
+ * module, for example through {@code --add-modules jdk.incubator.vector}.
+ *
+ * @author Tizian Kirchner
+ */
+public class PacketTracingBenchmark {
+	private static final int WIDTH = 1280;
+	private static final int HEIGHT = 720;
+
+	/**
+	 * How many model instances and spheres the wall is wide and high.
+	 */
+	private static final int GRID_SIZE = 12;
+
+	/**
+	 * How many frames each mode renders before being measured.
+	 */
+	private static final int WARMUP_FRAMES = 5;
+
+	/**
+	 * How many frames of each mode are measured.
+	 */
+	private static final int MEASURED_FRAMES = 10;
+
+	/**
+	 * Runs the benchmark and prints the rays per second of each mode.
+	 *
+	 * @param args Unused.
+	 */
+	public static void main(String[] args) {
+		if(!CpuRayTracer.isPacketTracingSupported()) {
+			throw new IllegalStateException("Packet tracing requires --add-modules jdk.incubator.vector");
+		}
+
+		CpuScene scene = new CpuScene();
+		scene.update(createScene());
+		System.out.println("Packet size: " + CpuPacketIntersector.PACKET_SIZE);
+		System.out.println("Threads: " + Runtime.getRuntime().availableProcessors());
+
+		CpuRayTracer rayTracer = new CpuRayTracer();
+		rayTracer.setUsingPackets(false);
+		double scalarRaysPerSecond = benchmark("Scalar", rayTracer, scene);
+		rayTracer.setUsingPackets(true);
+		double packetRaysPerSecond = benchmark("Packets", rayTracer, scene);
+
+		System.out.printf("Speedup: %.2fx%n", packetRaysPerSecond / scalarRaysPerSecond);
+	}
+
+	/**
+	 * @return A builder storing a wall of model instances and spheres, which alternate like a checkerboard.
+	 */
+	private static RayTracingShaderProgramBuilder createScene() {
+		RayTracingShaderProgramBuilder builder = new RayTracingShaderProgramBuilder("rt/ray_tracing", false);
+		builder.getMaterials().add(new CookTorranceMaterial(0.5f, 0, 0, 1.5f, 1));
+		float spacing = 1.2f;
+		float offset = (GRID_SIZE - 1) * spacing / 2;
+
+		for(int y = 0; y < GRID_SIZE; y++) {
+			for(int x = 0; x < GRID_SIZE; x++) {
+				float px = x * spacing - offset;
+				float py = (y * spacing - offset) * 9 / 16;
+
+				if((x + y) % 2 == 0) {
+					Model model = new Model("Sphere", Model.SHADING_SMOOTH);
+					model.getModelMatrix().scale(0.5f).translate(px, py, -10);
+					builder.getModels().add(model);
+				} else {
+					builder.getSpheres().add(new Sphere(px, py, -10, 0.5f, 1, 1, 1, 0));
+				}
+			}
+		}
+
+		return builder;
+	}
+
+	/**
+	 * Renders and measures the frames of a mode.
+	 *
+	 * @param name The name of the mode.
+	 * @return The measured primary rays per second.
+	 */
+	private static double benchmark(String name, CpuRayTracer rayTracer, CpuScene scene) {
+		RayTracingSettings rtSettings = new RayTracingSettings(false, false, 0, 0, 0, false, false);
+		Vector3 cameraPosition = new Vector3(0, 0, 0);
+		int[] pixels = new int[WIDTH * HEIGHT];
+
+		for(int i = 0; i < WARMUP_FRAMES; i++) {
+			rayTracer.render(scene, rtSettings, new Matrix4(), cameraPosition, WIDTH, HEIGHT, pixels);
+		}
+
+		long startTime = System.nanoTime();
+
+		for(int i = 0; i < MEASURED_FRAMES; i++) {
+			rayTracer.render(scene, rtSettings, new Matrix4(), cameraPosition, WIDTH, HEIGHT, pixels);
+		}
+
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		double raysPerSecond = (double) WIDTH * HEIGHT * MEASURED_FRAMES / seconds;
+		System.out.printf(
+			"%s: %.1f ms per frame, %.2f million rays/s%n",
+			name, seconds * 1e3 / MEASURED_FRAMES, raysPerSecond / 1e6
+		);
+		return raysPerSecond;
+	}
+}
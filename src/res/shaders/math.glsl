@@ -14,6 +14,10 @@ float max3(vec3 v) {
   return max(max(v.x, v.y), v.z);
 }
 
+float min3(vec3 v) {
+  return min(min(v.x, v.y), v.z);
+}
+
 float componentSum(vec3 v) {
     return v.x + v.y + v.z;
 }
@@ -0,0 +1,15 @@
+#version 430 core
+
+/* Input */
+
+flat in ivec2 rasterizedTriangle;
+
+/* Output */
+
+out ivec2 primaryHit;
+
+/* Main */
+
+void main() {
+    primaryHit = rasterizedTriangle;
+}
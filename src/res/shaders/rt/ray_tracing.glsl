@@ -0,0 +1,542 @@
+//? #version 430 core
+#include "shadow.glsl"
+
+/* Definitions */
+
+#define ROOT_SURFACE       0
+#define REFLECTION_SURFACE 1
+#define REFRACTION_SURFACE 2
+
+/* Constants */
+
+const int lightCount = 0;
+const bool lighting = true;
+const bool transparencyLighting = false;
+const int shadowRayCount = 0;
+
+const int reflectionTraceDepth = 0;
+const int reflectionLightingDepth = 0;
+const int reflectionShadowDepth = 0;
+
+const int refractionTraceDepth = 0;
+const int refractionLightingDepth = 0;
+const int refractionShadowDepth = 0;
+
+const int surfaceCount = 0;
+const bool usingRayStack = false;
+const float contributionCutoff = 0.0;
+const bool rasterizedPrimaryHits = false;
+const float rayOffset = 0.001;
+
+/* Light Struct */
+
+struct Light {
+    vec3 position;
+    float intensity;
+    vec3 color;
+    float radius;
+    vec3[max(shadowRayCount, 1)] shadowCheckPoints;
+};
+
+/* Uniform Structs */
+
+struct SkyDome {
+    sampler2D texture0;
+    sampler2D texture1;
+    float texture1Strength;
+};
+
+/* Surface Structs */
+
+struct SurfaceReflection {
+    float strength;
+    float normalAlignment;
+    vec3 direction;
+};
+
+struct SurfaceRefraction {
+    float strength;
+    vec3 direction;
+};
+
+struct Surface {
+    vec3 position;
+    vec3 surfaceColor;
+    vec3 fresnelColor;
+    SurfaceReflection reflection;
+    SurfaceRefraction refraction;
+};
+
+/* Surface Constants */
+
+const SurfaceReflection emptyReflection = SurfaceReflection(0, 0, vec3(0));
+const SurfaceRefraction emptyRefraction = SurfaceRefraction(0, vec3(0));
+const Surface emptySurface = Surface(vec3(0), vec3(0), vec3(0), emptyReflection, emptyRefraction);
+Surface[max(1, surfaceCount)] surfaces;
+vec3[max(1, surfaceCount)] surfaceThroughputs;
+
+/* Ray Stack Struct */
+
+struct StackedRay {
+    vec3 origin;
+    vec3 direction;
+    vec3 throughput;
+    int type;
+    int depth;
+};
+
+/* Ray Stack Constants */
+
+// every traced ray pushes at most two rays one layer deeper, while being popped itself
+const int rayStackSize = max(reflectionTraceDepth, refractionTraceDepth) + 1;
+
+/* Input */
+
+layout(std430, binding = 6) readonly buffer Lights {
+    Light[max(lightCount, 1)] lights;
+};
+
+uniform SkyDome skyDome;
+
+uniform bool gammaCorrection;
+uniform bool ambientLight;
+uniform bool lightRendering;
+
+// the model instance and triangle rasterized into each pixel by primary_hits.frag, -1 if no triangle covers it
+layout(rg32i, binding = 1) readonly uniform iimage2D primaryHits;
+
+/* Primary Ray */
+
+// the pixel of the primary ray, whose hit has not been looked up in the primaryHits yet, -1 once it has been
+ivec2 primaryRayPixel = ivec2(-1);
+
+/* Functions */
+
+vec3 getObjectColor(vec4 texel, float u, float v, float w, int nearestObjectIndex) {
+    return texel.rgb * (
+        u * vertexColors[nearestObjectIndex * 3] +
+        v * vertexColors[nearestObjectIndex * 3 + 1] +
+        w * vertexColors[nearestObjectIndex * 3 + 2]
+    );
+}/*getObjectColor END*/
+
+vec3 getNormalVector(float u, float v, float w, int nearestObjectIndex) {
+    return (
+        u * vertexNormals[nearestObjectIndex * 3] +
+        v * vertexNormals[nearestObjectIndex * 3 + 1] +
+        w * vertexNormals[nearestObjectIndex * 3 + 2]
+    );
+}/*getNormalVector END*/
+
+vec2 getTextureCoordinates(float u, float v, float w, int nearestObjectIndex) {
+    return (
+        u * vertexUVs[nearestObjectIndex * 3] +
+        v * vertexUVs[nearestObjectIndex * 3 + 1] +
+        w * vertexUVs[nearestObjectIndex * 3 + 2]
+    );
+}
+
+vec3 getReflectionColor(
+    float reflectionNormalAlignment, vec3 fresnelColor, vec3 reflectionObjectColor, float reflectivity
+) {
+    if(gammaCorrection) reflectionObjectColor = powComponents(reflectionObjectColor, 2.2);
+    reflectionObjectColor *= reflectivity * reflectionNormalAlignment * fresnelColor;
+    vec3 reflectionColor = vec3(0);
+
+    for(int i = 0; i < lightCount; i++) {
+        reflectionColor += lights[i].color * lights[i].intensity * reflectionObjectColor;
+    }
+
+    if(gammaCorrection) reflectionColor = powComponents(reflectionColor, 0.45);
+    return reflectionColor;
+}
+
+ObjectReferenceInformation getNearestHit(
+    vec3 rayOrigin, vec3 rayDirection, ObjectReferenceInformation nearestObjectInformation
+) {
+    // gather information about nearest light when lights are rendered
+    if(lightRendering) {
+        float A = square(rayDirection.x) + square(rayDirection.y) + square(rayDirection.z);
+
+        for(int i = 0; i < lightCount; i++) {
+            Sphere lightSphere = Sphere(lights[i].position, lights[i].radius, lights[i].color, 0);
+            float lightDistance = getSphereInformation(lightSphere, A, rayOrigin, rayDirection).objectDistance;
+            float nearestObjectDistance = nearestObjectInformation.objectDistance;
+
+            if((nearestObjectDistance < 0 || lightDistance < nearestObjectDistance) && lightDistance > 0) {
+                nearestObjectInformation.type = TYPE_LIGHT;
+                nearestObjectInformation.index = i;
+                nearestObjectInformation.objectDistance = lightDistance;
+            }
+        }
+    }
+
+    return nearestObjectInformation;
+}
+
+ObjectReferenceInformation getNearestHit(vec3 rayOrigin, vec3 rayDirection) {
+    return getNearestHit(rayOrigin, rayDirection, getNearestObjectInformation(rayOrigin, rayDirection));
+}
+
+// starts from the triangle rasterized into the pixel instead of traversing the model instances
+ObjectReferenceInformation getRasterizedHit(vec3 rayOrigin, vec3 rayDirection, ivec2 pixel) {
+    ivec2 rasterizedTriangle = imageLoad(primaryHits, pixel).xy;
+    int instanceIndex = rasterizedTriangle.x;
+    int triangleIndex = rasterizedTriangle.y;
+    if(instanceIndex < 0) return getNearestHit(rayOrigin, rayDirection);
+
+    // intersect the ray with the triangle, so that the hit is the same as the one found by traversal
+    TriangleIntersection triangleIntersection = getTriangleIntersection(
+        triangleIndex,
+        getInstanceRayOrigin(instanceIndex, rayOrigin),
+        getInstanceRayDirection(instanceIndex, rayDirection),
+        -1
+    );
+
+    // the ray can miss the rasterized triangle at its edges
+    if(triangleIntersection.triangleDistance < 0) return getNearestHit(rayOrigin, rayDirection);
+
+    ObjectReferenceInformation triangleHit = ObjectReferenceInformation(
+        TYPE_TRIANGLE, triangleIndex, triangleIntersection.triangleDistance, false,
+        triangleIntersection.insideTest, instanceIndex
+    );
+
+    // only objects, which are not rasterized, can be in front of the triangle
+    return getNearestHit(
+        rayOrigin, rayDirection, getNearestObjectInformation(rayOrigin, rayDirection, triangleHit, false)
+    );
+}
+
+ObjectReferenceInformation traceSurfaceHit(vec3 rayOrigin, vec3 rayDirection) {
+    if(rasterizedPrimaryHits && primaryRayPixel.x >= 0) {
+        ivec2 pixel = primaryRayPixel;
+        primaryRayPixel = ivec2(-1);
+        return getRasterizedHit(rayOrigin, rayDirection, pixel);
+    }
+
+    return getNearestHit(rayOrigin, rayDirection);
+}
+
+float traceSurfaceShadowStrength(int lightIndex, vec3 surfacePosition) {
+    float shadowStrength = 0;
+    int occluderCacheIndex = occluderCachePixel < 0 ? -1 : occluderCachePixel * lightCount + lightIndex;
+
+    for(int j = 0; j < shadowRayCount; j++) {
+        vec3 lightVector = lights[lightIndex].shadowCheckPoints[j] - surfacePosition;
+        float lightDistance = length(lightVector);
+        vec3 shadowCheckDirection = normalize(lightVector);
+        vec3 shadowCheckOrigin = surfacePosition + rayOffset * shadowCheckDirection;
+
+        if(transparencyLighting) {
+            shadowStrength += getShadowStrength(shadowCheckOrigin, shadowCheckDirection, lightDistance);
+        } else {
+            shadowStrength += getShadowStrengthWithoutTranparencyHandling(
+                occluderCacheIndex, shadowCheckOrigin, shadowCheckDirection, lightDistance
+            );
+        }
+    }
+
+    return shadowStrength;
+}
+
+bool isCalculatingLighting(int surfaceType, int layer) {
+    if(surfaceType == REFLECTION_SURFACE) return lighting && reflectionLightingDepth >= layer;
+    if(surfaceType == REFRACTION_SURFACE) return lighting && refractionLightingDepth >= layer;
+    return lighting;
+}
+
+bool isCalculatingShadows(int surfaceType, int layer) {
+    if(surfaceType == REFLECTION_SURFACE) return reflectionShadowDepth >= layer;
+    if(surfaceType == REFRACTION_SURFACE) return refractionShadowDepth >= layer;
+    return true;
+}
+
+// defined by the shaders including this file, as the hits and shadows of surfaces can be traced ahead of shading
+ObjectReferenceInformation getSurfaceHit(vec3 rayOrigin, vec3 rayDirection);
+float getSurfaceShadowStrength(int lightIndex, vec3 surfacePosition);
+
+Surface getSurface(vec3 rayOrigin, vec3 rayDirection, bool calculateLighting, bool calculateShadows) {
+    ObjectReferenceInformation nearestObjectInformation = getSurfaceHit(rayOrigin, rayDirection);
+    
+    int nearestObjectType = nearestObjectInformation.type;
+    int nearestObjectIndex = nearestObjectInformation.index;
+    float nearestObjectDistance = nearestObjectInformation.objectDistance;
+    bool invertNormal = nearestObjectInformation.invertNormal;
+
+    // calculate surface color
+    vec3 surfaceColor = vec3(0);
+
+    if (nearestObjectType == TYPE_LIGHT) { // return information about the light hit by the ray
+        surfaceColor = lights[nearestObjectIndex].color * lights[nearestObjectIndex].intensity;
+        return Surface(lights[nearestObjectIndex].position, surfaceColor, vec3(0), emptyReflection, emptyRefraction);
+    } else if (nearestObjectType != TYPE_NONE) { // return information about the object hit by the ray
+        // calculate the the position where the ray hit the object's surface and 
+        // the direction from the surface to the camera
+        vec3 surfacePosition = rayOrigin + nearestObjectDistance * rayDirection;
+        vec3 cameraDirection = -rayDirection;
+
+        // determine the surface's normal vector and its object's color, material and opacity
+        vec3 normalVector = vec3(0);
+        vec3 objectColor = vec3(0);
+        Material material = materials[0];
+        float opacity = 1;
+
+        if(nearestObjectType == TYPE_SPHERE) {
+            normalVector = normalize(surfacePosition - spheres[nearestObjectIndex].origin);
+            objectColor = spheres[nearestObjectIndex].color;
+            material = materials[spheres[nearestObjectIndex].materialIndex];
+            opacity = material.opacity;
+        } else if(nearestObjectType == TYPE_QUADRIC) {
+            normalVector = calculateQuadricNormal(quadrics[nearestObjectIndex], surfacePosition);
+            objectColor = quadrics[nearestObjectIndex].color;
+            material = materials[quadrics[nearestObjectIndex].materialIndex];
+            opacity = material.opacity;
+        } else if(nearestObjectType == TYPE_TRIANGLE) {
+            BarycentricCoordinates barycentricCoordinates = getBarycentricCoordinates(
+                nearestObjectIndex, nearestObjectInformation.insideTest
+            );
+            
+            float u = barycentricCoordinates.u;
+            float v = barycentricCoordinates.v;
+            float w = barycentricCoordinates.w;
+            
+            int instanceIndex = nearestObjectInformation.instanceIndex;
+            normalVector = getInstanceNormal(instanceIndex, getNormalVector(u, v, w, nearestObjectIndex));
+
+            int textureIndex = modelInstances[instanceIndex].textureIndex;
+            vec2 textureCoordinates = getTextureCoordinates(u, v, w, nearestObjectIndex);
+            vec4 texel = texture(cookTorranceTextures[textureIndex].colorMap, textureCoordinates);
+            
+            objectColor = getObjectColor(texel, u, v, w, nearestObjectIndex);
+            opacity = texel.a;
+
+            texel = texture(cookTorranceTextures[textureIndex].materialMap, textureCoordinates);
+            material = Material(texel.r, texel.g, texel.b, 10 - texel.a * 9, opacity);
+        }
+        
+        if(invertNormal) normalVector *= -1;
+
+        // calculate vector alignments
+        float normalCameraDirectionAlignment = min(1, max(0, dot(normalVector, cameraDirection)));
+        float normalRayDirectionAlignment = max(0, dot(normalVector, rayDirection));
+        float negativeNormalRayDirectionAlignment = max(0, dot(-normalVector, rayDirection));
+
+        // calculate reflection direction and refraction direction
+        vec3 reflectionDirection = normalize(reflect(rayDirection, normalVector));
+        vec3 refractionDirection = vec3(0);
+        float refractionStrength = 0;
+        float rayRefractionIndex = 1;
+
+        if(opacity < 1) {
+            float objectRefractionIndex = material.refractionIndex;
+            float refractionIndex = rayRefractionIndex / objectRefractionIndex;
+            float b = 1 - square(refractionIndex) * (1 - square(normalCameraDirectionAlignment));
+
+            if(b >= 0) {
+                refractionDirection = normalize(
+                    refractionIndex * rayDirection +
+                    (refractionIndex * normalCameraDirectionAlignment - sqrt(b)) * normalVector
+                );
+
+                float perpendicularLight = square((
+                    rayRefractionIndex * normalRayDirectionAlignment -
+                    objectRefractionIndex * negativeNormalRayDirectionAlignment
+                ) / (
+                    rayRefractionIndex * normalRayDirectionAlignment +
+                    objectRefractionIndex * negativeNormalRayDirectionAlignment
+                ));
+
+                float parallelLight = square((
+                    objectRefractionIndex * normalRayDirectionAlignment -
+                    rayRefractionIndex * negativeNormalRayDirectionAlignment
+                ) / (
+                    objectRefractionIndex * normalRayDirectionAlignment +
+                    rayRefractionIndex * negativeNormalRayDirectionAlignment
+                ));
+
+                refractionStrength = 1 - opacity * ((perpendicularLight + parallelLight) / 2);
+            } else refractionDirection = reflectionDirection;
+        }
+
+        if(opacity == 0) {
+            SurfaceRefraction surfaceRefraction = SurfaceRefraction(1, refractionDirection);
+            return Surface(surfacePosition, vec3(0), vec3(0), emptyReflection, surfaceRefraction);
+        }
+
+        // calculate reflection color and fresnel color and prepare gamma correction
+        float reflectionNormalAlignment = max(0, dot(normalVector, reflectionDirection));
+        
+        if(!calculateLighting) {
+            if(gammaCorrection) surfaceColor = powComponents(surfaceColor, 0.45);
+
+            SurfaceReflection surfaceReflection = SurfaceReflection(
+                material.reflectivity, reflectionNormalAlignment, reflectionDirection
+            );
+
+            SurfaceRefraction surfaceRefraction = SurfaceRefraction(refractionStrength, refractionDirection);
+
+            return Surface(surfacePosition, objectColor, vec3(0), surfaceReflection, surfaceRefraction);
+        }
+
+        float roughness = max(0.01, material.roughness);
+        float metalness = material.metalness;
+        if(gammaCorrection) objectColor = powComponents(objectColor, 2.2);
+
+        float f0 = square(
+            (rayRefractionIndex - material.refractionIndex) / (rayRefractionIndex + material.refractionIndex)
+        );
+
+        vec3 reflectionTint = ((1 - metalness) * f0 + metalness * objectColor);
+        vec3 fresnelColor = reflectionTint + (1 - reflectionTint) * pow(1 - normalCameraDirectionAlignment, 5);
+        vec3 diffuseColor = (1 - fresnelColor) * objectColor;
+
+        // perform light calculations for each light
+        for(int i = 0; i < lightCount; i++) { if(lights[i].intensity > 0) {
+            // check if object is in shadow
+            float shadowStrength = 0;
+            if(calculateShadows) shadowStrength = getSurfaceShadowStrength(i, surfacePosition);
+            
+            // apply light to object
+            if(shadowRayCount < 1 || shadowStrength != shadowRayCount) {
+                vec3 lightColor = lights[i].color;
+                if(gammaCorrection) lightColor = powComponents(lightColor, 2.2);
+
+                vec3 lightVector = normalize(lights[i].position - surfacePosition);
+                vec3 specularVector = normalize((cameraDirection + lightVector) / 2);
+
+                float normalLightAlignment = max(0, dot(normalVector, lightVector));
+                float normalSpecularAlignment = max(0, dot(normalVector, specularVector));
+
+                float distributionValue = (
+                    square(roughness) /
+                    (PI * square(square(normalSpecularAlignment) * (square(roughness) - 1) + 1))
+                );
+
+                float geometryValue = ((
+                    normalCameraDirectionAlignment /
+                    (normalCameraDirectionAlignment * (1 - roughness / 2) + roughness / 2)
+                ) * (
+                    normalLightAlignment / 
+                    (normalLightAlignment * (1 - roughness / 2) + roughness / 2)
+                ));
+                
+                vec3 specularColor = distributionValue * geometryValue * fresnelColor;
+
+                if(shadowRayCount > 0) shadowStrength /= shadowRayCount;
+                else shadowStrength = 0;
+
+                surfaceColor += (
+                    (1 - shadowStrength) * 
+                    lightColor * 
+                    lights[i].intensity * 
+                    normalLightAlignment * 
+                    (diffuseColor + specularColor)
+                );
+            }
+        }}
+
+        // apply ambient light, reflectivity and gamma correction
+        surfaceColor *= 1 - material.reflectivity;
+        if(gammaCorrection) surfaceColor = powComponents(surfaceColor, 0.45);
+        if(ambientLight) surfaceColor += objectColor * 0.1;
+
+        SurfaceReflection surfaceReflection = SurfaceReflection(
+            material.reflectivity, reflectionNormalAlignment, reflectionDirection
+        );
+
+        SurfaceRefraction surfaceRefraction = SurfaceRefraction(refractionStrength, refractionDirection);
+
+        return Surface(surfacePosition, surfaceColor, fresnelColor, surfaceReflection, surfaceRefraction);
+    } else { // return information about the sky dome if no object was hit by the ray
+        vec2 textureCoordinates = vec2(normalize(rayDirection).x + 1, normalize(rayDirection).z + 1) / 2;
+
+        vec3 skyDomeColor = mix(
+            texture(skyDome.texture0, textureCoordinates),
+            texture(skyDome.texture1, textureCoordinates),
+            skyDome.texture1Strength
+        ).rgb;
+
+        return Surface(vec3(0), skyDomeColor, vec3(0), emptyReflection, emptyRefraction);
+    }
+}
+
+vec3 getStackedRayColor(vec3 rayOrigin, vec3 rayDirection) {
+    StackedRay[rayStackSize] rayStack;
+    rayStack[0] = StackedRay(rayOrigin, rayDirection, vec3(1), ROOT_SURFACE, 0);
+    int rayStackTop = 1;
+    vec3 color = vec3(0);
+
+    while(rayStackTop > 0) {
+        rayStackTop--;
+        StackedRay ray = rayStack[rayStackTop];
+
+        Surface surface = getSurface(
+            ray.origin, ray.direction, isCalculatingLighting(ray.type, ray.depth), isCalculatingShadows(ray.type, ray.depth)
+        );
+        vec3 throughput = ray.throughput;
+
+        // only the occluders of the primary surface are cached, which is traced first
+        occluderCachePixel = -1;
+
+        // the refracted color replaces the part of the surface color it shines through
+        if(refractionTraceDepth > ray.depth && surface.refraction.strength > 0) {
+            vec3 refractionThroughput = throughput * surface.refraction.strength;
+
+            if(max3(refractionThroughput) >= contributionCutoff) {
+                rayStack[rayStackTop] = StackedRay(
+                    surface.position + rayOffset * surface.refraction.direction,
+                    surface.refraction.direction,
+                    refractionThroughput,
+                    REFRACTION_SURFACE,
+                    ray.depth + 1
+                );
+
+                rayStackTop++;
+            }
+
+            throughput *= 1 - surface.refraction.strength;
+        }
+
+        color += throughput * surface.surfaceColor;
+
+        // the reflected color is weighted like the reflection color of a fully white surface
+        if(reflectionTraceDepth > ray.depth && surface.reflection.strength > 0) {
+            vec3 reflectionWeight = getReflectionColor(
+                surface.reflection.normalAlignment, surface.fresnelColor, vec3(1), surface.reflection.strength
+            );
+
+            vec3 reflectionThroughput = throughput * reflectionWeight;
+
+            if(max3(reflectionThroughput) >= contributionCutoff) {
+                rayStack[rayStackTop] = StackedRay(
+                    surface.position + rayOffset * surface.reflection.direction,
+                    surface.reflection.direction,
+                    reflectionThroughput,
+                    REFLECTION_SURFACE,
+                    ray.depth + 1
+                );
+
+                rayStackTop++;
+            }
+        }
+    }
+
+    return color;
+}
+
+vec3 getRayColor(vec3 rayOrigin, vec3 rayDirection) {
+    if(usingRayStack) return getStackedRayColor(rayOrigin, rayDirection);
+
+    surfaces[0] = getSurface(rayOrigin, rayDirection, lighting, true);
+
+    // only the occluders of the primary surface are cached
+    occluderCachePixel = -1;
+
+    for(int i = 1; i < surfaceCount; i++) {
+        surfaces[i] = emptySurface;
+    }
+
+    //CALCULATE SURFACES
+
+    return surfaces[0].surfaceColor;
+}
@@ -5,6 +5,8 @@ import static texture.DefaultTextures.DEFAULT_SKY_DOME;
 
 import render.RayTracer;
 import settings.RayTracingSettings;
+import shader.RayTracingShaderProgramBuilder;
+import shader.RayTracingVariant;
 
 /**
  * A {@link Scene} using the {@link RayTracer} for rendering.
@@ -18,6 +20,27 @@ public abstract class RayTracingScene extends Scene {
 	 */
 	protected RayTracingSettings rtSettings = new RayTracingSettings();
 	
+	/**
+	 * Describes the shader program variant required by this {@link RayTracingScene} through the {@link #rtSettings}
+	 * and the counts of the objects, which {@link #load} adds to the shader program. Has to work before this
+	 * RayTracingScene has been initialized, so that the variant can be compiled without loading models or textures.
+	 * 
+	 * @return The shader program variant.
+	 */
+	public abstract RayTracingVariant getShaderVariant();
+	
+	/**
+	 * Also checks if the {@link #getShaderVariant shader variant} matches the objects {@link #load} has added.
+	 * See {@link RayTracingShaderProgramBuilder#checkVariant}.
+	 */
+	@Override
+	public void checkLoad() {
+		if(loaded) return;
+		
+		super.checkLoad();
+		PROGRAM_RAY_TRACING.checkVariant(getClass().getSimpleName(), getShaderVariant());
+	}
+	
 	@Override
 	public void clearObjects() {
 		PROGRAM_RAY_TRACING.clearSceneObjects();
@@ -84,6 +84,17 @@ public class SceneCollection {
 		currentScene.prepareLoad();
 	}
 	
+	/**
+	 * Switches to the {@link Scene} at an index of the {@link #scenes scene list}.
+	 * 
+	 * @param index The index of the {@link Scene} within the {@link #scenes scene list}.
+	 */
+	public void goToScene(int index) {
+		currentSceneIndex = index;
+		currentScene = scenes.get(currentSceneIndex);
+		currentScene.prepareLoad();
+	}
+	
 	/**
 	 * Calls the {@link Scene#update(float) update method} of the {@link #currentScene}.
 	 * 
@@ -113,4 +124,11 @@ public class SceneCollection {
 	public Scene getCurrentScene() {
 		return currentScene;
 	}
+	
+	/**
+	 * See {@link #scenes}.
+	 */
+	public ArrayList<Scene> getScenes() {
+		return scenes;
+	}
 }
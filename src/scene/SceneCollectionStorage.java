@@ -1,5 +1,7 @@
 package scene;
 
+import static shader.ShaderProgramStorage.PROGRAM_RAY_TRACING;
+
 import java.util.ArrayList;
 
 import scene.rasterizing.showcase.BeachScene;
@@ -17,6 +19,8 @@ import scene.rt.test.MirrorTestScene;
 import scene.rt.test.QuadricTestScene;
 import scene.rt.test.SphereTestScene;
 import scene.rt.test.TriangleTestScene;
+import shader.RayTracingShaderProgramBuilder;
+import shader.RayTracingVariant;
 
 /**
  * Stores {@link SceneCollection} objects and
@@ -49,7 +53,10 @@ public class SceneCollectionStorage {
 	public static void init() {
 		SceneCollection rtShowcaseScenes = new SceneCollection("Raytracing Showcase Scenes");
 		rtShowcaseScenes.addScene(new MirrorRoomScene());
+		rtShowcaseScenes.addScene(new MirrorRoomScene(true));
+		rtShowcaseScenes.addScene(new MirrorRoomScene(true, true));
 		rtShowcaseScenes.addScene(new RefractionScene());
+		rtShowcaseScenes.addScene(new RefractionScene(true));
 		rtShowcaseScenes.addScene(new RandomSpheresScene());
 		rtShowcaseScenes.addScene(new CsgScene());
 		
@@ -79,10 +86,33 @@ public class SceneCollectionStorage {
 		sceneCollections.add(shaderTestScenes);
 		sceneCollections.add(textureTestScenes);
 		
+		prewarmShaderVariants();
+		
 		currentSceneCollection = sceneCollections.get(currentSceneCollectionIndex);
 		currentSceneCollection.getCurrentScene().prepareLoad();
 	}
 	
+	/**
+	 * Issues the compilation of the shader program variants of every {@link RayTracingScene} of the
+	 * {@link #sceneCollections SceneCollection list} through {@link RayTracingShaderProgramBuilder#prewarm}, so that
+	 * they are compiled in the background at startup. Switching to a scene later on then only switches to its
+	 * variant instead of recompiling the shader program. The scenes are not loaded for this.
+	 * 
+	 * The variants are compiled in order, starting with the first scene of the first {@link SceneCollection},
+	 * so that the variant of the first displayed scene is compiled first.
+	 */
+	private static void prewarmShaderVariants() {
+		ArrayList<RayTracingVariant> variants = new ArrayList<>();
+		
+		for(SceneCollection sceneCollection : sceneCollections) {
+			for(Scene scene : sceneCollection.getScenes()) {
+				if(scene instanceof RayTracingScene) variants.add(((RayTracingScene) scene).getShaderVariant());
+			}
+		}
+		
+		PROGRAM_RAY_TRACING.prewarm(variants);
+	}
+	
 	/**
 	 * Calls the {@link Scene#update update method} of the {@link #currentSceneCollection}'s current {@link Scene}.
 	 * 
@@ -149,6 +179,54 @@ public class SceneCollectionStorage {
 		currentSceneCollection.getCurrentScene().prepareLoad();
 	}
 	
+	/**
+	 * Switches to the {@link SceneCollection} containing the {@link Scene} with a name and to this {@link Scene}.
+	 * 
+	 * The name of a {@link Scene} is the simple name of its class, like "MirrorRoomScene". As multiple variants
+	 * of a {@link Scene} can be stored, the name can end with "#" followed by the number of the variant,
+	 * like "MirrorRoomScene#2" for the second MirrorRoomScene. Without a number the first variant is chosen.
+	 * 
+	 * @param name The name of the {@link Scene}.
+	 * @return If a {@link Scene} with the name has been found, which is not the case for invalid variant numbers.
+	 */
+	public static boolean goToScene(String name) {
+		int separatorIndex = name.lastIndexOf('#');
+		String className = separatorIndex >= 0 ? name.substring(0, separatorIndex) : name;
+		int variant = 1;
+		
+		if(separatorIndex >= 0) {
+			try {
+				variant = Integer.parseInt(name.substring(separatorIndex + 1));
+			} catch(NumberFormatException e) {
+				return false;
+			}
+		}
+		
+		if(variant < 1) return false;
+		
+		for(int i = 0; i < sceneCollections.size(); i++) {
+			ArrayList<Scene> scenes = sceneCollections.get(i).getScenes();
+			
+			for(int j = 0; j < scenes.size(); j++) {
+				if(!scenes.get(j).getClass().getSimpleName().equals(className) || --variant > 0) continue;
+				
+				currentSceneCollectionIndex = i;
+				currentSceneCollection = sceneCollections.get(i);
+				currentSceneCollection.goToScene(j);
+				return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * See {@link #sceneCollections}.
+	 */
+	public static ArrayList<SceneCollection> getSceneCollections() {
+		return sceneCollections;
+	}
+	
 	/**
 	 * See {@link SceneCollectionStorage#currentSceneCollection}.
 	 */
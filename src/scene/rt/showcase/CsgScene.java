@@ -15,6 +15,7 @@ import math.vector.Vector4;
 import render.RayTracer;
 import scene.RayTracingScene;
 import settings.RayTracingSettings;
+import shader.RayTracingVariant;
 
 public class CsgScene extends RayTracingScene {
 	// Lights
@@ -43,6 +44,11 @@ public class CsgScene extends RayTracingScene {
 	private ConstructiveSolidGeometry circleWithHoles;
 	private ConstructiveSolidGeometry backgroundIntersection;
 	
+	public CsgScene() {
+		rtSettings = new RayTracingSettings(true, false, 10, 1, 0, true, true);
+		rtSettings.setUsingOccluderCache(true);
+	}
+	
 	@Override
 	protected void init() {
 		lightFront = new SphereLight(0, 0, -1, 1, 0, 0, 1, 0.1f);
@@ -65,8 +71,6 @@ public class CsgScene extends RayTracingScene {
 		
 		circleWithHoles = new ConstructiveSolidGeometry(0, 1, CSG_DIFFERENCE);
 		backgroundIntersection = new ConstructiveSolidGeometry(2, 3, CSG_INTERSECTION);
-		
-		rtSettings = new RayTracingSettings(true, false, 10, 1, 0, true, true);
 	}
 	
 	@Override
@@ -89,6 +93,11 @@ public class CsgScene extends RayTracingScene {
 		RayTracer.sendMaterialsToShader();
 	}
 	
+	@Override
+	public RayTracingVariant getShaderVariant() {
+		return new RayTracingVariant(rtSettings, 2, 1, 0, 0, 0, 0, 4, 2);
+	}
+	
 	@Override
 	protected void update(float time) {
 		x += time * 0.15;
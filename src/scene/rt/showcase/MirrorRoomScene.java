@@ -6,6 +6,7 @@ import static shader.ShaderProgramStorage.PROGRAM_RAY_TRACING;
 import cgi.Model;
 import cgi.Sphere;
 import cgi.SphereLight;
+import io.WavefrontObjectReader;
 import material.CookTorranceMaterial;
 import math.matrix.Matrix4;
 import math.vector.Vector3;
@@ -13,6 +14,7 @@ import math.vector.Vector4;
 import render.RayTracer;
 import scene.RayTracingScene;
 import settings.RayTracingSettings;
+import shader.RayTracingVariant;
 import texture.CookTorranceTexture;
 import texture.TextureData;
 import util.Camera;
@@ -44,6 +46,20 @@ public class MirrorRoomScene extends RayTracingScene {
 	private SphereLight lampLight;
 	private float timer;
 	
+	public MirrorRoomScene() {
+		this(false);
+	}
+	
+	public MirrorRoomScene(boolean usingRayStack) {
+		this(usingRayStack, false);
+	}
+	
+	public MirrorRoomScene(boolean usingRayStack, boolean usingRasterizedPrimaryHits) {
+		rtSettings = new RayTracingSettings(true, true, 1, 3, 2, 2, 3, 2, 2, false, true);
+		rtSettings.setUsingRayStack(usingRayStack);
+		rtSettings.setUsingRasterizedPrimaryHits(usingRasterizedPrimaryHits);
+	}
+	
 	@Override
 	protected void init() {
 		bricksCtTexture = new CookTorranceTexture(texturePath, "Bricks", "jpg");
@@ -65,7 +81,6 @@ public class MirrorRoomScene extends RayTracingScene {
 		glass = new CookTorranceMaterial(0, 1, 1.0f, 1.0f, 0.3f);
 		lampGlass = new Sphere(0.015007f, 6.5f, -0.17154f, 1, 1, 1, 0.55f, 0);
 		lampLight = new SphereLight(0.015007f, 6.5f, -0.17154f, 1, 0.5f, 0, 1, 0.5f);
-		rtSettings = new RayTracingSettings(true, true, 1, 3, 2, 2, 3, 2, 2, false, true);
 		forceLightRendering = true;
 	}
 
@@ -98,6 +113,17 @@ public class MirrorRoomScene extends RayTracingScene {
 		PROGRAM_RAY_TRACING.checkCompilation(rtSettings);
 		PROGRAM_RAY_TRACING.setBooleanUniform("lightRendering", true);
 	}
+	
+	@Override
+	public RayTracingVariant getShaderVariant() {
+		int triangleCount = 0;
+		
+		for(String mesh : new String[] {"Cable", "Floor", "Lamp", "Mirrors", "Roof", "Walls"}) {
+			triangleCount += WavefrontObjectReader.countTriangles("MirrorRoom/" + mesh);
+		}
+		
+		return new RayTracingVariant(rtSettings, 1, 1, 6, 6, triangleCount, 1, 0, 0);
+	}
 
 	@Override
 	protected void update(float delta) {
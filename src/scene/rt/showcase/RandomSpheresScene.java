@@ -10,15 +10,26 @@ import material.CookTorranceMaterial;
 import render.RayTracer;
 import scene.RayTracingScene;
 import settings.RayTracingSettings;
+import shader.RayTracingVariant;
 
 public class RandomSpheresScene extends RayTracingScene {
+	/**
+	 * The seed of the random spheres and lights, so that the scene looks the same each time it is rendered
+	 * and can be compared to golden images.
+	 */
+	private static final long SEED = 42;
+	
 	CookTorranceMaterial smooth;
 	Sphere[] spheres;
 	SphereLight[] lights;
 	
+	public RandomSpheresScene() {
+		rtSettings = new RayTracingSettings(true, false, 1, 3, 0, true, true);
+	}
+	
 	@Override
 	protected void init() {
-		Random rng = new Random();
+		Random rng = new Random(SEED);
 		spheres = new Sphere[10];
 		lights = new SphereLight[10];
 		
@@ -40,7 +51,6 @@ public class RandomSpheresScene extends RayTracingScene {
 		}
 		
 		smooth = new CookTorranceMaterial(0.0f, 0.0f, 0.5f, 5.0f, 1.0f);
-		rtSettings = new RayTracingSettings(true, false, 1, 3, 0, true, true);
 	}
 
 	@Override
@@ -55,6 +65,11 @@ public class RandomSpheresScene extends RayTracingScene {
 		RayTracer.sendMaterialsToShader();
 	}
 	
+	@Override
+	public RayTracingVariant getShaderVariant() {
+		return new RayTracingVariant(rtSettings, 10, 1, 0, 0, 0, 10, 0, 0);
+	}
+	
 	@Override
 	protected void update(float time) {}
 
@@ -11,6 +11,7 @@ import math.matrix.QuadricMatrix;
 import render.RayTracer;
 import scene.RayTracingScene;
 import settings.RayTracingSettings;
+import shader.RayTracingVariant;
 
 public class RefractionScene extends RayTracingScene {
 	private SphereLight light;
@@ -22,6 +23,16 @@ public class RefractionScene extends RayTracingScene {
 	private Sphere backSphere;
 	private Sphere rightSphere;
 	private Quadric ground;
+	
+	public RefractionScene() {
+		this(false);
+	}
+	
+	public RefractionScene(boolean usingWavefront) {
+		rtSettings = new RayTracingSettings(true, true, 10, 5, 2, true, true);
+		rtSettings.setUsingComputeShader(usingWavefront);
+		rtSettings.setUsingWavefront(usingWavefront);
+	}
 
 	@Override
 	protected void init() {
@@ -38,8 +49,6 @@ public class RefractionScene extends RayTracingScene {
 		QuadricMatrix matrix = new QuadricMatrix(0.001f, 2, 0.001f, 0, 0, 0, 0, 0, 0, -0.5f);
 		matrix.applyTransformation(new Matrix4().translate(0, -4, -4));
 		ground = new Quadric(matrix, 0.5f, 0.5f, 0.5f, true, 1);
-		
-		rtSettings = new RayTracingSettings(true, true, 10, 5, 2, true, true);
 	}
 
 	@Override
@@ -61,6 +70,11 @@ public class RefractionScene extends RayTracingScene {
 		RayTracer.sendMaterialsToShader();
 	}
 	
+	@Override
+	public RayTracingVariant getShaderVariant() {
+		return new RayTracingVariant(rtSettings, 1, 2, 0, 0, 0, 4, 1, 0);
+	}
+	
 	@Override
 	protected void update(float time) {}
 
@@ -9,9 +9,11 @@ import cgi.SphereLight;
 import static cgi.Model.SHADING_FLAT;
 import static shader.ShaderProgramStorage.PROGRAM_RAY_TRACING;
 
+import io.WavefrontObjectReader;
 import material.CookTorranceMaterial;
 import render.RayTracer;
 import scene.RayTracingScene;
+import shader.RayTracingVariant;
 import texture.CookTorranceTexture;
 import texture.TextureData;
 
@@ -23,6 +25,10 @@ public class MirrorTestScene extends RayTracingScene {
 	CookTorranceTexture mirror;
 	CookTorranceMaterial smooth;
 
+	public MirrorTestScene() {
+		rtSettings.setReflectionTraceDepth(1);
+	}
+	
 	@Override
 	protected void init() {
 		plane = new Model("Plane", SHADING_FLAT, false, true, 0, 0);
@@ -32,8 +38,6 @@ public class MirrorTestScene extends RayTracingScene {
 		light = new SphereLight(0, 5, 0, 1, 1, 1, 1, 1);
 		mirror = new CookTorranceTexture(TEXTURE_BLACK, new TextureData("Mirror.png"));
 		smooth = new CookTorranceMaterial(0, 0, 0, 1, 1);
-		
-		rtSettings.setReflectionTraceDepth(1);
 	}
 
 	@Override
@@ -49,6 +53,12 @@ public class MirrorTestScene extends RayTracingScene {
 		RayTracer.sendCtTexturesToShader();
 		RayTracer.sendMaterialsToShader();
 	}
+	
+	@Override
+	public RayTracingVariant getShaderVariant() {
+		int triangleCount = WavefrontObjectReader.countTriangles("Plane");
+		return new RayTracingVariant(rtSettings, 1, 1, 1, 1, triangleCount, 1, 0, 0);
+	}
 
 	@Override
 	protected void update(float delta) {}
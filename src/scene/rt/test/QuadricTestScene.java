@@ -13,6 +13,7 @@ import math.matrix.QuadricMatrix;
 import render.RayTracer;
 import scene.RayTracingScene;
 import settings.RayTracingSettings;
+import shader.RayTracingVariant;
 
 public class QuadricTestScene extends RayTracingScene {
 	private Quadric quadric0;
@@ -30,6 +31,11 @@ public class QuadricTestScene extends RayTracingScene {
 	private Matrix4 transformationMatrix;
 	private float x = 0;
 	
+	public QuadricTestScene() {
+		rtSettings = new RayTracingSettings(true, false, 50, 1, 0, true, true);
+		rtSettings.setUsingOccluderCache(true);
+	}
+	
 	@Override
 	protected void init() {
 		transformationMatrix = new Matrix4().translate(0, 0, -4);
@@ -50,8 +56,6 @@ public class QuadricTestScene extends RayTracingScene {
 		sphere = new Sphere(0, 0, -6, 1, 1, 1, 1, 0);
 		light = new SphereLight(0, 0, 5, 1, 1, 1, 1, 0.1f);
 		plastic = new CookTorranceMaterial(0.05f, 0, 0.3f, 1.0f, 1);
-		
-		rtSettings = new RayTracingSettings(true, false, 50, 1, 0, true, true);
 	}
 
 	@Override
@@ -69,6 +73,11 @@ public class QuadricTestScene extends RayTracingScene {
 		RayTracer.sendMaterialsToShader();
 	}
 	
+	@Override
+	public RayTracingVariant getShaderVariant() {
+		return new RayTracingVariant(rtSettings, 1, 1, 0, 0, 0, 1, 3, 1);
+	}
+	
 	@Override
 	protected void update(float time) {
 		x += time * 0.15;
@@ -8,6 +8,7 @@ import material.CookTorranceMaterial;
 import render.RayTracer;
 import scene.RayTracingScene;
 import settings.RayTracingSettings;
+import shader.RayTracingVariant;
 
 public class SphereTestScene extends RayTracingScene {
 	private Sphere sphereMiddle;
@@ -16,6 +17,10 @@ public class SphereTestScene extends RayTracingScene {
 	private CookTorranceMaterial smooth;
 	private CookTorranceMaterial metal;
 	
+	public SphereTestScene() {
+		rtSettings = new RayTracingSettings(true, false, 1, 3, 0, true, true);
+	}
+	
 	@Override
 	protected void init() {
 		sphereMiddle = new Sphere(0, 0, -2, 1.00f, 0.00f, 0.00f, 1, 0);
@@ -25,8 +30,6 @@ public class SphereTestScene extends RayTracingScene {
 		
 		smooth = new CookTorranceMaterial(0.01f, 0.0f, 0.3f, 5.0f, 1);
 		metal  = new CookTorranceMaterial(0.01f, 1.0f, 0.7f, 5.0f, 1);
-		
-		rtSettings = new RayTracingSettings(true, false, 1, 3, 0, true, true);
 	}
 
 	@Override
@@ -43,6 +46,11 @@ public class SphereTestScene extends RayTracingScene {
 		RayTracer.sendMaterialsToShader();
 	}
 	
+	@Override
+	public RayTracingVariant getShaderVariant() {
+		return new RayTracingVariant(rtSettings, 1, 2, 0, 0, 0, 2, 0, 0);
+	}
+	
 	@Override
 	protected void update(float time) {}
 
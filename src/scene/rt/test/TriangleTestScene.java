@@ -9,12 +9,14 @@ import cgi.Model;
 import cgi.Quadric;
 import cgi.Sphere;
 import cgi.SphereLight;
+import io.WavefrontObjectReader;
 import material.CookTorranceMaterial;
 import math.matrix.Matrix4;
 import math.matrix.QuadricMatrix;
 import render.RayTracer;
 import scene.RayTracingScene;
 import settings.RayTracingSettings;
+import shader.RayTracingVariant;
 import texture.CookTorranceTexture;
 import texture.TextureData;
 
@@ -29,6 +31,10 @@ public class TriangleTestScene extends RayTracingScene {
 	private Sphere sphere;
 	private Quadric ground;
 
+	public TriangleTestScene() {
+		rtSettings = new RayTracingSettings(true, true, 10, 3, 2, true, true);
+	}
+	
 	@Override
 	protected void init() {
 		// initialize lights
@@ -57,9 +63,6 @@ public class TriangleTestScene extends RayTracingScene {
 		QuadricMatrix matrix = new QuadricMatrix(0.001f, 2, 0.001f, 0, 0, 0, 0, 0, 0, -0.5f);
 		matrix.applyTransformation(new Matrix4().translate(0, -4, -4));
 		ground = new Quadric(matrix, 0.5f, 0.5f, 0.5f, true, 0);
-		
-		// initialize ray tracing settings
-		rtSettings = new RayTracingSettings(true, true, 10, 3, 2, true, true);
 	}
 
 	@Override
@@ -76,6 +79,12 @@ public class TriangleTestScene extends RayTracingScene {
 		RayTracer.sendMaterialsToShader();
 	}
 	
+	@Override
+	public RayTracingVariant getShaderVariant() {
+		int triangleCount = WavefrontObjectReader.countTriangles("Cube");
+		return new RayTracingVariant(rtSettings, 1, 1, 1, 1, triangleCount, 1, 1, 0);
+	}
+	
 	@Override
 	protected void update(float time) {}
 
@@ -111,6 +111,96 @@ public class RayTracingSettings {
 	 */
 	private boolean usingVertexNormals = true;
 	
+	/**
+	 * Determines if the numbers of lights, materials, models, spheres, quadrics and CSGs are sent to the
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program as uniforms instead of being
+	 * compiled into it. Adding or removing these objects then does not require recompiling the shader program.
+	 * 
+	 * The memory for triangles and bounding volume hierarchy primitives is reserved in steps of doubling size,
+	 * so the shader program is only recompiled when a step is exceeded.
+	 * Compiled counts allow the shader compiler to optimize loops over the objects.
+	 */
+	private boolean usingDynamicCounts = false;
+	
+	/**
+	 * Determines if reflections and refractions are traced with a small ray stack, which is iterated in a loop,
+	 * instead of a tree of surfaces, which is written into the
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 * 
+	 * The surface tree grows exponentially with the trace depths, while the ray stack grows linearly.
+	 * Deep traces therefore compile faster and occupy fewer registers with a ray stack.
+	 * The surface tree allows the shader compiler to unroll the tracing completely.
+	 */
+	private boolean usingRayStack = false;
+	
+	/**
+	 * Determines how much a reflection or refraction has to contribute to the color of a pixel to be traced.
+	 * 
+	 * The contribution of a reflection or refraction is the product of the reflectivity, Fresnel and
+	 * refraction strengths along its path, weighted by the lights like the reflection colors.
+	 * Reflections and refractions contributing less than the contributionCutoff in every color channel are not
+	 * traced, as their color would barely be visible. At a contributionCutoff of 0 every reflection and refraction
+	 * is traced, while a contributionCutoff of 1/255 only skips colors, which round to black.
+	 */
+	private float contributionCutoff = 0;
+	
+	/**
+	 * Determines if rays are traced by a <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute
+	 * shader</a>, which writes the pixel colors to an image, instead of a fragment shader rendering a quad.
+	 * 
+	 * The compute shader is dispatched in tiles of {@link #computeTileWidth} by {@link #computeTileHeight} pixels,
+	 * each tile being traced by one work group. Both backends produce the same image.
+	 */
+	private boolean usingComputeShader = false;
+	
+	/**
+	 * Determines how many pixels wide the tiles traced by the work groups of the compute shader are.
+	 * 
+	 * @see #usingComputeShader
+	 */
+	private int computeTileWidth = 8;
+	
+	/**
+	 * Determines how many pixels high the tiles traced by the work groups of the compute shader are.
+	 * 
+	 * @see #usingComputeShader
+	 */
+	private int computeTileHeight = 8;
+	
+	/**
+	 * Determines if the compute shader traces the rays in waves instead of tracing each pixel's rays one after
+	 * another. Only used if {@link #usingComputeShader} is true.
+	 * 
+	 * A wave consists of separate stages for intersecting rays, tracing shadow rays and shading, which pass rays
+	 * to each other through queues. The reflections and refractions spawned by the shading stage form the next
+	 * wave, so that neighboring invocations always execute the same stage, even in scenes mixing mirrors,
+	 * transparent and diffuse objects. Shades like the {@link #usingRayStack ray stack}.
+	 */
+	private boolean usingWavefront = false;
+	
+	/**
+	 * Determines if the object last found occluding a light is cached for each pixel and light, so that the next
+	 * frame's shadow rays test it first. Only used if {@link #transparencyLighting} is false, as shadow rays only
+	 * stop at the first occluder then. Only the shadow rays of the primary surfaces are cached, as the reflections
+	 * and refractions seen through a pixel would otherwise replace each other's occluders.
+	 * 
+	 * As neighboring frames mostly share their occluders, most shadow rays towards occluded lights only test a
+	 * single object instead of traversing the bounding volume hierarchy. Worthwhile with a high
+	 * {@link #shadowRayCount}.
+	 */
+	private boolean usingOccluderCache = false;
+	
+	/**
+	 * Determines if the primary rays start from a buffer, into which the triangles of the model instances
+	 * are rasterized, instead of traversing the model instances.
+	 * 
+	 * The buffer stores the model instance and triangle covering each pixel, with which the primary ray is
+	 * intersected exactly, so that its hit equals the traced one. Only the spheres, quadrics, CSGs and lights in
+	 * front of the triangle are still traced. Pixels not covered by a triangle, or whose ray misses the covering
+	 * triangle at its edges, are traced as usual. Worthwhile in scenes with many triangles.
+	 */
+	private boolean usingRasterizedPrimaryHits = false;
+	
 	/**
 	 * Constructs new {@link RayTracingSettings}.
 	 * 
@@ -260,7 +350,33 @@ public class RayTracingSettings {
 			refractionShadowDepth == other.getRefractionShadowDepth() &&
 			
 			usingVertexColors == other.isUsingVertexColors() &&
-			usingVertexNormals == other.isUsingVertexNormals()
+			usingVertexNormals == other.isUsingVertexNormals() &&
+			usingDynamicCounts == other.isUsingDynamicCounts() &&
+			usingRayStack == other.isUsingRayStack() &&
+			contributionCutoff == other.getContributionCutoff() &&
+			usingComputeShader == other.isUsingComputeShader() &&
+			computeTileWidth == other.getComputeTileWidth() &&
+			computeTileHeight == other.getComputeTileHeight() &&
+			usingWavefront == other.isUsingWavefront() &&
+			usingOccluderCache == other.isUsingOccluderCache() &&
+			usingRasterizedPrimaryHits == other.isUsingRasterizedPrimaryHits()
+		);
+	}
+	
+	/**
+	 * @return
+	 * The values of all fields of this {@link RayTracingSettings} object, separated by commas. Equal settings
+	 * result in equal strings, so that the string can be part of a shader program variant's key.
+	 */
+	@Override
+	public String toString() {
+		return (
+			lighting + "," + shadowRayCount + "," + transparencyLighting + "," +
+			reflectionTraceDepth + "," + reflectionLightingDepth + "," + reflectionShadowDepth + "," +
+			refractionTraceDepth + "," + refractionLightingDepth + "," + refractionShadowDepth + "," +
+			usingVertexColors + "," + usingVertexNormals + "," + usingDynamicCounts + "," + usingRayStack + "," +
+			contributionCutoff + "," + usingComputeShader + "," + computeTileWidth + "," + computeTileHeight + "," +
+			usingWavefront + "," + usingOccluderCache + "," + usingRasterizedPrimaryHits
 		);
 	}
 	
@@ -341,6 +457,69 @@ public class RayTracingSettings {
 		return usingVertexNormals;
 	}
 	
+	/**
+	 * See {@link RayTracingSettings#usingDynamicCounts}.
+	 */
+	public boolean isUsingDynamicCounts() {
+		return usingDynamicCounts;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#usingRayStack}.
+	 */
+	public boolean isUsingRayStack() {
+		return usingRayStack;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#contributionCutoff}.
+	 */
+	public float getContributionCutoff() {
+		return contributionCutoff;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#usingComputeShader}.
+	 */
+	public boolean isUsingComputeShader() {
+		return usingComputeShader;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#computeTileWidth}.
+	 */
+	public int getComputeTileWidth() {
+		return computeTileWidth;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#computeTileHeight}.
+	 */
+	public int getComputeTileHeight() {
+		return computeTileHeight;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#usingWavefront}.
+	 */
+	public boolean isUsingWavefront() {
+		return usingWavefront;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#usingOccluderCache}.
+	 */
+	public boolean isUsingOccluderCache() {
+		return usingOccluderCache;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#usingRasterizedPrimaryHits}.
+	 */
+	public boolean isUsingRasterizedPrimaryHits() {
+		return usingRasterizedPrimaryHits;
+	}
+	
 	/**
 	 * See {@link RayTracingSettings#lighting}.
 	 */
@@ -425,4 +604,62 @@ public class RayTracingSettings {
 	public void setUsingVertexNormals(boolean usingVertexNormals) {
 		this.usingVertexNormals = usingVertexNormals;
 	}
+
+	/**
+	 * See {@link RayTracingSettings#usingDynamicCounts}.
+	 */
+	public void setUsingDynamicCounts(boolean usingDynamicCounts) {
+		this.usingDynamicCounts = usingDynamicCounts;
+	}
+
+	/**
+	 * See {@link RayTracingSettings#usingRayStack}.
+	 */
+	public void setUsingRayStack(boolean usingRayStack) {
+		this.usingRayStack = usingRayStack;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#contributionCutoff}.
+	 */
+	public void setContributionCutoff(float contributionCutoff) {
+		this.contributionCutoff = contributionCutoff;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#usingComputeShader}.
+	 */
+	public void setUsingComputeShader(boolean usingComputeShader) {
+		this.usingComputeShader = usingComputeShader;
+	}
+	
+	/**
+	 * @param computeTileWidth See {@link RayTracingSettings#computeTileWidth}.
+	 * @param computeTileHeight See {@link RayTracingSettings#computeTileHeight}.
+	 */
+	public void setComputeTileSize(int computeTileWidth, int computeTileHeight) {
+		this.computeTileWidth = computeTileWidth;
+		this.computeTileHeight = computeTileHeight;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#usingWavefront}.
+	 */
+	public void setUsingWavefront(boolean usingWavefront) {
+		this.usingWavefront = usingWavefront;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#usingOccluderCache}.
+	 */
+	public void setUsingOccluderCache(boolean usingOccluderCache) {
+		this.usingOccluderCache = usingOccluderCache;
+	}
+	
+	/**
+	 * See {@link RayTracingSettings#usingRasterizedPrimaryHits}.
+	 */
+	public void setUsingRasterizedPrimaryHits(boolean usingRasterizedPrimaryHits) {
+		this.usingRasterizedPrimaryHits = usingRasterizedPrimaryHits;
+	}
 }
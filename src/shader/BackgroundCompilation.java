@@ -0,0 +1,255 @@
+package shader;
+
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL11.GL_TRUE;
+import static org.lwjgl.opengl.GL11.glFlush;
+import static org.lwjgl.opengl.GL20.GL_INFO_LOG_LENGTH;
+import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL20.glAttachShader;
+import static org.lwjgl.opengl.GL20.glCompileShader;
+import static org.lwjgl.opengl.GL20.glCreateShader;
+import static org.lwjgl.opengl.GL20.glDeleteProgram;
+import static org.lwjgl.opengl.GL20.glDeleteShader;
+import static org.lwjgl.opengl.GL20.glGetProgramInfoLog;
+import static org.lwjgl.opengl.GL20.glGetProgrami;
+import static org.lwjgl.opengl.GL20.glGetShaderInfoLog;
+import static org.lwjgl.opengl.GL20.glGetShaderi;
+import static org.lwjgl.opengl.GL20.glLinkProgram;
+import static org.lwjgl.opengl.GL20.glShaderSource;
+import static org.lwjgl.opengl.GL32.GL_TIMEOUT_EXPIRED;
+import static org.lwjgl.opengl.GL32.glClientWaitSync;
+import static org.lwjgl.opengl.GL32.glDeleteSync;
+import static org.lwjgl.opengl.GL32.GL_SYNC_GPU_COMMANDS_COMPLETE;
+import static org.lwjgl.opengl.GL32.glFenceSync;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41.glProgramParameteri;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.GL_COMPLETION_STATUS_KHR;
+
+import org.lwjgl.opengl.KHRParallelShaderCompile;
+
+/**
+ * A <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program, which is compiled and linked by the
+ * {@link BackgroundShaderCompiler} while the main thread keeps rendering.
+ *
+ * The main thread polls {@link #isDone} every frame and calls {@link #finish} once it returns true. Until then,
+ * the program must not be used by the main thread.
+ *
+ * @author Tizian Kirchner
+ */
+public class BackgroundCompilation {
+	/**
+	 * The id of the shader program, which is being compiled.
+	 */
+	private int programId;
+
+	/**
+	 * The names of the shaders making up the program, which are used for logging.
+	 */
+	private String shaders;
+
+	/**
+	 * The paths to the files of the shaders, which determine the types of the shaders.
+	 *
+	 * @see ShaderProgramBuilder#getShaderType
+	 */
+	private String[] paths;
+
+	/**
+	 * The edited source code of each shader.
+	 */
+	private String[] sources;
+
+	/**
+	 * The value of {@link System#nanoTime} when the compilation has been started.
+	 */
+	private long startTime;
+
+	/**
+	 * The ids of the shaders. Kept until the compilation is {@link #finish finished},
+	 * so that their compile logs can be read.
+	 */
+	private int[] shaderIds;
+
+	/**
+	 * The <a href="https://www.khronos.org/opengl/wiki/Sync_Object">fence</a> placed after linking on the
+	 * shared context of the {@link BackgroundShaderCompiler}. 0 until the program has been linked.
+	 */
+	private volatile long fence = 0;
+
+	/**
+	 * Determines if the program is linked by the thread of the {@link BackgroundShaderCompiler}, in which
+	 * case the {@link #fence} signals that the program is linked. Otherwise the program is compiled in parallel
+	 * by the driver and its {@link KHRParallelShaderCompile#GL_COMPLETION_STATUS_KHR completion status} is polled.
+	 */
+	private boolean usingFence;
+
+	/**
+	 * Determines if the program has been loaded from a program binary, so that it does not need to be compiled.
+	 */
+	private boolean loaded;
+
+	/**
+	 * Determines if {@link #finish} has been called successfully, so that the program can be used.
+	 */
+	private boolean finished = false;
+
+	/**
+	 * @param programId See {@link #programId}.
+	 * @param shaders See {@link #shaders}.
+	 * @param paths See {@link #paths}.
+	 * @param sources See {@link #sources}.
+	 * @param usingFence See {@link #usingFence}.
+	 * @param loaded See {@link #loaded}.
+	 */
+	public BackgroundCompilation(
+		int programId, String shaders, String[] paths, String[] sources, boolean usingFence, boolean loaded
+	) {
+		this.programId = programId;
+		this.shaders = shaders;
+		this.paths = paths;
+		this.sources = sources;
+		this.shaderIds = new int[sources.length];
+		this.usingFence = usingFence;
+		this.loaded = loaded;
+		this.startTime = System.nanoTime();
+	}
+
+	/**
+	 * Issues the compilation of the shaders and the linking of the program on the current context.
+	 */
+	void compile() {
+		for(int i = 0; i < sources.length; i++) {
+			shaderIds[i] = compileShader(ShaderProgramBuilder.getShaderType(paths[i]), sources[i]);
+		}
+
+		glProgramParameteri(programId, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+		glLinkProgram(programId);
+
+		if(usingFence) {
+			long fence = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+
+			// the fence has to reach the driver, before the main thread can wait for it
+			glFlush();
+			this.fence = fence;
+		}
+	}
+
+	/**
+	 * @param type The type of the shader.
+	 * @param source The source code of the shader.
+	 * @return The id of the shader, which has been attached to the program.
+	 */
+	private int compileShader(int type, String source) {
+		int shaderId = glCreateShader(type);
+		glShaderSource(shaderId, source);
+		glCompileShader(shaderId);
+		glAttachShader(programId, shaderId);
+		return shaderId;
+	}
+
+	/**
+	 * Checks without blocking if the program has been linked. Has to be called on the main thread.
+	 *
+	 * @return If {@link #finish} can be called.
+	 */
+	public boolean isDone() {
+		if(loaded || finished) return true;
+
+		if(usingFence) {
+			return fence != 0 && glClientWaitSync(fence, 0, 0) != GL_TIMEOUT_EXPIRED;
+		}
+
+		return glGetProgrami(programId, GL_COMPLETION_STATUS_KHR) == GL_TRUE;
+	}
+
+	/**
+	 * Deletes the shaders and the {@link #fence} and checks if the program has been linked successfully.
+	 * Has to be called on the main thread, after {@link #isDone} has returned true. Calling it again has no effect.
+	 *
+	 * @throws RuntimeException If the program could not be linked. The program is deleted in that case.
+	 */
+	public void finish() {
+		if(loaded || finished) return;
+		if(fence != 0) glDeleteSync(fence);
+		fence = 0;
+
+		if(glGetProgrami(programId, GL_LINK_STATUS) == GL_FALSE) {
+			String log = "";
+
+			for(int shaderId : shaderIds) {
+				log += glGetShaderInfoLog(shaderId, glGetShaderi(shaderId, GL_INFO_LOG_LENGTH));
+			}
+
+			log += glGetProgramInfoLog(programId, glGetProgrami(programId, GL_INFO_LOG_LENGTH));
+			deleteShaders();
+			glDeleteProgram(programId);
+			throw new RuntimeException("Linking of shaders " + shaders + " failed: " + log);
+		}
+
+		deleteShaders();
+		finished = true;
+	}
+
+	/**
+	 * Deletes the shaders, which are attached to the program.
+	 */
+	private void deleteShaders() {
+		for(int shaderId : shaderIds) {
+			glDeleteShader(shaderId);
+		}
+	}
+
+	/**
+	 * Deletes the program, once it is {@link #isDone done}, without checking if it has been linked successfully.
+	 */
+	public void discard() {
+		if(!loaded && !finished) {
+			if(fence != 0) glDeleteSync(fence);
+			deleteShaders();
+		}
+
+		glDeleteProgram(programId);
+	}
+
+	/**
+	 * See {@link #programId}.
+	 */
+	public int getProgramId() {
+		return programId;
+	}
+
+	/**
+	 * See {@link #shaders}.
+	 */
+	public String getShaders() {
+		return shaders;
+	}
+
+	/**
+	 * @return The edited source code of all shaders of the program, as used by the {@link ProgramBinaryCache}.
+	 */
+	public String getProgramSource() {
+		return String.join("\n", sources);
+	}
+
+	/**
+	 * @return How many nanoseconds have passed since the compilation has been started.
+	 */
+	public long getElapsedTime() {
+		return System.nanoTime() - startTime;
+	}
+
+	/**
+	 * See {@link #finished}.
+	 */
+	public boolean isFinished() {
+		return finished;
+	}
+
+	/**
+	 * See {@link #loaded}.
+	 */
+	public boolean isLoaded() {
+		return loaded;
+	}
+}
@@ -0,0 +1,140 @@
+package shader;
+
+import static org.lwjgl.glfw.GLFW.glfwDestroyWindow;
+import static org.lwjgl.glfw.GLFW.glfwMakeContextCurrent;
+import static org.lwjgl.opengl.KHRParallelShaderCompile.glMaxShaderCompilerThreadsKHR;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.lwjgl.opengl.GL;
+
+import io.Window;
+
+/**
+ * Compiles and links <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> programs without blocking
+ * the render loop of the main thread.
+ *
+ * If the driver supports
+ * <a href="https://registry.khronos.org/OpenGL/extensions/KHR/KHR_parallel_shader_compile.txt">
+ * KHR_parallel_shader_compile</a>, the compilation is issued on the main thread and the driver compiles the
+ * program on its own threads. Otherwise the program is compiled by a thread of this class, on the context of a
+ * hidden GLFW window, which shares its objects with the context of the main window.
+ *
+ * @author Tizian Kirchner
+ */
+public class BackgroundShaderCompiler {
+	/**
+	 * Determines if the driver supports KHR_parallel_shader_compile. Only valid after {@link #init}.
+	 */
+	private static boolean usingParallelShaderCompile = false;
+
+	/**
+	 * The hidden GLFW window, whose context is current on the {@link #thread}. NULL if no thread is used.
+	 */
+	private static long sharedWindow = NULL;
+
+	/**
+	 * The thread compiling the {@link BackgroundCompilation} objects of the {@link #queue}. Null if no thread is
+	 * used.
+	 */
+	private static Thread thread = null;
+
+	/**
+	 * The {@link BackgroundCompilation} objects, which are waiting to be compiled by the {@link #thread}.
+	 */
+	private static LinkedBlockingQueue<BackgroundCompilation> queue = new LinkedBlockingQueue<>();
+
+	/**
+	 * Determines if {@link #init} has been called.
+	 */
+	private static boolean initialized = false;
+
+	/**
+	 * Checks if the driver supports KHR_parallel_shader_compile and creates the {@link #sharedWindow} and
+	 * {@link #thread} otherwise. Has to be called on the main thread.
+	 */
+	private static void init() {
+		initialized = true;
+		usingParallelShaderCompile = GL.getCapabilities().GL_KHR_parallel_shader_compile;
+
+		if(usingParallelShaderCompile) {
+			// let the driver choose the number of compiler threads
+			glMaxShaderCompilerThreadsKHR(0xFFFFFFFF);
+			return;
+		}
+
+		sharedWindow = Window.createSharedContext();
+		thread = new Thread(BackgroundShaderCompiler::compileQueuedPrograms, "Shader Compiler");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Issues the compilation and linking of a shader program in the background. Has to be called on the main thread.
+	 *
+	 * @param programId The id of the shader program, which must not have any shaders attached.
+	 * @param shaders The names of the shaders making up the program.
+	 * @param paths The paths to the files of the shaders.
+	 * @param sources The edited source code of each shader.
+	 *
+	 * @return The {@link BackgroundCompilation} of the program, which has to be polled by the main thread.
+	 */
+	public static BackgroundCompilation compile(
+		int programId, String shaders, String[] paths, String[] sources
+	) {
+		if(!initialized) init();
+
+		BackgroundCompilation compilation = new BackgroundCompilation(
+			programId, shaders, paths, sources, !usingParallelShaderCompile, false
+		);
+
+		if(usingParallelShaderCompile) {
+			compilation.compile();
+		} else {
+			queue.add(compilation);
+		}
+
+		return compilation;
+	}
+
+	/**
+	 * Makes the context of the {@link #sharedWindow} current and compiles the programs of the {@link #queue},
+	 * until the {@link #thread} is interrupted.
+	 */
+	private static void compileQueuedPrograms() {
+		glfwMakeContextCurrent(sharedWindow);
+		GL.createCapabilities();
+
+		try {
+			while(true) {
+				queue.take().compile();
+			}
+		} catch(InterruptedException e) {
+			glfwMakeContextCurrent(NULL);
+			GL.setCapabilities(null);
+		}
+	}
+
+	/**
+	 * Stops the {@link #thread} and destroys the {@link #sharedWindow}. Has to be called on the main thread,
+	 * before the main window is closed.
+	 */
+	public static void close() {
+		if(thread != null) {
+			thread.interrupt();
+
+			try {
+				thread.join();
+			} catch(InterruptedException e) {
+				e.printStackTrace();
+			}
+
+			glfwDestroyWindow(sharedWindow);
+			thread = null;
+			sharedWindow = NULL;
+		}
+
+		initialized = false;
+	}
+}
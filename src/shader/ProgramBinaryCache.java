@@ -0,0 +1,198 @@
+package shader;
+
+import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL11.GL_RENDERER;
+import static org.lwjgl.opengl.GL11.GL_VENDOR;
+import static org.lwjgl.opengl.GL11.GL_VERSION;
+import static org.lwjgl.opengl.GL11.glGetInteger;
+import static org.lwjgl.opengl.GL11.glGetString;
+import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
+import static org.lwjgl.opengl.GL20.glGetProgrami;
+import static org.lwjgl.opengl.GL41.GL_NUM_PROGRAM_BINARY_FORMATS;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_LENGTH;
+import static org.lwjgl.opengl.GL41.glGetProgramBinary;
+import static org.lwjgl.opengl.GL41.glProgramBinary;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import org.lwjgl.BufferUtils;
+
+import util.HashCalculator;
+
+/**
+ * Stores linked <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> programs as
+ * <a href="https://www.khronos.org/opengl/wiki/Shader_Compilation#Binary_upload">program binaries</a> in files,
+ * so that they do not need to be compiled again when the program is started again or a scene is loaded again.
+ *
+ * Each file is named after the hash of the edited source code of the program's shaders and the vendor, renderer
+ * and version of the OpenGL implementation. Changing the source code, the edits made to it or the driver therefore
+ * automatically leads to the program being compiled and stored again. Program binaries rejected by the driver
+ * are compiled and stored again as well.
+ *
+ * @author Tizian Kirchner
+ */
+public class ProgramBinaryCache {
+	/**
+	 * Identifies files written by a {@link ProgramBinaryCache}.
+	 */
+	private static final int MAGIC_NUMBER = 0x50424943;
+
+	/**
+	 * The version of the file format. Files of other versions are ignored.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * How many bytes the header of a file occupies.
+	 * The header consists of the {@link #MAGIC_NUMBER}, the {@link #FORMAT_VERSION}, the binary format,
+	 * the binary length and how many nanoseconds compiling and linking the program took.
+	 */
+	private static final int HEADER_SIZE = 24;
+
+	/**
+	 * The directory containing the files.
+	 */
+	private Path directory;
+
+	/**
+	 * The vendor, renderer and version of the OpenGL implementation. Null until the first program has been
+	 * loaded or stored, as the strings can only be queried once an OpenGL context exists.
+	 */
+	private String driver = null;
+
+	/**
+	 * How many nanoseconds compiling and linking the program took, which has been loaded last.
+	 */
+	private long loadedCompileTime = 0;
+
+	/**
+	 * Creates a {@link ProgramBinaryCache} storing its files in the "cache/programs" directory
+	 * within the working directory.
+	 */
+	public ProgramBinaryCache() {
+		this(Path.of("cache", "programs"));
+	}
+
+	/**
+	 * @param directory See {@link #directory}.
+	 */
+	public ProgramBinaryCache(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Loads a program binary from its file into a shader program.
+	 *
+	 * @param programId The id of the shader program, which must not have any shaders attached.
+	 * @param source The edited source code of all shaders of the program.
+	 *
+	 * @return
+	 * If the program has been loaded and linked successfully. Otherwise the program has to be compiled.
+	 */
+	public boolean load(int programId, String source) {
+		if(glGetInteger(GL_NUM_PROGRAM_BINARY_FORMATS) == 0) return false;
+
+		Path file = getFile(source);
+		if(!Files.isRegularFile(file)) return false;
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if(channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return false;
+
+			ByteBuffer buffer = BufferUtils.createByteBuffer((int) channel.size());
+
+			while(buffer.hasRemaining()) {
+				if(channel.read(buffer) == -1) return false;
+			}
+
+			buffer.flip();
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+			if(buffer.getInt() != MAGIC_NUMBER || buffer.getInt() != FORMAT_VERSION) return false;
+
+			int binaryFormat = buffer.getInt();
+			int binaryLength = buffer.getInt();
+			loadedCompileTime = buffer.getLong();
+			if(binaryLength != buffer.remaining()) return false;
+
+			glProgramBinary(programId, binaryFormat, buffer);
+
+			// the driver rejects binaries of other drivers or versions by failing to link them
+			return glGetProgrami(programId, GL_LINK_STATUS) != GL_FALSE;
+		} catch(IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+	}
+
+	/**
+	 * Stores the program binary of a linked shader program in a file. The file is written to a temporary file
+	 * first, which then replaces the file, so that other processes never read a partially written file.
+	 *
+	 * @param programId
+	 * The id of the shader program, which has to be linked with the retrievable hint set to true.
+	 *
+	 * @param source The edited source code of all shaders of the program.
+	 * @param compileTime How many nanoseconds compiling and linking the program took.
+	 */
+	public void store(int programId, String source, long compileTime) {
+		int binaryLength = glGetProgrami(programId, GL_PROGRAM_BINARY_LENGTH);
+		if(binaryLength == 0) return;
+
+		ByteBuffer buffer = BufferUtils.createByteBuffer(HEADER_SIZE + binaryLength);
+		ByteBuffer binary = buffer.slice(HEADER_SIZE, binaryLength);
+		IntBuffer binaryFormat = BufferUtils.createIntBuffer(1);
+		glGetProgramBinary(programId, null, binaryFormat, binary);
+
+		buffer.order(ByteOrder.LITTLE_ENDIAN);
+		buffer.putInt(MAGIC_NUMBER);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putInt(binaryFormat.get(0));
+		buffer.putInt(binaryLength);
+		buffer.putLong(compileTime);
+		buffer.rewind();
+
+		try {
+			Files.createDirectories(directory);
+			Path temporaryFile = Files.createTempFile(directory, "program", ".tmp");
+
+			try(FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+				while(buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+
+			Files.move(
+				temporaryFile, getFile(source), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE
+			);
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @param source The edited source code of all shaders of a program.
+	 * @return The file storing the program binary of the program.
+	 */
+	private Path getFile(String source) {
+		if(driver == null) {
+			driver = glGetString(GL_VENDOR) + " " + glGetString(GL_RENDERER) + " " + glGetString(GL_VERSION);
+		}
+
+		return directory.resolve(HashCalculator.calculateHash(driver + "\n" + source) + ".bin");
+	}
+
+	/**
+	 * See {@link #loadedCompileTime}.
+	 */
+	public long getLoadedCompileTime() {
+		return loadedCompileTime;
+	}
+}
@@ -1,7 +1,6 @@
 package shader;
 
 import static org.lwjgl.opengl.GL43.*;
-import static texture.DefaultTextures.DEFAULT_SKY_DOME;
 import static surface.Surface.*;
 import java.util.ArrayList;
 import java.util.regex.Pattern;
@@ -11,6 +10,7 @@ import cgi.Model;
 import cgi.Quadric;
 import cgi.Sphere;
 import cgi.SphereLight;
+import io.Window;
 import material.CookTorranceMaterial;
 import render.RayTracer;
 import render.TextRenderer;
@@ -70,12 +70,38 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 	private ArrayList<Model> models = new ArrayList<>();
 	
 	/**
-	 * Determines for how many triangles the shader program reserves memory.
+	 * Determines for how many {@link Model} instances the shader program reserves memory.
+	 */
+	private int modelCount = 0;
+	
+	/**
+	 * The number of triangles of the distinct meshes of the {@link #models}.
 	 * 
-	 * This should be the same as number of triangles of the {@link #models}.
+	 * The shader program reserves memory for the {@link #triangleCapacity}.
+	 * 
+	 * @see #getMeshes
 	 */
 	private int triangleCount = 0;
 	
+	/**
+	 * Determines for how many triangles the Triangles buffer reserves memory.
+	 * 
+	 * Equals the {@link #triangleCount}, unless the {@link #rtSettings} use dynamic counts. In that case the capacity
+	 * is doubled whenever it is exceeded and never shrinks, so that adding or removing meshes rarely requires
+	 * recompiling the shader program.
+	 * 
+	 * @see RayTracingSettings#isUsingDynamicCounts
+	 */
+	private int triangleCapacity = 0;
+	
+	/**
+	 * Determines for how many primitive indecis the BoundingVolumeHierarchy buffer reserves memory.
+	 * 
+	 * Equals the sum of the {@link #modelCount}, {@link #sphereCount} and {@link #triangleCount},
+	 * unless the {@link #rtSettings} use dynamic counts. See {@link #triangleCapacity}.
+	 */
+	private int bvhPrimitiveCapacity = 0;
+	
 	/**
 	 * The {@link Sphere} objects that are to be sent to this object's shader program.
 	 */
@@ -128,9 +154,19 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 	/**
 	 * Determines how many 32bit units large the
 	 * <a href="https://www.khronos.org/opengl/wiki/Fragment_Shader">fragment shader</a>'s Triangles buffer is.
+	 * The {@link RayTracer} reallocates the buffer with this size, once the program replaces the previous one.
 	 */
 	private int triangleBufferSize = 0;
 	
+	/**
+	 * Determines if the <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program is recompiled in
+	 * the background, so that the render loop is not blocked while the driver compiles it.
+	 * The {@link RayTracer} keeps rendering with the old program until the new program replaces it.
+	 * 
+	 * @see #compileInBackground
+	 */
+	private boolean usingBackgroundCompilation = true;
+	
 	/* Constructors */
 	
 	/**
@@ -151,30 +187,32 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 	
 	@Override
 	protected String editShader(String source, int type) {
-		if(type == GL_FRAGMENT_SHADER) {
+		if(type == GL_COMPUTE_SHADER) {
+			source = source.replaceFirst(
+				Pattern.quote("layout(local_size_x = 8, local_size_y = 8) in;"),
+				"layout(local_size_x = " + rtSettings.getComputeTileWidth() +
+				", local_size_y = " + rtSettings.getComputeTileHeight() + ") in;"
+			);
+		}
+		
+		if(type == GL_FRAGMENT_SHADER || type == GL_COMPUTE_SHADER) {
 			// object counts
-			source = source.replaceFirst("lightCount = 0", "lightCount = " + lightCount);
-			source = source.replaceFirst("materialCount = 0", "materialCount = " + materialCount);
+			source = editCount(source, "lightCount", lightCount, "Light", "lights");
+			source = editCount(source, "materialCount", materialCount, "Material", "materials");
 			source = source.replaceFirst(
 				"cookTorranceTextureCount = 0",
 				"cookTorranceTextureCount = " + ctTextureCount
 			);
 			
-			source = source.replaceFirst("triangleCount = 0", "triangleCount = " + triangleCount);
-			source = source.replaceFirst("sphereCount = 0", "sphereCount = " + sphereCount);
-			source = source.replaceFirst("quadricCount = 0", "quadricCount = " + quadricCount);
-			source = source.replaceFirst("csgCount = 0", "csgCount = " + csgCount);
+			source = editCount(source, "modelCount", modelCount, "ModelInstance", "modelInstances");
+			source = editCount(source, "sphereCount", sphereCount, "Sphere", "spheres");
+			source = editCount(source, "quadricCount", quadricCount, "Quadric", "quadrics");
+			source = editCount(source, "csgCount", csgCount, "ConstructiveSolidGeometry", "csgs");
 			
-			// triangle buffer
-			int vertexCount = 0;
-			
-			for (Model model : models) {
-				vertexCount += model.getVertices().length;
-			}
-			
-			int uniformBufferSize = 16 * vertexCount + 8 * (vertexCount / 3);
-			int shaderStorageBufferSize = 14 * vertexCount + 5 * (vertexCount / 3);
+			source = source.replaceFirst("triangleCount = 0", "triangleCount = " + triangleCapacity);
+			source = source.replaceFirst("bvhPrimitiveCount = 0", "bvhPrimitiveCount = " + bvhPrimitiveCapacity);
 			
+			// triangle buffer
 			if(!rtSettings.isUsingVertexColors()) {
 				source = source.replaceFirst(
 					Pattern.quote("vec3[3 * max(triangleCount, 1)] vertexColors;"),
@@ -188,9 +226,6 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 					"vec3 getObjectColor",
 					"/*"
 				);
-				
-				uniformBufferSize -= 4 * vertexCount;
-				shaderStorageBufferSize -= 4 * vertexCount;
 			}
 			
 			if(!rtSettings.isUsingVertexNormals()) {
@@ -206,29 +241,13 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 					"vec3 getNormalVector",
 					"/*"
 				);
-				
-				uniformBufferSize -= 4 * vertexCount;
-				shaderStorageBufferSize -= 4 * vertexCount;
 			}
 			
-			if(uniformBufferSize <= 16384) {
+			if(useUniformBuffer) {
 				source = source.replaceFirst(
 					Pattern.quote("layout(std430, binding = 0) readonly buffer Triangles"),
 					"layout (std140, binding = 0) uniform Triangles"
 				);
-				
-				useUniformBuffer = true;
-				triangleBufferSize = uniformBufferSize;
-			} else {
-				useUniformBuffer = false;
-				triangleBufferSize = shaderStorageBufferSize;
-			}
-			
-			if(triangleBufferSize > 0) {
-				RayTracer.bindTriangleBuffer(
-					useUniformBuffer ? GL_UNIFORM_BUFFER : GL_SHADER_STORAGE_BUFFER,
-					triangleBufferSize * 4
-				);
 			}
 			
 			// lighting and shadow constants
@@ -240,6 +259,10 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 			source = source.replaceFirst("transparencyLighting = false", transparencyStr);
 			source = source.replaceFirst("shadowRayCount = 0", shadowStr);
 			
+			if(rtSettings.isUsingOccluderCache() && !rtSettings.isTransparencyLighting()) {
+				source = source.replaceFirst("occluderCaching = false", "occluderCaching = true");
+			}
+			
 			// tracing constants
 			String rflcTraceStr = "reflectionTraceDepth = " + rtSettings.getReflectionTraceDepth();
 			String rflcLightingStr = "reflectionLightingDepth = " + rtSettings.getReflectionLightingDepth();
@@ -258,93 +281,211 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 			source = source.replaceFirst("refractionShadowDepth = 0", rfrcShadowStr);
 			
 			// surface constants
-			Surface[] surfaces = SurfaceCalculator.getSurfaces();
-			String srfcCountStr = "surfaceCount = " + surfaces.length;	
-			source = source.replaceFirst("surfaceCount = 0", srfcCountStr);
+			String cutoffStr = "contributionCutoff = " + rtSettings.getContributionCutoff();
+			source = source.replaceFirst("contributionCutoff = 0.0", cutoffStr);
 			
-			String srfcArrayStr = "";
+			if(rtSettings.isUsingRasterizedPrimaryHits()) {
+				source = source.replaceFirst("rasterizedPrimaryHits = false", "rasterizedPrimaryHits = true");
+			}
 			
-			for(int i = 1; i < surfaces.length; i++) {
-				Surface surface = surfaces[i];
-				String parentStr = "surfaces[" + surface.getParentSurface() + "]";
+			// the waves of the wavefront compute shader replace the surface tree as well
+			boolean usingWavefront = rtSettings.isUsingComputeShader() && rtSettings.isUsingWavefront();
+			
+			if(rtSettings.isUsingRayStack() || usingWavefront) {
+				source = source.replaceFirst("usingRayStack = false", "usingRayStack = true");
+			} else {
+				Surface[] surfaces = SurfaceCalculator.getSurfaces();
+				String srfcCountStr = "surfaceCount = " + surfaces.length;	
+				source = source.replaceFirst("surfaceCount = 0", srfcCountStr);
+			
+				String srfcArrayStr = "";
+				boolean cutoff = rtSettings.getContributionCutoff() > 0;
+				if(cutoff) srfcArrayStr += "surfaceThroughputs[0] = vec3(1);\n    ";
+			
+				for(int i = 1; i < surfaces.length; i++) {
+					Surface surface = surfaces[i];
+					String parentStr = "surfaces[" + surface.getParentSurface() + "]";
 				
-				String origin = "";
-				String direction = "";
-				String surfaceType = "";
-				boolean surfaceLighting = false;
-				boolean surfaceShadowing = false;
+					String origin = "";
+					String direction = "";
+					String surfaceType = "";
+					boolean surfaceLighting = false;
+					boolean surfaceShadowing = false;
 				
-				if(surface.getType() == REFLECTION_SURFACE) {
-					surfaceType = "reflection";
+					if(surface.getType() == REFLECTION_SURFACE) {
+						surfaceType = "reflection";
 					
-					surfaceLighting = (
-						rtSettings.isLighting() && rtSettings.getReflectionLightingDepth() >= surface.getLayer()
-					);
+						surfaceLighting = (
+							rtSettings.isLighting() && rtSettings.getReflectionLightingDepth() >= surface.getLayer()
+						);
 					
-					surfaceShadowing = rtSettings.getReflectionShadowDepth() >= surface.getLayer();
-				} else if(surface.getType() == REFRACTION_SURFACE) {
-					surfaceType = "refraction";
+						surfaceShadowing = rtSettings.getReflectionShadowDepth() >= surface.getLayer();
+					} else if(surface.getType() == REFRACTION_SURFACE) {
+						surfaceType = "refraction";
 					
-					surfaceLighting = (
-						rtSettings.isLighting() && rtSettings.getRefractionLightingDepth() >= surface.getLayer()
-					);
+						surfaceLighting = (
+							rtSettings.isLighting() && rtSettings.getRefractionLightingDepth() >= surface.getLayer()
+						);
 					
-					surfaceShadowing = rtSettings.getRefractionShadowDepth() >= surface.getLayer();
-				}
+						surfaceShadowing = rtSettings.getRefractionShadowDepth() >= surface.getLayer();
+					}
 				
-				direction = parentStr + "." + surfaceType + ".direction";
-				origin = parentStr + ".position + rayOffset * " + direction;
+					direction = parentStr + "." + surfaceType + ".direction";
+					origin = parentStr + ".position + rayOffset * " + direction;
 				
-				srfcArrayStr += "if(" + parentStr + "." + surfaceType + ".strength > 0) {\n		" +
-					"surfaces[" + i + "] = getSurface(" +
-					origin + ", " +
-					direction + ", " +
-					surfaceLighting + ", " +
-					surfaceShadowing +
-					");" +
-				"}\n    ";
-			}
+					String condition = parentStr + "." + surfaceType + ".strength > 0";
+				
+					if(cutoff) {
+						String throughputStr = "surfaceThroughputs[" + i + "]";
+						
+						srfcArrayStr += throughputStr + " = " +
+							getThroughput(surfaces[surface.getParentSurface()], surface.getParentSurface(), surfaceType) +
+						";\n    ";
+						
+						condition += " && max3(" + throughputStr + ") >= contributionCutoff";
+					}
+				
+					srfcArrayStr += "if(" + condition + ") {\n		" +
+						"surfaces[" + i + "] = getSurface(" +
+						origin + ", " +
+						direction + ", " +
+						surfaceLighting + ", " +
+						surfaceShadowing +
+						");" +
+					"}\n    ";
+				}
 			
-			srfcArrayStr += "\n    ";
+				srfcArrayStr += "\n    ";
 			
-			for(int i = SurfaceCalculator.getLastSurfaceParent(); i >= 0; i--) {
-				Surface surface = surfaces[i];
-				String surfaceStr = "surfaces[" + i + "]";
+				for(int i = SurfaceCalculator.getLastSurfaceParent(); i >= 0; i--) {
+					Surface surface = surfaces[i];
+					String surfaceStr = "surfaces[" + i + "]";
 				
-				if(surface.getReflectionSurface() != -1) {
-					String condition = "if(" + surfaceStr + ".reflection.strength > 0) {\n        ";
-					String normalAlignment = surfaceStr + ".reflection.normalAlignment";
-					String fresenelColor = surfaceStr + ".fresnelColor";
-					String reflectionColor = "surfaces[" + surface.getReflectionSurface() + "].surfaceColor";
-					String reflectionStrength = surfaceStr + ".reflection.strength";
+					if(surface.getReflectionSurface() != -1) {
+						String condition = "if(" + surfaceStr + ".reflection.strength > 0) {\n        ";
+						String normalAlignment = surfaceStr + ".reflection.normalAlignment";
+						String fresenelColor = surfaceStr + ".fresnelColor";
+						String reflectionColor = "surfaces[" + surface.getReflectionSurface() + "].surfaceColor";
+						String reflectionStrength = surfaceStr + ".reflection.strength";
 					
-					srfcArrayStr += condition + surfaceStr + ".surfaceColor += getReflectionColor(" +
-						normalAlignment + ", " +
-						fresenelColor + ", " +
-						reflectionColor + ", " +
-						reflectionStrength +
-					");\n    }\n\n    ";
-				}
+						srfcArrayStr += condition + surfaceStr + ".surfaceColor += getReflectionColor(" +
+							normalAlignment + ", " +
+							fresenelColor + ", " +
+							reflectionColor + ", " +
+							reflectionStrength +
+						");\n    }\n\n    ";
+					}
 				
-				if(surface.getRefractionSurface() != -1) {
-					String condition = "if(" + surfaceStr + ".refraction.strength > 0) {\n        ";
-					String surfaceColor = surfaceStr + ".surfaceColor";
-					String refractionStrength = surfaceStr + ".refraction.strength";
-					String refractionColor = "surfaces[" + surface.getRefractionSurface() + "].surfaceColor";
+					if(surface.getRefractionSurface() != -1) {
+						String condition = "if(" + surfaceStr + ".refraction.strength > 0) {\n        ";
+						String surfaceColor = surfaceStr + ".surfaceColor";
+						String refractionStrength = surfaceStr + ".refraction.strength";
+						String refractionColor = "surfaces[" + surface.getRefractionSurface() + "].surfaceColor";
 					
-					srfcArrayStr += condition + 
-						surfaceColor + " *= 1 - " + refractionStrength + ";\n        " +
-						surfaceColor + " += " + refractionStrength + " * " + refractionColor + ";\n    " +
-					"}\n\n    ";
+						srfcArrayStr += condition + 
+							surfaceColor + " *= 1 - " + refractionStrength + ";\n        " +
+							surfaceColor + " += " + refractionStrength + " * " + refractionColor + ";\n    " +
+						"}\n\n    ";
+					}
 				}
-			}
 			
-			source = source.replaceFirst("//CALCULATE SURFACES", srfcArrayStr);
+				source = source.replaceFirst("//CALCULATE SURFACES", srfcArrayStr);
+			}
 		}
 		
 		return source;
 	}
 	
+	/**
+	 * Determines the layout of the Triangles buffer from the {@link #triangleCapacity} and the {@link #rtSettings},
+	 * which {@link #editShader} applies to the source code and the {@link RayTracer} applies to the buffer, once
+	 * the program replaces the previous one.
+	 * 
+	 * @see #useUniformBuffer
+	 * @see #triangleBufferSize
+	 */
+	private void calculateTriangleBufferLayout() {
+		int vertexCount = 3 * triangleCapacity;
+		
+		int uniformBufferSize = 16 * vertexCount + 4 * (vertexCount / 3);
+		int shaderStorageBufferSize = 14 * vertexCount + 4 * (vertexCount / 3);
+		
+		if(!rtSettings.isUsingVertexColors()) {
+			uniformBufferSize -= 4 * vertexCount;
+			shaderStorageBufferSize -= 4 * vertexCount;
+		}
+		
+		if(!rtSettings.isUsingVertexNormals()) {
+			uniformBufferSize -= 4 * vertexCount;
+			shaderStorageBufferSize -= 4 * vertexCount;
+		}
+		
+		useUniformBuffer = uniformBufferSize <= 16384;
+		triangleBufferSize = useUniformBuffer ? uniformBufferSize : shaderStorageBufferSize;
+	}
+	
+	/**
+	 * Creates the expression of the accumulated throughput of a child {@link Surface} within the Surface tree,
+	 * which uses the same factors as the combination of the child's surface color with its parent's surface color.
+	 * 
+	 * @param parent The parent of the child Surface.
+	 * @param parentIndex The index of the parent within the Surface tree.
+	 * @param surfaceType Either "reflection" or "refraction", depending on the type of the child Surface.
+	 * 
+	 * @return The throughput expression, which requires the parent's throughput to be calculated already.
+	 */
+	private String getThroughput(Surface parent, int parentIndex, String surfaceType) {
+		String parentStr = "surfaces[" + parentIndex + "]";
+		String throughput = "surfaceThroughputs[" + parentIndex + "] * ";
+		
+		if(surfaceType.equals("refraction")) {
+			return throughput + parentStr + ".refraction.strength";
+		}
+		
+		if(parent.getRefractionSurface() != -1) {
+			throughput += "(1 - " + parentStr + ".refraction.strength) * ";
+		}
+		
+		return throughput + "getReflectionColor(" +
+			parentStr + ".reflection.normalAlignment, " +
+			parentStr + ".fresnelColor, " +
+			"vec3(1), " +
+			parentStr + ".reflection.strength" +
+		")";
+	}
+	
+	/**
+	 * Sets an object count constant of the <a href="https://www.khronos.org/opengl/wiki/Fragment_Shader">fragment
+	 * shader</a>'s source code.
+	 * 
+	 * If the {@link #rtSettings} use dynamic counts, the constant is turned into a uniform instead and the
+	 * buffer array holding the objects is turned into a runtime-sized array, so that its length is determined by
+	 * the size of the buffer sent to it.
+	 * 
+	 * @param source The source code of the fragment shader.
+	 * @param countName The name of the count constant.
+	 * @param count The value of the count constant.
+	 * @param typeName The name of the struct stored in the buffer array.
+	 * @param arrayName The name of the buffer array.
+	 * 
+	 * @return The edited source code.
+	 */
+	private String editCount(String source, String countName, int count, String typeName, String arrayName) {
+		if(rtSettings.isUsingDynamicCounts()) {
+			source = source.replaceFirst(
+				Pattern.quote("const int " + countName + " = 0;"),
+				"uniform int " + countName + ";"
+			);
+			
+			return source.replaceFirst(
+				Pattern.quote(typeName + "[max(" + countName + ", 1)] " + arrayName + ";"),
+				typeName + "[] " + arrayName + ";"
+			);
+		}
+		
+		return source.replaceFirst(countName + " = 0", countName + " = " + count);
+	}
+	
 	@Override
 	public void clearSceneObjects() {
 		lights.clear();
@@ -358,14 +499,54 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 	
 	@Override
 	public void recompile() {
-		if(compiled) {
-			glDeleteProgram(shaderProgramId);
-			compiled = false;
+		calculateTriangleBufferLayout();
+		compileInBackground();
+		if(usingBackgroundCompilation) return;
+		
+		// wait for the new program, so that it is used immediately
+		while(isCompilingInBackground()) {
+			if(checkBackgroundCompilation()) RayTracer.replaceProgram();
+		}
+	}
+	
+	/**
+	 * If the {@link RayTracingSettings} use a compute shader, the program only consists of the
+	 * <a href="https://www.khronos.org/opengl/wiki/Compute_Shader">compute shader</a> next to the
+	 * {@link #fragmentPath}, which uses the "comp" file extension. If the rays are traced in
+	 * {@link RayTracingSettings#isUsingWavefront waves}, the compute shader "wavefront.comp" in the folder of the
+	 * fragmentPath is used instead.
+	 */
+	@Override
+	protected String[] getShaderPaths() {
+		if(rtSettings.isUsingComputeShader() && rtSettings.isUsingWavefront()) {
+			return new String[] {fragmentPath.substring(0, fragmentPath.lastIndexOf('/') + 1) + "wavefront.comp"};
+		}
+		
+		if(rtSettings.isUsingComputeShader()) {
+			return new String[] {fragmentPath.substring(0, fragmentPath.lastIndexOf('.')) + ".comp"};
 		}
 		
-		compile();
-		RayTracer.refreshUniforms();
-		RayTracer.sendSkyDomeToShader(DEFAULT_SKY_DOME);
+		return super.getShaderPaths();
+	}
+	
+	@Override
+	protected ShaderVariantRegistry getVariantRegistry() {
+		return ShaderProgramStorage.RAY_TRACING_VARIANTS;
+	}
+	
+	/**
+	 * The source code is edited for the {@link #rtSettings}, which also determine the Surface tree, and the object
+	 * counts. Counts, which are turned into uniforms by {@link #editCount}, are left out of the key.
+	 */
+	@Override
+	protected String getVariantKey() {
+		String key = String.join(",", getShaderPaths()) + "|" + rtSettings + "|" + ctTextureCount + "," +
+			triangleCapacity + "," + bvhPrimitiveCapacity;
+		
+		if(rtSettings.isUsingDynamicCounts()) return key;
+		
+		return key + "," + lightCount + "," + materialCount + "," + modelCount + "," +
+			sphereCount + "," + quadricCount + "," + csgCount;
 	}
 	
 	/**
@@ -373,21 +554,25 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 	 * <a href="https://www.khronos.org/opengl/wiki/Fragment_Shader">fragment shader</a>'s constants,
 	 * its Triangles buffer or its surface structure need to be changed.
 	 * 
+	 * If the {@link RayTracingSettings} use dynamic counts, changed object counts only require recompiling the
+	 * shader program when the {@link #triangleCapacity} or {@link #bvhPrimitiveCapacity} is exceeded.
+	 * 
 	 * @param sceneSettings The {@link RayTracingSettings} which should be used by the shader program.
 	 * @see #rtSettings
 	 */
 	public void checkCompilation(RayTracingSettings sceneSettings) {
 		boolean recompile = false;
+		boolean dynamicCounts = sceneSettings.isUsingDynamicCounts();
 		
 		// objects influencing surfaces
 		if(this.lightCount != lights.size()) {
 			this.lightCount = lights.size();
-			recompile = true;
+			recompile |= !dynamicCounts;
 		}
 		
 		if(this.materialCount != materials.size()) {
 			this.materialCount = materials.size();
-			recompile = true;
+			recompile |= !dynamicCounts;
 		}
 		
 		if(this.ctTextureCount != ctTextures.size()) {
@@ -396,29 +581,46 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 		}
 		
 		// geometry
+		if(this.modelCount != models.size()) {
+			this.modelCount = models.size();
+			recompile |= !dynamicCounts;
+		}
+		
 		int triangleCount = 0;
 		
-		for (Model model : models) {
-			triangleCount += model.getVertices().length / 3;
+		for (Model mesh : getMeshes()) {
+			triangleCount += mesh.getVertices().length / 3;
 		}
 		
-		if(this.triangleCount != triangleCount) {
-			this.triangleCount = triangleCount;
-			recompile = true;
-		}
+		this.triangleCount = triangleCount;
 		
 		if(this.sphereCount != spheres.size()) {
 			this.sphereCount = spheres.size();
-			recompile = true;
+			recompile |= !dynamicCounts;
 		}
 		
 		if(this.quadricCount != quadrics.size()) {
 			this.quadricCount = quadrics.size();
-			recompile = true;
+			recompile |= !dynamicCounts;
 		}
 		
 		if(this.csgCount != csgs.size()) {
 			this.csgCount = csgs.size();
+			recompile |= !dynamicCounts;
+		}
+		
+		// buffer capacities
+		int bvhPrimitiveCount = modelCount + sphereCount + triangleCount;
+		
+		if(dynamicCounts) {
+			if(triangleCapacity < triangleCount || bvhPrimitiveCapacity < bvhPrimitiveCount) {
+				triangleCapacity = Math.max(triangleCount, triangleCapacity * 2);
+				bvhPrimitiveCapacity = Math.max(bvhPrimitiveCount, bvhPrimitiveCapacity * 2);
+				recompile = true;
+			}
+		} else if(triangleCapacity != triangleCount || bvhPrimitiveCapacity != bvhPrimitiveCount) {
+			triangleCapacity = triangleCount;
+			bvhPrimitiveCapacity = bvhPrimitiveCount;
 			recompile = true;
 		}
 		
@@ -440,7 +642,7 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 		TextBuilder.showRayTracingInformation(
 			lightCount, materialCount, ctTextureCount,
 			triangleCount, sphereCount, quadricCount, csgCount,
-			rtSettings, useUniformBuffer, triangleBufferSize
+			rtSettings, useUniformBuffer, triangleBufferSize, RayTracer.getFrameUploadedBytes()
 		);
 	}
 	
@@ -472,6 +674,49 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 		return models;
 	}
 
+	/**
+	 * Determines the distinct meshes of the {@link #models}.
+	 * Model objects, which {@link Model#sharesMesh share their mesh}, are instances of the same mesh.
+	 * 
+	 * @return One Model for each distinct mesh, in the order of the meshes' first occurrence within the models.
+	 */
+	public ArrayList<Model> getMeshes() {
+		ArrayList<Model> meshes = new ArrayList<>();
+		getMeshes(meshes);
+		return meshes;
+	}
+	
+	/**
+	 * Determines the distinct meshes of the {@link #models} without allocating a new list.
+	 * See {@link #getMeshes()}.
+	 * 
+	 * @param meshes The list, which is cleared and then filled with one Model for each distinct mesh.
+	 */
+	public void getMeshes(ArrayList<Model> meshes) {
+		meshes.clear();
+		
+		for(int i = 0; i < models.size(); i++) {
+			Model model = models.get(i);
+			boolean newMesh = true;
+			
+			for(int j = 0; j < meshes.size(); j++) {
+				if(meshes.get(j).sharesMesh(model)) {
+					newMesh = false;
+					break;
+				}
+			}
+			
+			if(newMesh) meshes.add(model);
+		}
+	}
+	
+	/**
+	 * See {@link RayTracingShaderProgramBuilder#modelCount}.
+	 */
+	public int getModelCount() {
+		return modelCount;
+	}
+	
 	/**
 	 * See {@link RayTracingShaderProgramBuilder#triangleCount}.
 	 */
@@ -514,6 +759,135 @@ public class RayTracingShaderProgramBuilder extends ShaderProgramBuilder {
 		return useUniformBuffer;
 	}
 
+	/**
+	 * See {@link RayTracingShaderProgramBuilder#triangleCapacity}.
+	 */
+	public int getTriangleCapacity() {
+		return triangleCapacity;
+	}
+	
+	/**
+	 * See {@link RayTracingShaderProgramBuilder#bvhPrimitiveCapacity}.
+	 */
+	public int getBvhPrimitiveCapacity() {
+		return bvhPrimitiveCapacity;
+	}
+	
+	/**
+	 * See {@link RayTracingShaderProgramBuilder#usingBackgroundCompilation}.
+	 */
+	public boolean isUsingBackgroundCompilation() {
+		return usingBackgroundCompilation;
+	}
+	
+	/**
+	 * See {@link RayTracingShaderProgramBuilder#usingBackgroundCompilation}.
+	 */
+	public void setUsingBackgroundCompilation(boolean usingBackgroundCompilation) {
+		this.usingBackgroundCompilation = usingBackgroundCompilation;
+	}
+	
+	/**
+	 * Issues the compilation of the <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program variants
+	 * required by scenes and registers them within the {@link ShaderProgramStorage#RAY_TRACING_VARIANTS}, without
+	 * replacing the current shader program. Loading a scene later on then only switches to its registered variant.
+	 * 
+	 * The variants are described by their settings and object counts, so that the scenes do not have to be loaded.
+	 * Their buffer capacities equal their object counts, as if the scenes were loaded first.
+	 * Has no effect without an OpenGL context. See {@link Window#hasContext}.
+	 * 
+	 * @param variants The variants to be compiled.
+	 */
+	public void prewarm(ArrayList<RayTracingVariant> variants) {
+		if(!Window.hasContext()) return;
+		
+		RayTracingVariant current = new RayTracingVariant(
+			rtSettings, lightCount, materialCount, ctTextureCount,
+			modelCount, triangleCount, sphereCount, quadricCount, csgCount
+		);
+		
+		int currentTriangleCapacity = triangleCapacity;
+		int currentBvhPrimitiveCapacity = bvhPrimitiveCapacity;
+		
+		for(RayTracingVariant variant : variants) {
+			setVariant(variant);
+			triangleCapacity = triangleCount;
+			bvhPrimitiveCapacity = modelCount + sphereCount + triangleCount;
+			
+			SurfaceCalculator.calculateSurfaces();
+			calculateTriangleBufferLayout();
+			compileVariant();
+		}
+		
+		setVariant(current);
+		triangleCapacity = currentTriangleCapacity;
+		bvhPrimitiveCapacity = currentBvhPrimitiveCapacity;
+		
+		SurfaceCalculator.calculateSurfaces();
+		calculateTriangleBufferLayout();
+	}
+	
+	/**
+	 * Checks if the object lists hold as many objects as the {@link RayTracingVariant}, which describes a scene for
+	 * {@link #prewarm}, states. Otherwise a warning is printed, as the prewarmed variant does not match the scene,
+	 * so that the scene's shader program is compiled when the scene is loaded.
+	 * 
+	 * @param sceneName The name of the scene, which is printed with the warning.
+	 * @param variant The variant describing the scene.
+	 * @return If the object counts match the variant.
+	 */
+	public boolean checkVariant(String sceneName, RayTracingVariant variant) {
+		int triangleCount = 0;
+		
+		for(Model mesh : getMeshes()) {
+			triangleCount += mesh.getVertices().length / 3;
+		}
+		
+		String[] names = {"lights", "materials", "textures", "models", "triangles", "spheres", "quadrics", "csgs"};
+		
+		int[] counts = {
+			lights.size(), materials.size(), ctTextures.size(), models.size(),
+			triangleCount, spheres.size(), quadrics.size(), csgs.size()
+		};
+		
+		int[] variantCounts = {
+			variant.getLightCount(), variant.getMaterialCount(), variant.getCtTextureCount(),
+			variant.getModelCount(), variant.getTriangleCount(), variant.getSphereCount(),
+			variant.getQuadricCount(), variant.getCsgCount()
+		};
+		
+		StringBuilder differences = new StringBuilder();
+		
+		for(int i = 0; i < names.length; i++) {
+			if(counts[i] != variantCounts[i]) {
+				differences.append(" ").append(names[i]).append(" ").append(counts[i])
+					.append(" instead of ").append(variantCounts[i]);
+			}
+		}
+		
+		if(differences.length() == 0) return true;
+		
+		System.err.println("The shader variant of " + sceneName + " does not match its objects:" + differences);
+		return false;
+	}
+	
+	/**
+	 * Stores the settings and object counts of a {@link RayTracingVariant}, which the source code is edited for.
+	 * 
+	 * @param variant The variant.
+	 */
+	private void setVariant(RayTracingVariant variant) {
+		rtSettings = variant.getSettings();
+		lightCount = variant.getLightCount();
+		materialCount = variant.getMaterialCount();
+		ctTextureCount = variant.getCtTextureCount();
+		modelCount = variant.getModelCount();
+		triangleCount = variant.getTriangleCount();
+		sphereCount = variant.getSphereCount();
+		quadricCount = variant.getQuadricCount();
+		csgCount = variant.getCsgCount();
+	}
+	
 	/**
 	 * See {@link RayTracingShaderProgramBuilder#triangleBufferSize}.
 	 */
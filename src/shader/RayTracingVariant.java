@@ -0,0 +1,155 @@
+package shader;
+
+import cgi.ConstructiveSolidGeometry;
+import cgi.Model;
+import cgi.Quadric;
+import cgi.Sphere;
+import cgi.SphereLight;
+import material.CookTorranceMaterial;
+import settings.RayTracingSettings;
+import texture.CookTorranceTexture;
+
+/**
+ * Describes the variant of a ray tracing <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program,
+ * which a scene requires, through the scene's {@link RayTracingSettings} and object counts.
+ * 
+ * The variant can be compiled by {@link RayTracingShaderProgramBuilder#prewarm} without creating the objects of
+ * the scene, so that no models or textures have to be loaded for it.
+ * 
+ * @author Tizian Kirchner
+ */
+public class RayTracingVariant {
+	/**
+	 * The {@link RayTracingSettings} used by the scene.
+	 */
+	private RayTracingSettings settings;
+	
+	/**
+	 * The number of {@link SphereLight} objects of the scene.
+	 */
+	private int lightCount;
+	
+	/**
+	 * The number of {@link CookTorranceMaterial} objects of the scene.
+	 */
+	private int materialCount;
+	
+	/**
+	 * The number of {@link CookTorranceTexture} objects of the scene.
+	 */
+	private int ctTextureCount;
+	
+	/**
+	 * The number of {@link Model} objects of the scene.
+	 */
+	private int modelCount;
+	
+	/**
+	 * The number of triangles of the distinct meshes of the scene's {@link Model} objects.
+	 */
+	private int triangleCount;
+	
+	/**
+	 * The number of {@link Sphere} objects of the scene.
+	 */
+	private int sphereCount;
+	
+	/**
+	 * The number of {@link Quadric} objects of the scene.
+	 */
+	private int quadricCount;
+	
+	/**
+	 * The number of {@link ConstructiveSolidGeometry} objects of the scene.
+	 */
+	private int csgCount;
+	
+	/**
+	 * @param settings See {@link #settings}.
+	 * @param lightCount See {@link #lightCount}.
+	 * @param materialCount See {@link #materialCount}.
+	 * @param ctTextureCount See {@link #ctTextureCount}.
+	 * @param modelCount See {@link #modelCount}.
+	 * @param triangleCount See {@link #triangleCount}.
+	 * @param sphereCount See {@link #sphereCount}.
+	 * @param quadricCount See {@link #quadricCount}.
+	 * @param csgCount See {@link #csgCount}.
+	 */
+	public RayTracingVariant(
+		RayTracingSettings settings, int lightCount, int materialCount, int ctTextureCount,
+		int modelCount, int triangleCount, int sphereCount, int quadricCount, int csgCount
+	) {
+		this.settings = settings;
+		this.lightCount = lightCount;
+		this.materialCount = materialCount;
+		this.ctTextureCount = ctTextureCount;
+		this.modelCount = modelCount;
+		this.triangleCount = triangleCount;
+		this.sphereCount = sphereCount;
+		this.quadricCount = quadricCount;
+		this.csgCount = csgCount;
+	}
+	
+	/**
+	 * See {@link RayTracingVariant#settings}.
+	 */
+	public RayTracingSettings getSettings() {
+		return settings;
+	}
+	
+	/**
+	 * See {@link RayTracingVariant#lightCount}.
+	 */
+	public int getLightCount() {
+		return lightCount;
+	}
+	
+	/**
+	 * See {@link RayTracingVariant#materialCount}.
+	 */
+	public int getMaterialCount() {
+		return materialCount;
+	}
+	
+	/**
+	 * See {@link RayTracingVariant#ctTextureCount}.
+	 */
+	public int getCtTextureCount() {
+		return ctTextureCount;
+	}
+	
+	/**
+	 * See {@link RayTracingVariant#modelCount}.
+	 */
+	public int getModelCount() {
+		return modelCount;
+	}
+	
+	/**
+	 * See {@link RayTracingVariant#triangleCount}.
+	 */
+	public int getTriangleCount() {
+		return triangleCount;
+	}
+	
+	/**
+	 * See {@link RayTracingVariant#sphereCount}.
+	 */
+	public int getSphereCount() {
+		return sphereCount;
+	}
+	
+	/**
+	 * See {@link RayTracingVariant#quadricCount}.
+	 */
+	public int getQuadricCount() {
+		return quadricCount;
+	}
+	
+	/**
+	 * See {@link RayTracingVariant#csgCount}.
+	 */
+	public int getCsgCount() {
+		return csgCount;
+	}
+}
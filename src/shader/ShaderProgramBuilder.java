@@ -1,7 +1,9 @@
 package shader;
 
 import static org.lwjgl.opengl.GL11.GL_FALSE;
+import static org.lwjgl.opengl.GL11.GL_TRUE;
 import static org.lwjgl.opengl.GL20.GL_COMPILE_STATUS;
+import static org.lwjgl.opengl.GL20.GL_ACTIVE_UNIFORMS;
 import static org.lwjgl.opengl.GL20.GL_FRAGMENT_SHADER;
 import static org.lwjgl.opengl.GL20.GL_INFO_LOG_LENGTH;
 import static org.lwjgl.opengl.GL20.GL_LINK_STATUS;
@@ -12,6 +14,7 @@ import static org.lwjgl.opengl.GL20.glCreateProgram;
 import static org.lwjgl.opengl.GL20.glCreateShader;
 import static org.lwjgl.opengl.GL20.glDeleteProgram;
 import static org.lwjgl.opengl.GL20.glDeleteShader;
+import static org.lwjgl.opengl.GL20.glGetActiveUniform;
 import static org.lwjgl.opengl.GL20.glGetProgramInfoLog;
 import static org.lwjgl.opengl.GL20.glGetProgrami;
 import static org.lwjgl.opengl.GL20.glGetShaderInfoLog;
@@ -22,11 +25,22 @@ import static org.lwjgl.opengl.GL20.glShaderSource;
 import static org.lwjgl.opengl.GL20.glUniform1i;
 import static org.lwjgl.opengl.GL32.GL_GEOMETRY_SHADER;
 import static org.lwjgl.opengl.GL20.glUseProgram;
+import static org.lwjgl.opengl.GL41.GL_PROGRAM_BINARY_RETRIEVABLE_HINT;
+import static org.lwjgl.opengl.GL41.glProgramParameteri;
+import static org.lwjgl.opengl.GL43.GL_COMPUTE_SHADER;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Scanner;
 
+import org.lwjgl.BufferUtils;
+
+import io.Window;
+
 /**
  * Issues compilation and linking of a <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program and
  * stores the program's id.
@@ -35,6 +49,17 @@ import java.util.Scanner;
  * @author Tizian Kirchner
  */
 public class ShaderProgramBuilder {
+	/**
+	 * Returned by {@link #getUniformLocations} for uniform arrays without active elements.
+	 */
+	private static final int[] NO_LOCATIONS = new int[0];
+	
+	/**
+	 * Stores the linked shader programs of all {@link ShaderProgramBuilder} objects,
+	 * so that programs with unchanged source code do not have to be compiled again.
+	 */
+	private static final ProgramBinaryCache PROGRAM_BINARY_CACHE = new ProgramBinaryCache();
+	
 	/**
 	 * The path to the .vert file containing the source code
 	 * for the <a href="https://www.khronos.org/opengl/wiki/Vertex_Shader">vertex shader</a> of the program.
@@ -62,6 +87,35 @@ public class ShaderProgramBuilder {
 	 */
 	protected boolean compiled;
 	
+	/**
+	 * The locations of the active <a href="https://www.khronos.org/opengl/wiki/Uniform_(GLSL)">uniforms</a>
+	 * of this object's <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program, stored by their
+	 * names. Each element of an array uniform is stored with its own name, like "smplr[1]".
+	 * Filled once the program has been linked, so that locations do not have to be queried every frame.
+	 */
+	private HashMap<String, Integer> uniformLocations = new HashMap<>();
+	
+	/**
+	 * The locations of the elements of uniform arrays, stored by the names of the uniforms with the index of the
+	 * first array left empty. The locations of "lights[0].position" and "lights[1].position" are for example
+	 * stored at the indecis 0 and 1 of the array stored with the name "lights[].position".
+	 * 
+	 * @see #uniformLocations
+	 */
+	private HashMap<String, int[]> uniformArrayLocations = new HashMap<>();
+	
+	/**
+	 * The program, which is being compiled by {@link #compileInBackground} to replace this object's
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program. Null if no program is being compiled.
+	 */
+	private BackgroundCompilation backgroundCompilation = null;
+	
+	/**
+	 * Programs compiled by {@link #compileInBackground}, which have been replaced by a newer compilation
+	 * before they were done. They are deleted once they are done.
+	 */
+	private ArrayList<BackgroundCompilation> discardedCompilations = new ArrayList<>();
+	
 	/**
 	 * Issues compilation and linking of a <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program
 	 * using a <a href="https://www.khronos.org/opengl/wiki/Vertex_Shader">vertex shader</a> and
@@ -112,16 +166,205 @@ public class ShaderProgramBuilder {
 	
 	/**
 	 * Issues compilation and linking of a <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program
-	 * using the <a href="https://www.khronos.org/opengl/wiki/Vertex_Shader">vertex shader</a> from the
+	 * using the shaders from the {@link #getShaderPaths shader paths}, which are by default the
+	 * <a href="https://www.khronos.org/opengl/wiki/Vertex_Shader">vertex shader</a> from the
 	 * {@link #vertexPath} and the <a href="https://www.khronos.org/opengl/wiki/Fragment_Shader">fragment shader</a>
 	 * from the {@link #fragmentPath}.
+	 * 
+	 * The program is loaded from the {@link #PROGRAM_BINARY_CACHE} instead, if it has been compiled with the same
+	 * edited source code before. A program, which is still being compiled by {@link #compileInBackground},
+	 * is discarded.
+	 * 
+	 * Has no effect without an OpenGL context. See {@link Window#hasContext}.
 	 */
 	protected void compile() {
+		if(!Window.hasContext()) return;
+		
+		discardBackgroundCompilation();
+		
+		long startTime = System.nanoTime();
+		String[] paths = getShaderPaths();
+		String shaders = String.join(" and ", paths);
+		
 		shaderProgramId = glCreateProgram();
-		loadSourceAndCompileAndAttach(vertexPath, GL_VERTEX_SHADER);
-		loadSourceAndCompileAndAttach(fragmentPath, GL_FRAGMENT_SHADER);
-
-		linkProgram(vertexPath + " and " + fragmentPath);
+		String[] sources = loadSources(paths);
+		String programSource = String.join("\n", sources);
+		
+		if(PROGRAM_BINARY_CACHE.load(shaderProgramId, programSource)) {
+			compiled = true;
+			cacheUniformLocations();
+			logCacheHit(shaders, System.nanoTime() - startTime);
+			return;
+		}
+		
+		for(int i = 0; i < paths.length; i++) {
+			compileAndAttach(paths[i], getShaderType(paths[i]), sources[i]);
+		}
+		
+		glProgramParameteri(shaderProgramId, GL_PROGRAM_BINARY_RETRIEVABLE_HINT, GL_TRUE);
+		linkProgram(shaders);
+		
+		long compileTime = System.nanoTime() - startTime;
+		PROGRAM_BINARY_CACHE.store(shaderProgramId, programSource, compileTime);
+		System.out.printf("Program binary cache miss for %s: compiled in %.1fms%n", shaders, compileTime / 1e6);
+	}
+	
+	/**
+	 * Issues compilation and linking of a new <a href="https://www.khronos.org/opengl/wiki/shader">shader</a>
+	 * program like {@link #compile}, without waiting for the driver to finish. See {@link BackgroundShaderCompiler}.
+	 * 
+	 * The current shader program stays in use until {@link #checkBackgroundCompilation} replaces it with the new
+	 * program. A program, which is still being compiled by a previous call, is discarded.
+	 * 
+	 * If the {@link #getVariantRegistry variant registry} already contains the new program, it is not compiled
+	 * again and replaces the current program as soon as it is done.
+	 * 
+	 * Has no effect without an OpenGL context. See {@link Window#hasContext}.
+	 */
+	protected void compileInBackground() {
+		if(!Window.hasContext()) return;
+		
+		BackgroundCompilation compilation = compileVariant();
+		if(compilation == backgroundCompilation) return;
+		
+		discardBackgroundCompilation();
+		
+		if(!compiled || compilation.getProgramId() != shaderProgramId) {
+			backgroundCompilation = compilation;
+		}
+	}
+	
+	/**
+	 * Issues compilation and linking of the <a href="https://www.khronos.org/opengl/wiki/shader">shader</a>
+	 * program, which results from the current edits of the shaders, in the background.
+	 * The program does not replace this object's shader program.
+	 * 
+	 * If the {@link #getVariantRegistry variant registry} already contains the program, its compilation is returned
+	 * instead, without editing the source code. Otherwise the new compilation is registered.
+	 * 
+	 * @return The {@link BackgroundCompilation} of the program.
+	 */
+	protected BackgroundCompilation compileVariant() {
+		ShaderVariantRegistry variantRegistry = getVariantRegistry();
+		String key = variantRegistry != null ? getVariantKey() : null;
+		
+		if(variantRegistry != null && variantRegistry.get(key) != null) {
+			return variantRegistry.get(key);
+		}
+		
+		long startTime = System.nanoTime();
+		String[] paths = getShaderPaths();
+		String shaders = String.join(" and ", paths);
+		String[] sources = loadSources(paths);
+		String programSource = String.join("\n", sources);
+		int programId = glCreateProgram();
+		BackgroundCompilation compilation;
+		
+		if(PROGRAM_BINARY_CACHE.load(programId, programSource)) {
+			logCacheHit(shaders, System.nanoTime() - startTime);
+			compilation = new BackgroundCompilation(programId, shaders, paths, sources, false, true);
+		} else {
+			compilation = BackgroundShaderCompiler.compile(programId, shaders, paths, sources);
+		}
+		
+		if(variantRegistry != null) {
+			for(BackgroundCompilation evicted : variantRegistry.put(key, compilation)) {
+				// the current program is deleted once it is replaced
+				if(evicted.getProgramId() != shaderProgramId && evicted != backgroundCompilation) {
+					discardedCompilations.add(evicted);
+				}
+			}
+		}
+		
+		return compilation;
+	}
+	
+	/**
+	 * Stops the program compiled by {@link #compileInBackground} from replacing this object's
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program. Unless the program is a registered
+	 * variant, it is deleted once it is done.
+	 */
+	private void discardBackgroundCompilation() {
+		if(backgroundCompilation != null && !isRegisteredVariant(backgroundCompilation.getProgramId())) {
+			discardedCompilations.add(backgroundCompilation);
+		}
+		
+		backgroundCompilation = null;
+	}
+	
+	/**
+	 * Replaces this object's <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program with the
+	 * program compiled by {@link #compileInBackground}, if the program is done. Should be called every frame
+	 * before the shader program is used.
+	 * 
+	 * @return If the shader program has been replaced, in which case its uniforms have to be set again.
+	 */
+	public boolean checkBackgroundCompilation() {
+		for(int i = discardedCompilations.size() - 1; i >= 0; i--) {
+			if(discardedCompilations.get(i).isDone()) discardedCompilations.remove(i).discard();
+		}
+		
+		if(backgroundCompilation == null || !backgroundCompilation.isDone()) return false;
+		
+		BackgroundCompilation compilation = backgroundCompilation;
+		boolean compiledNow = !compilation.isLoaded() && !compilation.isFinished();
+		backgroundCompilation = null;
+		
+		try {
+			compilation.finish();
+		} catch(RuntimeException e) {
+			if(getVariantRegistry() != null) getVariantRegistry().remove(compilation);
+			throw e;
+		}
+		
+		// registered variants are kept, so that they can be switched back to
+		if(compiled && !isRegisteredVariant(shaderProgramId)) glDeleteProgram(shaderProgramId);
+		
+		shaderProgramId = compilation.getProgramId();
+		compiled = true;
+		cacheUniformLocations();
+		
+		if(compiledNow) {
+			long compileTime = compilation.getElapsedTime();
+			PROGRAM_BINARY_CACHE.store(shaderProgramId, compilation.getProgramSource(), compileTime);
+			
+			System.out.printf(
+				"Program binary cache miss for %s: compiled in the background in %.1fms%n",
+				compilation.getShaders(), compileTime / 1e6
+			);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * @param programId The id of a <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program.
+	 * @return If the program belongs to a variant registered within the {@link #getVariantRegistry variant registry}.
+	 */
+	private boolean isRegisteredVariant(int programId) {
+		return getVariantRegistry() != null && getVariantRegistry().containsProgram(programId);
+	}
+	
+	/**
+	 * Logs that a program has been loaded by the {@link #PROGRAM_BINARY_CACHE}.
+	 * 
+	 * @param shaders The names of the shaders making up the program.
+	 * @param loadTime How many nanoseconds loading the program took.
+	 */
+	private static void logCacheHit(String shaders, long loadTime) {
+		double savedTime = (PROGRAM_BINARY_CACHE.getLoadedCompileTime() - loadTime) / 1e6;
+		
+		System.out.printf(
+			"Program binary cache hit for %s: loaded in %.1fms, saved %.1fms%n", shaders, loadTime / 1e6, savedTime
+		);
+	}
+	
+	/**
+	 * @return If a program is being compiled by {@link #compileInBackground}, which has not replaced this object's
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program yet.
+	 */
+	public boolean isCompilingInBackground() {
+		return backgroundCompilation != null;
 	}
 	
 	/**
@@ -132,6 +375,22 @@ public class ShaderProgramBuilder {
 	 * @param type The type of shader that is to be compiled.
 	 */
 	protected void loadSourceAndCompileAndAttach(String path, int type) {
+		String source = loadSource(path, type);
+		if(source != null) compileAndAttach(path, type, source);
+	}
+	
+	/**
+	 * Loads a <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> file and processes its includes
+	 * and edits.
+	 * 
+	 * @param path Path to the shaderfile using "/res/shaders/" as the root folder.
+	 * @param type The type of shader that is to be loaded.
+	 * 
+	 * @return
+	 * The source code, which is passed to the compiler. Null if the shader is an optional geometry shader,
+	 * which does not exist.
+	 */
+	protected String loadSource(String path, int type) {
 		InputStream inputStreamFromResourceName = getInputStreamFromResourceName(path);
 		
 		if (inputStreamFromResourceName == null) {
@@ -139,7 +398,7 @@ public class ShaderProgramBuilder {
 				throw new RuntimeException("Shader source file " + path + " not found!");
 			}
 			
-			return;
+			return null;
 		}
 		
 		String source;
@@ -149,8 +408,35 @@ public class ShaderProgramBuilder {
 		}
 		
 		source = processInclude(path, source);
-		source = editShader(source, type);
-		compileAndAttach(path, type, source);
+		return editShader(source, type);
+	}
+	
+	/**
+	 * Loads the <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> files making up the program.
+	 * 
+	 * @param paths The paths to the shader files using "/res/shaders/" as the root folder.
+	 * @return The source code of each shader, which is passed to the compiler.
+	 */
+	protected String[] loadSources(String[] paths) {
+		String[] sources = new String[paths.length];
+		
+		for(int i = 0; i < paths.length; i++) {
+			sources[i] = loadSource(paths[i], getShaderType(paths[i]));
+		}
+		
+		return sources;
+	}
+	
+	/**
+	 * @param path The path to a <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> file.
+	 * @return The type of the shader, as determined by the file extension of its file.
+	 * @throws RuntimeException If the file extension is neither "vert", "frag" nor "comp".
+	 */
+	public static int getShaderType(String path) {
+		if(path.endsWith(".vert")) return GL_VERTEX_SHADER;
+		if(path.endsWith(".frag")) return GL_FRAGMENT_SHADER;
+		if(path.endsWith(".comp")) return GL_COMPUTE_SHADER;
+		throw new RuntimeException("Shader " + path + " has an unknown file extension.");
 	}
 	
 	/**
@@ -179,7 +465,7 @@ public class ShaderProgramBuilder {
 	
 	/**
 	 * Includes the source code of other <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> files 
-	 * within the given shader's source code, if the given shader contains an include line.
+	 * within the given shader's source code, if the given shader contains include lines.
 	 * 
 	 * @param path
 	 * The path to the shader file of which includes are to be processed.
@@ -239,6 +525,7 @@ public class ShaderProgramBuilder {
 			
 			includeSource = processInclude(includeShaderPath, includeSource);
 			source = source.replaceFirst(include, includeSource);
+			source = processInclude(path, source);
 		}
 		
 		return source;
@@ -282,6 +569,113 @@ public class ShaderProgramBuilder {
 		if (glGetProgrami(shaderProgramId, GL_LINK_STATUS) == GL_FALSE && !checkError(compileLog)) {
 			throw new RuntimeException("Linking of shaders " + shaders + " failed.");
 		} else compiled = true;
+		
+		cacheUniformLocations();
+	}
+	
+	/**
+	 * Enumerates the active <a href="https://www.khronos.org/opengl/wiki/Uniform_(GLSL)">uniforms</a> of the
+	 * linked <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program and replaces the
+	 * {@link #uniformLocations} and {@link #uniformArrayLocations} with their locations.
+	 */
+	private void cacheUniformLocations() {
+		uniformLocations.clear();
+		uniformArrayLocations.clear();
+		
+		int uniformCount = glGetProgrami(shaderProgramId, GL_ACTIVE_UNIFORMS);
+		IntBuffer size = BufferUtils.createIntBuffer(1);
+		IntBuffer type = BufferUtils.createIntBuffer(1);
+		
+		for(int i = 0; i < uniformCount; i++) {
+			String name = glGetActiveUniform(shaderProgramId, i, size, type);
+			int location = glGetUniformLocation(shaderProgramId, name);
+			
+			// members of uniform blocks do not have locations
+			if(location == -1) continue;
+			
+			// arrays of basic types are only listed with the name of their first element
+			if(name.endsWith("[0]")) {
+				String arrayName = name.substring(0, name.length() - 3);
+				
+				for(int j = 0; j < size.get(0); j++) {
+					String elementName = arrayName + "[" + j + "]";
+					cacheUniformLocation(elementName, glGetUniformLocation(shaderProgramId, elementName));
+				}
+			} else {
+				cacheUniformLocation(name, location);
+			}
+		}
+	}
+	
+	/**
+	 * Stores the location of a <a href="https://www.khronos.org/opengl/wiki/Uniform_(GLSL)">uniform</a> within the
+	 * {@link #uniformLocations} and, if the uniform is an array element, within the {@link #uniformArrayLocations}.
+	 * 
+	 * @param name The name of the uniform.
+	 * @param location The location of the uniform.
+	 */
+	private void cacheUniformLocation(String name, int location) {
+		uniformLocations.put(name, location);
+		
+		int indexStart = name.indexOf('[');
+		if(indexStart == -1) return;
+		
+		int indexEnd = name.indexOf(']', indexStart);
+		int index = Integer.parseInt(name.substring(indexStart + 1, indexEnd));
+		String arrayName = name.substring(0, indexStart + 1) + name.substring(indexEnd);
+		
+		int[] locations = uniformArrayLocations.get(arrayName);
+		
+		if(locations == null) {
+			locations = new int[index + 1];
+			Arrays.fill(locations, -1);
+		} else if(locations.length <= index) {
+			int previousLength = locations.length;
+			locations = Arrays.copyOf(locations, index + 1);
+			Arrays.fill(locations, previousLength, locations.length, -1);
+		}
+		
+		locations[index] = location;
+		uniformArrayLocations.put(arrayName, locations);
+	}
+	
+	/**
+	 * @param uniform The name of a <a href="https://www.khronos.org/opengl/wiki/Uniform_(GLSL)">uniform</a>.
+	 * 
+	 * @return
+	 * The location of the uniform, without querying it from the
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program. -1 if the uniform is not active.
+	 * 
+	 * @see #uniformLocations
+	 */
+	public int getUniformLocation(String uniform) {
+		Integer location = uniformLocations.get(uniform);
+		return location == null ? -1 : location;
+	}
+	
+	/**
+	 * @param uniform
+	 * The name of an element of a <a href="https://www.khronos.org/opengl/wiki/Uniform_(GLSL)">uniform</a> array,
+	 * with the index of the first array left empty, like "lights[].position".
+	 * 
+	 * @return
+	 * The locations of the elements, indexed by the left out index. -1 for inactive elements.
+	 * The returned array is shared and must not be modified.
+	 * 
+	 * @see #uniformArrayLocations
+	 */
+	public int[] getUniformLocations(String uniform) {
+		int[] locations = uniformArrayLocations.get(uniform);
+		return locations == null ? NO_LOCATIONS : locations;
+	}
+	
+	/**
+	 * @param locations Locations returned by {@link #getUniformLocations}.
+	 * @param index The index of an array element.
+	 * @return The location of the array element, or -1 if the element is not active.
+	 */
+	public static int getUniformLocation(int[] locations, int index) {
+		return index < locations.length ? locations[index] : -1;
 	}
 	
 	/**
@@ -295,7 +689,7 @@ public class ShaderProgramBuilder {
 	public void setBooleanUniform(String uniform, boolean bool) {
 		if(compiled) {
 			glUseProgram(shaderProgramId);
-			int uniformLocation = glGetUniformLocation(shaderProgramId, uniform);
+			int uniformLocation = getUniformLocation(uniform);
 			glUniform1i(uniformLocation, bool ? 1 : 0);
 		}
 	}
@@ -309,6 +703,29 @@ public class ShaderProgramBuilder {
 	 */
 	protected String editShader(String source, int type) {return source;}
 	
+	/**
+	 * @return
+	 * The paths to the files of the <a href="https://www.khronos.org/opengl/wiki/shader">shaders</a> making up the
+	 * program, using "/res/shaders/" as the root folder. The {@link #vertexPath} and {@link #fragmentPath} by default.
+	 */
+	protected String[] getShaderPaths() {return new String[] {vertexPath, fragmentPath};}
+	
+	/**
+	 * @return
+	 * The {@link ShaderVariantRegistry} storing the programs compiled by {@link #compileInBackground},
+	 * or null if programs are not registered and replaced programs are deleted.
+	 */
+	protected ShaderVariantRegistry getVariantRegistry() {return null;}
+	
+	/**
+	 * @return
+	 * The key of the variant, which results from the current edits of the
+	 * <a href="https://www.khronos.org/opengl/wiki/shader">shaders</a>, within the
+	 * {@link #getVariantRegistry variant registry}. Has to be derived from everything the edits depend on, so that
+	 * the key can be determined without editing the source code. Only called if a variant registry is used.
+	 */
+	protected String getVariantKey() {return null;}
+	
 	/**
 	 * Checks if errors, that occured during compilation, can be resolved.
 	 * 
@@ -40,6 +40,13 @@ public class ShaderProgramStorage {
 	
 	/* Ray Tracing Shader */
 	
+	/**
+	 * Stores the variants of the {@link #PROGRAM_RAY_TRACING} shader program, which have been compiled for
+	 * different {@link settings.RayTracingSettings} and object counts. Switching to a scene, of which the variant
+	 * has already been compiled, only switches the shader program.
+	 */
+	public static final ShaderVariantRegistry RAY_TRACING_VARIANTS = new ShaderVariantRegistry(16);
+	
 	/**
 	 * Stores the id of a <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program
 	 * which renders different kinds of 3D objects with ray traced shadows, reflections and refractions,
@@ -48,6 +55,16 @@ public class ShaderProgramStorage {
 	public static final RayTracingShaderProgramBuilder PROGRAM_RAY_TRACING =
 		new RayTracingShaderProgramBuilder("rt/ray_tracing", false);
 	
+	/**
+	 * Stores the id of a <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program
+	 * which rasterizes the model instance and triangle covering each pixel, so that the primary rays of
+	 * {@link #PROGRAM_RAY_TRACING} can start from them.
+	 * 
+	 * @see settings.RayTracingSettings#isUsingRasterizedPrimaryHits
+	 */
+	public static final ShaderProgramBuilder PROGRAM_PRIMARY_HITS =
+		new ShaderProgramBuilder("rt/primary_hits", true);
+	
 	/* Texture Shader */
 	
 	/**
@@ -0,0 +1,107 @@
+package shader;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * Stores the variants of a <a href="https://www.khronos.org/opengl/wiki/shader">shader</a> program, which are
+ * created by editing its source code differently, so that a {@link ShaderProgramBuilder} can switch between them
+ * instead of compiling them again.
+ * 
+ * Each variant is stored by its key, which the ShaderProgramBuilder derives from the settings and object counts
+ * its source code is edited for. At most {@link #capacity} variants are stored. When more variants are registered,
+ * the least recently used ones are unregistered, so that their programs can be deleted.
+ * 
+ * @author Tizian Kirchner
+ */
+public class ShaderVariantRegistry {
+	/**
+	 * The {@link BackgroundCompilation} of each variant, stored by the variant's key, in the order in which the
+	 * variants have last been used. The compilations of variants can still be in progress.
+	 */
+	private LinkedHashMap<String, BackgroundCompilation> variants = new LinkedHashMap<>(16, 0.75f, true);
+	
+	/**
+	 * How many variants can be registered at most.
+	 */
+	private int capacity;
+	
+	/**
+	 * @param capacity See {@link #capacity}.
+	 */
+	public ShaderVariantRegistry(int capacity) {
+		this.capacity = capacity;
+	}
+	
+	/**
+	 * @param key The key of a variant.
+	 * @return The {@link BackgroundCompilation} of the variant, or null if the variant has not been registered.
+	 */
+	public BackgroundCompilation get(String key) {
+		return variants.get(key);
+	}
+	
+	/**
+	 * Registers a variant.
+	 *
+	 * @param key The key of the variant.
+	 * @param compilation The {@link BackgroundCompilation} of the variant's program.
+	 *
+	 * @return
+	 * The compilations of the least recently used variants, which have been unregistered to stay within the
+	 * {@link #capacity}. Their programs have to be deleted by the caller once they are not used anymore.
+	 */
+	public ArrayList<BackgroundCompilation> put(String key, BackgroundCompilation compilation) {
+		variants.put(key, compilation);
+		ArrayList<BackgroundCompilation> evicted = new ArrayList<>();
+		Iterator<BackgroundCompilation> iterator = variants.values().iterator();
+		
+		while(variants.size() > capacity) {
+			evicted.add(iterator.next());
+			iterator.remove();
+		}
+		
+		return evicted;
+	}
+	
+	/**
+	 * Unregisters a variant, for example because its program could not be linked.
+	 *
+	 * @param compilation The {@link BackgroundCompilation} of the variant's program.
+	 */
+	public void remove(BackgroundCompilation compilation) {
+		variants.values().remove(compilation);
+	}
+	
+	/**
+	 * @param programId The id of a shader program.
+	 * @return If the program belongs to a registered variant.
+	 */
+	public boolean containsProgram(int programId) {
+		for(BackgroundCompilation compilation : variants.values()) {
+			if(compilation.getProgramId() == programId) return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Deletes the programs of all variants and unregisters them. Has to be called on the main thread, after the
+	 * {@link BackgroundShaderCompiler} has been {@link BackgroundShaderCompiler#close closed}.
+	 */
+	public void clear() {
+		for(BackgroundCompilation compilation : variants.values()) {
+			compilation.discard();
+		}
+		
+		variants.clear();
+	}
+	
+	/**
+	 * @return How many variants have been registered.
+	 */
+	public int size() {
+		return variants.size();
+	}
+}
@@ -28,6 +28,8 @@ import javax.imageio.ImageIO;
 
 import org.lwjgl.system.NativeType;
 
+import io.Window;
+
 import static org.lwjgl.system.MemoryUtil.NULL;
 
 /**
@@ -52,16 +54,26 @@ public class TextureData {
 	 */
 	private int minificationFilter = GL_LINEAR_MIPMAP_LINEAR;
 	
+	/**
+	 * Stores the path to this object's image file with "/res/textures/" as the root folder.
+	 * Null if this object's texture is blank.
+	 */
+	private String path = null;
+	
 	/**
 	 * Constructs a new {@link TextureData} object through an image file.
 	 * 
 	 * Generates a texture on the GPU and stores the texture's id.
+	 * Without an OpenGL context, only the path is stored. See {@link Window#hasContext}.
 	 * 
 	 * @param path The path to the image file with "/res/textures/" as the root folder.
 	 * @param numberOfMipMapLevels The number of mip maps the texture will have.
 	 * @param autoGenerateMipMaps Determines if the mip maps should be automatically generated.
 	 */
 	public TextureData(String path, int numberOfMipMapLevels, boolean autoGenerateMipMaps) {
+		this.path = path;
+		if(!Window.hasContext()) return;
+		
 		try {
 			createTextureFromImage(ImageIO.read(createInputStreamFromResourceName(path)));
 			glTexParameteri(GL_TEXTURE_2D, GL_TEXTURE_MAX_LEVEL, numberOfMipMapLevels - 1);
@@ -190,6 +202,13 @@ public class TextureData {
 		return textureId;
 	}
 	
+	/**
+	 * See {@link TextureData#path}.
+	 */
+	public String getPath() {
+		return path;
+	}
+	
 	/**
 	 * Sets this {@link TextureData}'s {@link #magnificationFilter} and {@link #minificationFilter} .
 	 * 
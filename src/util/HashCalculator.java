@@ -0,0 +1,40 @@
+package util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Calculates <a href="https://en.wikipedia.org/wiki/SHA-2">SHA-256</a> hashes, which can be used to identify
+ * the content of files.
+ *
+ * @author Tizian Kirchner
+ */
+public class HashCalculator {
+	/**
+	 * @param bytes The bytes of which the hash is to be calculated.
+	 * @return The SHA-256 hash of the bytes as a hexadecimal String.
+	 */
+	public static String calculateHash(byte[] bytes) {
+		try {
+			byte[] hash = MessageDigest.getInstance("SHA-256").digest(bytes);
+			StringBuilder hexString = new StringBuilder(hash.length * 2);
+
+			for(byte b : hash) {
+				hexString.append(String.format("%02x", b));
+			}
+
+			return hexString.toString();
+		} catch(NoSuchAlgorithmException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @param string The String of which the hash is to be calculated.
+	 * @return The SHA-256 hash of the String's UTF-8 bytes as a hexadecimal String.
+	 */
+	public static String calculateHash(String string) {
+		return calculateHash(string.getBytes(StandardCharsets.UTF_8));
+	}
+}
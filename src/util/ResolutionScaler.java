@@ -87,7 +87,8 @@ public class ResolutionScaler {
 	
 	/**
 	 * Readjusts the {@link #renderWidth} and {@link #renderHeight} according to the {@link #renderScale}
-	 * and {@link #renderDivisor}.
+	 * and {@link #renderDivisor}. The size of points is only adjusted with an OpenGL context.
+	 * See {@link Window#hasContext}.
 	 */
 	public static void refreshRenderDimensions() {
 		if(renderDivisor > 1) {
@@ -96,7 +97,7 @@ public class ResolutionScaler {
 		
 		renderWidth = Math.round(Window.getViewportWidth() * renderScale);
 		renderHeight = Math.round(Window.getViewportHeight() * renderScale);
-		glPointSize(renderHeight * 0.03f);
+		if(Window.hasContext()) glPointSize(renderHeight * 0.03f);
 	}
 	
 	/**
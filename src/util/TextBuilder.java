@@ -8,6 +8,7 @@ import java.text.DecimalFormatSymbols;
 import java.util.Locale;
 
 import io.Window;
+import render.RayTracer;
 import render.TextRenderer;
 import scene.RasterizingScene;
 import scene.SceneCollectionStorage;
@@ -160,11 +161,12 @@ public class TextBuilder {
 	 * @param rtSettings See {@link RayTracingShaderProgramBuilder#rtSettings}.
 	 * @param useUniformBuffer See {@link RayTracingShaderProgramBuilder#useUniformBuffer}.
 	 * @param triangleBufferSize See {@link RayTracingShaderProgramBuilder#triangleBufferSize}.
+	 * @param frameUploadedBytes See {@link RayTracer#getFrameUploadedBytes}.
 	 */
 	public static void showRayTracingInformation(
 		int lightCount, int materialCount, int ctTextureCount,
 		int triangleCount, int sphereCount, int quadricCount, int csgCount,
-		RayTracingSettings rtSettings, boolean useUniformBuffer, int triangleBufferSize
+		RayTracingSettings rtSettings, boolean useUniformBuffer, int triangleBufferSize, long frameUploadedBytes
 	) {
 		String informationTypeStr = "Raytracing Information";
 		
@@ -178,6 +180,7 @@ public class TextBuilder {
 			triangleBufferSize * 4 + "bytes)"
 		);
 		
+		String uploads   = "Uploads  : " + frameUploadedBytes + "bytes per frame";
 		String spheres   = "Spheres  : " + sphereCount;
 		String quadrics  = "Quadrics : " + quadricCount;
 		String csgs      = "CSGs     : " + csgCount;
@@ -185,6 +188,7 @@ public class TextBuilder {
 		String lightingString           = "Lighting                    : " + rtSettings.isLighting();
 		String shadowRayString          = "Shadow Rays                 : " + rtSettings.getShadowRayCount();
 		String shadowTransparencyString = "Shadow Transparency Handling: " + rtSettings.isTransparencyLighting();
+		String occluderCacheString      = "Occluder Cache              : " + rtSettings.isUsingOccluderCache();
 		
 		String reflectionTraceString     = "Reflection Trace Depth   : " + rtSettings.getReflectionTraceDepth();
 		String reflectionLightingString  = "Reflection Lighting Depth: " + rtSettings.getReflectionLightingDepth();
@@ -194,13 +198,25 @@ public class TextBuilder {
 		String refractionLightingString  = "Refraction Lighting Depth: " + rtSettings.getRefractionLightingDepth();
 		String refractionShadowString    = "Refraction Shadow Depth  : " + rtSettings.getRefractionShadowDepth();
 		
+		String traversalString = "Surface Traversal  : " + (rtSettings.isUsingRayStack() ? "ray stack" : "surface tree");
+		String cutoffString    = "Contribution Cutoff: " + rtSettings.getContributionCutoff();
+		String primaryHitString = "Primary Hits       : " + (rtSettings.isUsingRasterizedPrimaryHits() ? "rasterized" : "traced");
+		
+		String backendString = "Backend            : " + (
+			rtSettings.isUsingComputeShader() ?
+			(rtSettings.isUsingWavefront() ? "wavefront " : "") +
+			"compute shader (" + rtSettings.getComputeTileWidth() + "x" + rtSettings.getComputeTileHeight() + " tiles)" :
+			"fragment shader"
+		);
+		
 		TextRenderer.setText(
 			informationTypeStr + "\n \n" +
 			lights + "\n" + materials + "\n" + textures + "\n \n" +
-			triangles + "\n" + spheres + "\n" + quadrics + "\n" + csgs + "\n \n" +
-			lightingString + "\n" + shadowRayString + "\n" + shadowTransparencyString + "\n \n" +
+			triangles + "\n" + spheres + "\n" + quadrics + "\n" + csgs + "\n" + uploads + "\n \n" +
+			lightingString + "\n" + shadowRayString + "\n" + shadowTransparencyString + "\n" + occluderCacheString + "\n \n" +
 			reflectionTraceString + "\n" + reflectionLightingString + "\n" + reflectionShadowString + "\n \n" +
-			refractionTraceString + "\n" + refractionLightingString + "\n" + refractionShadowString
+			refractionTraceString + "\n" + refractionLightingString + "\n" + refractionShadowString + "\n \n" +
+			traversalString + "\n" + cutoffString + "\n" + primaryHitString + "\n" + backendString
 		);
 	}
 	